@@ -0,0 +1,119 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A cooldown check followed by a trigger once it ran out, through
+ * {@link CooldownTable} and through the boxed {@code HashMap<UUID, Long>} of the
+ * former {@code CooldownManager}.
+ *
+ * <p>The clock advances one millisecond per operation and the table is expired
+ * every 50 ms, as the tick task does. Players cycle through the pool, so with a
+ * pool larger than the 3 s cooldown most checks find an expired or no entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CooldownBenchmark {
+  private static final long COOLDOWN_MILLIS = 3_000;
+  private static final long TICK_MILLIS = 50;
+
+  @Param({"1000", "100000"})
+  int players;
+
+  private UUID[] ids;
+  private CooldownTable table;
+  private BoxedCooldowns boxed;
+  private long now;
+  private int next;
+
+  /**
+   * Creates the player pool and empty cooldowns.
+   */
+  @Setup
+  public void setUp() {
+    ids = new UUID[players];
+    for (int i = 0; i < players; i++) {
+      ids[i] = UUID.randomUUID();
+    }
+    table = new CooldownTable();
+    boxed = new BoxedCooldowns();
+    now = 1;
+  }
+
+  /**
+   * Checks and triggers a cooldown in the timing-wheel table.
+   *
+   * @return the cooldown end
+   */
+  @Benchmark
+  public long table() {
+    UUID uuid = advance();
+    if (now % TICK_MILLIS == 0) {
+      table.expire(now);
+    }
+    if (table.get(uuid) <= now) {
+      table.put(uuid, now + COOLDOWN_MILLIS);
+    }
+    return table.get(uuid);
+  }
+
+  /**
+   * Checks and triggers a cooldown in the boxed map.
+   *
+   * @return the cooldown end
+   */
+  @Benchmark
+  public long boxedMap() {
+    UUID uuid = advance();
+    if (boxed.canTeleport(uuid, now)) {
+      boxed.triggerTeleport(uuid, now);
+    }
+    return boxed.end(uuid);
+  }
+
+  private UUID advance() {
+    now++;
+    UUID uuid = ids[next];
+    next = next + 1 == ids.length ? 0 : next + 1;
+    return uuid;
+  }
+
+  /**
+   * The teleport cooldown of the former {@code CooldownManager}, with the clock
+   * passed in. Entries are never removed.
+   */
+  static final class BoxedCooldowns {
+    private final Map<UUID, Long> teleportCooldownEnds = new HashMap<>();
+
+    boolean canTeleport(UUID uuid, long now) {
+      Long end = teleportCooldownEnds.get(uuid);
+      return end == null || end <= now;
+    }
+
+    void triggerTeleport(UUID uuid, long now) {
+      teleportCooldownEnds.put(uuid, now + COOLDOWN_MILLIS);
+    }
+
+    long end(UUID uuid) {
+      return teleportCooldownEnds.get(uuid);
+    }
+  }
+}
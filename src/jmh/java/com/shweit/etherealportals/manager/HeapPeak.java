@@ -0,0 +1,60 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Reports how far the heap grew above its collected baseline during one
+ * single-shot invocation, as the {@code peakHeapKb} secondary result.
+ *
+ * <p>The peaks of all heap pools are reset after a collection before the
+ * invocation and summed after it. Pools peak at different moments, so the sum is
+ * an upper bound. It includes garbage not yet collected; fork with a small young
+ * generation, e.g. {@code -XX:+UseSerialGC -Xmn32m}, so that it tracks the live
+ * set plus at most one young generation.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class HeapPeak {
+  private static final List<MemoryPoolMXBean> POOLS = ManagementFactory.getMemoryPoolMXBeans()
+      .stream().filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+
+  /** Peak heap growth of the last invocation in kilobytes. */
+  public long peakHeapKb;
+
+  private long baseline;
+
+  /**
+   * Collects garbage and resets the pool peaks.
+   */
+  @Setup(Level.Invocation)
+  public void reset() {
+    System.gc();
+    long used = 0;
+    for (MemoryPoolMXBean pool : POOLS) {
+      pool.resetPeakUsage();
+      used += pool.getUsage().getUsed();
+    }
+    baseline = used;
+  }
+
+  /**
+   * Records the peak reached during the invocation.
+   */
+  @TearDown(Level.Invocation)
+  public void record() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : POOLS) {
+      peak += pool.getPeakUsage().getUsed();
+    }
+    peakHeapKb = (peak - baseline) / 1024;
+  }
+}
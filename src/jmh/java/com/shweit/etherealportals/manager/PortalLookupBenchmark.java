@@ -0,0 +1,62 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of {@link PortalRegistry#findPortalAt} from 10 to 100,000 portals, which
+ * should stay flat. Half the probes stand in a portal, half between portals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PortalLookupBenchmark {
+  @Param({"10", "100", "1000", "10000", "100000"})
+  int portals;
+
+  private PortalRegistry registry;
+  private Location[] probes;
+  private int next;
+
+  /**
+   * Builds the registry and its probes.
+   */
+  @Setup
+  public void setUp() {
+    World world = TestWorlds.get("world");
+    List<Portal> created = new ArrayList<>(portals);
+    registry = PortalRegistry.EMPTY.withGroups(PortalGrid.groups(world, portals, created));
+    probes = PortalGrid.probes(world, created, new Random(portals));
+  }
+
+  /**
+   * Looks up the next probe.
+   *
+   * @return the portal found, or null between portals
+   */
+  @Benchmark
+  public PortalManager.PortalResult findPortalAt() {
+    Location probe = probes[next];
+    next = next + 1 == probes.length ? 0 : next + 1;
+    return registry.findPortalAt(probe);
+  }
+}
@@ -0,0 +1,118 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Wall time and peak heap of loading the groups snapshot from {@code groups.dat}
+ * and from {@code groups.yml}, the way {@link FileStorageBackend} reads them at
+ * startup, and of {@code groups.yml} through the document loader it falls back
+ * to. Each invocation is one load into an empty table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+// A small young generation keeps garbage out of the heap peak, see HeapPeak
+@Fork(value = 1, jvmArgsAppend = {"-XX:+UseSerialGC", "-Xmn32m", "-Xms2g", "-Xmx2g"})
+public class SnapshotLoadBenchmark {
+  @Param({"50000", "100000"})
+  int portals;
+
+  private Path dir;
+  private Path binary;
+  private Path yaml;
+  private PortalTable loaded;
+
+  /**
+   * Writes both snapshot files for a grid of portals.
+   *
+   * @throws IOException if a file cannot be written
+   */
+  @Setup
+  public void writeFiles() throws IOException {
+    TestWorlds.install();
+    List<PortalGroup> groups = PortalGrid.groups(TestWorlds.get("world"), portals,
+        new ArrayList<>());
+    dir = Files.createTempDirectory("ep-load");
+    binary = Files.write(dir.resolve("groups.dat"), BinarySnapshot.encode(groups));
+    yaml = Files.writeString(dir.resolve("groups.yml"), BinarySnapshotTest.toYaml(groups),
+        StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Deletes the snapshot files.
+   *
+   * @throws IOException if a file cannot be deleted
+   */
+  @TearDown
+  public void deleteFiles() throws IOException {
+    Files.deleteIfExists(binary);
+    Files.deleteIfExists(yaml);
+    Files.deleteIfExists(dir);
+  }
+
+  /**
+   * Loads {@code groups.dat}.
+   *
+   * @param heap records the peak heap of the load
+   * @return the loaded table
+   * @throws IOException if the file cannot be read
+   */
+  @Benchmark
+  public PortalTable binary(HeapPeak heap) throws IOException {
+    PortalTable table = new PortalTable();
+    BinarySnapshot.read(binary, table, PortalHitbox.DEFAULT);
+    // Kept reachable until the heap peak is read
+    loaded = table;
+    return table;
+  }
+
+  /**
+   * Loads {@code groups.yml} with the streaming loader.
+   *
+   * @param heap records the peak heap of the load
+   * @return the loaded table
+   * @throws IOException if the file cannot be read
+   */
+  @Benchmark
+  public PortalTable yaml(HeapPeak heap) throws IOException {
+    PortalTable table = new PortalTable();
+    YamlStreamLoader.readGroups(yaml, table, PortalHitbox.DEFAULT);
+    loaded = table;
+    return table;
+  }
+
+  /**
+   * Loads {@code groups.yml} as a whole document.
+   *
+   * @param heap records the peak heap of the load
+   * @return the loaded table
+   * @throws IOException if the file cannot be read
+   */
+  @Benchmark
+  public PortalTable yamlDocument(HeapPeak heap) throws IOException {
+    loaded = FileStorageBackend.readDocument(yaml.toFile(), PortalHitbox.DEFAULT);
+    return loaded;
+  }
+}
@@ -2,16 +2,32 @@ package fr.kazotaruumc72.etherealportals;
 
 import fr.kazotaruumc72.etherealportals.command.EpDebugCommand;
 import fr.kazotaruumc72.etherealportals.command.PortalCommand;
+import fr.kazotaruumc72.etherealportals.listener.ChunkEffectListener;
+import fr.kazotaruumc72.etherealportals.listener.DisplayVisibilityListener;
 import fr.kazotaruumc72.etherealportals.listener.InventoryClickListener;
 import fr.kazotaruumc72.etherealportals.listener.InventoryCloseListener;
+import fr.kazotaruumc72.etherealportals.listener.MovementFilter;
 import fr.kazotaruumc72.etherealportals.listener.PlayerMoveListener;
+import fr.kazotaruumc72.etherealportals.listener.PlayerSessionListener;
 import fr.kazotaruumc72.etherealportals.listener.PortalItemListener;
+import fr.kazotaruumc72.etherealportals.manager.ChunkPrefetcher;
 import fr.kazotaruumc72.etherealportals.manager.CooldownManager;
+import fr.kazotaruumc72.etherealportals.manager.CooldownPolicy;
 import fr.kazotaruumc72.etherealportals.manager.DataManager;
 import fr.kazotaruumc72.etherealportals.manager.IconManager;
 import fr.kazotaruumc72.etherealportals.manager.PortalManager;
+import fr.kazotaruumc72.etherealportals.manager.SessionManager;
+import fr.kazotaruumc72.etherealportals.manager.TrustManager;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import fr.kazotaruumc72.etherealportals.teleport.AdmissionController;
+import fr.kazotaruumc72.etherealportals.teleport.TeleportService;
 import fr.kazotaruumc72.etherealportals.util.MessageUtils;
 import fr.kazotaruumc72.etherealportals.util.PortalItemUtils;
+import fr.kazotaruumc72.etherealportals.util.SkullUtils;
+import fr.kazotaruumc72.etherealportals.visual.DisplayAnimator;
+import fr.kazotaruumc72.etherealportals.visual.ParticleGovernor;
+import fr.kazotaruumc72.etherealportals.visual.ParticleLod;
+import fr.kazotaruumc72.etherealportals.visual.RegionEffectScheduler;
 import org.bstats.bukkit.Metrics;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
@@ -31,10 +47,16 @@ public class EtherealPortals extends JavaPlugin {
   private IconManager iconManager;
   private DataManager dataManager;
   private CooldownManager cooldownManager;
+  private MovementFilter movementFilter;
+  private SessionManager sessionManager;
+  private TrustManager trustManager;
+  private ChunkPrefetcher chunkPrefetcher;
+  private TeleportService teleportService;
   private fr.kazotaruumc72.etherealportals.visual.VisualEffectTask visualTask;
   private double hitboxWidth;
   private double hitboxDepth;
   private double hitboxHeight;
+  private PortalHitbox defaultHitbox;
   private boolean craftablePortalsEnabled;
   private String defaultPortalTexture;
   private String portalItemName;
@@ -67,6 +89,51 @@ public class EtherealPortals extends JavaPlugin {
     return cooldownManager;
   }
 
+  /**
+   * Gets the movement pre-filter instance.
+   *
+   * @return the movement filter
+   */
+  public MovementFilter getMovementFilter() {
+    return movementFilter;
+  }
+
+  /**
+   * Gets the player session store.
+   *
+   * @return the session manager
+   */
+  public SessionManager getSessionManager() {
+    return sessionManager;
+  }
+
+  /**
+   * Gets the trust manager for private portal groups.
+   *
+   * @return the trust manager
+   */
+  public TrustManager getTrustManager() {
+    return trustManager;
+  }
+
+  /**
+   * Gets the destination chunk prefetcher.
+   *
+   * @return the chunk prefetcher
+   */
+  public ChunkPrefetcher getChunkPrefetcher() {
+    return chunkPrefetcher;
+  }
+
+  /**
+   * Gets the teleport service.
+   *
+   * @return the teleport service
+   */
+  public TeleportService getTeleportService() {
+    return teleportService;
+  }
+
   /**
    * Gets the data manager instance.
    *
@@ -112,6 +179,15 @@ public class EtherealPortals extends JavaPlugin {
     return hitboxHeight;
   }
 
+  /**
+   * Gets the hitbox given to new portals and to stored portals without one.
+   *
+   * @return the default portal hitbox
+   */
+  public PortalHitbox getDefaultHitbox() {
+    return defaultHitbox;
+  }
+
   /**
    * Checks if craftable portals are enabled.
    *
@@ -152,12 +228,21 @@ public class EtherealPortals extends JavaPlugin {
   public void onEnable() {
     saveDefaultConfig();
     reloadLocalConfig();
-    portalManager = new PortalManager();
+    portalManager = new PortalManager(defaultHitbox);
     iconManager = new IconManager();
-    cooldownManager = new CooldownManager(
-        getConfig().getInt("portal.teleport.cooldownSeconds", 3),
-        getConfig().getInt("portal.teleport.messageCooldownSeconds", 1));
+    cooldownManager = new CooldownManager(CooldownPolicy.fromConfig(getConfig()));
+    cooldownManager.start(this);
     dataManager = new DataManager(this, portalManager, iconManager);
+    sessionManager = new SessionManager();
+    trustManager = new TrustManager(this);
+    movementFilter = new MovementFilter(portalManager,
+        getConfig().getDouble("portal.movement.clearanceRadius", 32.0));
+    chunkPrefetcher = new ChunkPrefetcher(this, readPrefetchSettings());
+    chunkPrefetcher.start();
+    AdmissionController admission = new AdmissionController(this, readAdmissionSettings());
+    admission.start();
+    teleportService = new TeleportService(this, admission,
+        getConfig().getLong("portal.teleport.delayTicks", 10L));
     
     registerCommands();
     registerListeners();
@@ -174,8 +259,25 @@ public class EtherealPortals extends JavaPlugin {
 
   @Override
   public void onDisable() {
-    dataManager.saveGroups();
-    dataManager.saveIcons();
+    if (dataManager != null) {
+      dataManager.close(getConfig().getLong("portal.storage.flushTimeoutMillis", 10000L));
+    }
+    if (trustManager != null) {
+      trustManager.close(getConfig().getLong("portal.storage.flushTimeoutMillis", 10000L));
+    }
+    if (sessionManager != null) {
+      sessionManager.clear();
+    }
+    if (cooldownManager != null) {
+      cooldownManager.stop();
+    }
+    if (teleportService != null) {
+      teleportService.shutdown();
+      teleportService.getAdmissionController().stop();
+    }
+    if (chunkPrefetcher != null) {
+      chunkPrefetcher.stop();
+    }
     if (visualTask != null) {
       visualTask.stop();
     }
@@ -189,6 +291,19 @@ public class EtherealPortals extends JavaPlugin {
     hitboxWidth = getConfig().getDouble("portal.hitbox.width", 2.0);
     hitboxDepth = getConfig().getDouble("portal.hitbox.depth", 2.0);
     hitboxHeight = getConfig().getDouble("portal.hitbox.height", 2.0);
+    String hitboxShape = getConfig().getString("portal.hitbox.shape", "box");
+    if ("cylinder".equalsIgnoreCase(hitboxShape)) {
+      defaultHitbox = PortalHitbox.cylinder(hitboxWidth / 2.0, hitboxHeight);
+    } else {
+      defaultHitbox = PortalHitbox.box(hitboxWidth, hitboxDepth, hitboxHeight);
+    }
+    SkullUtils.setCacheSize(getConfig().getInt("portal.gui.headCacheSize", 256));
+    if (dataManager != null) {
+      dataManager.updateConfig(getConfig().getConfigurationSection("portal.storage"));
+    }
+    if (portalManager != null) {
+      portalManager.setDefaultHitbox(defaultHitbox);
+    }
     craftablePortalsEnabled = getConfig().getBoolean("portal.craftablePortals.enabled", true);
     defaultPortalTexture = getConfig().getString("portal.defaultTexture",
         "eyJ0ZXh0dXJlcyI6eyJTS0lOIjp7InVybCI6Imh0dHA6Ly90ZXh0dXJlcy5taW5lY3JhZnQubmV0L3Rle"
@@ -197,11 +312,69 @@ public class EtherealPortals extends JavaPlugin {
     portalItemName = getConfig().getString("portal.craftablePortals.item.name",
         "§d§lPortal Crystal");
     portalItemLore = getConfig().getStringList("portal.craftablePortals.item.lore");
+    if (movementFilter != null) {
+      movementFilter.setClearanceRadius(
+          getConfig().getDouble("portal.movement.clearanceRadius", 32.0));
+    }
     if (cooldownManager != null) {
-      cooldownManager.updateConfig(
-          getConfig().getInt("portal.teleport.cooldownSeconds", 3),
-          getConfig().getInt("portal.teleport.messageCooldownSeconds", 1));
+      cooldownManager.updateConfig(CooldownPolicy.fromConfig(getConfig()));
+    }
+    if (chunkPrefetcher != null) {
+      chunkPrefetcher.updateConfig(readPrefetchSettings());
     }
+    if (visualTask != null) {
+      visualTask.getEffectScheduler().updateConfig(
+          getConfig().getInt("portal.effects.periodTicks", 20),
+          getConfig().getDouble("portal.effects.viewDistance", 32.0),
+          ParticleLod.fromConfig(getConfig().getConfigurationSection("portal.effects.lod")));
+      visualTask.getEffectScheduler().getRenderer().updateConfig(
+          getConfig().getConfigurationSection("portal.effects.animation"));
+      visualTask.setMarkerType(
+          fr.kazotaruumc72.etherealportals.visual.VisualEffectTask.parseMarkerType(
+              getConfig().getString("portal.craftablePortals.marker")));
+      visualTask.getReconciler().setChunksPerTick(
+          getConfig().getInt("portal.displays.reconcileChunksPerTick", 4));
+      visualTask.getEffectScheduler().setMode(RegionEffectScheduler.parseMode(
+          getConfig().getString("portal.effects.mode")));
+      visualTask.getEffectScheduler().getAnimator().updateConfig(
+          DisplayAnimator.Settings.fromConfig(
+              getConfig().getConfigurationSection("portal.effects.display")));
+      visualTask.getEffectScheduler().getGovernor().updateConfig(
+          ParticleGovernor.Settings.fromConfig(
+              getConfig().getConfigurationSection("portal.effects.governor")));
+    }
+    if (teleportService != null) {
+      teleportService.setDelayTicks(getConfig().getLong("portal.teleport.delayTicks", 10L));
+      teleportService.getAdmissionController().updateConfig(readAdmissionSettings());
+    }
+  }
+
+  /**
+   * Reads the teleport admission limits from the configuration.
+   *
+   * @return the admission limits
+   */
+  private AdmissionController.Settings readAdmissionSettings() {
+    return new AdmissionController.Settings(
+        getConfig().getInt("portal.teleport.admission.maxInFlight", 16),
+        getConfig().getDouble("portal.teleport.admission.regionRate", 4.0),
+        getConfig().getInt("portal.teleport.admission.regionBurst", 8),
+        getConfig().getInt("portal.teleport.admission.maxQueued", 200));
+  }
+
+  /**
+   * Reads the destination prefetch settings from the configuration.
+   *
+   * @return the prefetch settings
+   */
+  private ChunkPrefetcher.Settings readPrefetchSettings() {
+    return new ChunkPrefetcher.Settings(
+        getConfig().getBoolean("portal.prefetch.enabled", true),
+        getConfig().getDouble("portal.prefetch.radius", 8.0),
+        getConfig().getInt("portal.prefetch.chunkRadius", 0),
+        getConfig().getInt("portal.prefetch.ttlSeconds", 30),
+        getConfig().getInt("portal.prefetch.maxChunks", 256),
+        getConfig().getInt("portal.prefetch.maxDestinations", 4));
   }
 
   /**
@@ -229,7 +402,10 @@ public class EtherealPortals extends JavaPlugin {
       PluginManager pm = getServer().getPluginManager();
       pm.registerEvents(new PlayerMoveListener(this), this);
       pm.registerEvents(new InventoryClickListener(this), this);
-      pm.registerEvents(new InventoryCloseListener(), this);
+      pm.registerEvents(new InventoryCloseListener(this), this);
+      pm.registerEvents(new PlayerSessionListener(this), this);
+      pm.registerEvents(new DisplayVisibilityListener(this), this);
+      pm.registerEvents(new ChunkEffectListener(this), this);
       pm.registerEvents(new PortalItemListener(this), this);
       pm.registerEvents(new fr.kazotaruumc72.etherealportals.listener.RecipeDiscoveryListener(this), this);
   }
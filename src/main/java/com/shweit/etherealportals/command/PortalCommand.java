@@ -3,8 +3,10 @@ package fr.kazotaruumc72.etherealportals.command;
 import fr.kazotaruumc72.etherealportals.EtherealPortals;
 import fr.kazotaruumc72.etherealportals.manager.IconManager;
 import fr.kazotaruumc72.etherealportals.manager.PortalManager;
+import fr.kazotaruumc72.etherealportals.manager.TrustManager;
 import fr.kazotaruumc72.etherealportals.model.Portal;
 import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
 import fr.kazotaruumc72.etherealportals.model.PortalIcon;
 import fr.kazotaruumc72.etherealportals.util.MessageUtils;
 import fr.kazotaruumc72.etherealportals.util.PortalItemUtils;
@@ -13,10 +15,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -29,6 +33,7 @@ import org.bukkit.inventory.meta.ItemMeta;
 
 /** Handles /portal group & icon subcommands plus GUI opening. */
 public class PortalCommand implements CommandExecutor, TabCompleter {
+  private static final double MAX_HITBOX_SIZE = 64.0;
   private final EtherealPortals plugin;
 
   /**
@@ -45,7 +50,7 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
       String label, String[] args) {
     if (args.length == 0) {
       MessageUtils.info(sender,
-          "Usage: &d/portal &7<&bgroup&7|&bicon&7> &7<subcommand>");
+          "Usage: &d/portal &7<&bgroup&7|&bicon&7|&bgive&7|&btrust&7|&buntrust&7> &7<subcommand>");
       return true;
     }
     switch (args[0].toLowerCase(Locale.ROOT)) {
@@ -58,9 +63,15 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
       case "give":
         handleGive(sender, args);
         return true;
+      case "trust":
+        handleTrust(sender, args, true);
+        return true;
+      case "untrust":
+        handleTrust(sender, args, false);
+        return true;
       default:
-        MessageUtils.error(sender,
-            "Unknown category! Use &d/portal group&c, &d/portal icon&c, or &d/portal give&c.");
+        MessageUtils.error(sender, "Unknown category! Use &d/portal group&c, &d/portal icon&c, "
+            + "&d/portal give&c, &d/portal trust&c or &d/portal untrust&c.");
         return true;
     }
   }
@@ -69,7 +80,7 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
     PortalManager pm = plugin.getPortalManager();
     if (args.length < 2) {
       MessageUtils.info(sender,
-          "Available commands: &dcreate&7, &ddelete&7, &dadd&7, &dremove&7, &dlist");
+          "Available commands: &dcreate&7, &ddelete&7, &dadd&7, &dremove&7, &dhitbox&7, &dlist");
       return;
     }
     String sub = args[1].toLowerCase();
@@ -87,7 +98,7 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
         pm.createGroupIfAbsent(args[2]);
         MessageUtils.success(sender,
             "Portal group &d" + args[2] + "&a has been created!");
-        plugin.getDataManager().saveGroups();
+        // Nothing to save: groups are stored with their first portal
         return;
         }
       case "delete":
@@ -109,11 +120,12 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
           }
           MessageUtils.success(sender,
               "Portal group &d" + args[2] + "&a has been deleted.");
+          plugin.getDataManager().saveGroupRemoval(args[2]);
+          plugin.getTrustManager().release(args[2]);
         } else {
           MessageUtils.error(sender,
               "Portal group &d" + args[2] + "&c doesn't exist.");
         }
-        plugin.getDataManager().saveGroups();
         return;
         }
       case "add":
@@ -175,12 +187,12 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
           // Create text display for the new portal
           plugin.getVisualTask().createTextDisplay(
               portalLoc.clone().add(0.5, 3, 0.5), group, name);
+          plugin.getDataManager().savePortal(group, name);
         } else {
           MessageUtils.error(sender,
               "A portal with the name &d" + name
               + "&c already exists in this group.");
         }
-        plugin.getDataManager().saveGroups();
         return;
         }
       case "remove":
@@ -218,12 +230,45 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
           MessageUtils.success(sender,
               "Portal &d" + portalName + "&a has been removed from group &d"
               + groupName + "&a.");
+          plugin.getDataManager().savePortalRemoval(groupName, portalName);
         } else {
           MessageUtils.error(sender,
               "Failed to remove portal &d" + portalName + "&c from group &d"
               + groupName + "&c.");
         }
-        plugin.getDataManager().saveGroups();
+        return;
+        }
+      case "hitbox":
+        {
+        if (!sender.hasPermission("portal.group.hitbox")) {
+          noPerm(sender);
+          return;
+        }
+        if (args.length < 5) {
+          MessageUtils.info(sender,
+              "Usage: &d/portal group hitbox &b<group> <name> box <width> <depth> <height>");
+          MessageUtils.info(sender,
+              "       &d/portal group hitbox &b<group> <name> cylinder <radius> <height>");
+          MessageUtils.info(sender,
+              "       &d/portal group hitbox &b<group> <name> slab <width> <thickness> <height> "
+              + "&7[yaw]");
+          return;
+        }
+        String groupName = args[2];
+        String portalName = args[3];
+        PortalHitbox hitbox = parseHitbox(sender, args);
+        if (hitbox == null) {
+          return;
+        }
+        if (pm.setHitbox(groupName, portalName, hitbox)) {
+          MessageUtils.success(sender,
+              "Portal &d" + portalName + "&a now uses a &d" + hitbox.describe() + "&a hitbox.");
+          plugin.getDataManager().savePortal(groupName, portalName);
+        } else {
+          MessageUtils.error(sender,
+              "Portal &d" + portalName + "&c doesn't exist in group &d"
+              + groupName + "&c.");
+        }
         return;
         }
       case "list":
@@ -290,11 +335,11 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
         if (ok) {
           MessageUtils.success(sender,
               "Custom icon &d" + args[2] + "&a has been added!");
+          plugin.getDataManager().saveIcon(args[2]);
         } else {
           MessageUtils.error(sender,
               "An icon with the name &d" + args[2] + "&c already exists.");
         }
-        plugin.getDataManager().saveIcons();
         return;
         }
       case "remove":
@@ -311,10 +356,10 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
         if (ok) {
           MessageUtils.success(sender,
               "Custom icon &d" + args[2] + "&a has been removed.");
+          plugin.getDataManager().saveIcon(args[2]);
         } else {
           MessageUtils.error(sender, "Icon &d" + args[2] + "&c doesn't exist.");
         }
-        plugin.getDataManager().saveIcons();
         return;
         }
       case "list":
@@ -389,6 +434,69 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
     MessageUtils.success(target, "You received a portal item!");
   }
 
+  private void handleTrust(CommandSender sender, String[] args, boolean trust) {
+    if (!(sender instanceof Player)) {
+      MessageUtils.error(sender, "This command can only be used by players.");
+      return;
+    }
+    if (!sender.hasPermission("portal.trust")) {
+      noPerm(sender);
+      return;
+    }
+    Player owner = (Player) sender;
+    TrustManager tm = plugin.getTrustManager();
+    if (args.length < 2) {
+      if (!trust) {
+        MessageUtils.info(sender, "Usage: &d/portal untrust &b<player>");
+        return;
+      }
+      // /portal trust lists the trusted players
+      List<String> names = new ArrayList<>();
+      for (UUID id : tm.getTrusted(owner.getUniqueId())) {
+        OfflinePlayer trusted = Bukkit.getOfflinePlayer(id);
+        names.add(trusted.getName() != null ? trusted.getName() : id.toString());
+      }
+      if (names.isEmpty()) {
+        MessageUtils.info(sender, "You don't trust anyone with your portals. "
+            + "Use &d/portal trust &b<player>&7.");
+      } else {
+        MessageUtils.info(sender, "Trusted players: &d" + String.join("&7, &d", names));
+      }
+      return;
+    }
+
+    OfflinePlayer target = Bukkit.getPlayerExact(args[1]);
+    if (target == null) {
+      target = Bukkit.getOfflinePlayerIfCached(args[1]);
+    }
+    if (target == null) {
+      MessageUtils.error(sender, "Player &d" + args[1] + "&c has never joined this server.");
+      return;
+    }
+    if (target.getUniqueId().equals(owner.getUniqueId())) {
+      MessageUtils.error(sender, "You always have access to your own portals.");
+      return;
+    }
+    String name = target.getName() != null ? target.getName() : args[1];
+    if (trust) {
+      if (tm.trust(owner.getUniqueId(), target.getUniqueId())) {
+        MessageUtils.success(sender, "&d" + name + "&a can now see your private portals.");
+      } else {
+        MessageUtils.error(sender, "&d" + name + "&c is already trusted.");
+        return;
+      }
+    } else if (tm.untrust(owner.getUniqueId(), target.getUniqueId())) {
+      MessageUtils.success(sender, "&d" + name + "&a can no longer see your private portals.");
+    } else {
+      MessageUtils.error(sender, "&d" + name + "&c is not trusted.");
+      return;
+    }
+    if (plugin.getVisualTask() != null) {
+      plugin.getVisualTask().getVisibility().onTrustChanged(owner.getUniqueId(),
+          target.getUniqueId());
+    }
+  }
+
   private void openIconList(Player player) {
     int size = 9 * ((plugin.getIconManager().getIcons().size() / 9) + 1);
     if (size > 54) {
@@ -417,6 +525,60 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
     player.openInventory(inv);
   }
 
+  private PortalHitbox parseHitbox(CommandSender sender, String[] args) {
+    String shape = args[4].toLowerCase(Locale.ROOT);
+    int needed;
+    switch (shape) {
+      case "box":
+      case "slab":
+        needed = 3;
+        break;
+      case "cylinder":
+        needed = 2;
+        break;
+      default:
+        MessageUtils.error(sender, "Unknown shape! Use &dbox&c, &dcylinder&c or &dslab&c.");
+        return null;
+    }
+    if (args.length < 5 + needed) {
+      MessageUtils.error(sender, "Missing dimensions for a &d" + shape + "&c hitbox.");
+      return null;
+    }
+    double[] dims = new double[needed];
+    for (int i = 0; i < needed; i++) {
+      try {
+        dims[i] = Double.parseDouble(args[5 + i]);
+      } catch (NumberFormatException e) {
+        MessageUtils.error(sender, "&d" + args[5 + i] + "&c is not a number.");
+        return null;
+      }
+      if (dims[i] <= 0 || dims[i] > MAX_HITBOX_SIZE) {
+        MessageUtils.error(sender,
+            "Hitbox dimensions must be between 0 and " + (int) MAX_HITBOX_SIZE + " blocks.");
+        return null;
+      }
+    }
+    switch (shape) {
+      case "cylinder":
+        return PortalHitbox.cylinder(dims[0], dims[1]);
+      case "slab":
+        double yaw = 0.0;
+        if (args.length >= 9) {
+          try {
+            yaw = Double.parseDouble(args[8]);
+          } catch (NumberFormatException e) {
+            MessageUtils.error(sender, "&d" + args[8] + "&c is not a number.");
+            return null;
+          }
+        } else if (sender instanceof Player) {
+          yaw = ((Player) sender).getLocation().getYaw();
+        }
+        return PortalHitbox.slab(dims[0], dims[1], dims[2], yaw);
+      default:
+        return PortalHitbox.box(dims[0], dims[1], dims[2]);
+    }
+  }
+
   private void noPerm(CommandSender sender) {
     MessageUtils.error(sender, "You don't have permission to use this command.");
   }
@@ -425,13 +587,14 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
   public List<String> onTabComplete(CommandSender sender, Command command,
       String alias, String[] args) {
     if (args.length == 1) {
-      return partial(args[0], List.of("group", "icon", "give"));
+      return partial(args[0], List.of("group", "icon", "give", "trust", "untrust"));
     }
 
     // Group commands
     if (args[0].equalsIgnoreCase("group")) {
       if (args.length == 2) {
-        return partial(args[1], List.of("create", "delete", "add", "remove", "list"));
+        return partial(args[1],
+            List.of("create", "delete", "add", "remove", "hitbox", "list"));
       }
 
       String subCmd = args[1].toLowerCase();
@@ -493,6 +656,23 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
         }
       }
 
+      // /portal group hitbox <group> <portal> <shape> <dimensions...>
+      if (subCmd.equals("hitbox")) {
+        if (args.length == 3) {
+          return partial(args[2], getGroupNames());
+        }
+        if (args.length == 4) {
+          PortalGroup group = pm.getGroup(args[2]);
+          if (group != null) {
+            return partial(args[3], group.getPortals().stream()
+                .map(Portal::getName).collect(Collectors.toList()));
+          }
+        }
+        if (args.length == 5) {
+          return partial(args[4], List.of("box", "cylinder", "slab"));
+        }
+      }
+
       // /portal group list [group]
       if (subCmd.equals("list") && args.length == 3) {
         return partial(args[2], getGroupNames());
@@ -536,6 +716,23 @@ public class PortalCommand implements CommandExecutor, TabCompleter {
       }
     }
 
+    // Trust commands: /portal trust|untrust <player>
+    if (args.length == 2 && sender instanceof Player) {
+      if (args[0].equalsIgnoreCase("trust")) {
+        return partial(args[1], Bukkit.getOnlinePlayers().stream()
+            .map(Player::getName)
+            .filter(name -> !name.equals(sender.getName()))
+            .collect(Collectors.toList()));
+      }
+      if (args[0].equalsIgnoreCase("untrust")) {
+        return partial(args[1], plugin.getTrustManager()
+            .getTrusted(((Player) sender).getUniqueId()).stream()
+            .map(id -> Bukkit.getOfflinePlayer(id).getName())
+            .filter(name -> name != null)
+            .collect(Collectors.toList()));
+      }
+    }
+
     return Collections.emptyList();
   }
 
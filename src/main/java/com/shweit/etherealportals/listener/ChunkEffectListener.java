@@ -0,0 +1,66 @@
+package fr.kazotaruumc72.etherealportals.listener;
+
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.visual.VisualEffectTask;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+
+/**
+ * Starts and stops portal particle tasks as their chunks load and unload, and
+ * queues portal display reconciliation as chunk entities load.
+ */
+public class ChunkEffectListener implements Listener {
+  private final EtherealPortals plugin;
+
+  /**
+   * Creates a new chunk effect listener.
+   *
+   * @param plugin the plugin instance
+   */
+  public ChunkEffectListener(EtherealPortals plugin) {
+    this.plugin = plugin;
+  }
+
+  /**
+   * Starts the effects of portals in a loaded chunk.
+   *
+   * @param event the chunk load event
+   */
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onChunkLoad(ChunkLoadEvent event) {
+    VisualEffectTask visuals = plugin.getVisualTask();
+    if (visuals != null) {
+      visuals.getEffectScheduler().onChunkLoad(event.getChunk());
+    }
+  }
+
+  /**
+   * Queues the display entities of a chunk for reconciliation.
+   *
+   * @param event the entities load event
+   */
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onEntitiesLoad(EntitiesLoadEvent event) {
+    VisualEffectTask visuals = plugin.getVisualTask();
+    if (visuals != null) {
+      visuals.getReconciler().onEntitiesLoad(event.getChunk(), event.getEntities());
+    }
+  }
+
+  /**
+   * Stops the effects of portals in an unloading chunk.
+   *
+   * @param event the chunk unload event
+   */
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onChunkUnload(ChunkUnloadEvent event) {
+    VisualEffectTask visuals = plugin.getVisualTask();
+    if (visuals != null) {
+      visuals.getEffectScheduler().onChunkUnload(event.getChunk());
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package fr.kazotaruumc72.etherealportals.listener;
+
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+/**
+ * Shows players the text displays of the private portal groups they may use
+ * when they join or enter another world. Joining players also take over the
+ * groups recorded under their name before owners were recorded by UUID.
+ */
+public class DisplayVisibilityListener implements Listener {
+  private final EtherealPortals plugin;
+
+  /**
+   * Creates a new display visibility listener.
+   *
+   * @param plugin the plugin instance
+   */
+  public DisplayVisibilityListener(EtherealPortals plugin) {
+    this.plugin = plugin;
+  }
+
+  /**
+   * Shows a joining player their private displays.
+   *
+   * @param event the player join event
+   */
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onJoin(PlayerJoinEvent event) {
+    plugin.getTrustManager().adopt(event.getPlayer(), plugin.getPortalManager().getGroups());
+    refresh(event.getPlayer());
+  }
+
+  /**
+   * Shows a player the private displays of the world they entered.
+   *
+   * @param event the player changed world event
+   */
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onWorldChange(PlayerChangedWorldEvent event) {
+    refresh(event.getPlayer());
+  }
+
+  private void refresh(Player player) {
+    if (plugin.getVisualTask() != null) {
+      plugin.getVisualTask().getVisibility().refresh(player);
+    }
+  }
+}
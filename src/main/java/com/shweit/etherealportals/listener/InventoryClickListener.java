@@ -1,16 +1,11 @@
 package fr.kazotaruumc72.etherealportals.listener;
 
 import fr.kazotaruumc72.etherealportals.EtherealPortals;
-import fr.kazotaruumc72.etherealportals.manager.CooldownManager;
 import fr.kazotaruumc72.etherealportals.manager.PortalManager;
 import fr.kazotaruumc72.etherealportals.model.Portal;
 import fr.kazotaruumc72.etherealportals.model.PortalGroup;
 import fr.kazotaruumc72.etherealportals.util.MessageUtils;
-import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.NamespacedKey;
-import org.bukkit.Particle;
-import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -20,7 +15,7 @@ import org.bukkit.persistence.PersistentDataType;
 
 /**
  * Handles inventory click events for plugin GUIs.
- * Folia-compatible version using RegionScheduler and async teleportation.
+ * Portal selections are handed to the TeleportService.
  */
 public class InventoryClickListener implements Listener {
     private final EtherealPortals plugin;
@@ -86,13 +81,13 @@ public class InventoryClickListener implements Listener {
 
     /**
      * Teleports a player to a portal by group and portal name.
-     * Uses Folia-compatible async teleportation with RegionScheduler for delayed execution.
      *
      * @param player the player to teleport
      * @param groupName the portal group name
      * @param portalName the portal name
      */
     private void teleportByGroupAndName(Player player, String groupName, String portalName) {
+        long clickedAt = System.nanoTime();
         PortalManager pm = plugin.getPortalManager();
         PortalGroup group = pm.getGroup(groupName);
 
@@ -107,47 +102,9 @@ public class InventoryClickListener implements Listener {
             return;
         }
 
-        CooldownManager cm = plugin.getCooldownManager();
-
-        // Check cooldown
-        if (!cm.canTeleport(player.getUniqueId())) {
-            if (cm.canMessage(player.getUniqueId())) {
-                MessageUtils.cooldown(player, cm.remainingTeleport(player.getUniqueId()));
-                cm.triggerMessage(player.getUniqueId());
-            }
-            return;
+        // Close inventory once the teleport is scheduled
+        if (plugin.getTeleportService().request(player, groupName, target, clickedAt)) {
+            player.closeInventory();
         }
-
-        // Close inventory and play burst animation at source
-        player.closeInventory();
-        Location sourceLoc = player.getLocation();
-        sourceLoc.getWorld().spawnParticle(Particle.PORTAL, sourceLoc,
-                40, 0.5, 0.5, 0.5, 0.2);
-        sourceLoc.getWorld().playSound(sourceLoc,
-                Sound.ENTITY_ENDERMAN_TELEPORT, 1f, 1f);
-
-        Location targetLoc = target.getCenterLocation();
-
-        // Schedule delayed teleport using RegionScheduler
-        // This ensures the task runs on the correct region thread
-        Bukkit.getRegionScheduler().runDelayed(
-                plugin,
-                targetLoc,
-                (task) -> {
-                    // Teleport asynchronously (handles region crossing safely)
-                    player.teleportAsync(targetLoc).thenRun(() -> {
-                        // Burst animation and sound at destination
-                        targetLoc.getWorld().spawnParticle(Particle.PORTAL, targetLoc,
-                                50, 0.5, 0.5, 0.5, 0.25);
-                        targetLoc.getWorld().playSound(targetLoc,
-                                Sound.ENTITY_ENDERMAN_TELEPORT, 1f, 1f);
-
-                        // Send message and trigger cooldown
-                        MessageUtils.teleport(player, target.getName());
-                        cm.triggerTeleport(player.getUniqueId());
-                    });
-                },
-                10L  // 0.5s delay (10 ticks)
-        );
     }
-}
\ No newline at end of file
+}
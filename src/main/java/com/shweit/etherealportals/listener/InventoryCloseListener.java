@@ -1,11 +1,24 @@
 package fr.kazotaruumc72.etherealportals.listener;
 
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.model.PlayerPortalSession;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 
-/** Placeholder listener for potential cleanup later. */
+/** Clears the selection GUI state of a player's session when an inventory closes. */
 public class InventoryCloseListener implements Listener {
+  private final EtherealPortals plugin;
+
+  /**
+   * Creates a new inventory close listener.
+   *
+   * @param plugin the plugin instance
+   */
+  public InventoryCloseListener(EtherealPortals plugin) {
+    this.plugin = plugin;
+  }
+
   /**
    * Handles inventory close events.
    *
@@ -13,6 +26,10 @@ public class InventoryCloseListener implements Listener {
    */
   @EventHandler
   public void onClose(InventoryCloseEvent event) {
-    // Future cleanup logic for text displays or tracking.
+    PlayerPortalSession session =
+        plugin.getSessionManager().getIfPresent(event.getPlayer().getUniqueId());
+    if (session != null) {
+      session.setGui(null, null);
+    }
   }
 }
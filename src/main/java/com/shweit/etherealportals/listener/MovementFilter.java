@@ -0,0 +1,119 @@
+package fr.kazotaruumc72.etherealportals.listener;
+
+import fr.kazotaruumc72.etherealportals.manager.PortalManager;
+import fr.kazotaruumc72.etherealportals.manager.PortalRegistry;
+import fr.kazotaruumc72.etherealportals.model.PlayerPortalSession;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Location;
+
+/**
+ * Pre-filter deciding whether a move event needs a portal lookup at all.
+ *
+ * <p>Moves are skipped when only the head rotated, when the player stays inside a
+ * block that no portal hitbox touches, or when the player is still closer to the
+ * last evaluated position than to the nearest portal. Any change to the portal
+ * registry invalidates the bounds cached in the player's session.
+ */
+public class MovementFilter {
+  /** Length of a server tick, used to stamp checks without touching the scheduler. */
+  private static final long NANOS_PER_TICK = 50_000_000L;
+
+  private final PortalManager portalManager;
+  private final LongAdder skippedRotation = new LongAdder();
+  private final LongAdder skippedCell = new LongAdder();
+  private final LongAdder skippedDistance = new LongAdder();
+  private final LongAdder evaluated = new LongAdder();
+  private volatile double clearanceRadius;
+
+  /**
+   * Creates a new movement filter.
+   *
+   * @param portalManager the portal manager
+   * @param clearanceRadius the farthest distance searched for the nearest portal
+   */
+  public MovementFilter(PortalManager portalManager, double clearanceRadius) {
+    this.portalManager = portalManager;
+    this.clearanceRadius = clearanceRadius;
+  }
+
+  /**
+   * Updates the farthest distance searched for the nearest portal.
+   *
+   * @param clearanceRadius the search radius in blocks
+   */
+  public void setClearanceRadius(double clearanceRadius) {
+    this.clearanceRadius = clearanceRadius;
+  }
+
+  /**
+   * Decides whether a move needs a portal lookup.
+   *
+   * @param session the player's session
+   * @param from the previous location
+   * @param to the new location
+   * @return the snapshot to evaluate against, or null if the move can be skipped
+   */
+  public PortalRegistry filter(PlayerPortalSession session, Location from, Location to) {
+    if (from.getX() == to.getX() && from.getY() == to.getY() && from.getZ() == to.getZ()
+        && from.getWorld() == to.getWorld()) {
+      skippedRotation.increment();
+      return null;
+    }
+    PortalRegistry snapshot = portalManager.snapshot();
+    if (session.getRegistryVersion() == snapshot.getVersion()
+        && session.getWorld() == to.getWorld()) {
+      if (session.isBlockClear()
+          && session.isSameBlock(to.getBlockX(), to.getBlockY(), to.getBlockZ())) {
+        skippedCell.increment();
+        return null;
+      }
+      if (session.distanceSqFromAnchor(to.getX(), to.getY(), to.getZ())
+          < session.getClearanceSq()) {
+        skippedDistance.increment();
+        return null;
+      }
+    }
+    evaluated.increment();
+    return snapshot;
+  }
+
+  /**
+   * Records the outcome of an evaluated move so later moves can be skipped.
+   *
+   * @param session the player's session
+   * @param to the evaluated location
+   * @param snapshot the snapshot the lookup used
+   * @param inside whether the player was found inside a portal
+   */
+  public void record(PlayerPortalSession session, Location to, PortalRegistry snapshot,
+      boolean inside) {
+    long tick = System.nanoTime() / NANOS_PER_TICK;
+    if (inside) {
+      // Leaving a portal must be noticed on the next positional move
+      session.recordCheck(tick, snapshot.getVersion(), to.getWorld(),
+          to.getX(), to.getY(), to.getZ(), false, 0);
+      return;
+    }
+    boolean blockClear = snapshot.isBlockClear(to.getWorld(),
+        to.getBlockX(), to.getBlockY(), to.getBlockZ());
+    double clearance = snapshot.clearance(to, clearanceRadius);
+    session.recordCheck(tick, snapshot.getVersion(), to.getWorld(),
+        to.getX(), to.getY(), to.getZ(), blockClear, clearance * clearance);
+  }
+
+  public long getSkippedRotation() {
+    return skippedRotation.sum();
+  }
+
+  public long getSkippedCell() {
+    return skippedCell.sum();
+  }
+
+  public long getSkippedDistance() {
+    return skippedDistance.sum();
+  }
+
+  public long getEvaluated() {
+    return evaluated.sum();
+  }
+}
@@ -1,25 +1,21 @@
 package fr.kazotaruumc72.etherealportals.listener;
 
 import fr.kazotaruumc72.etherealportals.EtherealPortals;
-import fr.kazotaruumc72.etherealportals.manager.CooldownManager;
 import fr.kazotaruumc72.etherealportals.manager.IconManager;
 import fr.kazotaruumc72.etherealportals.manager.PortalManager;
+import fr.kazotaruumc72.etherealportals.manager.PortalRegistry;
+import fr.kazotaruumc72.etherealportals.model.PlayerPortalSession;
 import fr.kazotaruumc72.etherealportals.model.Portal;
 import fr.kazotaruumc72.etherealportals.model.PortalGroup;
 import fr.kazotaruumc72.etherealportals.model.PortalIcon;
+import fr.kazotaruumc72.etherealportals.teleport.TeleportService;
 import fr.kazotaruumc72.etherealportals.util.MessageUtils;
 import fr.kazotaruumc72.etherealportals.util.SkullUtils;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.UUID;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.Location;
 import org.bukkit.NamespacedKey;
-import org.bukkit.Particle;
-import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -31,11 +27,10 @@ import org.bukkit.persistence.PersistentDataType;
 
 /**
  * Detects portal entry when player moves.
- * Folia-compatible version using RegionScheduler and async teleportation.
+ * Teleports are handed to the TeleportService, which runs them on the player's entity scheduler.
  */
 public class PlayerMoveListener implements Listener {
     private final EtherealPortals plugin;
-    private final Set<UUID> insidePortal = new HashSet<>();
 
     /**
      * Creates a new player move listener.
@@ -55,18 +50,27 @@ public class PlayerMoveListener implements Listener {
     @EventHandler
     public void onMove(PlayerMoveEvent event) {
         Player player = event.getPlayer();
-        PortalManager pm = plugin.getPortalManager();
-        PortalManager.PortalResult result = pm.findPortalAt(event.getTo(),
-                plugin.getHitboxWidth(), plugin.getHitboxDepth(), plugin.getHitboxHeight());
-        UUID uuid = player.getUniqueId();
+        PlayerPortalSession session = plugin.getSessionManager().get(player.getUniqueId());
+        MovementFilter filter = plugin.getMovementFilter();
+        PortalRegistry snapshot = filter.filter(session, event.getFrom(), event.getTo());
+        if (snapshot == null) {
+            return;
+        }
+        PortalManager.PortalResult result = snapshot.findPortalAt(event.getTo());
+        filter.record(session, event.getTo(), snapshot, result != null);
 
         if (result != null) {
-            if (!insidePortal.contains(uuid)) {
-                insidePortal.add(uuid);
+            if (!session.isInsidePortal()) {
+                session.setCurrentPortal(result.getPortal(), result.getGroup().getName());
                 handlePortalEnter(player, result.getPortal(), result.getGroup());
             }
         } else {
-            insidePortal.remove(uuid);
+            if (session.isInsidePortal()) {
+                plugin.getTeleportService().cancel(player.getUniqueId(),
+                        TeleportService.CancelReason.WALKED_AWAY);
+            }
+            session.setCurrentPortal(null, null);
+            plugin.getChunkPrefetcher().onApproach(session, snapshot, event.getTo());
         }
     }
 
@@ -79,6 +83,7 @@ public class PlayerMoveListener implements Listener {
      * @param group the portal group
      */
     private void handlePortalEnter(Player player, Portal source, PortalGroup group) {
+        long enteredAt = System.nanoTime();
         if (group == null) {
             return;
         }
@@ -91,7 +96,7 @@ public class PlayerMoveListener implements Listener {
                     .findFirst()
                     .orElse(null);
             if (target != null) {
-                teleport(player, target);
+                plugin.getTeleportService().request(player, group.getName(), target, enteredAt);
             }
         } else if (count >= 3) {
             // Open selection GUI for multiple portals
@@ -166,6 +171,8 @@ public class PlayerMoveListener implements Listener {
                 });
 
         player.openInventory(inv);
+        plugin.getSessionManager().get(player.getUniqueId())
+                .setGui(group.getName(), source.getName());
     }
 
     /**
@@ -194,55 +201,4 @@ public class PlayerMoveListener implements Listener {
         // Command-created portal: return portal name as-is
         return portalName;
     }
-
-    /**
-     * Teleports a player to the target portal with animation and sound.
-     * Uses Folia-compatible async teleportation with RegionScheduler for delayed execution.
-     *
-     * @param player the player to teleport
-     * @param target the target portal
-     */
-    private void teleport(Player player, Portal target) {
-        CooldownManager cm = plugin.getCooldownManager();
-
-        // Check cooldown
-        if (!cm.canTeleport(player.getUniqueId())) {
-            if (cm.canMessage(player.getUniqueId())) {
-                MessageUtils.cooldown(player, cm.remainingTeleport(player.getUniqueId()));
-                cm.triggerMessage(player.getUniqueId());
-            }
-            return;
-        }
-
-        // Burst animation and sound at source location
-        Location sourceLoc = player.getLocation();
-        sourceLoc.getWorld().spawnParticle(Particle.PORTAL,
-                sourceLoc, 40, 0.5, 0.5, 0.5, 0.2);
-        sourceLoc.getWorld().playSound(sourceLoc,
-                Sound.ENTITY_ENDERMAN_TELEPORT, 1f, 1f);
-
-        Location targetLoc = target.getCenterLocation();
-
-        // Schedule delayed teleport using RegionScheduler
-        // This ensures the task runs on the correct region thread
-        Bukkit.getRegionScheduler().runDelayed(
-                plugin,
-                targetLoc,
-                (task) -> {
-                    // Teleport asynchronously (handles region crossing safely)
-                    player.teleportAsync(targetLoc).thenRun(() -> {
-                        // Burst animation and sound at destination
-                        targetLoc.getWorld().spawnParticle(Particle.PORTAL,
-                                targetLoc, 50, 0.5, 0.5, 0.5, 0.25);
-                        targetLoc.getWorld().playSound(targetLoc,
-                                Sound.ENTITY_ENDERMAN_TELEPORT, 1f, 1f);
-
-                        // Send message and trigger cooldown
-                        MessageUtils.teleport(player, target.getName());
-                        cm.triggerTeleport(player.getUniqueId());
-                    });
-                },
-                10L  // 0.5s delay (10 ticks)
-        );
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+package fr.kazotaruumc72.etherealportals.listener;
+
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.model.PlayerPortalSession;
+import fr.kazotaruumc72.etherealportals.teleport.TeleportService;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Evicts per-player portal sessions so the store never outlives its players,
+ * resets them on world change, and cancels the player's pending teleport.
+ */
+public class PlayerSessionListener implements Listener {
+  private final EtherealPortals plugin;
+
+  /**
+   * Creates a new player session listener.
+   *
+   * @param plugin the plugin instance
+   */
+  public PlayerSessionListener(EtherealPortals plugin) {
+    this.plugin = plugin;
+  }
+
+  /**
+   * Drops the session of a player leaving the server.
+   *
+   * @param event the player quit event
+   */
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onQuit(PlayerQuitEvent event) {
+    plugin.getTeleportService().cancel(event.getPlayer().getUniqueId(),
+        TeleportService.CancelReason.QUIT);
+    plugin.getSessionManager().evict(event.getPlayer().getUniqueId());
+  }
+
+  /**
+   * Resets the cached position of a player changing worlds, as it belongs to the
+   * previous world. The session itself is kept: after a cross-world teleport its
+   * current portal stops the destination portal from counting as a new entry.
+   *
+   * @param event the player changed world event
+   */
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onWorldChange(PlayerChangedWorldEvent event) {
+    plugin.getTeleportService().cancel(event.getPlayer().getUniqueId(),
+        TeleportService.CancelReason.WORLD_CHANGE);
+    PlayerPortalSession session =
+        plugin.getSessionManager().getIfPresent(event.getPlayer().getUniqueId());
+    if (session != null) {
+      session.resetPosition();
+    }
+  }
+}
@@ -1,15 +1,20 @@
 package fr.kazotaruumc72.etherealportals.listener;
 
 import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.manager.CooldownManager;
 import fr.kazotaruumc72.etherealportals.manager.PortalManager;
 import fr.kazotaruumc72.etherealportals.model.Portal;
 import fr.kazotaruumc72.etherealportals.model.PortalGroup;
 import fr.kazotaruumc72.etherealportals.util.MessageUtils;
 import fr.kazotaruumc72.etherealportals.util.PortalItemUtils;
+import fr.kazotaruumc72.etherealportals.visual.DisplayRegistry;
+import io.papermc.paper.event.player.PrePlayerAttackEntityEvent;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Particle;
 import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Interaction;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -66,6 +71,15 @@ public class PortalItemListener implements Listener {
       return;
     }
 
+    // Check placement cooldown
+    CooldownManager cm = plugin.getCooldownManager();
+    if (!cm.isReady(CooldownManager.Channel.PLACEMENT, player.getUniqueId())) {
+      MessageUtils.error(player, "Please wait &6"
+          + cm.remaining(CooldownManager.Channel.PLACEMENT, player.getUniqueId())
+          + "s&c before placing another portal.");
+      return;
+    }
+
     // Get clicked block location (+1 block up so players don't teleport into the ground)
     org.bukkit.block.Block clickedBlock = event.getClickedBlock();
     if (clickedBlock == null) {
@@ -90,6 +104,13 @@ public class PortalItemListener implements Listener {
     // Create group name: playername:groupBaseName
     String groupName = player.getName().toLowerCase() + ":" + groupBaseName.toLowerCase();
 
+    // The group belongs to the player's UUID, not to whoever has the name later
+    if (!plugin.getTrustManager().claim(groupName, player.getUniqueId())) {
+      MessageUtils.error(player, "The portal group &d" + groupBaseName
+          + "&c belongs to another player.");
+      return;
+    }
+
     // Generate unique portal name by finding the highest existing number
     // This ensures we don't reuse numbers when portals are deleted
     PortalManager pm = plugin.getPortalManager();
@@ -117,15 +138,17 @@ public class PortalItemListener implements Listener {
       return;
     }
 
-    // Save groups
-    plugin.getDataManager().saveGroups();
+    cm.trigger(CooldownManager.Channel.PLACEMENT, player.getUniqueId(), groupName);
+
+    // Save the new portal
+    plugin.getDataManager().savePortal(groupName, portalName);
 
     // Spawn visual effects (use display name like "Home #1" for better UX)
     Location textLoc = loc.clone().add(0.5, 3, 0.5);
     Location markerLoc = loc.clone().add(0.5, 0, 0.5);
     String displayNameForText = groupBaseName + " #" + portalName;
     plugin.getVisualTask().createTextDisplay(textLoc, groupName, portalName, displayNameForText);
-    plugin.getVisualTask().createArmorStandMarker(markerLoc, groupName, portalName);
+    plugin.getVisualTask().createBreakMarker(markerLoc, groupName, portalName);
 
     // Spawn particles at placement
     loc.getWorld().spawnParticle(Particle.PORTAL, loc.clone().add(0.5, 0.5, 0.5),
@@ -142,7 +165,29 @@ public class PortalItemListener implements Listener {
   }
 
   /**
-   * Handles armor stand breaking (portal removal).
+   * Handles interaction marker hits (portal removal).
+   */
+  @EventHandler(priority = org.bukkit.event.EventPriority.HIGH)
+  public void onAttackMarker(PrePlayerAttackEntityEvent event) {
+    if (!(event.getAttacked() instanceof Interaction)) {
+      return;
+    }
+
+    Entity marker = event.getAttacked();
+    DisplayRegistry displays = plugin.getVisualTask().getDisplayRegistry();
+    String groupName = displays.getMarkerGroup(marker);
+    String portalName = displays.getMarkerPortal(marker);
+    if (groupName == null || portalName == null) {
+      return;
+    }
+
+    event.setCancelled(true);
+    breakPortal(event.getPlayer(), marker, groupName, portalName);
+  }
+
+  /**
+   * Handles legacy armor stand breaking (portal removal).
+   * Armor stand markers are converted to interaction markers as their chunks load.
    */
   @EventHandler(priority = org.bukkit.event.EventPriority.HIGH)
   public void onEntityDamage(EntityDamageByEntityEvent event) {
@@ -159,10 +204,14 @@ public class PortalItemListener implements Listener {
     ArmorStand armorStand = (ArmorStand) event.getEntity();
 
     // Check if armor stand has portal marker tag
-    String tag = armorStand.getScoreboardTags().stream()
-        .filter(t -> t.startsWith("ep_portal_marker:"))
-        .findFirst()
-        .orElse(null);
+    String prefix = DisplayRegistry.Kind.MARKER.getPrefix();
+    String tag = null;
+    for (String t : armorStand.getScoreboardTags()) {
+      if (t.startsWith(prefix)) {
+        tag = t;
+        break;
+      }
+    }
 
     if (tag == null) {
       return;
@@ -172,7 +221,7 @@ public class PortalItemListener implements Listener {
 
     // Parse group and portal name from tag: ep_portal_marker:<group>:<portal>
     // The group name may contain colons (e.g., "playername:home"), so we split at the LAST colon
-    String remaining = tag.substring("ep_portal_marker:".length());
+    String remaining = tag.substring(prefix.length());
     int lastColon = remaining.lastIndexOf(':');
     if (lastColon == -1) {
       plugin.getLogger().warning("Invalid portal marker tag format: " + tag);
@@ -181,7 +230,18 @@ public class PortalItemListener implements Listener {
 
     String groupName = remaining.substring(0, lastColon);
     String portalName = remaining.substring(lastColon + 1);
+    breakPortal((Player) event.getDamager(), armorStand, groupName, portalName);
+  }
 
+  /**
+   * Breaks a craftable portal hit through its marker entity and drops its item.
+   *
+   * @param player the player breaking the portal
+   * @param marker the marker entity that was hit
+   * @param groupName the portal group name
+   * @param portalName the portal name
+   */
+  private void breakPortal(Player player, Entity marker, String groupName, String portalName) {
     // Find portal
     PortalManager pm = plugin.getPortalManager();
     PortalGroup group = pm.getGroup(groupName);
@@ -194,8 +254,6 @@ public class PortalItemListener implements Listener {
       return;
     }
 
-    Player player = (Player) event.getDamager();
-
     // Check if portal is breakable
     if (!portal.isBreakable()) {
       MessageUtils.error(player, "This portal cannot be broken.");
@@ -208,20 +266,21 @@ public class PortalItemListener implements Listener {
       return;
     }
 
-    // Remove visual entities first (before removing portal object)
-    plugin.getVisualTask().removeTextDisplay(groupName, portalName, portal);
+    // Remove portal from group, and the group with its last portal. Only the
+    // thread that actually removed it saves the removal and drops the item.
+    if (!pm.removePortal(groupName, portalName, true)) {
+      return;
+    }
 
-    // Remove portal from group
-    group.removePortal(portalName);
+    // Remove visual entities
+    plugin.getVisualTask().removeTextDisplay(groupName, portalName, portal);
 
-    // Remove group if empty
-    if (group.getPortals().isEmpty()) {
-      pm.deleteGroup(groupName);
+    // Save the removal (an emptied group is dropped along with its last portal)
+    plugin.getDataManager().savePortalRemoval(groupName, portalName);
+    if (pm.getGroup(groupName) == null) {
+      plugin.getTrustManager().release(groupName);
     }
 
-    // Save groups
-    plugin.getDataManager().saveGroups();
-
     // Drop portal item
     ItemStack droppedItem = PortalItemUtils.createPortalItem(
         plugin,
@@ -229,10 +288,10 @@ public class PortalItemListener implements Listener {
         plugin.getPortalItemName(),
         plugin.getPortalItemLore()
     );
-    armorStand.getWorld().dropItemNaturally(armorStand.getLocation(), droppedItem);
+    marker.getWorld().dropItemNaturally(marker.getLocation(), droppedItem);
 
     // Spawn particles
-    armorStand.getWorld().spawnParticle(Particle.PORTAL, armorStand.getLocation(),
+    marker.getWorld().spawnParticle(Particle.PORTAL, marker.getLocation(),
         40, 0.3, 0.3, 0.3, 0.5);
 
     // Success message
@@ -0,0 +1,354 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Compact binary snapshot of all portal groups, the {@code groups.dat} file.
+ *
+ * <p>World, group, portal and icon names are stored once in a string table and
+ * referenced by index. Block coordinates are zigzag varints, so a typical portal
+ * takes a few dozen bytes instead of a dozen YAML lines. The file is read
+ * through a memory mapping in a single pass, resolving each world once.
+ *
+ * <p>Layout, with big-endian fixed-size integers:
+ * <pre>
+ * header   i32 magic "EPGS", u8 version
+ * strings  varint count, then per string a varint byte length and UTF-8 bytes
+ * index    varint group count, then per group a varint name, a varint portal
+ *          count and i32 offset and length of its section
+ * sections the portals of each group, offsets relative to the first section
+ * trailer  i32 CRC32 of everything before it
+ * </pre>
+ *
+ * <p>A portal is a varint name and world, a flags byte, the coordinates (three
+ * zigzag varints, or three doubles for non-block positions), yaw and pitch as
+ * floats if set, a varint icon if set, the hitbox shape byte and its doubles if
+ * the portal has its own hitbox, and the text display and marker UUIDs if set.
+ */
+final class BinarySnapshot {
+  private static final int MAGIC = 0x45504753; // "EPGS"
+  private static final int VERSION = 1;
+
+  private static final int FLAG_BREAKABLE = 1;
+  private static final int FLAG_ICON = 1 << 1;
+  private static final int FLAG_TEXT = 1 << 2;
+  private static final int FLAG_MARKER = 1 << 3;
+  private static final int FLAG_FRACTIONAL = 1 << 4;
+  private static final int FLAG_ROTATION = 1 << 5;
+  private static final int FLAG_HITBOX = 1 << 6;
+
+  private static final PortalHitbox.Shape[] SHAPES = PortalHitbox.Shape.values();
+
+  private BinarySnapshot() {}
+
+  /**
+   * Encodes portal groups. Portals whose world is gone are skipped.
+   *
+   * @param groups the groups
+   * @return the file contents
+   */
+  static byte[] encode(Collection<PortalGroup> groups) {
+    try {
+      Map<String, Integer> strings = new LinkedHashMap<>();
+      ByteArrayOutputStream sections = new ByteArrayOutputStream();
+      DataOutputStream sectionOut = new DataOutputStream(sections);
+      List<int[]> index = new ArrayList<>(groups.size());
+      for (PortalGroup group : groups) {
+        int offset = sectionOut.size();
+        int count = 0;
+        for (Portal portal : group.getPortals()) {
+          if (writePortal(sectionOut, portal, strings)) {
+            count++;
+          }
+        }
+        index.add(new int[] {id(strings, group.getName()), count, offset,
+            sectionOut.size() - offset});
+      }
+
+      ByteArrayOutputStream file = new ByteArrayOutputStream(sections.size() + 1024);
+      DataOutputStream out = new DataOutputStream(file);
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      writeVarint(out, strings.size());
+      for (String value : strings.keySet()) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+      }
+      writeVarint(out, index.size());
+      for (int[] entry : index) {
+        writeVarint(out, entry[0]);
+        writeVarint(out, entry[1]);
+        out.writeInt(entry[2]);
+        out.writeInt(entry[3]);
+      }
+      sections.writeTo(out);
+      CRC32 crc = new CRC32();
+      crc.update(file.toByteArray());
+      out.writeInt((int) crc.getValue());
+      return file.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // in-memory streams only
+    }
+  }
+
+  /**
+   * Reads a snapshot into a table. Portals in worlds that are not loaded are
+   * skipped, as with YAML snapshots.
+   *
+   * @param path the snapshot file
+   * @param table the table to fill
+   * @param defaultHitbox the hitbox of portals stored without one
+   * @throws IOException if the file cannot be read or is corrupt
+   */
+  static void read(Path path, PortalTable table, PortalHitbox defaultHitbox)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < 9 || size > Integer.MAX_VALUE) {
+        throw new IOException("Invalid snapshot size " + size);
+      }
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int end = (int) size - 4;
+      CRC32 crc = new CRC32();
+      crc.update(buf.duplicate().limit(end));
+      if ((int) crc.getValue() != buf.getInt(end)) {
+        throw new IOException("Snapshot checksum mismatch");
+      }
+      if (buf.getInt() != MAGIC) {
+        throw new IOException("Not a portal snapshot");
+      }
+      int version = buf.get() & 0xFF;
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot version " + version);
+      }
+
+      String[] strings = new String[readVarint(buf)];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[readVarint(buf)];
+        buf.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      World[] worlds = new World[strings.length];
+      boolean[] resolved = new boolean[strings.length];
+
+      int groupCount = readVarint(buf);
+      int[] groupNames = new int[groupCount];
+      int[] portalCounts = new int[groupCount];
+      int[] offsets = new int[groupCount];
+      for (int i = 0; i < groupCount; i++) {
+        groupNames[i] = readVarint(buf);
+        portalCounts[i] = readVarint(buf);
+        offsets[i] = buf.getInt();
+        buf.getInt(); // section length, for readers that skip sections
+      }
+      int sectionsStart = buf.position();
+
+      for (int i = 0; i < groupCount; i++) {
+        String groupName = strings[groupNames[i]];
+        table.addGroup(groupName);
+        buf.position(sectionsStart + offsets[i]);
+        for (int p = 0; p < portalCounts[i]; p++) {
+          String portalName = strings[readVarint(buf)];
+          int worldId = readVarint(buf);
+          if (!resolved[worldId]) {
+            worlds[worldId] = Bukkit.getWorld(strings[worldId]);
+            resolved[worldId] = true;
+          }
+          Portal portal = readPortal(buf, portalName, worlds[worldId], strings, defaultHitbox);
+          if (portal != null) {
+            table.put(groupName, portal);
+          }
+        }
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException
+        | IllegalArgumentException e) {
+      throw new IOException("Corrupt snapshot: " + e, e);
+    }
+  }
+
+  private static boolean writePortal(DataOutputStream out, Portal portal,
+      Map<String, Integer> strings) throws IOException {
+    Location base = portal.getBaseLocation();
+    if (base.getWorld() == null) {
+      return false;
+    }
+    double x = base.getX();
+    double y = base.getY();
+    double z = base.getZ();
+    UUID text = portal.getTextDisplayId();
+    UUID marker = portal.getMarkerId();
+    int flags = 0;
+    if (portal.isBreakable()) {
+      flags |= FLAG_BREAKABLE;
+    }
+    if (portal.getIconName() != null) {
+      flags |= FLAG_ICON;
+    }
+    if (text != null) {
+      flags |= FLAG_TEXT;
+    }
+    if (marker != null) {
+      flags |= FLAG_MARKER;
+    }
+    if (!isBlock(x) || !isBlock(y) || !isBlock(z)) {
+      flags |= FLAG_FRACTIONAL;
+    }
+    if (base.getYaw() != 0f || base.getPitch() != 0f) {
+      flags |= FLAG_ROTATION;
+    }
+    if (portal.hasCustomHitbox()) {
+      flags |= FLAG_HITBOX;
+    }
+
+    writeVarint(out, id(strings, portal.getName()));
+    writeVarint(out, id(strings, base.getWorld().getName()));
+    out.writeByte(flags);
+    if ((flags & FLAG_FRACTIONAL) != 0) {
+      out.writeDouble(x);
+      out.writeDouble(y);
+      out.writeDouble(z);
+    } else {
+      writeVarint(out, zigzag((int) x));
+      writeVarint(out, zigzag((int) y));
+      writeVarint(out, zigzag((int) z));
+    }
+    if ((flags & FLAG_ROTATION) != 0) {
+      out.writeFloat(base.getYaw());
+      out.writeFloat(base.getPitch());
+    }
+    if ((flags & FLAG_ICON) != 0) {
+      writeVarint(out, id(strings, portal.getIconName()));
+    }
+    if ((flags & FLAG_HITBOX) != 0) {
+      PortalHitbox hitbox = portal.getHitbox();
+      out.writeByte(hitbox.getShape().ordinal());
+      out.writeDouble(hitbox.getWidth());
+      if (hitbox.getShape() != PortalHitbox.Shape.CYLINDER) {
+        out.writeDouble(hitbox.getDepth());
+      }
+      out.writeDouble(hitbox.getHeight());
+      if (hitbox.getShape() == PortalHitbox.Shape.SLAB) {
+        out.writeDouble(hitbox.getYaw());
+      }
+    }
+    if (text != null) {
+      out.writeLong(text.getMostSignificantBits());
+      out.writeLong(text.getLeastSignificantBits());
+    }
+    if (marker != null) {
+      out.writeLong(marker.getMostSignificantBits());
+      out.writeLong(marker.getLeastSignificantBits());
+    }
+    return true;
+  }
+
+  // Always consumes the whole portal, so a skipped one keeps the buffer aligned
+  private static Portal readPortal(ByteBuffer buf, String name, World world,
+      String[] strings, PortalHitbox defaultHitbox) {
+    int flags = buf.get() & 0xFF;
+    double x;
+    double y;
+    double z;
+    if ((flags & FLAG_FRACTIONAL) != 0) {
+      x = buf.getDouble();
+      y = buf.getDouble();
+      z = buf.getDouble();
+    } else {
+      x = unzigzag(readVarint(buf));
+      y = unzigzag(readVarint(buf));
+      z = unzigzag(readVarint(buf));
+    }
+    float yaw = 0f;
+    float pitch = 0f;
+    if ((flags & FLAG_ROTATION) != 0) {
+      yaw = buf.getFloat();
+      pitch = buf.getFloat();
+    }
+    String icon = (flags & FLAG_ICON) != 0 ? strings[readVarint(buf)] : null;
+    PortalHitbox hitbox = null;
+    if ((flags & FLAG_HITBOX) != 0) {
+      int shape = buf.get() & 0xFF;
+      double width = buf.getDouble();
+      double depth = shape == PortalHitbox.Shape.CYLINDER.ordinal() ? width : buf.getDouble();
+      double height = buf.getDouble();
+      double hitboxYaw = shape == PortalHitbox.Shape.SLAB.ordinal() ? buf.getDouble() : 0.0;
+      if (shape < SHAPES.length) {
+        hitbox = PortalHitbox.of(SHAPES[shape], width, depth, height, hitboxYaw);
+      }
+    }
+    UUID text = (flags & FLAG_TEXT) != 0 ? new UUID(buf.getLong(), buf.getLong()) : null;
+    UUID marker = (flags & FLAG_MARKER) != 0 ? new UUID(buf.getLong(), buf.getLong()) : null;
+    if (world == null) {
+      return null;
+    }
+
+    Location loc = new Location(world, x, y, z, yaw, pitch);
+    boolean breakable = (flags & FLAG_BREAKABLE) != 0;
+    Portal portal = hitbox != null
+        ? new Portal(name, loc, icon, breakable, hitbox, true)
+        : new Portal(name, loc, icon, breakable, defaultHitbox);
+    portal.setTextDisplayId(text);
+    portal.setMarkerId(marker);
+    return portal;
+  }
+
+  private static boolean isBlock(double value) {
+    return value == Math.rint(value) && Math.abs(value) < (1 << 30);
+  }
+
+  private static int id(Map<String, Integer> strings, String value) {
+    return strings.computeIfAbsent(value, k -> strings.size());
+  }
+
+  private static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int unzigzag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarint(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarint(ByteBuffer buf) {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = buf.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Varint too long");
+  }
+}
@@ -0,0 +1,414 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.PlayerPortalSession;
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Warms destination chunks while a player approaches a portal, so the teleport
+ * no longer waits for a cold chunk load.
+ *
+ * <p>Chunks are loaded with {@link World#getChunkAtAsync(int, int)} and held by a
+ * plugin chunk ticket added on the chunk's region thread. Held chunks live in an
+ * LRU cache bounded by size and by a time-to-live refreshed on every use; evicted
+ * and expired entries release their ticket on the same region thread.
+ */
+public class ChunkPrefetcher {
+  private final Plugin plugin;
+  private final Object lock = new Object();
+  private final LinkedHashMap<ChunkKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder warmingHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder unused = new LongAdder();
+  private final LongAdder savedNanos = new LongAdder();
+  private volatile Settings settings;
+  private ScheduledTask sweepTask;
+
+  /**
+   * Creates a new chunk prefetcher.
+   *
+   * @param plugin the owning plugin
+   * @param settings the prefetch settings
+   */
+  public ChunkPrefetcher(Plugin plugin, Settings settings) {
+    this.plugin = plugin;
+    this.settings = settings;
+  }
+
+  /**
+   * Updates the prefetch settings. Held chunks keep their current expiry.
+   *
+   * @param settings the prefetch settings
+   */
+  public void updateConfig(Settings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Starts the periodic release of expired chunks.
+   */
+  public void start() {
+    sweepTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(
+        plugin,
+        (task) -> sweep(),
+        20L,
+        20L
+    );
+  }
+
+  /**
+   * Stops the prefetcher. Plugin chunk tickets are dropped by the server when
+   * the plugin disables, so held entries are only forgotten here.
+   */
+  public void stop() {
+    if (sweepTask != null) {
+      sweepTask.cancel();
+      sweepTask = null;
+    }
+    synchronized (lock) {
+      for (Entry entry : entries.values()) {
+        entry.released = true;
+      }
+      entries.clear();
+    }
+  }
+
+  /**
+   * Warms the destinations of every portal the player is approaching.
+   * Must be called after the move was recorded in the session, outside any portal.
+   *
+   * @param session the player's session
+   * @param snapshot the registry snapshot the move was evaluated against
+   * @param loc the player's location
+   */
+  public void onApproach(PlayerPortalSession session, PortalRegistry snapshot, Location loc) {
+    Settings current = settings;
+    if (!current.enabled || session.getClearanceSq() > current.radius * current.radius) {
+      return;
+    }
+    long tick = session.getLastCheckTick();
+    for (PortalManager.PortalResult near : snapshot.findPortalsNear(loc, current.radius)) {
+      Portal portal = near.getPortal();
+      // Re-warm at half the TTL while the player lingers, not on every move
+      if (session.getApproachedPortal() == portal
+          && tick - session.getApproachTick() < current.ttlSeconds * 10L) {
+        continue;
+      }
+      session.setApproachedPortal(portal, tick);
+      int warmed = 0;
+      for (Portal destination : near.getGroup().getPortals()) {
+        if (destination == portal) {
+          continue;
+        }
+        if (warmed++ >= current.maxDestinations) {
+          break;
+        }
+        prefetch(destination.getCenterLocation());
+      }
+    }
+  }
+
+  /**
+   * Warms the chunks around a destination, or refreshes them if already held.
+   *
+   * @param target the destination location
+   */
+  public void prefetch(Location target) {
+    prefetch(target, false);
+  }
+
+  /**
+   * Warms the destination of a scheduled teleport and pins its chunk until
+   * {@link #unpin(Location)} is called, so a cancelled teleport can release it.
+   *
+   * @param target the destination location
+   */
+  public void pin(Location target) {
+    prefetch(target, true);
+  }
+
+  /**
+   * Drops the pin of a scheduled teleport. The destination chunk is released at
+   * once if no other teleport pins it and no teleport has used it.
+   *
+   * @param target the destination location
+   */
+  public void unpin(Location target) {
+    World world = target.getWorld();
+    if (world == null) {
+      return;
+    }
+    ChunkKey key = new ChunkKey(world.getUID(), target.getBlockX() >> 4,
+        target.getBlockZ() >> 4);
+    Entry entry;
+    synchronized (lock) {
+      entry = entries.get(key);
+      if (entry == null || --entry.pins > 0 || entry.used) {
+        return;
+      }
+      entries.remove(key);
+    }
+    release(entry);
+  }
+
+  private void prefetch(Location target, boolean pin) {
+    Settings current = settings;
+    World world = target.getWorld();
+    if (!current.enabled || world == null) {
+      return;
+    }
+    int centerX = target.getBlockX() >> 4;
+    int centerZ = target.getBlockZ() >> 4;
+    long expiresAt = System.nanoTime() + current.ttlSeconds * 1_000_000_000L;
+    List<Entry> created = new ArrayList<>();
+    List<Entry> evicted = new ArrayList<>();
+    synchronized (lock) {
+      for (int x = centerX - current.chunkRadius; x <= centerX + current.chunkRadius; x++) {
+        for (int z = centerZ - current.chunkRadius; z <= centerZ + current.chunkRadius; z++) {
+          ChunkKey key = new ChunkKey(world.getUID(), x, z);
+          Entry entry = entries.get(key);
+          if (entry == null) {
+            entry = new Entry(world, x, z, expiresAt);
+            entries.put(key, entry);
+            created.add(entry);
+          } else {
+            entry.expiresAt = expiresAt;
+          }
+          if (pin && x == centerX && z == centerZ) {
+            entry.pins++;
+          }
+        }
+      }
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (entries.size() > current.maxTickets && eldest.hasNext()) {
+        Entry entry = eldest.next();
+        if (entry.pins == 0) {
+          evicted.add(entry);
+          eldest.remove();
+        }
+      }
+    }
+    for (Entry entry : evicted) {
+      release(entry);
+    }
+    for (Entry entry : created) {
+      load(entry);
+    }
+  }
+
+  /**
+   * Records whether a teleport found its destination chunk already warm.
+   *
+   * @param target the destination location
+   */
+  public void recordTeleport(Location target) {
+    World world = target.getWorld();
+    if (!settings.enabled || world == null) {
+      return;
+    }
+    Entry entry;
+    synchronized (lock) {
+      entry = entries.get(new ChunkKey(world.getUID(),
+          target.getBlockX() >> 4, target.getBlockZ() >> 4));
+    }
+    if (entry == null) {
+      misses.increment();
+      return;
+    }
+    entry.used = true;
+    long loadNanos = entry.loadNanos;
+    if (loadNanos >= 0) {
+      hits.increment();
+      savedNanos.add(loadNanos);
+    } else {
+      // Still loading: the teleport only waits for the remainder
+      warmingHits.increment();
+      savedNanos.add(System.nanoTime() - entry.requestedAt);
+    }
+  }
+
+  /**
+   * Releases every chunk whose time-to-live has passed.
+   */
+  public void sweep() {
+    long now = System.nanoTime();
+    List<Entry> expired = new ArrayList<>();
+    synchronized (lock) {
+      Iterator<Entry> it = entries.values().iterator();
+      while (it.hasNext()) {
+        Entry entry = it.next();
+        if (entry.pins == 0 && entry.expiresAt - now <= 0) {
+          expired.add(entry);
+          it.remove();
+        }
+      }
+    }
+    for (Entry entry : expired) {
+      release(entry);
+    }
+  }
+
+  private void load(Entry entry) {
+    requests.increment();
+    entry.world.getChunkAtAsync(entry.x, entry.z).whenComplete((chunk, error) -> {
+      if (error != null || chunk == null) {
+        synchronized (lock) {
+          entries.remove(new ChunkKey(entry.world.getUID(), entry.x, entry.z), entry);
+        }
+        return;
+      }
+      entry.loadNanos = System.nanoTime() - entry.requestedAt;
+      Bukkit.getRegionScheduler().execute(plugin, entry.world, entry.x, entry.z, () -> {
+        if (!entry.released) {
+          entry.world.addPluginChunkTicket(entry.x, entry.z, plugin);
+          entry.ticketHeld = true;
+        }
+      });
+    });
+  }
+
+  private void release(Entry entry) {
+    entry.released = true;
+    if (!entry.used) {
+      unused.increment();
+    }
+    if (!plugin.isEnabled()) {
+      return;
+    }
+    // Runs on the same region thread as the ticket add, so the two cannot interleave
+    Bukkit.getRegionScheduler().execute(plugin, entry.world, entry.x, entry.z, () -> {
+      if (entry.ticketHeld) {
+        entry.world.removePluginChunkTicket(entry.x, entry.z, plugin);
+        entry.ticketHeld = false;
+      }
+    });
+  }
+
+  public int getHeldChunks() {
+    synchronized (lock) {
+      return entries.size();
+    }
+  }
+
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getWarmingHits() {
+    return warmingHits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getUnused() {
+    return unused.sum();
+  }
+
+  /**
+   * Gets the chunk load time teleports did not have to wait for.
+   *
+   * @return the saved time in milliseconds
+   */
+  public long getSavedMillis() {
+    return savedNanos.sum() / 1_000_000L;
+  }
+
+  /**
+   * Immutable prefetch settings.
+   */
+  public static final class Settings {
+    final boolean enabled;
+    final double radius;
+    final int chunkRadius;
+    final int ttlSeconds;
+    final int maxTickets;
+    final int maxDestinations;
+
+    /**
+     * Creates prefetch settings.
+     *
+     * @param enabled whether prefetching is enabled
+     * @param radius distance from a portal that triggers prefetching
+     * @param chunkRadius extra rings of chunks loaded around each destination
+     * @param ttlSeconds seconds a warmed chunk is held without use
+     * @param maxTickets maximum number of chunks held at once
+     * @param maxDestinations maximum destinations warmed per approached portal
+     */
+    public Settings(boolean enabled, double radius, int chunkRadius, int ttlSeconds,
+        int maxTickets, int maxDestinations) {
+      this.enabled = enabled;
+      this.radius = Math.max(0, radius);
+      this.chunkRadius = Math.max(0, Math.min(2, chunkRadius));
+      this.ttlSeconds = Math.max(1, ttlSeconds);
+      this.maxTickets = Math.max(1, maxTickets);
+      this.maxDestinations = Math.max(1, maxDestinations);
+    }
+  }
+
+  private static final class ChunkKey {
+    private final UUID worldId;
+    private final int x;
+    private final int z;
+
+    ChunkKey(UUID worldId, int x, int z) {
+      this.worldId = worldId;
+      this.x = x;
+      this.z = z;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ChunkKey)) {
+        return false;
+      }
+      ChunkKey other = (ChunkKey) o;
+      return x == other.x && z == other.z && worldId.equals(other.worldId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(worldId, x, z);
+    }
+  }
+
+  private static final class Entry {
+    final World world;
+    final int x;
+    final int z;
+    final long requestedAt = System.nanoTime();
+    volatile long expiresAt;
+    volatile long loadNanos = -1;
+    volatile boolean released;
+    volatile boolean used;
+    // Guarded by the prefetcher lock
+    int pins;
+    // Only touched on the chunk's region thread
+    boolean ticketHeld;
+
+    Entry(World world, int x, int z, long expiresAt) {
+      this.world = world;
+      this.x = x;
+      this.z = z;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
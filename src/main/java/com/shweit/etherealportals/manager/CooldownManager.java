@@ -1,38 +1,113 @@
 package fr.kazotaruumc72.etherealportals.manager;
 
-import java.util.HashMap;
-import java.util.Map;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import java.util.UUID;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
 
 /**
- * Tracks teleport and message cooldowns.
+ * Tracks teleport, message and placement cooldowns.
+ *
+ * <p>Each channel keeps its cooldown ends in a {@link CooldownTable}. Reads are
+ * lock-free and safe from any region thread; ended cooldowns are dropped by a
+ * timing wheel advanced once per second on the global region scheduler.
  */
 public class CooldownManager {
-  private final Map<UUID, Long> teleportCooldownEnds = new HashMap<>();
-  private final Map<UUID, Long> messageCooldownEnds = new HashMap<>();
-  private int teleportSeconds;
-  private int messageSeconds;
+  /** Independent cooldown channels. */
+  public enum Channel {
+    TELEPORT,
+    MESSAGE,
+    PLACEMENT
+  }
+
+  private final long origin = System.nanoTime();
+  private final CooldownTable[] tables = new CooldownTable[Channel.values().length];
+  private volatile CooldownPolicy policy;
+  private ScheduledTask expiryTask;
 
   /**
    * Creates a new cooldown manager.
    *
-   * @param teleportSeconds cooldown seconds for teleportation
-   * @param messageSeconds cooldown seconds for cooldown messages
+   * @param policy the cooldown durations
+   */
+  public CooldownManager(CooldownPolicy policy) {
+    this.policy = policy;
+    for (int i = 0; i < tables.length; i++) {
+      tables[i] = new CooldownTable();
+    }
+  }
+
+  /**
+   * Updates the cooldown configuration. Running cooldowns keep their end time.
+   *
+   * @param policy the cooldown durations
+   */
+  public void updateConfig(CooldownPolicy policy) {
+    this.policy = policy;
+  }
+
+  /**
+   * Starts the periodic expiry of ended cooldowns.
+   *
+   * @param plugin the owning plugin
+   */
+  public void start(Plugin plugin) {
+    expiryTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(
+        plugin,
+        (task) -> expire(),
+        20L,
+        20L
+    );
+  }
+
+  /**
+   * Stops the periodic expiry and drops every cooldown.
+   */
+  public void stop() {
+    if (expiryTask != null) {
+      expiryTask.cancel();
+      expiryTask = null;
+    }
+    for (CooldownTable table : tables) {
+      table.clear();
+    }
+  }
+
+  /**
+   * Checks if a player's cooldown on a channel has ended.
+   *
+   * @param channel the cooldown channel
+   * @param uuid the player UUID
+   * @return true if the player is not on cooldown
+   */
+  public boolean isReady(Channel channel, UUID uuid) {
+    return tables[channel.ordinal()].get(uuid) <= now();
+  }
+
+  /**
+   * Gets the remaining cooldown of a channel in seconds.
+   *
+   * @param channel the cooldown channel
+   * @param uuid the player UUID
+   * @return remaining seconds
    */
-  public CooldownManager(int teleportSeconds, int messageSeconds) {
-    this.teleportSeconds = teleportSeconds;
-    this.messageSeconds = messageSeconds;
+  public int remaining(Channel channel, UUID uuid) {
+    long diff = tables[channel.ordinal()].get(uuid) - now();
+    return diff <= 0 ? 0 : (int) ((diff + 999) / 1000);
   }
 
   /**
-   * Updates the cooldown configuration.
+   * Starts a cooldown for a player, using the duration of the given group.
    *
-   * @param teleportSeconds cooldown seconds for teleportation
-   * @param messageSeconds cooldown seconds for cooldown messages
+   * @param channel the cooldown channel
+   * @param uuid the player UUID
+   * @param groupName the portal group, or null for the default duration
    */
-  public void updateConfig(int teleportSeconds, int messageSeconds) {
-    this.teleportSeconds = teleportSeconds;
-    this.messageSeconds = messageSeconds;
+  public void trigger(Channel channel, UUID uuid, String groupName) {
+    long duration = policy.durationMillis(channel, groupName);
+    if (duration > 0) {
+      tables[channel.ordinal()].put(uuid, now() + duration);
+    }
   }
 
   /**
@@ -42,9 +117,7 @@ public class CooldownManager {
    * @return true if the player can teleport
    */
   public boolean canTeleport(UUID uuid) {
-    long now = System.currentTimeMillis();
-    Long end = teleportCooldownEnds.get(uuid);
-    return end == null || end <= now;
+    return isReady(Channel.TELEPORT, uuid);
   }
 
   /**
@@ -54,21 +127,17 @@ public class CooldownManager {
    * @return remaining seconds
    */
   public int remainingTeleport(UUID uuid) {
-    Long end = teleportCooldownEnds.get(uuid);
-    if (end == null) {
-      return 0;
-    }
-    long diff = end - System.currentTimeMillis();
-    return diff <= 0 ? 0 : (int) Math.ceil(diff / 1000.0);
+    return remaining(Channel.TELEPORT, uuid);
   }
 
   /**
    * Triggers a teleport cooldown for a player.
    *
    * @param uuid the player UUID
+   * @param groupName the group teleported through
    */
-  public void triggerTeleport(UUID uuid) {
-    teleportCooldownEnds.put(uuid, System.currentTimeMillis() + teleportSeconds * 1000L);
+  public void triggerTeleport(UUID uuid, String groupName) {
+    trigger(Channel.TELEPORT, uuid, groupName);
   }
 
   /**
@@ -78,9 +147,7 @@ public class CooldownManager {
    * @return true if the player can receive messages
    */
   public boolean canMessage(UUID uuid) {
-    long now = System.currentTimeMillis();
-    Long end = messageCooldownEnds.get(uuid);
-    return end == null || end <= now;
+    return isReady(Channel.MESSAGE, uuid);
   }
 
   /**
@@ -89,6 +156,39 @@ public class CooldownManager {
    * @param uuid the player UUID
    */
   public void triggerMessage(UUID uuid) {
-    messageCooldownEnds.put(uuid, System.currentTimeMillis() + messageSeconds * 1000L);
+    trigger(Channel.MESSAGE, uuid, null);
+  }
+
+  /**
+   * Drops every ended cooldown.
+   *
+   * @return the number of entries removed
+   */
+  public int expire() {
+    long now = now();
+    int removed = 0;
+    for (CooldownTable table : tables) {
+      removed += table.expire(now);
+    }
+    return removed;
+  }
+
+  /**
+   * Gets the number of stored cooldowns on a channel.
+   *
+   * @param channel the cooldown channel
+   * @return the entry count
+   */
+  public int size(Channel channel) {
+    return tables[channel.ordinal()].size();
+  }
+
+  public CooldownPolicy getPolicy() {
+    return policy;
+  }
+
+  // Monotonic milliseconds, starting at 1 because 0 marks an empty table slot
+  private long now() {
+    return (System.nanoTime() - origin) / 1_000_000L + 1;
   }
 }
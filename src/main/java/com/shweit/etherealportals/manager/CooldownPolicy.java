@@ -0,0 +1,107 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Immutable cooldown durations per channel, with optional per-group overrides.
+ */
+public final class CooldownPolicy {
+  private final Map<CooldownManager.Channel, Long> defaults;
+  private final Map<String, Map<CooldownManager.Channel, Long>> groups;
+
+  private CooldownPolicy(Map<CooldownManager.Channel, Long> defaults,
+      Map<String, Map<CooldownManager.Channel, Long>> groups) {
+    this.defaults = defaults;
+    this.groups = groups;
+  }
+
+  /**
+   * Creates a policy without group overrides.
+   *
+   * @param teleportSeconds cooldown seconds for teleportation
+   * @param messageSeconds cooldown seconds for cooldown messages
+   * @param placementSeconds cooldown seconds for portal item placement
+   * @return the policy
+   */
+  public static CooldownPolicy of(int teleportSeconds, int messageSeconds,
+      int placementSeconds) {
+    Map<CooldownManager.Channel, Long> defaults = new EnumMap<>(CooldownManager.Channel.class);
+    defaults.put(CooldownManager.Channel.TELEPORT, teleportSeconds * 1000L);
+    defaults.put(CooldownManager.Channel.MESSAGE, messageSeconds * 1000L);
+    defaults.put(CooldownManager.Channel.PLACEMENT, placementSeconds * 1000L);
+    return new CooldownPolicy(defaults, Collections.emptyMap());
+  }
+
+  /**
+   * Reads a policy from the plugin configuration.
+   * Group overrides live under {@code portal.cooldowns.groups.<group>} and may set
+   * {@code teleport}, {@code message} and {@code placement} in seconds.
+   *
+   * @param config the root configuration section
+   * @return the policy
+   */
+  public static CooldownPolicy fromConfig(ConfigurationSection config) {
+    CooldownPolicy base = of(
+        config.getInt("portal.teleport.cooldownSeconds", 3),
+        config.getInt("portal.teleport.messageCooldownSeconds", 1),
+        config.getInt("portal.craftablePortals.placementCooldownSeconds", 0));
+    ConfigurationSection section = config.getConfigurationSection("portal.cooldowns.groups");
+    if (section == null) {
+      return base;
+    }
+    Map<String, Map<CooldownManager.Channel, Long>> groups = new HashMap<>();
+    for (String group : section.getKeys(false)) {
+      ConfigurationSection groupSection = section.getConfigurationSection(group);
+      if (groupSection == null) {
+        continue;
+      }
+      Map<CooldownManager.Channel, Long> overrides =
+          new EnumMap<>(CooldownManager.Channel.class);
+      for (CooldownManager.Channel channel : CooldownManager.Channel.values()) {
+        String key = channel.name().toLowerCase(Locale.ROOT);
+        if (groupSection.contains(key)) {
+          overrides.put(channel, Math.max(0, groupSection.getInt(key)) * 1000L);
+        }
+      }
+      if (!overrides.isEmpty()) {
+        groups.put(group.toLowerCase(Locale.ROOT), overrides);
+      }
+    }
+    return new CooldownPolicy(base.defaults, Collections.unmodifiableMap(groups));
+  }
+
+  /**
+   * Gets the cooldown duration of a channel for a group.
+   *
+   * @param channel the cooldown channel
+   * @param groupName the group name, or null for the default
+   * @return the duration in milliseconds
+   */
+  public long durationMillis(CooldownManager.Channel channel, String groupName) {
+    if (groupName != null && !groups.isEmpty()) {
+      Map<CooldownManager.Channel, Long> overrides =
+          groups.get(groupName.toLowerCase(Locale.ROOT));
+      if (overrides != null) {
+        Long duration = overrides.get(channel);
+        if (duration != null) {
+          return duration;
+        }
+      }
+    }
+    return defaults.get(channel);
+  }
+
+  /**
+   * Gets the number of groups with overrides.
+   *
+   * @return the override count
+   */
+  public int getGroupOverrideCount() {
+    return groups.size();
+  }
+}
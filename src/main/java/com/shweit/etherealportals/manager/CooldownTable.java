@@ -0,0 +1,286 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Cooldown ends of one channel, stored in a primitive open-addressing table keyed
+ * by the two halves of the player UUID and expired by a hashed timing wheel.
+ *
+ * <p>Reads are optimistic and never block; writes and expiry take the write lock.
+ * An end of zero marks an empty slot, so times must start at one.
+ */
+final class CooldownTable {
+  /** Width of one wheel slot in milliseconds. */
+  static final long SLOT_MILLIS = 250L;
+  private static final int WHEEL_SLOTS = 256; // 64 seconds per revolution
+  private static final int MIN_CAPACITY = 16;
+
+  private final StampedLock lock = new StampedLock();
+  private long[] keyMost;
+  private long[] keyLeast;
+  private long[] ends;
+  private int size;
+
+  // Wheel slot i lists the keys whose end falls in a SLOT_MILLIS window mapping to i
+  private final long[][] wheelMost = new long[WHEEL_SLOTS][];
+  private final long[][] wheelLeast = new long[WHEEL_SLOTS][];
+  private final long[][] wheelEnds = new long[WHEEL_SLOTS][];
+  private final int[] wheelSizes = new int[WHEEL_SLOTS];
+  private long cursor = -1;
+
+  CooldownTable() {
+    allocate(MIN_CAPACITY);
+  }
+
+  /**
+   * Gets the end time stored for a player.
+   *
+   * @param uuid the player UUID
+   * @return the end time, or 0 if none is stored
+   */
+  long get(UUID uuid) {
+    long most = uuid.getMostSignificantBits();
+    long least = uuid.getLeastSignificantBits();
+    long stamp = lock.tryOptimisticRead();
+    long end = probe(most, least);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        end = probe(most, least);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Stores the end time of a player's cooldown.
+   *
+   * @param uuid the player UUID
+   * @param end the end time, at least 1
+   */
+  void put(UUID uuid, long end) {
+    long most = uuid.getMostSignificantBits();
+    long least = uuid.getLeastSignificantBits();
+    long stamp = lock.writeLock();
+    try {
+      if ((size + 1) * 2 > ends.length) {
+        rehash(ends.length * 2);
+      }
+      insert(most, least, end);
+      schedule(most, least, end);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Advances the wheel to {@code now}, dropping every cooldown that has ended.
+   *
+   * @param now the current time
+   * @return the number of entries removed
+   */
+  int expire(long now) {
+    long target = now / SLOT_MILLIS;
+    long stamp = lock.writeLock();
+    try {
+      if (cursor < 0) {
+        cursor = target;
+        return 0;
+      }
+      int removed = 0;
+      // A slot is only complete once its whole window lies in the past
+      long last = Math.min(target - 1, cursor + WHEEL_SLOTS - 1);
+      for (long slot = cursor; slot <= last; slot++) {
+        removed += sweep((int) (slot & (WHEEL_SLOTS - 1)), now);
+      }
+      cursor = Math.max(cursor, target);
+      if (size * 8 < ends.length && ends.length > MIN_CAPACITY) {
+        rehash(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size * 4))));
+      }
+      return removed;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Gets the number of stored cooldowns, including ended ones not yet swept.
+   *
+   * @return the entry count
+   */
+  int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Removes every entry.
+   */
+  void clear() {
+    long stamp = lock.writeLock();
+    try {
+      allocate(MIN_CAPACITY);
+      Arrays.fill(wheelSizes, 0);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private long probe(long most, long least) {
+    long[] km = keyMost;
+    long[] kl = keyLeast;
+    long[] e = ends;
+    int mask = e.length - 1;
+    if (km.length != e.length || kl.length != e.length) {
+      return 0; // torn read during a rehash, the caller validates and retries
+    }
+    int index = hash(most, least) & mask;
+    for (int i = 0; i <= mask; i++) {
+      long end = e[index];
+      if (end == 0) {
+        return 0;
+      }
+      if (km[index] == most && kl[index] == least) {
+        return end;
+      }
+      index = (index + 1) & mask;
+    }
+    return 0;
+  }
+
+  private void insert(long most, long least, long end) {
+    int mask = ends.length - 1;
+    int index = hash(most, least) & mask;
+    while (ends[index] != 0) {
+      if (keyMost[index] == most && keyLeast[index] == least) {
+        ends[index] = end;
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+    keyMost[index] = most;
+    keyLeast[index] = least;
+    ends[index] = end;
+    size++;
+  }
+
+  private void remove(long most, long least, long end) {
+    int mask = ends.length - 1;
+    int index = hash(most, least) & mask;
+    while (ends[index] != 0) {
+      if (keyMost[index] == most && keyLeast[index] == least) {
+        if (ends[index] != end) {
+          return; // re-triggered since this wheel entry was scheduled
+        }
+        deleteAt(index);
+        return;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  // Backward-shift deletion keeps probe chains intact without tombstones
+  private void deleteAt(int index) {
+    int mask = ends.length - 1;
+    int hole = index;
+    int next = (hole + 1) & mask;
+    while (ends[next] != 0) {
+      int home = hash(keyMost[next], keyLeast[next]) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        keyMost[hole] = keyMost[next];
+        keyLeast[hole] = keyLeast[next];
+        ends[hole] = ends[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keyMost[hole] = 0;
+    keyLeast[hole] = 0;
+    ends[hole] = 0;
+    size--;
+  }
+
+  private void schedule(long most, long least, long end) {
+    int slot = (int) ((end / SLOT_MILLIS) & (WHEEL_SLOTS - 1));
+    int count = wheelSizes[slot];
+    if (wheelEnds[slot] == null) {
+      wheelMost[slot] = new long[4];
+      wheelLeast[slot] = new long[4];
+      wheelEnds[slot] = new long[4];
+    } else if (count == wheelEnds[slot].length) {
+      wheelMost[slot] = Arrays.copyOf(wheelMost[slot], count * 2);
+      wheelLeast[slot] = Arrays.copyOf(wheelLeast[slot], count * 2);
+      wheelEnds[slot] = Arrays.copyOf(wheelEnds[slot], count * 2);
+    }
+    wheelMost[slot][count] = most;
+    wheelLeast[slot][count] = least;
+    wheelEnds[slot][count] = end;
+    wheelSizes[slot] = count + 1;
+  }
+
+  private int sweep(int slot, long now) {
+    int count = wheelSizes[slot];
+    if (count == 0) {
+      return 0;
+    }
+    long[] most = wheelMost[slot];
+    long[] least = wheelLeast[slot];
+    long[] slotEnds = wheelEnds[slot];
+    int before = size;
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      if (slotEnds[i] <= now) {
+        remove(most[i], least[i], slotEnds[i]);
+      } else {
+        // Ends more than one revolution away stay for a later pass
+        most[kept] = most[i];
+        least[kept] = least[i];
+        slotEnds[kept] = slotEnds[i];
+        kept++;
+      }
+    }
+    wheelSizes[slot] = kept;
+    if (kept == 0 && slotEnds.length > 64) {
+      wheelMost[slot] = null;
+      wheelLeast[slot] = null;
+      wheelEnds[slot] = null;
+    }
+    return before - size;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldMost = keyMost;
+    long[] oldLeast = keyLeast;
+    long[] oldEnds = ends;
+    allocate(capacity);
+    for (int i = 0; i < oldEnds.length; i++) {
+      if (oldEnds[i] != 0) {
+        insert(oldMost[i], oldLeast[i], oldEnds[i]);
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    // Publish ends last so an optimistic reader sees matching lengths or retries
+    keyMost = new long[capacity];
+    keyLeast = new long[capacity];
+    ends = new long[capacity];
+    size = 0;
+  }
+
+  private static int hash(long most, long least) {
+    long h = most ^ least;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+}
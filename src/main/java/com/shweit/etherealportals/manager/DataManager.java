@@ -3,26 +3,28 @@ package fr.kazotaruumc72.etherealportals.manager;
 import fr.kazotaruumc72.etherealportals.model.Portal;
 import fr.kazotaruumc72.etherealportals.model.PortalGroup;
 import fr.kazotaruumc72.etherealportals.model.PortalIcon;
-import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import org.bukkit.Bukkit;
-import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
- * Handles YAML persistence for groups and icons.
+ * Handles persistence for groups and icons through the configured
+ * {@link StorageBackend}: files, see {@link FileStorageBackend}, or SQLite, see
+ * {@link SqliteStorageBackend}. The backend can be switched while the server
+ * runs with {@link #migrate}.
  */
 public class DataManager {
   private final JavaPlugin plugin;
   private final PortalManager portalManager;
   private final IconManager iconManager;
-  private File groupsFile;
-  private File iconsFile;
-  private FileConfiguration groupsCfg;
-  private FileConfiguration iconsCfg;
+  private final Object migrationLock = new Object();
+  private volatile StorageBackend backend;
+  private boolean migrating;
 
   /**
    * Creates a new data manager.
@@ -44,102 +46,198 @@ public class DataManager {
         plugin.getLogger().warning("Failed to create plugin data folder");
       }
     }
-    groupsFile = new File(plugin.getDataFolder(), "groups.yml");
-    iconsFile = new File(plugin.getDataFolder(), "icons.yml");
-    if (!groupsFile.exists()) {
-      try {
-        if (!groupsFile.createNewFile()) {
-          plugin.getLogger().warning("Failed to create groups.yml");
-        }
-      } catch (IOException e) {
-        plugin.getLogger().severe("IOException creating groups.yml: " + e.getMessage());
+    StorageBackend loaded = createBackend(
+        plugin.getConfig().getString("portal.storage.backend", "file"));
+    try {
+      // Publish everything in one snapshot instead of one per portal
+      portalManager.replaceAll(loaded.load(portalManager.getDefaultHitbox()));
+      for (Map.Entry<String, String> icon : loaded.loadIcons().entrySet()) {
+        iconManager.addIcon(icon.getKey(), icon.getValue());
       }
+    } catch (IOException e) {
+      // Never overwrite data that failed to load
+      throw new IllegalStateException("Failed to load portals from " + loaded.getName()
+          + " storage: " + e.getMessage(), e);
     }
-    if (!iconsFile.exists()) {
-      try {
-        if (!iconsFile.createNewFile()) {
-          plugin.getLogger().warning("Failed to create icons.yml");
-        }
-      } catch (IOException e) {
-        plugin.getLogger().severe("IOException creating icons.yml: " + e.getMessage());
-      }
+    loaded.start();
+    backend = loaded;
+  }
+
+  /**
+   * Creates a backend by its configured name.
+   *
+   * @param name {@code file} or {@code sqlite}
+   * @return the backend, not started
+   * @throws IllegalArgumentException if the name is unknown
+   */
+  private StorageBackend createBackend(String name) {
+    if ("file".equalsIgnoreCase(name)) {
+      return new FileStorageBackend(plugin, portalManager, iconManager);
     }
-    groupsCfg = YamlConfiguration.loadConfiguration(groupsFile);
-    iconsCfg = YamlConfiguration.loadConfiguration(iconsFile);
-    loadGroups();
-    loadIcons();
+    if ("sqlite".equalsIgnoreCase(name)) {
+      return new SqliteStorageBackend(plugin);
+    }
+    throw new IllegalArgumentException("Unknown storage backend: " + name);
   }
 
-  private void loadGroups() {
-    for (String groupName : groupsCfg.getKeys(false)) {
-      PortalGroup group = portalManager.createGroupIfAbsent(groupName);
-      ConfigurationSection groupSection = groupsCfg.getConfigurationSection(groupName);
-      if (groupSection == null) {
-        continue;
-      }
-      for (String portalName : groupSection.getKeys(false)) {
-        String path = groupName + "." + portalName;
-        String worldName = groupsCfg.getString(path + ".world");
-        if (worldName == null) {
-          continue;
-        }
-        World world = Bukkit.getWorld(worldName);
-        if (world == null) {
-          continue; // skip
-        }
-        ConfigurationSection portalSection = groupsCfg.getConfigurationSection(path);
-        if (portalSection == null) {
-          continue;
-        }
-        Portal portal = Portal.deserialize(portalName, portalSection, world);
-        group.addPortal(portal);
+  /**
+   * Saves the current state of one portal, or its removal if it no longer
+   * exists.
+   *
+   * @param groupName the group name
+   * @param portalName the portal name
+   */
+  public void savePortal(String groupName, String portalName) {
+    synchronized (migrationLock) {
+      // Looked up under the lock so a migration cannot copy a newer state
+      PortalGroup group = portalManager.getGroup(groupName);
+      Portal portal = group == null ? null : group.getPortal(portalName);
+      if (portal != null) {
+        backend.savePortal(group.getName(), portal);
+      } else {
+        backend.deletePortal(groupName, portalName);
       }
     }
   }
 
-  private void loadIcons() {
-    for (String iconName : iconsCfg.getKeys(false)) {
-      String base64 = iconsCfg.getString(iconName + ".base64");
-      if (base64 != null) {
-        iconManager.addIcon(iconName, base64);
-      }
+  /**
+   * Saves the removal of one portal.
+   *
+   * @param groupName the group name
+   * @param portalName the portal name
+   */
+  public void savePortalRemoval(String groupName, String portalName) {
+    synchronized (migrationLock) {
+      backend.deletePortal(groupName, portalName);
     }
   }
 
   /**
-   * Saves all portal groups to disk.
+   * Saves the removal of a group and its portals.
+   *
+   * @param groupName the group name
    */
-  public void saveGroups() {
-    FileConfiguration tmp = new YamlConfiguration();
-    for (PortalGroup group : portalManager.getGroups()) {
-      String groupName = group.getName();
-      for (Portal portal : group.getPortals()) {
-        String path = groupName + "." + portal.getName();
-        portal.serialize(tmp.createSection(path));
-      }
+  public void saveGroupRemoval(String groupName) {
+    synchronized (migrationLock) {
+      backend.deleteGroup(groupName);
     }
-    groupsCfg = tmp;
-    try {
-      groupsCfg.save(groupsFile);
-    } catch (IOException e) {
-      plugin.getLogger().severe("Failed to save groups.yml: " + e.getMessage());
+  }
+
+  /**
+   * Saves one custom icon, or its removal if it no longer exists.
+   *
+   * @param name the icon name
+   */
+  public void saveIcon(String name) {
+    synchronized (migrationLock) {
+      PortalIcon icon = iconManager.getIcon(name);
+      if (icon != null) {
+        backend.saveIcon(icon);
+      } else {
+        backend.deleteIcon(name);
+      }
     }
   }
 
   /**
-   * Saves all custom icons to disk.
+   * Applies changed settings from the {@code portal.storage} section.
+   *
+   * @param section the storage section, may be null
    */
-  public void saveIcons() {
-    FileConfiguration tmp = new YamlConfiguration();
-    for (PortalIcon icon : iconManager.getIcons()) {
-      String path = icon.getName();
-      tmp.set(path + ".base64", icon.getBase64());
+  public void updateConfig(ConfigurationSection section) {
+    backend.updateConfig(section);
+  }
+
+  /**
+   * Copies all groups and icons to another backend and switches to it, without
+   * stopping the server. Runs on a virtual thread; changes made meanwhile go to
+   * the new backend after the copy. If the copy fails, the current backend is
+   * kept. On success {@code portal.storage.backend} is updated in the config.
+   *
+   * @param name the target backend, {@code file} or {@code sqlite}
+   * @param callback receives the result message on the global region thread
+   */
+  public void migrate(String name, Consumer<String> callback) {
+    StorageBackend source;
+    synchronized (migrationLock) {
+      source = backend;
+      if (migrating) {
+        callback.accept("&cA storage migration is already running.");
+        return;
+      }
+      if (source.getName().equalsIgnoreCase(name)) {
+        callback.accept("&cPortals are already stored in &e" + source.getName() + "&c.");
+        return;
+      }
+      migrating = true;
     }
-    iconsCfg = tmp;
-    try {
-      iconsCfg.save(iconsFile);
-    } catch (IOException e) {
-      plugin.getLogger().severe("Failed to save icons.yml: " + e.getMessage());
+    Thread.ofVirtual().name("EtherealPortals-migrate").start(() -> {
+      String result;
+      try {
+        result = copyTo(source, name);
+      } catch (RuntimeException e) {
+        plugin.getLogger().severe("Storage migration failed: " + e.getMessage());
+        result = "&cMigration failed: " + e.getMessage();
+      } finally {
+        synchronized (migrationLock) {
+          migrating = false;
+        }
+      }
+      String message = result;
+      Bukkit.getGlobalRegionScheduler().execute(plugin, () -> callback.accept(message));
+    });
+  }
+
+  private String copyTo(StorageBackend source, String name) {
+    long start = System.nanoTime();
+    StorageBackend target = createBackend(name);
+    target.start();
+    int portals;
+    CompletableFuture<Boolean> saved;
+    // Switching under the lock orders every later change after the copy
+    synchronized (migrationLock) {
+      Collection<PortalGroup> groups = portalManager.getGroups();
+      portals = groups.stream().mapToInt(group -> group.getPortals().size()).sum();
+      saved = target.saveAll(groups, iconManager.getIcons());
+      backend = target;
+    }
+    if (!saved.join()) {
+      synchronized (migrationLock) {
+        backend = source;
+        // Changes routed to the target meanwhile are covered by a full save
+        source.saveAll(portalManager.getGroups(), iconManager.getIcons());
+      }
+      target.close(plugin.getConfig().getLong("portal.storage.flushTimeoutMillis", 10000L));
+      return "&cCould not copy portals to &e" + target.getName()
+          + "&c, still using &e" + source.getName() + "&c. See the console.";
     }
+    source.close(plugin.getConfig().getLong("portal.storage.flushTimeoutMillis", 10000L));
+    Bukkit.getGlobalRegionScheduler().execute(plugin, () -> {
+      plugin.getConfig().set("portal.storage.backend", target.getName());
+      plugin.saveConfig();
+    });
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    plugin.getLogger().info("Migrated " + portals + " portals from " + source.getName()
+        + " to " + target.getName() + " storage in " + millis + " ms");
+    return "&aMigrated &e" + portals + " &aportals from &e" + source.getName() + " &ato &e"
+        + target.getName() + " &ain &e" + millis + " &ams.";
+  }
+
+  /**
+   * Writes pending changes and stops the backend.
+   *
+   * @param timeoutMillis maximum time to wait
+   */
+  public void close(long timeoutMillis) {
+    backend.close(timeoutMillis);
+  }
+
+  /**
+   * Gets the backend portals are currently stored in.
+   *
+   * @return the storage backend
+   */
+  public StorageBackend getBackend() {
+    return backend;
   }
 }
@@ -0,0 +1,384 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import fr.kazotaruumc72.etherealportals.model.PortalIcon;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Stores groups and icons in files in the plugin folder. Groups are stored as
+ * YAML or as a binary snapshot, see {@link BinarySnapshot}; switching formats
+ * converts the existing file at startup. In journal mode portal changes are
+ * appended to a {@link PortalJournal} instead of rewriting the snapshot. YAML
+ * files are read with {@link YamlStreamLoader}.
+ *
+ * <p>Files are written from the live portal and icon managers, so every write
+ * stores the current state whatever change triggered it.
+ */
+public class FileStorageBackend implements StorageBackend {
+  private final JavaPlugin plugin;
+  private final File groupsFile;
+  private final File otherFile;
+  private final File iconsFile;
+  private final Path journalPath;
+  private final boolean journalMode;
+  private final WriteBehindPersister groupsWriter;
+  private final WriteBehindPersister iconsWriter;
+  private PortalJournal journal;
+  private boolean migrated;
+  private long loadMillis;
+  private int replayedRecords;
+  private long replayMillis;
+
+  /**
+   * Creates a new file backend using the current configuration.
+   *
+   * @param plugin the plugin instance
+   * @param portalManager the portal manager the groups file is written from
+   * @param iconManager the icon manager the icons file is written from
+   */
+  public FileStorageBackend(JavaPlugin plugin, PortalManager portalManager,
+      IconManager iconManager) {
+    this.plugin = plugin;
+    boolean binary = "binary".equalsIgnoreCase(
+        plugin.getConfig().getString("portal.storage.format"));
+    File yamlFile = new File(plugin.getDataFolder(), "groups.yml");
+    File binaryFile = new File(plugin.getDataFolder(), "groups.dat");
+    this.groupsFile = binary ? binaryFile : yamlFile;
+    this.otherFile = binary ? yamlFile : binaryFile;
+    this.iconsFile = new File(plugin.getDataFolder(), "icons.yml");
+    this.journalPath = new File(plugin.getDataFolder(), "groups.journal").toPath();
+    this.journalMode = "journal".equalsIgnoreCase(
+        plugin.getConfig().getString("portal.storage.mode"));
+
+    long window = plugin.getConfig().getLong("portal.storage.writeDelayMillis", 500L);
+    groupsWriter = new WriteBehindPersister(plugin.getLogger(), groupsFile.toPath(),
+        binary ? () -> BinarySnapshot.encode(portalManager.getGroups())
+            : () -> serializeGroups(portalManager).getBytes(StandardCharsets.UTF_8), window);
+    iconsWriter = new WriteBehindPersister(plugin.getLogger(), iconsFile.toPath(),
+        () -> serializeIcons(iconManager).getBytes(StandardCharsets.UTF_8), window);
+  }
+
+  @Override
+  public String getName() {
+    return "file";
+  }
+
+  @Override
+  public Collection<PortalGroup> load(PortalHitbox defaultHitbox) throws IOException {
+    // Load the configured format, or migrate from the other one
+    migrated = !groupsFile.exists() && otherFile.exists();
+    File source = migrated ? otherFile : groupsFile;
+    long start = System.nanoTime();
+    PortalTable table = source.exists() ? loadGroups(source, defaultHitbox) : new PortalTable();
+    loadMillis = (System.nanoTime() - start) / 1_000_000;
+    plugin.getLogger().info("Loaded " + table.getPortalCount() + " portals from "
+        + source.getName() + " in " + loadMillis + " ms");
+    replayJournal(table, defaultHitbox);
+    return table.toGroups();
+  }
+
+  @Override
+  public Map<String, String> loadIcons() throws IOException {
+    if (!iconsFile.exists()) {
+      try {
+        if (!iconsFile.createNewFile()) {
+          plugin.getLogger().warning("Failed to create icons.yml");
+        }
+      } catch (IOException e) {
+        plugin.getLogger().severe("IOException creating icons.yml: " + e.getMessage());
+      }
+    }
+    try {
+      return YamlStreamLoader.readIcons(iconsFile.toPath());
+    } catch (YamlStreamLoader.UnsupportedLayoutException e) {
+      plugin.getLogger().info("Loading icons.yml as a document: " + e.getMessage());
+    }
+    FileConfiguration iconsCfg = loadDocument(iconsFile);
+    Map<String, String> icons = new LinkedHashMap<>();
+    for (String iconName : iconsCfg.getKeys(false)) {
+      String base64 = iconsCfg.getString(iconName + ".base64");
+      if (base64 != null) {
+        icons.put(iconName, base64);
+      }
+    }
+    return icons;
+  }
+
+  @Override
+  public void start() {
+    if (migrated && groupsWriter.writeNow()) {
+      File backup = new File(plugin.getDataFolder(), otherFile.getName() + ".bak");
+      if (otherFile.renameTo(backup)) {
+        plugin.getLogger().info("Converted " + otherFile.getName() + " to "
+            + groupsFile.getName() + "; the old file was kept as " + backup.getName());
+      }
+    }
+    if (journalMode) {
+      journal = new PortalJournal(plugin.getLogger(), journalPath, groupsWriter::writeNow,
+          plugin.getConfig().getLong("portal.storage.journal.compactBytes", 1048576L));
+      journal.start();
+    } else if (replayedRecords > 0) {
+      // Switched back to snapshots: fold the leftover journal in once
+      if (groupsWriter.writeNow()) {
+        deleteJournal();
+      }
+    }
+    groupsWriter.start();
+    iconsWriter.start();
+  }
+
+  @Override
+  public void savePortal(String groupName, Portal portal) {
+    if (journal != null) {
+      journal.put(groupName, portal);
+    } else {
+      groupsWriter.markDirty();
+    }
+  }
+
+  @Override
+  public void deletePortal(String groupName, String portalName) {
+    if (journal != null) {
+      journal.remove(groupName, portalName);
+    } else {
+      groupsWriter.markDirty();
+    }
+  }
+
+  @Override
+  public void deleteGroup(String groupName) {
+    if (journal != null) {
+      journal.removeGroup(groupName);
+    } else {
+      groupsWriter.markDirty();
+    }
+  }
+
+  @Override
+  public void saveIcon(PortalIcon icon) {
+    iconsWriter.markDirty();
+  }
+
+  @Override
+  public void deleteIcon(String name) {
+    iconsWriter.markDirty();
+  }
+
+  // Both files are written from the live managers, which hold the same data
+  @Override
+  public CompletableFuture<Boolean> saveAll(Collection<PortalGroup> groups,
+      Collection<PortalIcon> icons) {
+    boolean saved = groupsWriter.writeNow() & iconsWriter.writeNow();
+    if (saved) {
+      if (journal != null) {
+        journal.requestCompaction();
+      } else {
+        deleteJournal(); // stale records would be replayed over the new snapshot
+      }
+    }
+    return CompletableFuture.completedFuture(saved);
+  }
+
+  @Override
+  public void updateConfig(ConfigurationSection section) {
+    if (section == null) {
+      return;
+    }
+    long window = section.getLong("writeDelayMillis", 500L);
+    groupsWriter.setWindowMillis(window);
+    iconsWriter.setWindowMillis(window);
+    if (journal != null) {
+      journal.setCompactBytes(section.getLong("journal.compactBytes", 1048576L));
+    }
+  }
+
+  @Override
+  public void close(long timeoutMillis) {
+    if (journal != null) {
+      journal.close(timeoutMillis);
+    }
+    groupsWriter.close(timeoutMillis);
+    iconsWriter.close(timeoutMillis);
+  }
+
+  /**
+   * Gets the background writer of the groups file.
+   *
+   * @return the groups writer
+   */
+  public WriteBehindPersister getGroupsWriter() {
+    return groupsWriter;
+  }
+
+  /**
+   * Gets the portal change journal.
+   *
+   * @return the journal, or null outside journal mode
+   */
+  public PortalJournal getJournal() {
+    return journal;
+  }
+
+  /**
+   * Gets the name of the file portal groups are saved to.
+   *
+   * @return {@code groups.yml} or {@code groups.dat}
+   */
+  public String getGroupsFileName() {
+    return groupsFile.getName();
+  }
+
+  /**
+   * Gets the time loading the groups snapshot took at startup.
+   *
+   * @return the duration in milliseconds
+   */
+  public long getLoadMillis() {
+    return loadMillis;
+  }
+
+  /**
+   * Gets the number of journal records replayed at startup.
+   *
+   * @return the record count
+   */
+  public int getReplayedRecords() {
+    return replayedRecords;
+  }
+
+  /**
+   * Gets the time the journal replay took at startup.
+   *
+   * @return the duration in milliseconds
+   */
+  public long getReplayMillis() {
+    return replayMillis;
+  }
+
+  private void replayJournal(PortalTable table, PortalHitbox defaultHitbox) {
+    long start = System.nanoTime();
+    try {
+      replayedRecords = PortalJournal.replay(journalPath, table, defaultHitbox,
+          plugin.getLogger());
+    } catch (IOException e) {
+      plugin.getLogger().severe("Failed to replay groups.journal: " + e.getMessage());
+    }
+    replayMillis = (System.nanoTime() - start) / 1_000_000;
+    if (replayedRecords > 0) {
+      plugin.getLogger().info("Replayed " + replayedRecords + " portal changes from "
+          + "groups.journal in " + replayMillis + " ms");
+    }
+  }
+
+  private void deleteJournal() {
+    try {
+      Files.deleteIfExists(journalPath);
+    } catch (IOException e) {
+      plugin.getLogger().warning("Failed to delete groups.journal: " + e.getMessage());
+    }
+  }
+
+  private PortalTable loadGroups(File file, PortalHitbox defaultHitbox) throws IOException {
+    PortalTable table = new PortalTable();
+    if (file.getName().endsWith(".dat")) {
+      BinarySnapshot.read(file.toPath(), table, defaultHitbox);
+      return table;
+    }
+    try {
+      YamlStreamLoader.readGroups(file.toPath(), table, defaultHitbox);
+      return table;
+    } catch (YamlStreamLoader.UnsupportedLayoutException e) {
+      plugin.getLogger().info("Loading " + file.getName() + " as a document: " + e.getMessage());
+    }
+    return readDocument(file, defaultHitbox);
+  }
+
+  /**
+   * Reads a groups file through a full {@link YamlConfiguration} document, for
+   * layouts the streaming loader does not handle.
+   *
+   * @param file the groups file
+   * @param defaultHitbox the hitbox of portals without their own
+   * @return the groups and portals read
+   * @throws IOException if the file cannot be read or is not valid YAML
+   */
+  static PortalTable readDocument(File file, PortalHitbox defaultHitbox) throws IOException {
+    PortalTable table = new PortalTable();
+    FileConfiguration groupsCfg = loadDocument(file);
+    for (String groupName : groupsCfg.getKeys(false)) {
+      table.addGroup(groupName);
+      ConfigurationSection groupSection = groupsCfg.getConfigurationSection(groupName);
+      if (groupSection != null) {
+        for (String portalName : groupSection.getKeys(false)) {
+          String path = groupName + "." + portalName;
+          String worldName = groupsCfg.getString(path + ".world");
+          if (worldName == null) {
+            continue;
+          }
+          World world = Bukkit.getWorld(worldName);
+          if (world == null) {
+            continue; // skip
+          }
+          ConfigurationSection portalSection = groupsCfg.getConfigurationSection(path);
+          if (portalSection == null) {
+            continue;
+          }
+          table.put(groupName, Portal.deserialize(portalName, portalSection, world,
+              defaultHitbox));
+        }
+      }
+    }
+    return table;
+  }
+
+  // Unlike YamlConfiguration.loadConfiguration, fails instead of returning an
+  // empty document that the next save would write over the file
+  private static FileConfiguration loadDocument(File file) throws IOException {
+    YamlConfiguration config = new YamlConfiguration();
+    try {
+      config.load(file);
+    } catch (InvalidConfigurationException e) {
+      throw new IOException("Invalid YAML in " + file.getName() + ": " + e.getMessage(), e);
+    }
+    return config;
+  }
+
+  // Writer thread: portal data is read from the current immutable snapshot
+  private static String serializeGroups(PortalManager portalManager) {
+    FileConfiguration tmp = new YamlConfiguration();
+    for (PortalGroup group : portalManager.getGroups()) {
+      String groupName = group.getName();
+      for (Portal portal : group.getPortals()) {
+        String path = groupName + "." + portal.getName();
+        portal.serialize(tmp.createSection(path));
+      }
+    }
+    return tmp.saveToString();
+  }
+
+  private static String serializeIcons(IconManager iconManager) {
+    FileConfiguration tmp = new YamlConfiguration();
+    for (PortalIcon icon : iconManager.getIcons()) {
+      String path = icon.getName();
+      tmp.set(path + ".base64", icon.getBase64());
+    }
+    return tmp.saveToString();
+  }
+}
@@ -0,0 +1,239 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable hash trie of portal groups keyed by {@link PortalGroup#getKey()}.
+ * Adding, replacing or removing a group copies only the nodes on its path, at most
+ * seven of 32 slots each, and shares everything else with the previous map.
+ * Groups are listed in the order they were first added.
+ */
+final class GroupMap {
+  static final GroupMap EMPTY = new GroupMap(Node.EMPTY, 0, 0L);
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  // Past this shift all 32 hash bits are consumed and equal hashes share a node
+  private static final int MAX_SHIFT = 30;
+
+  private final Node root;
+  private final int size;
+  private final long nextOrder;
+  private volatile List<PortalGroup> ordered;
+
+  private GroupMap(Node root, int size, long nextOrder) {
+    this.root = root;
+    this.size = size;
+    this.nextOrder = nextOrder;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Gets a group by its lowercase key.
+   *
+   * @param key the group key
+   * @return the group, or null if not found
+   */
+  PortalGroup get(String key) {
+    Entry entry = root.find(key, key.hashCode(), 0);
+    return entry == null ? null : entry.group;
+  }
+
+  /**
+   * Returns a map in which the group is added, or replaces the group with the same
+   * key while keeping its position.
+   *
+   * @param group the group
+   * @return the new map
+   */
+  GroupMap put(PortalGroup group) {
+    String key = group.getKey();
+    int hash = key.hashCode();
+    Entry existing = root.find(key, hash, 0);
+    if (existing != null) {
+      return new GroupMap(root.put(new Entry(key, hash, group, existing.order), 0), size,
+          nextOrder);
+    }
+    return new GroupMap(root.put(new Entry(key, hash, group, nextOrder), 0), size + 1,
+        nextOrder + 1);
+  }
+
+  /**
+   * Returns a map without the group of the given key.
+   *
+   * @param key the group key
+   * @return the new map, or this map if the key is absent
+   */
+  GroupMap remove(String key) {
+    Node next = root.remove(key, key.hashCode(), 0);
+    return next == root ? this : new GroupMap(next, size - 1, nextOrder);
+  }
+
+  /**
+   * Lists the groups in the order they were added. Computed once per map.
+   *
+   * @return the groups
+   */
+  List<PortalGroup> values() {
+    List<PortalGroup> result = ordered;
+    if (result == null) {
+      List<Entry> entries = new ArrayList<>(size);
+      root.collect(entries);
+      entries.sort(Comparator.comparingLong(entry -> entry.order));
+      List<PortalGroup> groups = new ArrayList<>(entries.size());
+      for (Entry entry : entries) {
+        groups.add(entry.group);
+      }
+      result = Collections.unmodifiableList(groups);
+      ordered = result;
+    }
+    return result;
+  }
+
+  private static final class Entry {
+    final String key;
+    final int hash;
+    final PortalGroup group;
+    final long order;
+
+    Entry(String key, int hash, PortalGroup group, long order) {
+      this.key = key;
+      this.hash = hash;
+      this.group = group;
+      this.order = order;
+    }
+  }
+
+  // Slots hold entries or child nodes, packed by bitmap. Below MAX_SHIFT a node
+  // is a plain list of entries whose hashes collide.
+  private static final class Node {
+    static final Node EMPTY = new Node(0, new Object[0]);
+
+    final int bitmap;
+    final Object[] slots;
+
+    Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    Entry find(String key, int hash, int shift) {
+      if (shift > MAX_SHIFT) {
+        for (Object slot : slots) {
+          if (((Entry) slot).key.equals(key)) {
+            return (Entry) slot;
+          }
+        }
+        return null;
+      }
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      Object slot = slots[Integer.bitCount(bitmap & (bit - 1))];
+      if (slot instanceof Node) {
+        return ((Node) slot).find(key, hash, shift + BITS);
+      }
+      Entry entry = (Entry) slot;
+      return entry.key.equals(key) ? entry : null;
+    }
+
+    Node put(Entry entry, int shift) {
+      if (shift > MAX_SHIFT) {
+        for (int i = 0; i < slots.length; i++) {
+          if (((Entry) slots[i]).key.equals(entry.key)) {
+            return new Node(0, replace(slots, i, entry));
+          }
+        }
+        return new Node(0, insert(slots, slots.length, entry));
+      }
+      int bit = 1 << ((entry.hash >>> shift) & MASK);
+      int index = Integer.bitCount(bitmap & (bit - 1));
+      if ((bitmap & bit) == 0) {
+        return new Node(bitmap | bit, insert(slots, index, entry));
+      }
+      Object slot = slots[index];
+      Object replacement;
+      if (slot instanceof Node) {
+        replacement = ((Node) slot).put(entry, shift + BITS);
+      } else if (((Entry) slot).key.equals(entry.key)) {
+        replacement = entry;
+      } else {
+        replacement = EMPTY.put((Entry) slot, shift + BITS).put(entry, shift + BITS);
+      }
+      return new Node(bitmap, replace(slots, index, replacement));
+    }
+
+    Node remove(String key, int hash, int shift) {
+      if (shift > MAX_SHIFT) {
+        for (int i = 0; i < slots.length; i++) {
+          if (((Entry) slots[i]).key.equals(key)) {
+            return new Node(0, delete(slots, i));
+          }
+        }
+        return this;
+      }
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int index = Integer.bitCount(bitmap & (bit - 1));
+      Object slot = slots[index];
+      if (slot instanceof Node) {
+        Node child = ((Node) slot).remove(key, hash, shift + BITS);
+        if (child == slot) {
+          return this;
+        }
+        if (child.slots.length == 0) {
+          return new Node(bitmap & ~bit, delete(slots, index));
+        }
+        // A lone entry moves up so lookups stop at the shallowest level
+        Object lifted = child.slots.length == 1 && child.slots[0] instanceof Entry
+            ? child.slots[0] : child;
+        return new Node(bitmap, replace(slots, index, lifted));
+      }
+      if (!((Entry) slot).key.equals(key)) {
+        return this;
+      }
+      return new Node(bitmap & ~bit, delete(slots, index));
+    }
+
+    void collect(List<Entry> out) {
+      for (Object slot : slots) {
+        if (slot instanceof Node) {
+          ((Node) slot).collect(out);
+        } else {
+          out.add((Entry) slot);
+        }
+      }
+    }
+
+    private static Object[] insert(Object[] slots, int index, Object value) {
+      Object[] copy = new Object[slots.length + 1];
+      System.arraycopy(slots, 0, copy, 0, index);
+      copy[index] = value;
+      System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+      return copy;
+    }
+
+    private static Object[] replace(Object[] slots, int index, Object value) {
+      Object[] copy = slots.clone();
+      copy[index] = value;
+      return copy;
+    }
+
+    private static Object[] delete(Object[] slots, int index) {
+      Object[] copy = new Object[slots.length - 1];
+      System.arraycopy(slots, 0, copy, 0, index);
+      System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+      return copy;
+    }
+  }
+}
@@ -1,13 +1,15 @@
 package fr.kazotaruumc72.etherealportals.manager;
 
 import fr.kazotaruumc72.etherealportals.model.PortalIcon;
+import fr.kazotaruumc72.etherealportals.util.SkullUtils;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Manages custom icons.
+ * Manages custom icons. Access is synchronized since icons are also read by the
+ * background writer of {@code icons.yml}.
  */
 public class IconManager {
   private final Map<String, PortalIcon> icons = new LinkedHashMap<>();
@@ -19,12 +21,13 @@ public class IconManager {
    * @param base64 the base64-encoded texture
    * @return true if added, false if an icon with that name already exists
    */
-  public boolean addIcon(String name, String base64) {
+  public synchronized boolean addIcon(String name, String base64) {
     String key = name.toLowerCase();
     if (icons.containsKey(key)) {
       return false;
     }
     icons.put(key, new PortalIcon(key, base64));
+    SkullUtils.invalidate();
     return true;
   }
 
@@ -34,8 +37,12 @@ public class IconManager {
    * @param name the icon name
    * @return true if removed, false if not found
    */
-  public boolean removeIcon(String name) {
-    return icons.remove(name.toLowerCase()) != null;
+  public synchronized boolean removeIcon(String name) {
+    if (icons.remove(name.toLowerCase()) == null) {
+      return false;
+    }
+    SkullUtils.invalidate();
+    return true;
   }
 
   /**
@@ -44,11 +51,11 @@ public class IconManager {
    * @param name the icon name
    * @return the icon, or null if not found
    */
-  public PortalIcon getIcon(String name) {
+  public synchronized PortalIcon getIcon(String name) {
     return icons.get(name.toLowerCase());
   }
 
-  public Collection<PortalIcon> getIcons() {
-    return Collections.unmodifiableCollection(icons.values());
+  public synchronized Collection<PortalIcon> getIcons() {
+    return List.copyOf(icons.values());
   }
 }
@@ -0,0 +1,114 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable open-addressing table keyed by primitive longs.
+ * Lookups neither box the key nor allocate, which keeps them safe for hot paths.
+ *
+ * @param <V> the value type
+ */
+final class LongTable<V> {
+  private static final LongTable<Object> EMPTY = new LongTable<>(new long[1], new Object[1], 0);
+
+  private final long[] keys;
+  private final Object[] values;
+  private final int size;
+
+  private LongTable(long[] keys, Object[] values, int size) {
+    this.keys = keys;
+    this.values = values;
+    this.size = size;
+  }
+
+  /**
+   * Returns the empty table.
+   *
+   * @param <V> the value type
+   * @return the empty table
+   */
+  @SuppressWarnings("unchecked")
+  static <V> LongTable<V> empty() {
+    return (LongTable<V>) EMPTY;
+  }
+
+  /**
+   * Builds a table from the non-null values of a map.
+   *
+   * @param source the source entries
+   * @param <V> the value type
+   * @return the new table
+   */
+  static <V> LongTable<V> of(Map<Long, V> source) {
+    if (source.isEmpty()) {
+      return empty();
+    }
+    int capacity = Integer.highestOneBit(Math.max(2, source.size() * 2 - 1)) << 1;
+    long[] keys = new long[capacity];
+    Object[] values = new Object[capacity];
+    int mask = capacity - 1;
+    int size = 0;
+    for (Map.Entry<Long, V> entry : source.entrySet()) {
+      if (entry.getValue() == null) {
+        continue;
+      }
+      long key = entry.getKey();
+      int slot = mix(key) & mask;
+      while (values[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      values[slot] = entry.getValue();
+      size++;
+    }
+    return new LongTable<>(keys, values, size);
+  }
+
+  /**
+   * Gets the value stored under a key.
+   *
+   * @param key the key
+   * @return the value, or null if absent
+   */
+  @SuppressWarnings("unchecked")
+  V get(long key) {
+    int mask = values.length - 1;
+    int slot = mix(key) & mask;
+    Object value;
+    while ((value = values[slot]) != null) {
+      if (keys[slot] == key) {
+        return (V) value;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Visits every entry of the table.
+   *
+   * @param action the action receiving key and value
+   */
+  @SuppressWarnings("unchecked")
+  void forEach(BiConsumer<Long, V> action) {
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        action.accept(keys[i], (V) values[i]);
+      }
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  private static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
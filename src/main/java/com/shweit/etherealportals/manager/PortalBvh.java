@@ -0,0 +1,291 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable bounding-volume hierarchy over portal hitbox bounds.
+ * Built once per change with median splits along the longest axis, so point
+ * queries visit O(log n) nodes even when hitbox sizes differ widely.
+ * Nodes are stored in flat arrays and queries recurse without allocating.
+ */
+final class PortalBvh {
+  private static final int LEAF_SIZE = 4;
+
+  private final PortalManager.PortalResult[] entries;
+  // Per node: bounds, and either two children (leaf count 0) or an entry range
+  private final double[] bounds;
+  private final int[] left;
+  private final int[] right;
+  private final int[] start;
+  private final int[] count;
+  private int nodes;
+
+  private PortalBvh(PortalManager.PortalResult[] entries) {
+    this.entries = entries;
+    int capacity = Math.max(1, 2 * entries.length);
+    this.bounds = new double[capacity * 6];
+    this.left = new int[capacity];
+    this.right = new int[capacity];
+    this.start = new int[capacity];
+    this.count = new int[capacity];
+  }
+
+  // Shares the layout of another hierarchy over the same portals
+  private PortalBvh(PortalBvh layout, PortalManager.PortalResult[] entries) {
+    this.entries = entries;
+    this.bounds = layout.bounds;
+    this.left = layout.left;
+    this.right = layout.right;
+    this.start = layout.start;
+    this.count = layout.count;
+    this.nodes = layout.nodes;
+  }
+
+  /**
+   * Builds a hierarchy over the given entries.
+   *
+   * @param source the entries to index
+   * @return the hierarchy, or null if there are no entries
+   */
+  static PortalBvh build(List<PortalManager.PortalResult> source) {
+    if (source.isEmpty()) {
+      return null;
+    }
+    PortalBvh bvh = new PortalBvh(source.toArray(new PortalManager.PortalResult[0]));
+    bvh.buildNode(0, bvh.entries.length);
+    return bvh;
+  }
+
+  /**
+   * Gets the indexed entries.
+   *
+   * @return the entries, in hierarchy order
+   */
+  List<PortalManager.PortalResult> entries() {
+    return Arrays.asList(entries);
+  }
+
+  /**
+   * Returns a hierarchy over the same portals with each entry passed through a
+   * function that keeps its portal. The node layout is shared, so nothing is rebuilt.
+   *
+   * @param refresh maps an entry to its replacement for the same portal
+   * @return the new hierarchy, or this one if every entry is kept
+   */
+  PortalBvh withEntries(UnaryOperator<PortalManager.PortalResult> refresh) {
+    PortalManager.PortalResult[] refreshed = null;
+    for (int i = 0; i < entries.length; i++) {
+      PortalManager.PortalResult entry = refresh.apply(entries[i]);
+      if (entry != entries[i]) {
+        if (refreshed == null) {
+          refreshed = entries.clone();
+        }
+        refreshed[i] = entry;
+      }
+    }
+    return refreshed == null ? this : new PortalBvh(this, refreshed);
+  }
+
+  /**
+   * Finds the first portal whose hitbox contains the point.
+   *
+   * @param x the X coordinate
+   * @param y the Y coordinate
+   * @param z the Z coordinate
+   * @return the matching entry, or null if none
+   */
+  PortalManager.PortalResult find(double x, double y, double z) {
+    return find(0, x, y, z);
+  }
+
+  private PortalManager.PortalResult find(int node, double x, double y, double z) {
+    int b = node * 6;
+    if (x < bounds[b] || y < bounds[b + 1] || z < bounds[b + 2]
+        || x > bounds[b + 3] || y > bounds[b + 4] || z > bounds[b + 5]) {
+      return null;
+    }
+    int n = count[node];
+    if (n > 0) {
+      for (int i = start[node], end = start[node] + n; i < end; i++) {
+        if (entries[i].getPortal().contains(x, y, z)) {
+          return entries[i];
+        }
+      }
+      return null;
+    }
+    PortalManager.PortalResult hit = find(left[node], x, y, z);
+    return hit != null ? hit : find(right[node], x, y, z);
+  }
+
+  /**
+   * Checks whether any portal's bounds intersect the given box.
+   *
+   * @param minX the box minimum X
+   * @param minY the box minimum Y
+   * @param minZ the box minimum Z
+   * @param maxX the box maximum X
+   * @param maxY the box maximum Y
+   * @param maxZ the box maximum Z
+   * @return true if at least one portal's bounds intersect the box
+   */
+  boolean intersects(double minX, double minY, double minZ,
+      double maxX, double maxY, double maxZ) {
+    return intersects(0, minX, minY, minZ, maxX, maxY, maxZ);
+  }
+
+  private boolean intersects(int node, double minX, double minY, double minZ,
+      double maxX, double maxY, double maxZ) {
+    int b = node * 6;
+    if (maxX < bounds[b] || maxY < bounds[b + 1] || maxZ < bounds[b + 2]
+        || minX > bounds[b + 3] || minY > bounds[b + 4] || minZ > bounds[b + 5]) {
+      return false;
+    }
+    int n = count[node];
+    if (n > 0) {
+      for (int i = start[node], end = start[node] + n; i < end; i++) {
+        Portal portal = entries[i].getPortal();
+        if (maxX >= portal.getMinX() && minX <= portal.getMaxX()
+            && maxY >= portal.getMinY() && minY <= portal.getMaxY()
+            && maxZ >= portal.getMinZ() && minZ <= portal.getMaxZ()) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return intersects(left[node], minX, minY, minZ, maxX, maxY, maxZ)
+        || intersects(right[node], minX, minY, minZ, maxX, maxY, maxZ);
+  }
+
+  /**
+   * Computes the squared distance from a point to the nearest portal bounds.
+   * Subtrees farther than the current best are pruned.
+   *
+   * @param x the X coordinate
+   * @param y the Y coordinate
+   * @param z the Z coordinate
+   * @param limitSq the squared distance beyond which results are not needed
+   * @return the squared distance, or {@code limitSq} if nothing is closer
+   */
+  double nearestDistanceSq(double x, double y, double z, double limitSq) {
+    return nearestDistanceSq(0, x, y, z, limitSq);
+  }
+
+  private double nearestDistanceSq(int node, double x, double y, double z, double best) {
+    int b = node * 6;
+    if (boxDistanceSq(x, y, z, bounds[b], bounds[b + 1], bounds[b + 2],
+        bounds[b + 3], bounds[b + 4], bounds[b + 5]) >= best) {
+      return best;
+    }
+    int n = count[node];
+    if (n > 0) {
+      for (int i = start[node], end = start[node] + n; i < end; i++) {
+        Portal portal = entries[i].getPortal();
+        double d = boxDistanceSq(x, y, z, portal.getMinX(), portal.getMinY(), portal.getMinZ(),
+            portal.getMaxX(), portal.getMaxY(), portal.getMaxZ());
+        if (d < best) {
+          best = d;
+        }
+      }
+      return best;
+    }
+    best = nearestDistanceSq(left[node], x, y, z, best);
+    return nearestDistanceSq(right[node], x, y, z, best);
+  }
+
+  /**
+   * Collects every entry whose portal bounds lie within a distance of the point.
+   *
+   * @param x the X coordinate
+   * @param y the Y coordinate
+   * @param z the Z coordinate
+   * @param radiusSq the squared search radius
+   * @param out the list receiving the matching entries
+   */
+  void collectWithin(double x, double y, double z, double radiusSq,
+      List<PortalManager.PortalResult> out) {
+    collectWithin(0, x, y, z, radiusSq, out);
+  }
+
+  private void collectWithin(int node, double x, double y, double z, double radiusSq,
+      List<PortalManager.PortalResult> out) {
+    int b = node * 6;
+    if (boxDistanceSq(x, y, z, bounds[b], bounds[b + 1], bounds[b + 2],
+        bounds[b + 3], bounds[b + 4], bounds[b + 5]) > radiusSq) {
+      return;
+    }
+    int n = count[node];
+    if (n > 0) {
+      for (int i = start[node], end = start[node] + n; i < end; i++) {
+        Portal portal = entries[i].getPortal();
+        if (boxDistanceSq(x, y, z, portal.getMinX(), portal.getMinY(), portal.getMinZ(),
+            portal.getMaxX(), portal.getMaxY(), portal.getMaxZ()) <= radiusSq) {
+          out.add(entries[i]);
+        }
+      }
+      return;
+    }
+    collectWithin(left[node], x, y, z, radiusSq, out);
+    collectWithin(right[node], x, y, z, radiusSq, out);
+  }
+
+  private static double boxDistanceSq(double x, double y, double z, double minX, double minY,
+      double minZ, double maxX, double maxY, double maxZ) {
+    double dx = x < minX ? minX - x : (x > maxX ? x - maxX : 0);
+    double dy = y < minY ? minY - y : (y > maxY ? y - maxY : 0);
+    double dz = z < minZ ? minZ - z : (z > maxZ ? z - maxZ : 0);
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  private int buildNode(int from, int to) {
+    int node = nodes++;
+    int b = node * 6;
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double minZ = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double maxZ = Double.NEGATIVE_INFINITY;
+    for (int i = from; i < to; i++) {
+      Portal portal = entries[i].getPortal();
+      minX = Math.min(minX, portal.getMinX());
+      minY = Math.min(minY, portal.getMinY());
+      minZ = Math.min(minZ, portal.getMinZ());
+      maxX = Math.max(maxX, portal.getMaxX());
+      maxY = Math.max(maxY, portal.getMaxY());
+      maxZ = Math.max(maxZ, portal.getMaxZ());
+    }
+    bounds[b] = minX;
+    bounds[b + 1] = minY;
+    bounds[b + 2] = minZ;
+    bounds[b + 3] = maxX;
+    bounds[b + 4] = maxY;
+    bounds[b + 5] = maxZ;
+
+    if (to - from <= LEAF_SIZE) {
+      start[node] = from;
+      count[node] = to - from;
+      return node;
+    }
+
+    double spanX = maxX - minX;
+    double spanY = maxY - minY;
+    double spanZ = maxZ - minZ;
+    Comparator<PortalManager.PortalResult> axis;
+    if (spanX >= spanY && spanX >= spanZ) {
+      axis = Comparator.comparingDouble(e -> e.getPortal().getMinX() + e.getPortal().getMaxX());
+    } else if (spanZ >= spanY) {
+      axis = Comparator.comparingDouble(e -> e.getPortal().getMinZ() + e.getPortal().getMaxZ());
+    } else {
+      axis = Comparator.comparingDouble(e -> e.getPortal().getMinY() + e.getPortal().getMaxY());
+    }
+    Arrays.sort(entries, from, to, axis);
+    int mid = (from + to) >>> 1;
+    left[node] = buildNode(from, mid);
+    right[node] = buildNode(mid, to);
+    return node;
+  }
+}
@@ -0,0 +1,409 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Append-only journal of portal changes, kept next to the groups snapshot.
+ *
+ * <p>Each change is one record holding only the affected portal, so changing one
+ * portal costs a few hundred bytes instead of a rewrite of every portal. Records
+ * are appended and forced to disk in batches by a virtual thread. Once the
+ * journal grows past a threshold the same thread writes a new snapshot and
+ * truncates the journal. Startup loads the snapshot and replays the journal
+ * over it.
+ *
+ * <p>A record is framed as its length, a CRC32 and the body, so a record torn
+ * by a crash is detected and dropped on replay. Records describe the full state
+ * of a portal, which makes replaying one twice harmless.
+ */
+public class PortalJournal {
+  private static final byte OP_PUT = 1;
+  private static final byte OP_REMOVE = 2;
+  private static final byte OP_REMOVE_GROUP = 3;
+
+  private final Logger logger;
+  private final Path path;
+  private final BooleanSupplier snapshotWriter;
+  private final Object lock = new Object();
+  private final List<byte[]> pending = new ArrayList<>();
+  private volatile long compactBytes;
+  private boolean compactRequested;
+  private boolean closing;
+  private Thread writer;
+  private FileChannel channel;
+  private long size;
+
+  private final LongAdder records = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder compactions = new LongAdder();
+  private volatile long lastCompactMicros;
+
+  /**
+   * Creates a new journal. Call {@link #start()} to run it.
+   *
+   * @param logger the logger for write failures
+   * @param path the journal file
+   * @param snapshotWriter writes a full snapshot and reports whether it succeeded
+   * @param compactBytes journal size that triggers a compaction
+   */
+  public PortalJournal(Logger logger, Path path, BooleanSupplier snapshotWriter,
+      long compactBytes) {
+    this.logger = logger;
+    this.path = path;
+    this.snapshotWriter = snapshotWriter;
+    this.compactBytes = Math.max(1, compactBytes);
+  }
+
+  /**
+   * Starts the writer thread. A journal left over from the previous run, already
+   * replayed by then, is compacted first.
+   */
+  public void start() {
+    synchronized (lock) {
+      if (writer != null) {
+        return;
+      }
+      try {
+        compactRequested = Files.exists(path) && Files.size(path) > 0;
+      } catch (IOException e) {
+        compactRequested = true;
+      }
+      writer = Thread.ofVirtual()
+          .name("EtherealPortals-journal")
+          .start(this::run);
+    }
+  }
+
+  /**
+   * Updates the compaction threshold.
+   *
+   * @param compactBytes journal size that triggers a compaction
+   */
+  public void setCompactBytes(long compactBytes) {
+    this.compactBytes = Math.max(1, compactBytes);
+  }
+
+  /**
+   * Records the current state of a portal.
+   *
+   * @param groupName the group name
+   * @param portal the portal
+   */
+  public void put(String groupName, Portal portal) {
+    YamlConfiguration data = new YamlConfiguration();
+    portal.serialize(data);
+    append(encode(OP_PUT, groupName, portal.getName(), data.saveToString()));
+  }
+
+  /**
+   * Records the removal of a portal.
+   *
+   * @param groupName the group name
+   * @param portalName the portal name
+   */
+  public void remove(String groupName, String portalName) {
+    append(encode(OP_REMOVE, groupName, portalName, ""));
+  }
+
+  /**
+   * Records the removal of a group and its portals.
+   *
+   * @param groupName the group name
+   */
+  public void removeGroup(String groupName) {
+    append(encode(OP_REMOVE_GROUP, groupName, "", ""));
+  }
+
+  /**
+   * Asks the writer to fold the journal into a new snapshot now.
+   */
+  public void requestCompaction() {
+    synchronized (lock) {
+      if (!closing) {
+        compactRequested = true;
+        lock.notifyAll();
+        return;
+      }
+    }
+    compact();
+  }
+
+  /**
+   * Appends pending records and stops the writer thread, waiting at most the
+   * given time. Records added afterwards are appended on the calling thread.
+   *
+   * @param timeoutMillis maximum time to wait
+   * @return true if every record was written in time
+   */
+  public boolean close(long timeoutMillis) {
+    Thread current;
+    synchronized (lock) {
+      closing = true;
+      lock.notifyAll();
+      current = writer;
+    }
+    if (current == null) {
+      return true;
+    }
+    try {
+      current.join(Math.max(1, timeoutMillis));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (current.isAlive()) {
+      logger.warning("Timed out writing " + path.getFileName() + "; latest changes may be lost");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Replays a journal over the groups loaded from a snapshot. A torn or corrupt
+   * record ends the replay; portals in worlds that are not loaded are skipped,
+   * as when loading the snapshot.
+   *
+   * @param path the journal file
+   * @param table the groups loaded from the snapshot
+   * @param defaultHitbox the hitbox of portals stored without one
+   * @param logger the logger for corrupt records
+   * @return the number of records replayed
+   * @throws IOException if the journal cannot be read
+   */
+  static int replay(Path path, PortalTable table, PortalHitbox defaultHitbox, Logger logger)
+      throws IOException {
+    if (!Files.exists(path)) {
+      return 0;
+    }
+    int count = 0;
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+      while (true) {
+        byte[] body;
+        try {
+          int length = in.readInt();
+          long crc = in.readInt() & 0xFFFFFFFFL;
+          if (length <= 0 || length > (1 << 24)) {
+            logger.warning("Corrupt record in " + path.getFileName() + ", stopping replay");
+            return count;
+          }
+          body = in.readNBytes(length);
+          if (body.length < length || crc(body) != crc) {
+            logger.warning("Torn record at the end of " + path.getFileName() + ", ignored");
+            return count;
+          }
+        } catch (EOFException e) {
+          return count;
+        }
+        apply(body, table, defaultHitbox);
+        count++;
+      }
+    }
+  }
+
+  public long getRecords() {
+    return records.sum();
+  }
+
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  public long getCompactions() {
+    return compactions.sum();
+  }
+
+  /**
+   * Gets the duration of the last compaction, snapshot included.
+   *
+   * @return the duration in microseconds
+   */
+  public long getLastCompactMicros() {
+    return lastCompactMicros;
+  }
+
+  /**
+   * Gets the current size of the journal file.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  private void append(byte[] record) {
+    synchronized (lock) {
+      if (!closing) {
+        pending.add(record);
+        lock.notifyAll();
+        return;
+      }
+    }
+    write(List.of(record));
+  }
+
+  private void run() {
+    while (true) {
+      List<byte[]> batch;
+      boolean compactNow;
+      synchronized (lock) {
+        try {
+          while (pending.isEmpty() && !compactRequested && !closing) {
+            lock.wait();
+          }
+        } catch (InterruptedException e) {
+          closing = true;
+        }
+        batch = new ArrayList<>(pending);
+        pending.clear();
+        compactNow = compactRequested;
+        compactRequested = false;
+        if (batch.isEmpty() && !compactNow) {
+          writer = null;
+          closeChannel();
+          return;
+        }
+      }
+      write(batch);
+      if (compactNow || getSize() >= compactBytes) {
+        compact();
+      }
+    }
+  }
+
+  private synchronized void write(List<byte[]> batch) {
+    try {
+      if (channel == null) {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+      }
+      for (byte[] record : batch) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        size += record.length;
+        records.increment();
+        bytes.add(record.length);
+      }
+      channel.force(false);
+    } catch (IOException e) {
+      logger.severe("Failed to append to " + path.getFileName() + ": " + e.getMessage());
+      closeChannel();
+    }
+  }
+
+  // Records still queued are appended after the truncation; replaying them over
+  // the new snapshot is harmless since records carry full portal state
+  private synchronized void compact() {
+    long start = System.nanoTime();
+    if (!snapshotWriter.getAsBoolean()) {
+      return; // keep the journal, the old snapshot still needs it
+    }
+    try {
+      if (channel == null) {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      }
+      channel.truncate(0);
+      channel.force(true);
+      size = 0;
+      compactions.increment();
+    } catch (IOException e) {
+      logger.severe("Failed to truncate " + path.getFileName() + ": " + e.getMessage());
+      closeChannel();
+    }
+    lastCompactMicros = (System.nanoTime() - start) / 1000;
+  }
+
+  private synchronized void closeChannel() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.warning("Failed to close " + path.getFileName() + ": " + e.getMessage());
+      }
+      channel = null;
+    }
+  }
+
+  private static byte[] encode(byte op, String groupName, String portalName, String data) {
+    try {
+      ByteArrayOutputStream body = new ByteArrayOutputStream(64 + data.length());
+      DataOutputStream out = new DataOutputStream(body);
+      out.writeByte(op);
+      out.writeUTF(groupName);
+      out.writeUTF(portalName);
+      out.writeUTF(data);
+      byte[] bodyBytes = body.toByteArray();
+      ByteBuffer record = ByteBuffer.allocate(8 + bodyBytes.length);
+      record.putInt(bodyBytes.length);
+      record.putInt((int) crc(bodyBytes));
+      record.put(bodyBytes);
+      return record.array();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void apply(byte[] body, PortalTable table, PortalHitbox defaultHitbox)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    byte op = in.readByte();
+    String groupName = in.readUTF();
+    String portalName = in.readUTF();
+    String data = in.readUTF();
+    switch (op) {
+      case OP_PUT: {
+        YamlConfiguration portal = new YamlConfiguration();
+        try {
+          portal.loadFromString(data);
+        } catch (InvalidConfigurationException e) {
+          throw new IOException("Invalid portal record for " + groupName + "." + portalName, e);
+        }
+        String worldName = portal.getString("world");
+        World world = worldName == null ? null : Bukkit.getWorld(worldName);
+        if (world != null) {
+          table.put(groupName, Portal.deserialize(portalName, portal, world, defaultHitbox));
+        }
+        break;
+      }
+      case OP_REMOVE:
+        table.remove(groupName, portalName);
+        break;
+      case OP_REMOVE_GROUP:
+        table.removeGroup(groupName);
+        break;
+      default:
+        throw new IOException("Unknown journal record type " + op);
+    }
+  }
+
+  private static long crc(byte[] body) {
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    return crc.getValue();
+  }
+}
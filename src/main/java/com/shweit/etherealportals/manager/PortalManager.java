@@ -2,19 +2,31 @@ package fr.kazotaruumc72.etherealportals.manager;
 
 import fr.kazotaruumc72.etherealportals.model.Portal;
 import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.List;
 import org.bukkit.Location;
-import org.bukkit.World;
 
 /**
  * Manages portal groups and portals in memory.
+ * Reads go through an immutable {@link PortalRegistry} snapshot held in a single
+ * volatile field, so region threads never lock; writers serialize on a private
+ * lock and publish a new snapshot.
  */
 public class PortalManager {
-  private final Map<String, PortalGroup> groups = new LinkedHashMap<>();
+  private final Object writeLock = new Object();
+  private volatile PortalRegistry registry = PortalRegistry.EMPTY;
+  private volatile PortalHitbox defaultHitbox;
+
+  /**
+   * Creates a new portal manager.
+   *
+   * @param defaultHitbox the hitbox given to portals created without one
+   */
+  public PortalManager(PortalHitbox defaultHitbox) {
+    this.defaultHitbox = defaultHitbox;
+  }
 
   /**
    * Result class that contains both a portal and its parent group.
@@ -43,8 +55,46 @@ public class PortalManager {
     }
   }
 
+  /**
+   * Gets the current registry snapshot. Callers that read several values should
+   * hold on to one snapshot so they observe a consistent view.
+   *
+   * @return the current snapshot
+   */
+  public PortalRegistry snapshot() {
+    return registry;
+  }
+
+  public PortalHitbox getDefaultHitbox() {
+    return defaultHitbox;
+  }
+
+  /**
+   * Sets the hitbox of portals without their own, e.g. after a config reload.
+   * Portals whose hitbox was set explicitly keep it.
+   *
+   * @param defaultHitbox the default hitbox
+   */
+  public void setDefaultHitbox(PortalHitbox defaultHitbox) {
+    synchronized (writeLock) {
+      if (defaultHitbox.equals(this.defaultHitbox)) {
+        return;
+      }
+      this.defaultHitbox = defaultHitbox;
+      List<PortalGroup> groups = new ArrayList<>();
+      for (PortalGroup group : registry.getGroups()) {
+        List<Portal> portals = new ArrayList<>(group.getPortals().size());
+        for (Portal portal : group.getPortals()) {
+          portals.add(portal.hasCustomHitbox() ? portal : portal.withDefaultHitbox(defaultHitbox));
+        }
+        groups.add(new PortalGroup(group.getName(), portals));
+      }
+      registry = registry.withGroups(groups);
+    }
+  }
+
   public Collection<PortalGroup> getGroups() {
-    return Collections.unmodifiableCollection(groups.values());
+    return registry.getGroups();
   }
 
   /**
@@ -54,7 +104,7 @@ public class PortalManager {
    * @return the group, or null if not found
    */
   public PortalGroup getGroup(String name) {
-    return groups.get(name.toLowerCase());
+    return registry.getGroup(name);
   }
 
   /**
@@ -64,7 +114,16 @@ public class PortalManager {
    * @return the existing or newly created group
    */
   public PortalGroup createGroupIfAbsent(String name) {
-    return groups.computeIfAbsent(name.toLowerCase(), k -> new PortalGroup(name));
+    synchronized (writeLock) {
+      PortalRegistry current = registry;
+      PortalGroup existing = current.getGroup(name);
+      if (existing != null) {
+        return existing;
+      }
+      PortalGroup created = new PortalGroup(name);
+      registry = current.withGroup(null, created);
+      return created;
+    }
   }
 
   /**
@@ -74,7 +133,15 @@ public class PortalManager {
    * @return true if deleted, false if not found
    */
   public boolean deleteGroup(String name) {
-    return groups.remove(name.toLowerCase()) != null;
+    synchronized (writeLock) {
+      PortalRegistry current = registry;
+      PortalGroup existing = current.getGroup(name);
+      if (existing == null) {
+        return false;
+      }
+      registry = current.withGroup(existing, null);
+      return true;
+    }
   }
 
   /**
@@ -102,8 +169,28 @@ public class PortalManager {
    */
   public boolean addPortal(String groupName, String portalName, Location loc,
       String icon, boolean breakable) {
-    PortalGroup group = createGroupIfAbsent(groupName);
-    return group.addPortal(new Portal(portalName, loc, icon, breakable));
+    return addPortal(groupName, new Portal(portalName, loc, icon, breakable, defaultHitbox));
+  }
+
+  /**
+   * Adds an existing portal instance to a group, creating the group if needed.
+   *
+   * @param groupName the group name
+   * @param portal the portal
+   * @return true if added, false if a portal with that name already exists
+   */
+  public boolean addPortal(String groupName, Portal portal) {
+    synchronized (writeLock) {
+      PortalRegistry current = registry;
+      PortalGroup existing = current.getGroup(groupName);
+      PortalGroup base = existing != null ? existing : new PortalGroup(groupName);
+      PortalGroup updated = base.withPortal(portal);
+      if (updated == null) {
+        return false;
+      }
+      registry = current.withGroup(existing, updated);
+      return true;
+    }
   }
 
   /**
@@ -114,49 +201,76 @@ public class PortalManager {
    * @return true if removed, false if not found
    */
   public boolean removePortal(String groupName, String portalName) {
-    PortalGroup group = getGroup(groupName);
-    if (group == null) {
-      return false;
+    // keep group unless explicitly deleted
+    return removePortal(groupName, portalName, false);
+  }
+
+  /**
+   * Removes a portal from a group and, if asked, the group it leaves empty, in
+   * one snapshot. A portal added to the group concurrently keeps the group.
+   *
+   * @param groupName the group name
+   * @param portalName the portal name
+   * @param dropIfEmpty whether to delete the group if this was its last portal
+   * @return true if removed, false if not found
+   */
+  public boolean removePortal(String groupName, String portalName, boolean dropIfEmpty) {
+    synchronized (writeLock) {
+      PortalRegistry current = registry;
+      PortalGroup existing = current.getGroup(groupName);
+      if (existing == null) {
+        return false;
+      }
+      PortalGroup updated = existing.withoutPortal(portalName);
+      if (updated == null) {
+        return false;
+      }
+      registry = current.withGroup(existing, dropIfEmpty && updated.isEmpty() ? null : updated);
+      return true;
     }
-    boolean removed = group.removePortal(portalName);
-    if (removed && group.isEmpty()) {
-      // keep group unless explicitly deleted
+  }
+
+  /**
+   * Replaces the hitbox of a portal.
+   *
+   * @param groupName the group name
+   * @param portalName the portal name
+   * @param hitbox the new hitbox
+   * @return true if updated, false if the portal was not found
+   */
+  public boolean setHitbox(String groupName, String portalName, PortalHitbox hitbox) {
+    synchronized (writeLock) {
+      PortalRegistry current = registry;
+      PortalGroup existing = current.getGroup(groupName);
+      Portal portal = existing == null ? null : existing.getPortal(portalName);
+      if (portal == null) {
+        return false;
+      }
+      PortalGroup updated = existing.withReplacedPortal(portal.withHitbox(hitbox));
+      registry = current.withGroup(existing, updated);
+      return true;
+    }
+  }
+
+  /**
+   * Replaces every group at once, building the spatial index in a single pass.
+   * Used when loading persisted data.
+   *
+   * @param groups the groups to publish
+   */
+  public void replaceAll(Collection<PortalGroup> groups) {
+    synchronized (writeLock) {
+      registry = registry.withGroups(groups);
     }
-    return removed;
   }
 
   /**
    * Finds a portal at the given location.
    *
    * @param playerLoc the player location
-   * @param width the portal width
-   * @param depth the portal depth
-   * @param height the portal height
    * @return the portal result, or null if no portal found
    */
-  public PortalResult findPortalAt(Location playerLoc, double width,
-      double depth, double height) {
-    World world = playerLoc.getWorld();
-    for (PortalGroup group : groups.values()) {
-      for (Portal portal : group.getPortals()) {
-        Location base = portal.getBaseLocation();
-        if (!Objects.equals(world, base.getWorld())) {
-          continue;
-        }
-        double minX = base.getX() - (width - 1) / 2.0;
-        double maxX = base.getX() + (width + 1) / 2.0;
-        double minY = base.getY();
-        double maxY = base.getY() + height;
-        double minZ = base.getZ() - (depth - 1) / 2.0;
-        double maxZ = base.getZ() + (depth + 1) / 2.0;
-        double x = playerLoc.getX();
-        double y = playerLoc.getY();
-        double z = playerLoc.getZ();
-        if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
-          return new PortalResult(portal, group);
-        }
-      }
-    }
-    return null;
+  public PortalResult findPortalAt(Location playerLoc) {
+    return registry.findPortalAt(playerLoc);
   }
 }
@@ -0,0 +1,125 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import java.util.Collection;
+import java.util.List;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Immutable, versioned snapshot of every portal group and the spatial index over them.
+ * A snapshot never changes once published, so it can be read from any region thread
+ * without locking; writers derive a new snapshot that shares all untouched groups
+ * and index regions.
+ */
+public final class PortalRegistry {
+  static final PortalRegistry EMPTY =
+      new PortalRegistry(0L, GroupMap.EMPTY, PortalSpatialIndex.EMPTY);
+
+  private final long version;
+  private final GroupMap groups;
+  private final PortalSpatialIndex index;
+
+  private PortalRegistry(long version, GroupMap groups, PortalSpatialIndex index) {
+    this.version = version;
+    this.groups = groups;
+    this.index = index;
+  }
+
+  /**
+   * Gets the version of this snapshot. Each published change increments it.
+   *
+   * @return the snapshot version
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public Collection<PortalGroup> getGroups() {
+    return groups.values();
+  }
+
+  /**
+   * Gets a portal group by name (case-insensitive).
+   *
+   * @param name the group name
+   * @return the group, or null if not found
+   */
+  public PortalGroup getGroup(String name) {
+    return groups.get(name.toLowerCase());
+  }
+
+  /**
+   * Finds a portal at the given location.
+   *
+   * @param loc the location to test
+   * @return the portal result, or null if no portal found
+   */
+  public PortalManager.PortalResult findPortalAt(Location loc) {
+    return index.find(loc);
+  }
+
+  /**
+   * Checks that no portal can contain any point of the given block.
+   *
+   * @param world the world
+   * @param blockX the block X coordinate
+   * @param blockY the block Y coordinate
+   * @param blockZ the block Z coordinate
+   * @return true if the block is clear of every portal
+   */
+  public boolean isBlockClear(World world, int blockX, int blockY, int blockZ) {
+    return index.isBlockClear(world, blockX, blockY, blockZ);
+  }
+
+  /**
+   * Gets a lower bound on the distance from a location to the nearest portal.
+   *
+   * @param loc the location
+   * @param maxDistance the search radius
+   * @return the distance, or {@code maxDistance} if no portal is closer
+   */
+  public double clearance(Location loc, double maxDistance) {
+    return index.clearance(loc, maxDistance);
+  }
+
+  /**
+   * Finds the portals whose bounds lie within a distance of a location.
+   *
+   * @param loc the location
+   * @param radius the search radius
+   * @return the matching portals
+   */
+  public List<PortalManager.PortalResult> findPortalsNear(Location loc, double radius) {
+    return index.nearby(loc, radius);
+  }
+
+  /**
+   * Derives a snapshot in which {@code previous} is replaced by {@code updated}.
+   *
+   * @param previous the group being replaced, or null when adding a new group
+   * @param updated the new group, or null when deleting {@code previous}
+   * @return the next snapshot
+   */
+  PortalRegistry withGroup(PortalGroup previous, PortalGroup updated) {
+    GroupMap next = updated == null ? groups.remove(previous.getKey()) : groups.put(updated);
+    PortalSpatialIndex nextIndex = index.update(
+        previous == null ? List.of() : List.of(previous),
+        updated == null ? List.of() : List.of(updated));
+    return new PortalRegistry(version + 1, next, nextIndex);
+  }
+
+  /**
+   * Derives a snapshot holding exactly the given groups.
+   *
+   * @param replacement the groups of the next snapshot
+   * @return the next snapshot
+   */
+  PortalRegistry withGroups(Collection<PortalGroup> replacement) {
+    GroupMap next = GroupMap.EMPTY;
+    for (PortalGroup group : replacement) {
+      next = next.put(group);
+    }
+    return new PortalRegistry(version + 1, next, PortalSpatialIndex.of(next.values()));
+  }
+}
@@ -0,0 +1,329 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Immutable per-world spatial index of portal hitboxes.
+ *
+ * <p>Each world is split into regions of 32x32 chunks keyed by packed coordinates.
+ * A portal is registered in every region its hitbox bounds overlap, and each region
+ * holds a {@link PortalBvh} over its portals, so a point lookup resolves one region
+ * and then descends a logarithmic hierarchy. An update rebuilds only the regions it
+ * touches and shares every other region with the previous index.
+ */
+final class PortalSpatialIndex {
+  static final PortalSpatialIndex EMPTY = new PortalSpatialIndex(Collections.emptyMap());
+
+  private static final int REGION_SHIFT = 9; // 512 blocks, 32x32 chunks
+
+  private final Map<UUID, LongTable<PortalBvh>> worlds;
+
+  private PortalSpatialIndex(Map<UUID, LongTable<PortalBvh>> worlds) {
+    this.worlds = worlds;
+  }
+
+  /**
+   * Packs two int coordinates into a single long key.
+   *
+   * @param x the x coordinate
+   * @param z the z coordinate
+   * @return the packed key
+   */
+  static long pack(int x, int z) {
+    return ((long) z << 32) | (x & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Builds an index holding every portal of the given groups.
+   *
+   * @param groups the groups to index
+   * @return the new index
+   */
+  static PortalSpatialIndex of(Collection<PortalGroup> groups) {
+    return EMPTY.update(Collections.emptyList(), groups);
+  }
+
+  /**
+   * Returns a copy of this index with the portals of {@code removed} dropped and
+   * the portals of {@code added} indexed. Portals are matched by identity: a portal
+   * listed on both sides keeps its place in the hierarchy, so replacing a group only
+   * rebuilds the regions of the portals that changed. The entries of the other
+   * portals are pointed at the new version of their group, which lets lookups
+   * return entries as they are.
+   *
+   * @param removed groups whose portals should be dropped
+   * @param added groups whose portals should be indexed
+   * @return the new index
+   */
+  PortalSpatialIndex update(Collection<PortalGroup> removed, Collection<PortalGroup> added) {
+    Set<Portal> previous = identitySet(removed);
+    Set<Portal> current = identitySet(added);
+    Map<UUID, Map<Long, List<PortalManager.PortalResult>>> touched = new HashMap<>();
+    Map<UUID, Set<Long>> regrouped = new HashMap<>();
+    for (Portal portal : previous) {
+      if (current.contains(portal)) {
+        continue;
+      }
+      for (List<PortalManager.PortalResult> region : regions(touched, portal)) {
+        region.removeIf(entry -> entry.getPortal() == portal);
+      }
+    }
+    for (PortalGroup group : added) {
+      for (Portal portal : group.getPortals()) {
+        if (previous.contains(portal)) {
+          World world = portal.getBaseLocation().getWorld();
+          if (world != null) {
+            Set<Long> keys = regrouped.computeIfAbsent(world.getUID(), k -> new HashSet<>());
+            for (long key : regionKeys(portal)) {
+              keys.add(key);
+            }
+          }
+          continue;
+        }
+        PortalManager.PortalResult entry = new PortalManager.PortalResult(portal, group);
+        for (List<PortalManager.PortalResult> region : regions(touched, portal)) {
+          region.add(entry);
+        }
+      }
+    }
+    if (touched.isEmpty() && regrouped.isEmpty()) {
+      return this;
+    }
+
+    // One refreshed entry per portal, shared by every region the portal spans
+    Map<PortalGroup, PortalGroup> successors = successors(removed, added);
+    Map<Portal, PortalManager.PortalResult> refreshed = new IdentityHashMap<>();
+    UnaryOperator<PortalManager.PortalResult> refresh = entry -> {
+      PortalGroup next = successors.get(entry.getGroup());
+      return next == null ? entry : refreshed.computeIfAbsent(entry.getPortal(),
+          portal -> new PortalManager.PortalResult(portal, next));
+    };
+    Set<UUID> worldIds = new HashSet<>(touched.keySet());
+    worldIds.addAll(regrouped.keySet());
+    Map<UUID, LongTable<PortalBvh>> newWorlds = new HashMap<>(worlds);
+    for (UUID worldId : worldIds) {
+      Map<Long, PortalBvh> regions = new HashMap<>();
+      LongTable<PortalBvh> existing = worlds.get(worldId);
+      if (existing != null) {
+        existing.forEach(regions::put);
+      }
+      Map<Long, List<PortalManager.PortalResult>> rebuilt =
+          touched.getOrDefault(worldId, Collections.emptyMap());
+      for (long key : regrouped.getOrDefault(worldId, Collections.emptySet())) {
+        PortalBvh bvh = regions.get(key);
+        if (bvh != null && !rebuilt.containsKey(key)) {
+          regions.put(key, bvh.withEntries(refresh));
+        }
+      }
+      rebuilt.forEach((key, entries) -> {
+        entries.replaceAll(refresh);
+        regions.put(key, PortalBvh.build(entries));
+      });
+      regions.values().removeIf(bvh -> bvh == null);
+      if (regions.isEmpty()) {
+        newWorlds.remove(worldId);
+      } else {
+        newWorlds.put(worldId, LongTable.of(regions));
+      }
+    }
+    return new PortalSpatialIndex(Collections.unmodifiableMap(newWorlds));
+  }
+
+  /**
+   * Finds the first portal whose hitbox contains the given location.
+   *
+   * @param loc the location to test
+   * @return the matching portal result, or null if none
+   */
+  PortalManager.PortalResult find(Location loc) {
+    World world = loc.getWorld();
+    if (world == null) {
+      return null;
+    }
+    LongTable<PortalBvh> regions = worlds.get(world.getUID());
+    if (regions == null) {
+      return null;
+    }
+    double x = loc.getX();
+    double z = loc.getZ();
+    PortalBvh region = regions.get(
+        pack((int) Math.floor(x) >> REGION_SHIFT, (int) Math.floor(z) >> REGION_SHIFT));
+    return region == null ? null : region.find(x, loc.getY(), z);
+  }
+
+  /**
+   * Checks that no portal bounds intersect the given block, meaning no point
+   * inside the block can be inside a portal.
+   *
+   * @param world the world
+   * @param blockX the block X coordinate
+   * @param blockY the block Y coordinate
+   * @param blockZ the block Z coordinate
+   * @return true if the block is clear of every portal
+   */
+  boolean isBlockClear(World world, int blockX, int blockY, int blockZ) {
+    LongTable<PortalBvh> regions = worlds.get(world.getUID());
+    if (regions == null) {
+      return true;
+    }
+    PortalBvh region = regions.get(pack(blockX >> REGION_SHIFT, blockZ >> REGION_SHIFT));
+    return region == null
+        || !region.intersects(blockX, blockY, blockZ, blockX + 1, blockY + 1, blockZ + 1);
+  }
+
+  /**
+   * Computes the distance from a location to the nearest portal bounds,
+   * searching no farther than {@code maxDistance}.
+   *
+   * @param loc the location
+   * @param maxDistance the search radius
+   * @return the distance, or {@code maxDistance} if no portal is closer
+   */
+  double clearance(Location loc, double maxDistance) {
+    World world = loc.getWorld();
+    LongTable<PortalBvh> regions = world == null ? null : worlds.get(world.getUID());
+    if (regions == null) {
+      return maxDistance;
+    }
+    double x = loc.getX();
+    double y = loc.getY();
+    double z = loc.getZ();
+    double best = maxDistance * maxDistance;
+    // Portals are registered in every region they overlap, so the regions covering
+    // the search cube see every portal within reach.
+    int minRx = (int) Math.floor(x - maxDistance) >> REGION_SHIFT;
+    int maxRx = (int) Math.floor(x + maxDistance) >> REGION_SHIFT;
+    int minRz = (int) Math.floor(z - maxDistance) >> REGION_SHIFT;
+    int maxRz = (int) Math.floor(z + maxDistance) >> REGION_SHIFT;
+    for (int rx = minRx; rx <= maxRx; rx++) {
+      for (int rz = minRz; rz <= maxRz; rz++) {
+        PortalBvh region = regions.get(pack(rx, rz));
+        if (region != null) {
+          best = region.nearestDistanceSq(x, y, z, best);
+        }
+      }
+    }
+    return Math.sqrt(best);
+  }
+
+  /**
+   * Collects the portals whose bounds lie within a distance of a location.
+   *
+   * @param loc the location
+   * @param radius the search radius
+   * @return the matching portals, each listed once
+   */
+  List<PortalManager.PortalResult> nearby(Location loc, double radius) {
+    World world = loc.getWorld();
+    LongTable<PortalBvh> regions = world == null ? null : worlds.get(world.getUID());
+    if (regions == null) {
+      return Collections.emptyList();
+    }
+    double x = loc.getX();
+    double y = loc.getY();
+    double z = loc.getZ();
+    List<PortalManager.PortalResult> found = new ArrayList<>(2);
+    int minRx = (int) Math.floor(x - radius) >> REGION_SHIFT;
+    int maxRx = (int) Math.floor(x + radius) >> REGION_SHIFT;
+    int minRz = (int) Math.floor(z - radius) >> REGION_SHIFT;
+    int maxRz = (int) Math.floor(z + radius) >> REGION_SHIFT;
+    for (int rx = minRx; rx <= maxRx; rx++) {
+      for (int rz = minRz; rz <= maxRz; rz++) {
+        PortalBvh region = regions.get(pack(rx, rz));
+        if (region != null) {
+          region.collectWithin(x, y, z, radius * radius, found);
+        }
+      }
+    }
+    if (minRx == maxRx && minRz == maxRz) {
+      return found;
+    }
+    // Portals spanning several regions are registered in each of them
+    List<PortalManager.PortalResult> unique = new ArrayList<>(found.size());
+    for (PortalManager.PortalResult entry : found) {
+      boolean seen = false;
+      for (PortalManager.PortalResult kept : unique) {
+        if (kept.getPortal() == entry.getPortal()) {
+          seen = true;
+          break;
+        }
+      }
+      if (!seen) {
+        unique.add(entry);
+      }
+    }
+    return unique;
+  }
+
+  private static Set<Portal> identitySet(Collection<PortalGroup> groups) {
+    Set<Portal> portals = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (PortalGroup group : groups) {
+      portals.addAll(group.getPortals());
+    }
+    return portals;
+  }
+
+  // Maps each removed group to the added group registered under the same name
+  private static Map<PortalGroup, PortalGroup> successors(Collection<PortalGroup> removed,
+      Collection<PortalGroup> added) {
+    Map<PortalGroup, PortalGroup> successors = new IdentityHashMap<>();
+    for (PortalGroup before : removed) {
+      for (PortalGroup after : added) {
+        if (before != after && before.getKey().equals(after.getKey())) {
+          successors.put(before, after);
+        }
+      }
+    }
+    return successors;
+  }
+
+  private static long[] regionKeys(Portal portal) {
+    int minRx = (int) Math.floor(portal.getMinX()) >> REGION_SHIFT;
+    int maxRx = (int) Math.floor(portal.getMaxX()) >> REGION_SHIFT;
+    int minRz = (int) Math.floor(portal.getMinZ()) >> REGION_SHIFT;
+    int maxRz = (int) Math.floor(portal.getMaxZ()) >> REGION_SHIFT;
+    long[] keys = new long[(maxRx - minRx + 1) * (maxRz - minRz + 1)];
+    int i = 0;
+    for (int rx = minRx; rx <= maxRx; rx++) {
+      for (int rz = minRz; rz <= maxRz; rz++) {
+        keys[i++] = pack(rx, rz);
+      }
+    }
+    return keys;
+  }
+
+  private List<List<PortalManager.PortalResult>> regions(
+      Map<UUID, Map<Long, List<PortalManager.PortalResult>>> touched, Portal portal) {
+    World world = portal.getBaseLocation().getWorld();
+    if (world == null) {
+      return Collections.emptyList();
+    }
+    UUID worldId = world.getUID();
+    Map<Long, List<PortalManager.PortalResult>> worldRegions =
+        touched.computeIfAbsent(worldId, k -> new HashMap<>());
+    LongTable<PortalBvh> existing = worlds.get(worldId);
+    long[] keys = regionKeys(portal);
+    List<List<PortalManager.PortalResult>> result = new ArrayList<>(keys.length);
+    for (long key : keys) {
+      result.add(worldRegions.computeIfAbsent(key, k -> {
+        PortalBvh bvh = existing == null ? null : existing.get(k);
+        return bvh == null ? new ArrayList<>() : new ArrayList<>(bvh.entries());
+      }));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,97 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Mutable groups being loaded at startup, before they are published as one
+ * registry snapshot. Snapshot readers fill it and the journal is replayed over
+ * it. Names are matched ignoring case, like portal lookups.
+ */
+final class PortalTable {
+  private final Map<String, String> groupNames = new LinkedHashMap<>();
+  private final Map<String, Map<String, Portal>> groups = new LinkedHashMap<>();
+  private int portalCount;
+
+  /**
+   * Adds a group if it does not exist yet.
+   *
+   * @param groupName the group name
+   */
+  void addGroup(String groupName) {
+    String key = groupName.toLowerCase(Locale.ROOT);
+    if (!groups.containsKey(key)) {
+      groupNames.put(key, groupName);
+      groups.put(key, new LinkedHashMap<>());
+    }
+  }
+
+  /**
+   * Adds or replaces a portal, creating its group if needed.
+   *
+   * @param groupName the group name
+   * @param portal the portal
+   */
+  void put(String groupName, Portal portal) {
+    addGroup(groupName);
+    Map<String, Portal> portals = groups.get(groupName.toLowerCase(Locale.ROOT));
+    if (portals.put(portal.getName().toLowerCase(Locale.ROOT), portal) == null) {
+      portalCount++;
+    }
+  }
+
+  /**
+   * Removes a portal. A group left empty is removed with it, as it would not be
+   * saved either.
+   *
+   * @param groupName the group name
+   * @param portalName the portal name
+   */
+  void remove(String groupName, String portalName) {
+    String key = groupName.toLowerCase(Locale.ROOT);
+    Map<String, Portal> portals = groups.get(key);
+    if (portals == null || portals.remove(portalName.toLowerCase(Locale.ROOT)) == null) {
+      return;
+    }
+    portalCount--;
+    if (portals.isEmpty()) {
+      groups.remove(key);
+      groupNames.remove(key);
+    }
+  }
+
+  /**
+   * Removes a group and its portals.
+   *
+   * @param groupName the group name
+   */
+  void removeGroup(String groupName) {
+    String key = groupName.toLowerCase(Locale.ROOT);
+    Map<String, Portal> portals = groups.remove(key);
+    if (portals != null) {
+      portalCount -= portals.size();
+      groupNames.remove(key);
+    }
+  }
+
+  int getPortalCount() {
+    return portalCount;
+  }
+
+  /**
+   * Builds the loaded groups.
+   *
+   * @return the groups, in load order
+   */
+  List<PortalGroup> toGroups() {
+    List<PortalGroup> result = new ArrayList<>(groups.size());
+    groups.forEach((key, portals) ->
+        result.add(new PortalGroup(groupNames.get(key), portals.values())));
+    return result;
+  }
+}
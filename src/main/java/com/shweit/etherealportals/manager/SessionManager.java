@@ -0,0 +1,68 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.PlayerPortalSession;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent store of per-player portal sessions.
+ * Sessions are created lazily on first use and evicted on quit.
+ */
+public class SessionManager {
+  private final Map<UUID, PlayerPortalSession> sessions = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the session of a player, creating it if needed.
+   *
+   * @param uuid the player UUID
+   * @return the session
+   */
+  public PlayerPortalSession get(UUID uuid) {
+    PlayerPortalSession session = sessions.get(uuid);
+    if (session != null) {
+      return session;
+    }
+    return sessions.computeIfAbsent(uuid, PlayerPortalSession::new);
+  }
+
+  /**
+   * Gets the session of a player without creating one.
+   *
+   * @param uuid the player UUID
+   * @return the session, or null if the player has none
+   */
+  public PlayerPortalSession getIfPresent(UUID uuid) {
+    return sessions.get(uuid);
+  }
+
+  /**
+   * Evicts the session of a player.
+   *
+   * @param uuid the player UUID
+   * @return the evicted session, or null if the player had none
+   */
+  public PlayerPortalSession evict(UUID uuid) {
+    return sessions.remove(uuid);
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * Estimates the heap retained by the store.
+   *
+   * @return the estimated size in bytes
+   */
+  public long estimateBytes() {
+    return (long) sessions.size() * PlayerPortalSession.ESTIMATED_BYTES;
+  }
+
+  /**
+   * Removes every session.
+   */
+  public void clear() {
+    sessions.clear();
+  }
+}
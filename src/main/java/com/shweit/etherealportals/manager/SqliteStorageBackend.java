@@ -0,0 +1,518 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import fr.kazotaruumc72.etherealportals.model.PortalIcon;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Stores groups and icons in an SQLite database, {@code portals.db} in the
+ * plugin folder, with one row per portal and per icon.
+ *
+ * <p>Changing a portal upserts its row instead of rewriting every portal.
+ * Changes are queued and a virtual thread applies everything queued so far in
+ * one transaction, so a burst of changes costs one commit. The database runs in
+ * WAL mode, where a commit is an append to the write-ahead log. A failed
+ * transaction goes back to the head of the queue and is retried with an
+ * exponential backoff, also while closing, until the close timeout runs out.
+ *
+ * <p>The SQLite JDBC driver ships with the server, so no library is bundled.
+ */
+public class SqliteStorageBackend implements StorageBackend {
+  private static final long MIN_RETRY_MILLIS = 500;
+  private static final long MAX_RETRY_MILLIS = 30_000;
+  private static final String CREATE_PORTALS = "CREATE TABLE IF NOT EXISTS portals ("
+      + "group_name TEXT NOT NULL COLLATE NOCASE, portal_name TEXT NOT NULL COLLATE NOCASE, "
+      + "world TEXT NOT NULL, x REAL NOT NULL, y REAL NOT NULL, z REAL NOT NULL, "
+      + "yaw REAL NOT NULL, pitch REAL NOT NULL, icon TEXT, breakable INTEGER NOT NULL, "
+      + "shape INTEGER, width REAL, depth REAL, height REAL, hitbox_yaw REAL, "
+      + "text_id TEXT, marker_id TEXT, "
+      + "PRIMARY KEY (group_name, portal_name))";
+  private static final String CREATE_ICONS = "CREATE TABLE IF NOT EXISTS icons ("
+      + "name TEXT NOT NULL PRIMARY KEY COLLATE NOCASE, base64 TEXT NOT NULL)";
+  private static final String UPSERT_PORTAL = "INSERT INTO portals (group_name, portal_name, "
+      + "world, x, y, z, yaw, pitch, icon, breakable, shape, width, depth, height, hitbox_yaw, "
+      + "text_id, marker_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+      + "ON CONFLICT (group_name, portal_name) DO UPDATE SET world = excluded.world, "
+      + "x = excluded.x, y = excluded.y, z = excluded.z, yaw = excluded.yaw, "
+      + "pitch = excluded.pitch, icon = excluded.icon, breakable = excluded.breakable, "
+      + "shape = excluded.shape, width = excluded.width, depth = excluded.depth, "
+      + "height = excluded.height, hitbox_yaw = excluded.hitbox_yaw, "
+      + "text_id = excluded.text_id, marker_id = excluded.marker_id";
+  private static final String UPSERT_ICON = "INSERT INTO icons (name, base64) VALUES (?, ?) "
+      + "ON CONFLICT (name) DO UPDATE SET base64 = excluded.base64";
+  private static final PortalHitbox.Shape[] SHAPES = PortalHitbox.Shape.values();
+
+  /**
+   * One queued change, applied on the writer thread.
+   */
+  @FunctionalInterface
+  private interface Change {
+    void apply() throws SQLException;
+  }
+
+  private final Logger logger;
+  private final File file;
+  private final Object lock = new Object();
+  private final List<Change> pending = new ArrayList<>();
+  private final List<CompletableFuture<Boolean>> waiting = new ArrayList<>();
+  private boolean closing;
+  private long closeDeadline;
+  private Thread writer;
+  private volatile long retryMillis;
+  private Connection connection;
+  private PreparedStatement upsertPortal;
+  private PreparedStatement removePortal;
+  private PreparedStatement removeGroup;
+  private PreparedStatement upsertIcon;
+  private PreparedStatement removeIcon;
+
+  private final LongAdder changes = new LongAdder();
+  private final LongAdder transactions = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private volatile long lastCommitMicros;
+
+  /**
+   * Creates a new SQLite backend. The database is opened on first use.
+   *
+   * @param plugin the plugin instance
+   */
+  public SqliteStorageBackend(JavaPlugin plugin) {
+    this.logger = plugin.getLogger();
+    this.file = new File(plugin.getDataFolder(), "portals.db");
+  }
+
+  @Override
+  public String getName() {
+    return "sqlite";
+  }
+
+  @Override
+  public Collection<PortalGroup> load(PortalHitbox defaultHitbox) throws IOException {
+    PortalTable table = new PortalTable();
+    long start = System.nanoTime();
+    try (Statement statement = open().createStatement();
+        ResultSet rows = statement.executeQuery("SELECT * FROM portals ORDER BY rowid")) {
+      while (rows.next()) {
+        String groupName = rows.getString("group_name");
+        table.addGroup(groupName);
+        World world = Bukkit.getWorld(rows.getString("world"));
+        if (world != null) {
+          table.put(groupName, readPortal(rows, world, defaultHitbox));
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    logger.info("Loaded " + table.getPortalCount() + " portals from " + file.getName()
+        + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    return table.toGroups();
+  }
+
+  @Override
+  public Map<String, String> loadIcons() throws IOException {
+    Map<String, String> icons = new LinkedHashMap<>();
+    try (Statement statement = open().createStatement();
+        ResultSet rows = statement.executeQuery("SELECT name, base64 FROM icons ORDER BY rowid")) {
+      while (rows.next()) {
+        icons.put(rows.getString(1), rows.getString(2));
+      }
+    } catch (SQLException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    return icons;
+  }
+
+  @Override
+  public void start() {
+    synchronized (lock) {
+      if (writer != null || closing) {
+        return;
+      }
+      writer = Thread.ofVirtual()
+          .name("EtherealPortals-sqlite")
+          .start(this::run);
+    }
+  }
+
+  @Override
+  public void savePortal(String groupName, Portal portal) {
+    enqueue(() -> {
+      bindPortal(groupName, portal);
+      upsertPortal.executeUpdate();
+    });
+  }
+
+  @Override
+  public void deletePortal(String groupName, String portalName) {
+    enqueue(() -> {
+      removePortal.setString(1, groupName);
+      removePortal.setString(2, portalName);
+      removePortal.executeUpdate();
+    });
+  }
+
+  @Override
+  public void deleteGroup(String groupName) {
+    enqueue(() -> {
+      removeGroup.setString(1, groupName);
+      removeGroup.executeUpdate();
+    });
+  }
+
+  @Override
+  public void saveIcon(PortalIcon icon) {
+    enqueue(() -> {
+      upsertIcon.setString(1, icon.getName());
+      upsertIcon.setString(2, icon.getBase64());
+      upsertIcon.executeUpdate();
+    });
+  }
+
+  @Override
+  public void deleteIcon(String name) {
+    enqueue(() -> {
+      removeIcon.setString(1, name);
+      removeIcon.executeUpdate();
+    });
+  }
+
+  @Override
+  public CompletableFuture<Boolean> saveAll(Collection<PortalGroup> groups,
+      Collection<PortalIcon> icons) {
+    CompletableFuture<Boolean> done = new CompletableFuture<>();
+    Change replace = () -> {
+      try (Statement statement = connection.createStatement()) {
+        statement.executeUpdate("DELETE FROM portals");
+        statement.executeUpdate("DELETE FROM icons");
+      }
+      for (PortalGroup group : groups) {
+        for (Portal portal : group.getPortals()) {
+          bindPortal(group.getName(), portal);
+          upsertPortal.addBatch();
+        }
+      }
+      upsertPortal.executeBatch();
+      for (PortalIcon icon : icons) {
+        upsertIcon.setString(1, icon.getName());
+        upsertIcon.setString(2, icon.getBase64());
+        upsertIcon.addBatch();
+      }
+      upsertIcon.executeBatch();
+    };
+    synchronized (lock) {
+      if (!closing) {
+        pending.add(replace);
+        waiting.add(done);
+        lock.notifyAll();
+        return done;
+      }
+    }
+    done.complete(false);
+    return done;
+  }
+
+  @Override
+  public void close(long timeoutMillis) {
+    Thread current;
+    long timeout = Math.max(1, timeoutMillis);
+    synchronized (lock) {
+      closing = true;
+      closeDeadline = System.currentTimeMillis() + timeout;
+      lock.notifyAll();
+      current = writer;
+    }
+    if (current != null) {
+      try {
+        current.join(timeout);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (current.isAlive()) {
+        logger.warning("Timed out writing " + file.getName() + "; latest changes may be lost");
+        return;
+      }
+    }
+    int unsaved = getPending();
+    if (unsaved > 0) {
+      logger.warning("Timed out writing " + file.getName() + "; " + unsaved
+          + " changes were not saved");
+    }
+    closeConnection();
+  }
+
+  /**
+   * Gets the number of changes committed.
+   *
+   * @return the change count
+   */
+  public long getChanges() {
+    return changes.sum();
+  }
+
+  public long getTransactions() {
+    return transactions.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  /**
+   * Gets the duration of the last transaction, commit included.
+   *
+   * @return the duration in microseconds
+   */
+  public long getLastCommitMicros() {
+    return lastCommitMicros;
+  }
+
+  /**
+   * Gets the delay before the next attempt after failed transactions.
+   *
+   * @return the delay in milliseconds, or 0 if the last transaction committed
+   */
+  public long getRetryMillis() {
+    return retryMillis;
+  }
+
+  /**
+   * Gets the number of changes waiting for the writer, including those of a
+   * failed transaction awaiting its retry.
+   *
+   * @return the queue length
+   */
+  public int getPending() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  private void enqueue(Change change) {
+    synchronized (lock) {
+      if (!closing) {
+        pending.add(change);
+        lock.notifyAll();
+        return;
+      }
+    }
+    logger.warning("Change to " + file.getName() + " after shutdown was not saved");
+  }
+
+  private void run() {
+    long backoff = 0;
+    while (true) {
+      List<Change> batch;
+      List<CompletableFuture<Boolean>> futures;
+      synchronized (lock) {
+        try {
+          while (pending.isEmpty() && !closing) {
+            lock.wait();
+          }
+          // After a failure, wait out the backoff, but no longer than closing allows
+          long deadline = System.currentTimeMillis() + backoff;
+          while (backoff > 0) {
+            long remaining = (closing ? Math.min(deadline, closeDeadline) : deadline)
+                - System.currentTimeMillis();
+            if (remaining <= 0) {
+              break;
+            }
+            lock.wait(remaining);
+          }
+        } catch (InterruptedException e) {
+          closing = true;
+          closeDeadline = 0;
+        }
+        boolean givingUp = closing && backoff > 0
+            && System.currentTimeMillis() >= closeDeadline;
+        if (pending.isEmpty() || givingUp) {
+          waiting.forEach(future -> future.complete(false));
+          waiting.clear();
+          writer = null;
+          return;
+        }
+        batch = new ArrayList<>(pending);
+        pending.clear();
+        futures = new ArrayList<>(waiting);
+        waiting.clear();
+      }
+      boolean committed = commit(batch);
+      futures.forEach(future -> future.complete(committed));
+      if (committed) {
+        backoff = 0;
+      } else {
+        backoff = Math.min(MAX_RETRY_MILLIS, Math.max(MIN_RETRY_MILLIS, backoff * 2));
+        synchronized (lock) {
+          pending.addAll(0, batch);
+        }
+        logger.warning("Retrying " + batch.size() + " changes to " + file.getName() + " in "
+            + backoff + " ms");
+      }
+      retryMillis = backoff;
+    }
+  }
+
+  private boolean commit(List<Change> batch) {
+    long start = System.nanoTime();
+    boolean committed = false;
+    try {
+      open();
+      try {
+        for (Change change : batch) {
+          try {
+            change.apply();
+          } catch (RuntimeException e) {
+            // A change that cannot be bound would fail every retry; drop it alone
+            logger.severe("Skipped a change to " + file.getName() + ": " + e);
+          }
+        }
+        connection.commit();
+        changes.add(batch.size());
+        transactions.increment();
+        committed = true;
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      }
+    } catch (SQLException | RuntimeException e) {
+      failures.increment();
+      logger.severe("Failed to save " + batch.size() + " changes to " + file.getName() + ": "
+          + e.getMessage());
+      // The retry reopens the database in case the connection itself broke
+      closeConnection();
+    }
+    lastCommitMicros = (System.nanoTime() - start) / 1000;
+    return committed;
+  }
+
+  private synchronized Connection open() throws SQLException {
+    if (connection != null) {
+      return connection;
+    }
+    try {
+      Class.forName("org.sqlite.JDBC");
+    } catch (ClassNotFoundException e) {
+      throw new SQLException("SQLite driver not found", e);
+    }
+    Connection opened = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+    try (Statement statement = opened.createStatement()) {
+      statement.execute("PRAGMA journal_mode=WAL");
+      statement.execute("PRAGMA synchronous=NORMAL");
+      statement.execute(CREATE_PORTALS);
+      statement.execute(CREATE_ICONS);
+    }
+    opened.setAutoCommit(false);
+    opened.commit();
+    upsertPortal = opened.prepareStatement(UPSERT_PORTAL);
+    removePortal = opened.prepareStatement(
+        "DELETE FROM portals WHERE group_name = ? AND portal_name = ?");
+    removeGroup = opened.prepareStatement("DELETE FROM portals WHERE group_name = ?");
+    upsertIcon = opened.prepareStatement(UPSERT_ICON);
+    removeIcon = opened.prepareStatement("DELETE FROM icons WHERE name = ?");
+    connection = opened;
+    return connection;
+  }
+
+  private synchronized void closeConnection() {
+    if (connection != null) {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        logger.warning("Failed to close " + file.getName() + ": " + e.getMessage());
+      }
+      connection = null;
+    }
+  }
+
+  private void bindPortal(String groupName, Portal portal) throws SQLException {
+    Location base = portal.getBaseLocation();
+    upsertPortal.setString(1, groupName);
+    upsertPortal.setString(2, portal.getName());
+    upsertPortal.setString(3, base.getWorld().getName());
+    upsertPortal.setDouble(4, base.getX());
+    upsertPortal.setDouble(5, base.getY());
+    upsertPortal.setDouble(6, base.getZ());
+    upsertPortal.setFloat(7, base.getYaw());
+    upsertPortal.setFloat(8, base.getPitch());
+    if (portal.getIconName() != null) {
+      upsertPortal.setString(9, portal.getIconName());
+    } else {
+      upsertPortal.setNull(9, Types.VARCHAR);
+    }
+    upsertPortal.setInt(10, portal.isBreakable() ? 1 : 0);
+    // Portals following the configured default hitbox store none
+    if (portal.hasCustomHitbox()) {
+      PortalHitbox hitbox = portal.getHitbox();
+      upsertPortal.setInt(11, hitbox.getShape().ordinal());
+      upsertPortal.setDouble(12, hitbox.getWidth());
+      upsertPortal.setDouble(13, hitbox.getDepth());
+      upsertPortal.setDouble(14, hitbox.getHeight());
+      upsertPortal.setDouble(15, hitbox.getYaw());
+    } else {
+      for (int index = 11; index <= 15; index++) {
+        upsertPortal.setNull(index, Types.NUMERIC);
+      }
+    }
+    bindUuid(16, portal.getTextDisplayId());
+    bindUuid(17, portal.getMarkerId());
+  }
+
+  private void bindUuid(int index, UUID value) throws SQLException {
+    if (value != null) {
+      upsertPortal.setString(index, value.toString());
+    } else {
+      upsertPortal.setNull(index, Types.VARCHAR);
+    }
+  }
+
+  private static Portal readPortal(ResultSet rows, World world, PortalHitbox defaultHitbox)
+      throws SQLException {
+    Location base = new Location(world, rows.getDouble("x"), rows.getDouble("y"),
+        rows.getDouble("z"), rows.getFloat("yaw"), rows.getFloat("pitch"));
+    String name = rows.getString("portal_name");
+    String icon = rows.getString("icon");
+    boolean breakable = rows.getInt("breakable") != 0;
+    int shape = rows.getInt("shape");
+    Portal portal = !rows.wasNull() && shape >= 0 && shape < SHAPES.length
+        ? new Portal(name, base, icon, breakable, PortalHitbox.of(SHAPES[shape],
+            rows.getDouble("width"), rows.getDouble("depth"), rows.getDouble("height"),
+            rows.getDouble("hitbox_yaw")), true)
+        : new Portal(name, base, icon, breakable, defaultHitbox);
+    portal.setTextDisplayId(parseUuid(rows.getString("text_id")));
+    portal.setMarkerId(parseUuid(rows.getString("marker_id")));
+    return portal;
+  }
+
+  private static UUID parseUuid(String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return UUID.fromString(value);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
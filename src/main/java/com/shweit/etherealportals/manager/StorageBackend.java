@@ -0,0 +1,112 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import fr.kazotaruumc72.etherealportals.model.PortalIcon;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Stores portal groups and custom icons.
+ *
+ * <p>{@link #load} is called once at startup, then {@link #start()} once the
+ * loaded data is published. Write methods may be called from any thread and must
+ * not block on I/O; implementations write in the background.
+ */
+public interface StorageBackend {
+  /**
+   * Gets the name of this backend as used in {@code portal.storage.backend}.
+   *
+   * @return the backend name
+   */
+  String getName();
+
+  /**
+   * Loads all portal groups. Portals in worlds that are not loaded are skipped.
+   *
+   * @param defaultHitbox the hitbox of portals stored without one
+   * @return the groups
+   * @throws IOException if the stored data cannot be read
+   */
+  Collection<PortalGroup> load(PortalHitbox defaultHitbox) throws IOException;
+
+  /**
+   * Loads all custom icons.
+   *
+   * @return the icon textures by icon name
+   * @throws IOException if the stored data cannot be read
+   */
+  Map<String, String> loadIcons() throws IOException;
+
+  /**
+   * Starts writing. Called after loading, or right away for a migration target.
+   */
+  void start();
+
+  /**
+   * Inserts or updates a portal.
+   *
+   * @param groupName the group name
+   * @param portal the portal
+   */
+  void savePortal(String groupName, Portal portal);
+
+  /**
+   * Deletes a portal.
+   *
+   * @param groupName the group name
+   * @param portalName the portal name
+   */
+  void deletePortal(String groupName, String portalName);
+
+  /**
+   * Deletes a group and its portals.
+   *
+   * @param groupName the group name
+   */
+  void deleteGroup(String groupName);
+
+  /**
+   * Inserts or updates an icon.
+   *
+   * @param icon the icon
+   */
+  void saveIcon(PortalIcon icon);
+
+  /**
+   * Deletes an icon.
+   *
+   * @param name the icon name
+   */
+  void deleteIcon(String name);
+
+  /**
+   * Replaces all stored data, e.g. when migrating to this backend. Writes
+   * requested after this call are applied after the replacement.
+   *
+   * @param groups the portal groups
+   * @param icons the icons
+   * @return a future completed once the data is stored, with false on failure
+   */
+  CompletableFuture<Boolean> saveAll(Collection<PortalGroup> groups,
+      Collection<PortalIcon> icons);
+
+  /**
+   * Applies changed settings from the {@code portal.storage} section.
+   *
+   * @param section the storage section, may be null
+   */
+  default void updateConfig(ConfigurationSection section) {}
+
+  /**
+   * Writes pending changes and stops writing in the background, waiting at most
+   * the given time.
+   *
+   * @param timeoutMillis maximum time to wait
+   */
+  void close(long timeoutMillis);
+}
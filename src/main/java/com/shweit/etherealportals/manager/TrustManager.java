@@ -0,0 +1,324 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Stores who owns each private portal group and which players each owner
+ * trusts with them.
+ *
+ * <p>Private groups are the ones players create with portal items, named
+ * {@code <owner>:<base>} after the owner's lowercase name. The name only marks
+ * the group private: the group belongs to the UUID of the player who created
+ * it, so a renamed owner keeps it and a new player with the old name does not
+ * get it. Trust is granted per owner and covers all of the owner's groups.
+ *
+ * <p>Everything is saved to {@code trust.yml} by a {@link WriteBehindPersister},
+ * one section per owner UUID. Groups and trust entries from before owners were
+ * recorded are keyed by name; they pass to the first player who joins with
+ * that name.
+ */
+public class TrustManager {
+  /** Permission that makes every private group visible. */
+  public static final String SEE_ALL_PERMISSION = "portal.private.see";
+
+  private final JavaPlugin plugin;
+  private final File file;
+  private final WriteBehindPersister writer;
+  private final Map<String, UUID> owners = new ConcurrentHashMap<>();
+  private final Map<UUID, Set<UUID>> trusted = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> legacyTrust = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a trust manager, loads {@code trust.yml} and starts saving changes
+   * in the background.
+   *
+   * @param plugin the owning plugin
+   */
+  public TrustManager(JavaPlugin plugin) {
+    this.plugin = plugin;
+    this.file = new File(plugin.getDataFolder(), "trust.yml");
+    this.writer = new WriteBehindPersister(plugin.getLogger(), file.toPath(), this::snapshot,
+        plugin.getConfig().getLong("portal.storage.writeDelayMillis", 500L));
+    load();
+    writer.start();
+  }
+
+  /**
+   * Checks whether a group is private, i.e. created by a player.
+   *
+   * @param groupName the group name
+   * @return true if the name has an owner prefix
+   */
+  public static boolean isPrivate(String groupName) {
+    return groupName.indexOf(':') > 0;
+  }
+
+  /**
+   * Gets the owner of a group.
+   *
+   * @param groupName the group name
+   * @return the owner's UUID, or null for a public or unclaimed group
+   */
+  public UUID getOwner(String groupName) {
+    return owners.get(groupName.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Records the creator of a private group as its owner, unless it already has
+   * one.
+   *
+   * @param groupName the group name
+   * @param owner the creator's UUID
+   * @return true if the group now belongs to the player, false if to another one
+   */
+  public boolean claim(String groupName, UUID owner) {
+    UUID previous = owners.putIfAbsent(groupName.toLowerCase(Locale.ROOT), owner);
+    if (previous == null) {
+      writer.markDirty();
+      return true;
+    }
+    return previous.equals(owner);
+  }
+
+  /**
+   * Forgets the owner of a group that was deleted.
+   *
+   * @param groupName the group name
+   */
+  public void release(String groupName) {
+    if (owners.remove(groupName.toLowerCase(Locale.ROOT)) != null) {
+      writer.markDirty();
+    }
+  }
+
+  /**
+   * Hands a joining player the groups and trust entries recorded under their
+   * name before owners were recorded by UUID.
+   *
+   * @param player the player
+   * @param groups the current portal groups
+   */
+  public void adopt(Player player, Collection<PortalGroup> groups) {
+    UUID id = player.getUniqueId();
+    String name = player.getName().toLowerCase(Locale.ROOT);
+    String prefix = name + ":";
+    boolean changed = false;
+    for (PortalGroup group : groups) {
+      if (group.getKey().startsWith(prefix) && owners.putIfAbsent(group.getKey(), id) == null) {
+        changed = true;
+      }
+    }
+    Set<UUID> players = legacyTrust.remove(name);
+    if (players != null) {
+      players.remove(id);
+      trustedBy(id).addAll(players);
+      changed = true;
+    }
+    if (changed) {
+      writer.markDirty();
+    }
+  }
+
+  /**
+   * Checks whether a player may see the portals of a group.
+   *
+   * @param player the player
+   * @param groupName the group name
+   * @return true for public groups, the owner, trusted players and permission holders
+   */
+  public boolean canSee(Player player, String groupName) {
+    if (!isPrivate(groupName) || player.hasPermission(SEE_ALL_PERMISSION)) {
+      return true;
+    }
+    UUID owner = getOwner(groupName);
+    return owner != null && canSeeOwner(player, owner);
+  }
+
+  /**
+   * Checks whether a player may see the private groups of an owner.
+   *
+   * @param player the player
+   * @param owner the owner's UUID
+   * @return true for the owner, trusted players and permission holders
+   */
+  public boolean canSeeOwner(Player player, UUID owner) {
+    if (player.getUniqueId().equals(owner) || player.hasPermission(SEE_ALL_PERMISSION)) {
+      return true;
+    }
+    Set<UUID> players = trusted.get(owner);
+    return players != null && players.contains(player.getUniqueId());
+  }
+
+  /**
+   * Gets the private groups of an owner.
+   *
+   * @param owner the owner's UUID
+   * @return the lowercase group names
+   */
+  public List<String> getGroups(UUID owner) {
+    List<String> groups = new ArrayList<>();
+    owners.forEach((group, id) -> {
+      if (id.equals(owner)) {
+        groups.add(group);
+      }
+    });
+    return groups;
+  }
+
+  /**
+   * Trusts a player with an owner's private groups.
+   *
+   * @param owner the owner's UUID
+   * @param player the trusted player's UUID
+   * @return true if the player was not trusted yet
+   */
+  public boolean trust(UUID owner, UUID player) {
+    boolean added = trustedBy(owner).add(player);
+    if (added) {
+      writer.markDirty();
+    }
+    return added;
+  }
+
+  /**
+   * Withdraws a player's trust.
+   *
+   * @param owner the owner's UUID
+   * @param player the player's UUID
+   * @return true if the player was trusted
+   */
+  public boolean untrust(UUID owner, UUID player) {
+    Set<UUID> players = trusted.get(owner);
+    boolean removed = players != null && players.remove(player);
+    if (removed) {
+      writer.markDirty();
+    }
+    return removed;
+  }
+
+  /**
+   * Gets the players an owner trusts.
+   *
+   * @param owner the owner's UUID
+   * @return the trusted players' UUIDs
+   */
+  public Set<UUID> getTrusted(UUID owner) {
+    Set<UUID> players = trusted.get(owner);
+    return players == null ? Collections.emptySet() : Collections.unmodifiableSet(players);
+  }
+
+  /**
+   * Gets the owners whose private groups a player may see, not counting the
+   * player's own groups.
+   *
+   * @param player the player's UUID
+   * @return the owners' UUIDs
+   */
+  public List<UUID> getOwnersTrusting(UUID player) {
+    List<UUID> result = new ArrayList<>();
+    trusted.forEach((owner, players) -> {
+      if (players.contains(player)) {
+        result.add(owner);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Writes pending changes and stops the background writer.
+   *
+   * @param timeoutMillis maximum time to wait
+   */
+  public void close(long timeoutMillis) {
+    writer.close(timeoutMillis);
+  }
+
+  private Set<UUID> trustedBy(UUID owner) {
+    return trusted.computeIfAbsent(owner, k -> ConcurrentHashMap.newKeySet());
+  }
+
+  private void load() {
+    if (!file.exists()) {
+      return;
+    }
+    FileConfiguration cfg = YamlConfiguration.loadConfiguration(file);
+    for (String key : cfg.getKeys(false)) {
+      ConfigurationSection section = cfg.getConfigurationSection(key);
+      if (section == null) {
+        // Legacy entry: the owner's lowercase name and the trusted UUIDs
+        legacyTrust.put(key.toLowerCase(Locale.ROOT), readIds(cfg.getStringList(key), key));
+        continue;
+      }
+      UUID owner;
+      try {
+        owner = UUID.fromString(key);
+      } catch (IllegalArgumentException e) {
+        plugin.getLogger().warning("Invalid owner UUID in trust.yml: " + key);
+        continue;
+      }
+      for (String group : section.getStringList("groups")) {
+        owners.put(group.toLowerCase(Locale.ROOT), owner);
+      }
+      Set<UUID> players = readIds(section.getStringList("trusted"), key);
+      if (!players.isEmpty()) {
+        trusted.put(owner, players);
+      }
+    }
+  }
+
+  private Set<UUID> readIds(List<String> ids, String owner) {
+    Set<UUID> players = ConcurrentHashMap.newKeySet();
+    for (String id : ids) {
+      try {
+        players.add(UUID.fromString(id));
+      } catch (IllegalArgumentException e) {
+        plugin.getLogger().warning("Invalid UUID in trust.yml for " + owner + ": " + id);
+      }
+    }
+    return players;
+  }
+
+  // Writer thread
+  private byte[] snapshot() {
+    Map<UUID, List<String>> groups = new HashMap<>();
+    owners.forEach((group, owner) ->
+        groups.computeIfAbsent(owner, k -> new ArrayList<>()).add(group));
+    FileConfiguration tmp = new YamlConfiguration();
+    groups.forEach((owner, names) -> {
+      Collections.sort(names);
+      tmp.set(owner + ".groups", names);
+    });
+    trusted.forEach((owner, players) -> {
+      if (!players.isEmpty()) {
+        tmp.set(owner + ".trusted", toStrings(players));
+      }
+    });
+    legacyTrust.forEach((owner, players) -> tmp.set(owner, toStrings(players)));
+    return tmp.saveToString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> toStrings(Set<UUID> players) {
+    List<String> ids = new ArrayList<>(players.size());
+    for (UUID id : players) {
+      ids.add(id.toString());
+    }
+    return ids;
+  }
+}
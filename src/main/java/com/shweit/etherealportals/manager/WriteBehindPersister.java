@@ -0,0 +1,253 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Writes a data file in the background after the data changed.
+ *
+ * <p>Mutations only mark the data dirty. A virtual thread waits for the first
+ * change, lets further changes accumulate for the coalescing window, then takes
+ * one snapshot and writes it. A burst of changes, such as a player placing
+ * several portals, costs one write instead of one per change, and region
+ * threads never touch the disk.
+ *
+ * <p>Each write goes to a temporary file that is forced to disk and then moved
+ * over the target, so a crash leaves either the old or the new file, never a
+ * truncated one. A failed write keeps the data dirty and is retried with an
+ * exponential backoff, also while closing, until the close timeout runs out.
+ */
+public class WriteBehindPersister {
+  private static final long MIN_RETRY_MILLIS = 500;
+  private static final long MAX_RETRY_MILLIS = 30_000;
+
+  private final Logger logger;
+  private final Path target;
+  private final Path temp;
+  private final Supplier<byte[]> snapshot;
+  private final Object lock = new Object();
+  private volatile long windowMillis;
+  private boolean dirty;
+  private boolean closing;
+  private long closeDeadline;
+  private Thread writer;
+  private volatile long retryMillis;
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder writes = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private volatile long lastWriteMicros;
+
+  /**
+   * Creates a new write-behind persister. Call {@link #start()} to run it.
+   *
+   * @param logger the logger for write failures
+   * @param target the file to write
+   * @param snapshot builds the file contents; called on the writer thread
+   * @param windowMillis time changes are collected before a write
+   */
+  public WriteBehindPersister(Logger logger, Path target, Supplier<byte[]> snapshot,
+      long windowMillis) {
+    this.logger = logger;
+    this.target = target;
+    this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+    this.snapshot = snapshot;
+    this.windowMillis = Math.max(0, windowMillis);
+  }
+
+  /**
+   * Starts the writer thread.
+   */
+  public void start() {
+    synchronized (lock) {
+      if (writer != null) {
+        return;
+      }
+      writer = Thread.ofVirtual()
+          .name("EtherealPortals-writer-" + target.getFileName())
+          .start(this::run);
+    }
+  }
+
+  /**
+   * Updates the coalescing window.
+   *
+   * @param windowMillis time changes are collected before a write
+   */
+  public void setWindowMillis(long windowMillis) {
+    this.windowMillis = Math.max(0, windowMillis);
+  }
+
+  /**
+   * Marks the data changed. Once the persister is closed, the file is written
+   * right away on the calling thread instead.
+   */
+  public void markDirty() {
+    requests.increment();
+    synchronized (lock) {
+      if (!closing) {
+        dirty = true;
+        lock.notifyAll();
+        return;
+      }
+    }
+    write();
+  }
+
+  /**
+   * Writes pending changes and stops the writer thread, waiting at most the
+   * given time for the write to finish.
+   *
+   * @param timeoutMillis maximum time to wait
+   * @return true if every change was written in time
+   */
+  public boolean close(long timeoutMillis) {
+    Thread current;
+    long timeout = Math.max(1, timeoutMillis);
+    synchronized (lock) {
+      closing = true;
+      closeDeadline = System.currentTimeMillis() + timeout;
+      lock.notifyAll();
+      current = writer;
+    }
+    if (current == null) {
+      return true;
+    }
+    try {
+      current.join(timeout);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    boolean unsaved;
+    synchronized (lock) {
+      unsaved = dirty;
+    }
+    if (current.isAlive() || unsaved) {
+      logger.warning("Timed out writing " + target.getFileName() + "; latest changes may be lost");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Writes the file now on the calling thread, e.g. for a journal compaction.
+   *
+   * @return true if the file was written
+   */
+  public boolean writeNow() {
+    return write();
+  }
+
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  public long getWrites() {
+    return writes.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  /**
+   * Gets the delay before the next attempt after failed writes.
+   *
+   * @return the delay in milliseconds, or 0 if the last write succeeded
+   */
+  public long getRetryMillis() {
+    return retryMillis;
+  }
+
+  /**
+   * Gets the duration of the last write, snapshot included.
+   *
+   * @return the duration in microseconds
+   */
+  public long getLastWriteMicros() {
+    return lastWriteMicros;
+  }
+
+  private void run() {
+    long backoff = 0;
+    while (true) {
+      synchronized (lock) {
+        try {
+          while (!dirty && !closing) {
+            lock.wait();
+          }
+          // Collect the rest of the burst, unless shutting down. After a failure,
+          // wait out the backoff, but no longer than closing allows.
+          long deadline = System.currentTimeMillis() + (backoff > 0 ? backoff : windowMillis);
+          while (!closing || backoff > 0) {
+            long remaining = (closing ? Math.min(deadline, closeDeadline) : deadline)
+                - System.currentTimeMillis();
+            if (remaining <= 0) {
+              break;
+            }
+            lock.wait(remaining);
+          }
+        } catch (InterruptedException e) {
+          closing = true;
+          closeDeadline = 0;
+        }
+        boolean givingUp = closing && backoff > 0
+            && System.currentTimeMillis() >= closeDeadline;
+        if (!dirty || givingUp) {
+          writer = null;
+          return;
+        }
+        dirty = false;
+      }
+      if (write()) {
+        backoff = 0;
+      } else {
+        backoff = Math.min(MAX_RETRY_MILLIS, Math.max(MIN_RETRY_MILLIS, backoff * 2));
+        synchronized (lock) {
+          dirty = true;
+        }
+        logger.warning("Retrying " + target.getFileName() + " in " + backoff + " ms");
+      }
+      retryMillis = backoff;
+    }
+  }
+
+  // Serialized so a write after close never races the writer's last one
+  private synchronized boolean write() {
+    long start = System.nanoTime();
+    boolean written = false;
+    try {
+      byte[] data = snapshot.get();
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(true);
+      }
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+      writes.increment();
+      written = true;
+    } catch (IOException | RuntimeException e) {
+      failures.increment();
+      logger.severe("Failed to save " + target.getFileName() + ": " + e.getMessage());
+    }
+    lastWriteMicros = (System.nanoTime() - start) / 1000;
+    return written;
+  }
+}
@@ -0,0 +1,482 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Reads {@code groups.yml} and {@code icons.yml} from the SnakeYAML event
+ * stream, building portals and icons as their keys are read.
+ *
+ * <p>Unlike {@link YamlConfiguration}, no node tree or section tree is built and
+ * values are not looked up by dotted paths, so loading keeps only the current
+ * portal's fields in memory next to the result. It reads the layout written by
+ * {@link Portal#serialize}, with the same defaults as {@link Portal#deserialize};
+ * unknown keys are skipped. Plain scalars are resolved to the same types as in a
+ * loaded document, so a quoted number is a string and {@code 0x1F} is a number,
+ * as {@code getDouble} and {@code getBoolean} would see them. Anchors and aliases
+ * and complex keys, which the plugin never writes, are rejected with an
+ * {@link UnsupportedLayoutException} so the caller can fall back to a full
+ * document load.
+ */
+final class YamlStreamLoader {
+  /**
+   * Thrown for valid YAML that this loader does not handle.
+   */
+  static final class UnsupportedLayoutException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedLayoutException(String message) {
+      super(message);
+    }
+  }
+
+  private static final Resolver RESOLVER = new Resolver();
+  // First characters of plain scalars that YAML 1.1 resolves to more than a string
+  private static final String RESOLVED_FIRST_CHARS = "yYnNtTfFoO~-+.0123456789<";
+
+  private final Iterator<Event> events;
+  private Yaml numbers;
+
+  private YamlStreamLoader(Reader reader) {
+    LoaderOptions options = new LoaderOptions();
+    // Same as YamlConfiguration: large portal files are expected
+    options.setCodePointLimit(Integer.MAX_VALUE);
+    this.events = new Yaml(options).parse(reader).iterator();
+  }
+
+  /**
+   * Reads portal groups. Portals in worlds that are not loaded are skipped.
+   *
+   * @param path the groups file
+   * @param table the table to fill
+   * @param defaultHitbox the hitbox of portals stored without one
+   * @throws UnsupportedLayoutException if the file uses aliases or complex keys
+   * @throws IOException if the file cannot be read or is not valid YAML
+   */
+  static void readGroups(Path path, PortalTable table, PortalHitbox defaultHitbox)
+      throws IOException {
+    Map<String, World> worlds = new HashMap<>();
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      YamlStreamLoader loader = new YamlStreamLoader(reader);
+      if (!loader.enterDocument()) {
+        return;
+      }
+      String groupName;
+      while ((groupName = loader.nextKey()) != null) {
+        table.addGroup(groupName);
+        if (!loader.enterMapping()) {
+          continue;
+        }
+        String portalName;
+        while ((portalName = loader.nextKey()) != null) {
+          if (loader.enterMapping()) {
+            Portal portal = loader.readPortal(portalName, worlds, defaultHitbox);
+            if (portal != null) {
+              table.put(groupName, portal);
+            }
+          }
+        }
+      }
+    } catch (YAMLException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads custom icons.
+   *
+   * @param path the icons file
+   * @return the icon textures by icon name
+   * @throws UnsupportedLayoutException if the file uses aliases or complex keys
+   * @throws IOException if the file cannot be read or is not valid YAML
+   */
+  static Map<String, String> readIcons(Path path) throws IOException {
+    Map<String, String> icons = new LinkedHashMap<>();
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      YamlStreamLoader loader = new YamlStreamLoader(reader);
+      if (!loader.enterDocument()) {
+        return icons;
+      }
+      String iconName;
+      while ((iconName = loader.nextKey()) != null) {
+        if (!loader.enterMapping()) {
+          continue;
+        }
+        String base64 = null;
+        String key;
+        while ((key = loader.nextKey()) != null) {
+          if (key.equals("base64")) {
+            base64 = loader.scalar();
+          } else {
+            loader.skipValue();
+          }
+        }
+        if (base64 != null) {
+          icons.put(iconName, base64);
+        }
+      }
+    } catch (YAMLException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+    return icons;
+  }
+
+  // Called after the portal's mapping start; reads up to its end
+  private Portal readPortal(String name, Map<String, World> worlds, PortalHitbox defaultHitbox)
+      throws IOException {
+    String worldName = null;
+    Object x = null;
+    Object y = null;
+    Object z = null;
+    Object yaw = null;
+    Object pitch = null;
+    String icon = null;
+    boolean breakable = false;
+    PortalHitbox hitbox = defaultHitbox;
+    boolean customHitbox = false;
+    String text = null;
+    String marker = null;
+    String key;
+    while ((key = nextKey()) != null) {
+      switch (key) {
+        case "world":
+          worldName = scalar();
+          break;
+        case "x":
+          x = value();
+          break;
+        case "y":
+          y = value();
+          break;
+        case "z":
+          z = value();
+          break;
+        case "yaw":
+          yaw = value();
+          break;
+        case "pitch":
+          pitch = value();
+          break;
+        case "icon":
+          icon = scalar();
+          break;
+        case "breakable":
+          breakable = bool(value());
+          break;
+        case "hitbox":
+          customHitbox = enterMapping();
+          hitbox = customHitbox ? readHitbox(defaultHitbox) : defaultHitbox;
+          break;
+        case "entities":
+          if (enterMapping()) {
+            String entity;
+            while ((entity = nextKey()) != null) {
+              if (entity.equals("text")) {
+                text = scalar();
+              } else if (entity.equals("marker")) {
+                marker = scalar();
+              } else {
+                skipValue();
+              }
+            }
+          }
+          break;
+        default:
+          skipValue();
+          break;
+      }
+    }
+    World world = worldName == null ? null : worlds.computeIfAbsent(worldName, Bukkit::getWorld);
+    if (world == null) {
+      return null; // skip
+    }
+    Location loc = new Location(world, number(x, 0.0), number(y, 0.0), number(z, 0.0),
+        (float) number(yaw, 0.0), (float) number(pitch, 0.0));
+    Portal portal = new Portal(name, loc, icon, breakable, hitbox, customHitbox);
+    portal.setTextDisplayId(parseUuid(text));
+    portal.setMarkerId(parseUuid(marker));
+    return portal;
+  }
+
+  // Mirrors PortalHitbox.deserialize
+  private PortalHitbox readHitbox(PortalHitbox fallback) throws IOException {
+    String shape = "box";
+    Object width = null;
+    Object depth = null;
+    Object thickness = null;
+    Object height = null;
+    Object radius = null;
+    Object yaw = null;
+    String key;
+    while ((key = nextKey()) != null) {
+      switch (key) {
+        case "shape": {
+          String value = scalar();
+          shape = value == null ? "box" : value.toLowerCase(Locale.ROOT);
+          break;
+        }
+        case "width":
+          width = value();
+          break;
+        case "depth":
+          depth = value();
+          break;
+        case "thickness":
+          thickness = value();
+          break;
+        case "height":
+          height = value();
+          break;
+        case "radius":
+          radius = value();
+          break;
+        case "yaw":
+          yaw = value();
+          break;
+        default:
+          skipValue();
+          break;
+      }
+    }
+    switch (shape) {
+      case "cylinder":
+        return PortalHitbox.cylinder(number(radius, fallback.getExtentX()),
+            number(height, fallback.getHeight()));
+      case "slab":
+        return PortalHitbox.slab(number(width, fallback.getWidth()),
+            number(thickness, fallback.getDepth()), number(height, fallback.getHeight()),
+            number(yaw, 0.0));
+      case "box":
+        return PortalHitbox.box(number(width, fallback.getWidth()),
+            number(depth, fallback.getDepth()), number(height, fallback.getHeight()));
+      default:
+        return fallback;
+    }
+  }
+
+  /**
+   * Moves to the root mapping of the first document.
+   *
+   * @return false if the file holds no data
+   */
+  private boolean enterDocument() throws IOException {
+    Event event = next();
+    if (event instanceof StreamStartEvent) {
+      event = next();
+    }
+    if (event instanceof StreamEndEvent) {
+      return false;
+    }
+    if (!(event instanceof DocumentStartEvent)) {
+      throw new IOException("Unexpected " + event + " at the start of the file");
+    }
+    event = next();
+    if (event instanceof MappingStartEvent) {
+      return true;
+    }
+    if (event instanceof ScalarEvent && resolve((ScalarEvent) event) == null) {
+      return false;
+    }
+    throw new IOException("Expected a mapping at the root, found " + event);
+  }
+
+  /**
+   * Reads the next key of the current mapping.
+   *
+   * @return the key, or null at the end of the mapping
+   */
+  private String nextKey() throws IOException {
+    Event event = next();
+    if (event instanceof MappingEndEvent) {
+      return null;
+    }
+    if (event instanceof ScalarEvent) {
+      return String.valueOf(resolve((ScalarEvent) event));
+    }
+    throw new UnsupportedLayoutException("Unsupported mapping key " + event);
+  }
+
+  /**
+   * Reads a value expected to be a mapping and enters it. Any other value is
+   * skipped.
+   *
+   * @return true if a mapping was entered
+   */
+  private boolean enterMapping() throws IOException {
+    Event event = next();
+    if (event instanceof MappingStartEvent) {
+      return true;
+    }
+    skip(event);
+    return false;
+  }
+
+  /**
+   * Reads a scalar value as a string, like {@code getString}. Collections are
+   * skipped and read as null, like a missing value.
+   *
+   * @return the value, or null
+   */
+  private String scalar() throws IOException {
+    Object value = value();
+    return value == null ? null : value.toString();
+  }
+
+  /**
+   * Reads a scalar value as the object a loaded document would hold: a string,
+   * number, boolean or null. Collections are skipped and read as null.
+   *
+   * @return the value, or null
+   */
+  private Object value() throws IOException {
+    Event event = next();
+    if (event instanceof ScalarEvent) {
+      return resolve((ScalarEvent) event);
+    }
+    skip(event);
+    return null;
+  }
+
+  // Same types as YamlConfiguration, which resolves plain scalars as YAML 1.1
+  private Object resolve(ScalarEvent event) {
+    String value = event.getValue();
+    if (!event.getImplicit().canOmitTagInPlainScalar()) {
+      return value; // quoted or tagged
+    }
+    Object number = simpleNumber(value);
+    if (number != null) {
+      return number;
+    }
+    if (!value.isEmpty() && RESOLVED_FIRST_CHARS.indexOf(value.charAt(0)) < 0) {
+      return value; // names, worlds and keys skip the resolver
+    }
+    Tag tag = RESOLVER.resolve(NodeId.scalar, value, true);
+    if (tag.equals(Tag.NULL)) {
+      return null;
+    }
+    if (tag.equals(Tag.BOOL)) {
+      return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes")
+          || value.equalsIgnoreCase("on");
+    }
+    if (tag.equals(Tag.INT) || tag.equals(Tag.FLOAT) || tag.equals(Tag.TIMESTAMP)) {
+      // Other notations, such as 0x1F or 1_000, are rare enough to construct
+      if (numbers == null) {
+        numbers = new Yaml();
+      }
+      try {
+        return numbers.load(value);
+      } catch (YAMLException e) {
+        return value;
+      }
+    }
+    return value;
+  }
+
+  private void skipValue() throws IOException {
+    skip(next());
+  }
+
+  private void skip(Event event) throws IOException {
+    if (!(event instanceof CollectionStartEvent)) {
+      return;
+    }
+    int depth = 1;
+    while (depth > 0) {
+      Event nested = next();
+      if (nested instanceof CollectionStartEvent) {
+        depth++;
+      } else if (nested instanceof CollectionEndEvent) {
+        depth--;
+      }
+    }
+  }
+
+  private Event next() throws IOException {
+    if (!events.hasNext()) {
+      throw new IOException("Unexpected end of file");
+    }
+    Event event = events.next();
+    if (event instanceof AliasEvent) {
+      throw new UnsupportedLayoutException("Aliases are not supported");
+    }
+    return event;
+  }
+
+  /**
+   * Parses numbers in the form the plugin writes, such as {@code -12} or
+   * {@code 64.5}, without going through the resolver.
+   *
+   * @return the number, or null for any other value
+   */
+  private static Object simpleNumber(String value) {
+    int length = value.length();
+    int start = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+    int dot = -1;
+    for (int i = start; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '.' && dot < 0) {
+        dot = i;
+      } else if (c < '0' || c > '9') {
+        return null;
+      }
+    }
+    int digits = (dot < 0 ? length : dot) - start;
+    if (digits == 0 || (digits > 1 && value.charAt(start) == '0')) {
+      return null; // octal in YAML 1.1
+    }
+    if (dot < 0) {
+      return digits <= 9 ? Integer.valueOf(value) : null;
+    }
+    return dot == length - 1 ? null : Double.valueOf(value);
+  }
+
+  private static double number(Object value, double fallback) {
+    return value instanceof Number ? ((Number) value).doubleValue() : fallback;
+  }
+
+  private static boolean bool(Object value) {
+    return value instanceof Boolean && (Boolean) value;
+  }
+
+  private static UUID parseUuid(String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return UUID.fromString(value);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package fr.kazotaruumc72.etherealportals.model;
+
+import java.util.UUID;
+import org.bukkit.World;
+
+/**
+ * Per-player runtime state: the portal the player stands in, the last evaluated
+ * position used by the movement pre-filter, the last prefetched portal, and the
+ * open selection GUI.
+ * Sessions are only mutated from the player's owning region thread.
+ */
+public class PlayerPortalSession {
+  /** Rough retained size of one session and its map entry, used for reporting. */
+  public static final int ESTIMATED_BYTES = 176;
+
+  private final UUID playerId;
+  private Portal currentPortal;
+  private String currentGroup;
+  private long lastCheckTick;
+  // Last evaluated position, see MovementFilter
+  private long registryVersion = -1;
+  private World world;
+  private int blockX;
+  private int blockY;
+  private int blockZ;
+  private boolean blockClear;
+  private double anchorX;
+  private double anchorY;
+  private double anchorZ;
+  private double clearanceSq;
+  // Portal whose destinations were last prefetched, see ChunkPrefetcher
+  private Portal approachedPortal;
+  private long approachTick;
+  // Selection GUI opened by stepping into a 3+ portal group
+  private String guiGroup;
+  private String guiSourcePortal;
+
+  /**
+   * Creates a new session.
+   *
+   * @param playerId the player UUID
+   */
+  public PlayerPortalSession(UUID playerId) {
+    this.playerId = playerId;
+  }
+
+  public UUID getPlayerId() {
+    return playerId;
+  }
+
+  public Portal getCurrentPortal() {
+    return currentPortal;
+  }
+
+  public String getCurrentGroup() {
+    return currentGroup;
+  }
+
+  public boolean isInsidePortal() {
+    return currentPortal != null;
+  }
+
+  /**
+   * Sets the portal the player currently stands in.
+   *
+   * @param portal the portal, or null when outside every portal
+   * @param groupName the portal's group name, or null
+   */
+  public void setCurrentPortal(Portal portal, String groupName) {
+    this.currentPortal = portal;
+    this.currentGroup = portal == null ? null : groupName;
+  }
+
+  public long getLastCheckTick() {
+    return lastCheckTick;
+  }
+
+  public long getRegistryVersion() {
+    return registryVersion;
+  }
+
+  public World getWorld() {
+    return world;
+  }
+
+  public boolean isBlockClear() {
+    return blockClear;
+  }
+
+  /**
+   * Checks whether the given block is the last evaluated one.
+   *
+   * @param x the block X coordinate
+   * @param y the block Y coordinate
+   * @param z the block Z coordinate
+   * @return true if it matches the last evaluated block
+   */
+  public boolean isSameBlock(int x, int y, int z) {
+    return blockX == x && blockY == y && blockZ == z;
+  }
+
+  /**
+   * Gets the squared distance from the last evaluated position.
+   *
+   * @param x the X coordinate
+   * @param y the Y coordinate
+   * @param z the Z coordinate
+   * @return the squared distance
+   */
+  public double distanceSqFromAnchor(double x, double y, double z) {
+    double dx = x - anchorX;
+    double dy = y - anchorY;
+    double dz = z - anchorZ;
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  public double getClearanceSq() {
+    return clearanceSq;
+  }
+
+  /**
+   * Records the result of an evaluated move.
+   *
+   * @param tick the tick of the check
+   * @param version the registry version the check used
+   * @param world the world of the evaluated position
+   * @param x the evaluated X coordinate
+   * @param y the evaluated Y coordinate
+   * @param z the evaluated Z coordinate
+   * @param blockClear whether no portal touches the evaluated block
+   * @param clearanceSq the squared distance to the nearest portal
+   */
+  public void recordCheck(long tick, long version, World world, double x, double y, double z,
+      boolean blockClear, double clearanceSq) {
+    this.lastCheckTick = tick;
+    this.registryVersion = version;
+    this.world = world;
+    this.anchorX = x;
+    this.anchorY = y;
+    this.anchorZ = z;
+    this.blockX = (int) Math.floor(x);
+    this.blockY = (int) Math.floor(y);
+    this.blockZ = (int) Math.floor(z);
+    this.blockClear = blockClear;
+    this.clearanceSq = clearanceSq;
+  }
+
+  /**
+   * Forgets the last evaluated position and approached portal, e.g. after a
+   * world change. The current portal is kept, so a player arriving inside the
+   * destination portal of a cross-world teleport does not enter it again.
+   */
+  public void resetPosition() {
+    this.registryVersion = -1;
+    this.world = null;
+    this.blockClear = false;
+    this.clearanceSq = 0.0;
+    this.approachedPortal = null;
+    this.approachTick = 0L;
+  }
+
+  public Portal getApproachedPortal() {
+    return approachedPortal;
+  }
+
+  public long getApproachTick() {
+    return approachTick;
+  }
+
+  /**
+   * Records the portal whose destinations were just prefetched.
+   *
+   * @param portal the approached portal
+   * @param tick the tick of the prefetch
+   */
+  public void setApproachedPortal(Portal portal, long tick) {
+    this.approachedPortal = portal;
+    this.approachTick = tick;
+  }
+
+  public String getGuiGroup() {
+    return guiGroup;
+  }
+
+  public String getGuiSourcePortal() {
+    return guiSourcePortal;
+  }
+
+  /**
+   * Records the selection GUI the player has open.
+   *
+   * @param groupName the group shown, or null when closed
+   * @param sourcePortal the portal the player entered, or null when closed
+   */
+  public void setGui(String groupName, String sourcePortal) {
+    this.guiGroup = groupName;
+    this.guiSourcePortal = sourcePortal;
+  }
+}
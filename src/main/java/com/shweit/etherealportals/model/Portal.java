@@ -1,6 +1,7 @@
 package fr.kazotaruumc72.etherealportals.model;
 
 import java.util.Objects;
+import java.util.UUID;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
@@ -13,6 +14,22 @@ public class Portal {
   private final Location baseLocation; // block base
   private String iconName; // optional icon reference
   private final boolean breakable; // whether this portal can be broken and dropped as item
+  private final PortalHitbox hitbox;
+  // Set through /portal group hitbox; otherwise the hitbox follows the config default
+  private final boolean customHitbox;
+  // Spawned display entities, persisted so startup never scans worlds for them
+  private volatile UUID textDisplayId;
+  private volatile UUID markerId;
+  // Hitbox anchor and world-space bounds, precomputed so lookups never recompute them
+  private final double centerX;
+  private final double baseY;
+  private final double centerZ;
+  private final double minX;
+  private final double minY;
+  private final double minZ;
+  private final double maxX;
+  private final double maxY;
+  private final double maxZ;
 
   /**
    * Creates a new portal (defaults to non-breakable).
@@ -34,10 +51,78 @@ public class Portal {
    * @param breakable whether this portal can be broken and dropped as item
    */
   public Portal(String name, Location baseLocation, String iconName, boolean breakable) {
+    this(name, baseLocation, iconName, breakable, PortalHitbox.DEFAULT);
+  }
+
+  /**
+   * Creates a new portal using the default hitbox.
+   *
+   * @param name the portal name
+   * @param baseLocation the base location of the portal
+   * @param iconName the optional icon name
+   * @param breakable whether this portal can be broken and dropped as item
+   * @param hitbox the configured default hitbox
+   */
+  public Portal(String name, Location baseLocation, String iconName, boolean breakable,
+      PortalHitbox hitbox) {
+    this(name, baseLocation, iconName, breakable, hitbox, false);
+  }
+
+  /**
+   * Creates a new portal.
+   *
+   * @param name the portal name
+   * @param baseLocation the base location of the portal
+   * @param iconName the optional icon name
+   * @param breakable whether this portal can be broken and dropped as item
+   * @param hitbox the detection volume of the portal
+   * @param customHitbox whether the hitbox was set for this portal and is saved
+   *     with it, rather than the configured default
+   */
+  public Portal(String name, Location baseLocation, String iconName, boolean breakable,
+      PortalHitbox hitbox, boolean customHitbox) {
     this.name = name;
     this.baseLocation = baseLocation.clone();
     this.iconName = iconName;
     this.breakable = breakable;
+    this.hitbox = hitbox;
+    this.customHitbox = customHitbox;
+    this.centerX = baseLocation.getX() + 0.5;
+    this.baseY = baseLocation.getY();
+    this.centerZ = baseLocation.getZ() + 0.5;
+    this.minX = centerX - hitbox.getExtentX();
+    this.maxX = centerX + hitbox.getExtentX();
+    this.minY = baseY;
+    this.maxY = baseY + hitbox.getHeight();
+    this.minZ = centerZ - hitbox.getExtentZ();
+    this.maxZ = centerZ + hitbox.getExtentZ();
+  }
+
+  /**
+   * Returns a copy of this portal using its own hitbox, which is saved with it.
+   *
+   * @param newHitbox the new hitbox
+   * @return the new portal
+   */
+  public Portal withHitbox(PortalHitbox newHitbox) {
+    return copy(newHitbox, true);
+  }
+
+  /**
+   * Returns a copy of this portal using a new default hitbox, which is not saved.
+   *
+   * @param defaultHitbox the configured default hitbox
+   * @return the new portal
+   */
+  public Portal withDefaultHitbox(PortalHitbox defaultHitbox) {
+    return copy(defaultHitbox, false);
+  }
+
+  private Portal copy(PortalHitbox newHitbox, boolean custom) {
+    Portal copy = new Portal(name, baseLocation, iconName, breakable, newHitbox, custom);
+    copy.textDisplayId = textDisplayId;
+    copy.markerId = markerId;
+    return copy;
   }
 
   public String getName() {
@@ -64,6 +149,81 @@ public class Portal {
     return breakable;
   }
 
+  public PortalHitbox getHitbox() {
+    return hitbox;
+  }
+
+  public boolean hasCustomHitbox() {
+    return customHitbox;
+  }
+
+  public UUID getTextDisplayId() {
+    return textDisplayId;
+  }
+
+  public void setTextDisplayId(UUID textDisplayId) {
+    this.textDisplayId = textDisplayId;
+  }
+
+  public UUID getMarkerId() {
+    return markerId;
+  }
+
+  public void setMarkerId(UUID markerId) {
+    this.markerId = markerId;
+  }
+
+  public double getCenterX() {
+    return centerX;
+  }
+
+  public double getBaseY() {
+    return baseY;
+  }
+
+  public double getCenterZ() {
+    return centerZ;
+  }
+
+  public double getMinX() {
+    return minX;
+  }
+
+  public double getMinY() {
+    return minY;
+  }
+
+  public double getMinZ() {
+    return minZ;
+  }
+
+  public double getMaxX() {
+    return maxX;
+  }
+
+  public double getMaxY() {
+    return maxY;
+  }
+
+  public double getMaxZ() {
+    return maxZ;
+  }
+
+  /**
+   * Checks whether a point lies inside this portal's hitbox.
+   *
+   * @param x the X coordinate
+   * @param y the Y coordinate
+   * @param z the Z coordinate
+   * @return true if the point is inside the hitbox
+   */
+  public boolean contains(double x, double y, double z) {
+    if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+      return false;
+    }
+    return hitbox.contains(x - centerX, y - baseY, z - centerZ);
+  }
+
   /**
    * Serializes this portal to a configuration section.
    *
@@ -80,6 +240,17 @@ public class Portal {
       section.set("icon", iconName);
     }
     section.set("breakable", breakable);
+    if (customHitbox) {
+      hitbox.serialize(section.createSection("hitbox"));
+    }
+    UUID text = textDisplayId;
+    UUID marker = markerId;
+    if (text != null) {
+      section.set("entities.text", text.toString());
+    }
+    if (marker != null) {
+      section.set("entities.marker", marker.toString());
+    }
   }
 
   /**
@@ -88,9 +259,11 @@ public class Portal {
    * @param name the portal name
    * @param section the configuration section to read from
    * @param world the world the portal is in
+   * @param defaultHitbox the hitbox to use when none is stored
    * @return the deserialized portal
    */
-  public static Portal deserialize(String name, ConfigurationSection section, World world) {
+  public static Portal deserialize(String name, ConfigurationSection section, World world,
+      PortalHitbox defaultHitbox) {
     double x = section.getDouble("x");
     double y = section.getDouble("y");
     double z = section.getDouble("z");
@@ -99,7 +272,24 @@ public class Portal {
     Location loc = new Location(world, x, y, z, yaw, pitch);
     String icon = section.getString("icon");
     boolean breakable = section.getBoolean("breakable", false);
-    return new Portal(name, loc, icon, breakable);
+    // Only portals with their own hitbox store one
+    ConfigurationSection hitboxSection = section.getConfigurationSection("hitbox");
+    PortalHitbox hitbox = PortalHitbox.deserialize(hitboxSection, defaultHitbox);
+    Portal portal = new Portal(name, loc, icon, breakable, hitbox, hitboxSection != null);
+    portal.textDisplayId = parseUuid(section.getString("entities.text"));
+    portal.markerId = parseUuid(section.getString("entities.marker"));
+    return portal;
+  }
+
+  private static UUID parseUuid(String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return UUID.fromString(value);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
   }
 
   @Override
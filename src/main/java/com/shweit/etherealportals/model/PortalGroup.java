@@ -7,26 +7,62 @@ import java.util.Map;
 
 /**
  * Represents a logical grouping of portals. Teleportation only allowed within group.
+ * Instances are immutable; changes produce a new group sharing the same portals.
  */
 public class PortalGroup {
   private final String name;
-  private final Map<String, Portal> portals = new LinkedHashMap<>();
+  private final String key; // lowercase name, computed once for registry lookups
+  private final Map<String, Portal> portals;
 
   /**
-   * Creates a new portal group.
+   * Creates a new empty portal group.
    *
    * @param name the group name
    */
   public PortalGroup(String name) {
     this.name = name;
+    this.key = name.toLowerCase();
+    this.portals = Collections.emptyMap();
+  }
+
+  /**
+   * Creates a new portal group holding the given portals.
+   * Portals whose names collide (case-insensitive) keep the first occurrence.
+   *
+   * @param name the group name
+   * @param portals the portals of the group, in display order
+   */
+  public PortalGroup(String name, Collection<Portal> portals) {
+    this.name = name;
+    this.key = name.toLowerCase();
+    Map<String, Portal> copy = new LinkedHashMap<>();
+    for (Portal portal : portals) {
+      copy.putIfAbsent(portal.getName().toLowerCase(), portal);
+    }
+    this.portals = Collections.unmodifiableMap(copy);
+  }
+
+  private PortalGroup(String name, Map<String, Portal> portals) {
+    this.name = name;
+    this.key = name.toLowerCase();
+    this.portals = Collections.unmodifiableMap(portals);
   }
 
   public String getName() {
     return name;
   }
 
+  /**
+   * Gets the lowercase name under which this group is registered.
+   *
+   * @return the group key
+   */
+  public String getKey() {
+    return key;
+  }
+
   public Collection<Portal> getPortals() {
-    return Collections.unmodifiableCollection(portals.values());
+    return portals.values();
   }
 
   /**
@@ -40,28 +76,52 @@ public class PortalGroup {
   }
 
   /**
-   * Adds a portal to this group.
+   * Returns a copy of this group with the portal added.
    *
    * @param portal the portal to add
-   * @return true if added, false if a portal with that name already exists
+   * @return the new group, or null if a portal with that name already exists
    */
-  public boolean addPortal(Portal portal) {
+  public PortalGroup withPortal(Portal portal) {
     String key = portal.getName().toLowerCase();
     if (portals.containsKey(key)) {
-      return false;
+      return null;
+    }
+    Map<String, Portal> copy = new LinkedHashMap<>(portals);
+    copy.put(key, portal);
+    return new PortalGroup(name, copy);
+  }
+
+  /**
+   * Returns a copy of this group in which the portal with the same name is
+   * replaced, keeping its position.
+   *
+   * @param portal the replacement portal
+   * @return the new group, or null if no portal with that name exists
+   */
+  public PortalGroup withReplacedPortal(Portal portal) {
+    String key = portal.getName().toLowerCase();
+    if (!portals.containsKey(key)) {
+      return null;
     }
-    portals.put(key, portal);
-    return true;
+    Map<String, Portal> copy = new LinkedHashMap<>(portals);
+    copy.put(key, portal);
+    return new PortalGroup(name, copy);
   }
 
   /**
-   * Removes a portal from this group.
+   * Returns a copy of this group without the named portal.
    *
    * @param portalName the portal name
-   * @return true if removed, false if not found
+   * @return the new group, or null if not found
    */
-  public boolean removePortal(String portalName) {
-    return portals.remove(portalName.toLowerCase()) != null;
+  public PortalGroup withoutPortal(String portalName) {
+    String key = portalName.toLowerCase();
+    if (!portals.containsKey(key)) {
+      return null;
+    }
+    Map<String, Portal> copy = new LinkedHashMap<>(portals);
+    copy.remove(key);
+    return new PortalGroup(name, copy);
   }
 
   public boolean isEmpty() {
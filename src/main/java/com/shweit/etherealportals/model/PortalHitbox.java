@@ -0,0 +1,274 @@
+package fr.kazotaruumc72.etherealportals.model;
+
+import java.util.Locale;
+import java.util.Objects;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Immutable detection volume of a portal, expressed relative to the portal's
+ * block center at its base height. Shapes are an axis-aligned box, a vertical
+ * cylinder, or a slab rotated around the Y axis for gate-shaped portals.
+ */
+public final class PortalHitbox {
+  /** Shape of a portal hitbox. */
+  public enum Shape {
+    BOX,
+    CYLINDER,
+    SLAB
+  }
+
+  /** Default hitbox matching the historical 2x2x2 detection area. */
+  public static final PortalHitbox DEFAULT = box(2.0, 2.0, 2.0);
+
+  private final Shape shape;
+  private final double width;
+  private final double depth;
+  private final double height;
+  private final double yaw;
+  // Derived values, computed once per hitbox
+  private final double cos;
+  private final double sin;
+  private final double extentX;
+  private final double extentZ;
+
+  private PortalHitbox(Shape shape, double width, double depth, double height, double yaw) {
+    this.shape = shape;
+    this.width = width;
+    this.depth = depth;
+    this.height = height;
+    this.yaw = yaw;
+    double rad = Math.toRadians(yaw);
+    this.cos = Math.cos(rad);
+    this.sin = Math.sin(rad);
+    switch (shape) {
+      case CYLINDER:
+        this.extentX = width / 2.0;
+        this.extentZ = width / 2.0;
+        break;
+      case SLAB:
+        this.extentX = Math.abs(cos) * width / 2.0 + Math.abs(sin) * depth / 2.0;
+        this.extentZ = Math.abs(sin) * width / 2.0 + Math.abs(cos) * depth / 2.0;
+        break;
+      default:
+        this.extentX = width / 2.0;
+        this.extentZ = depth / 2.0;
+        break;
+    }
+  }
+
+  /**
+   * Creates an axis-aligned box hitbox.
+   *
+   * @param width the size along the X axis
+   * @param depth the size along the Z axis
+   * @param height the size along the Y axis
+   * @return the hitbox
+   */
+  public static PortalHitbox box(double width, double depth, double height) {
+    return new PortalHitbox(Shape.BOX, width, depth, height, 0.0);
+  }
+
+  /**
+   * Creates a vertical cylinder hitbox.
+   *
+   * @param radius the cylinder radius
+   * @param height the cylinder height
+   * @return the hitbox
+   */
+  public static PortalHitbox cylinder(double radius, double height) {
+    return new PortalHitbox(Shape.CYLINDER, radius * 2.0, radius * 2.0, height, 0.0);
+  }
+
+  /**
+   * Creates a slab hitbox rotated around the Y axis.
+   *
+   * @param width the size along the slab face
+   * @param thickness the size across the slab face
+   * @param height the size along the Y axis
+   * @param yaw the rotation in degrees (0 means the face runs along the X axis)
+   * @return the hitbox
+   */
+  public static PortalHitbox slab(double width, double thickness, double height, double yaw) {
+    return new PortalHitbox(Shape.SLAB, width, thickness, height, yaw);
+  }
+
+  /**
+   * Creates a hitbox from the values returned by its getters, as stored by
+   * binary and database storage.
+   *
+   * @param shape the shape
+   * @param width the width, or the diameter of a cylinder
+   * @param depth the depth, or the thickness of a slab; ignored for cylinders
+   * @param height the height
+   * @param yaw the rotation of a slab; ignored for other shapes
+   * @return the hitbox
+   */
+  public static PortalHitbox of(Shape shape, double width, double depth, double height,
+      double yaw) {
+    switch (shape) {
+      case CYLINDER:
+        return cylinder(width / 2.0, height);
+      case SLAB:
+        return slab(width, depth, height, yaw);
+      default:
+        return box(width, depth, height);
+    }
+  }
+
+  public Shape getShape() {
+    return shape;
+  }
+
+  public double getWidth() {
+    return width;
+  }
+
+  public double getDepth() {
+    return depth;
+  }
+
+  public double getHeight() {
+    return height;
+  }
+
+  public double getYaw() {
+    return yaw;
+  }
+
+  /**
+   * Gets half the size of the hitbox's axis-aligned bounds along X.
+   *
+   * @return the X half-extent
+   */
+  public double getExtentX() {
+    return extentX;
+  }
+
+  /**
+   * Gets half the size of the hitbox's axis-aligned bounds along Z.
+   *
+   * @return the Z half-extent
+   */
+  public double getExtentZ() {
+    return extentZ;
+  }
+
+  /**
+   * Tests a point given relative to the portal's block center at base height.
+   *
+   * @param dx the X offset from the center
+   * @param dy the Y offset from the base
+   * @param dz the Z offset from the center
+   * @return true if the point lies inside the hitbox
+   */
+  public boolean contains(double dx, double dy, double dz) {
+    if (dy < 0 || dy > height) {
+      return false;
+    }
+    switch (shape) {
+      case CYLINDER:
+        double radius = width / 2.0;
+        return dx * dx + dz * dz <= radius * radius;
+      case SLAB:
+        double along = dx * cos + dz * sin;
+        double across = -dx * sin + dz * cos;
+        return Math.abs(along) <= width / 2.0 && Math.abs(across) <= depth / 2.0;
+      default:
+        return Math.abs(dx) <= width / 2.0 && Math.abs(dz) <= depth / 2.0;
+    }
+  }
+
+  /**
+   * Serializes this hitbox to a configuration section.
+   *
+   * @param section the configuration section to write to
+   */
+  public void serialize(ConfigurationSection section) {
+    section.set("shape", shape.name().toLowerCase(Locale.ROOT));
+    switch (shape) {
+      case CYLINDER:
+        section.set("radius", width / 2.0);
+        section.set("height", height);
+        break;
+      case SLAB:
+        section.set("width", width);
+        section.set("thickness", depth);
+        section.set("height", height);
+        section.set("yaw", yaw);
+        break;
+      default:
+        section.set("width", width);
+        section.set("depth", depth);
+        section.set("height", height);
+        break;
+    }
+  }
+
+  /**
+   * Deserializes a hitbox from a configuration section.
+   *
+   * @param section the configuration section to read from, may be null
+   * @param fallback the hitbox to use when the section is missing or invalid
+   * @return the deserialized hitbox
+   */
+  public static PortalHitbox deserialize(ConfigurationSection section, PortalHitbox fallback) {
+    if (section == null) {
+      return fallback;
+    }
+    String shape = section.getString("shape", "box").toLowerCase(Locale.ROOT);
+    switch (shape) {
+      case "cylinder":
+        return cylinder(section.getDouble("radius", fallback.extentX),
+            section.getDouble("height", fallback.height));
+      case "slab":
+        return slab(section.getDouble("width", fallback.width),
+            section.getDouble("thickness", fallback.depth),
+            section.getDouble("height", fallback.height),
+            section.getDouble("yaw", 0.0));
+      case "box":
+        return box(section.getDouble("width", fallback.width),
+            section.getDouble("depth", fallback.depth),
+            section.getDouble("height", fallback.height));
+      default:
+        return fallback;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof PortalHitbox)) {
+      return false;
+    }
+    PortalHitbox other = (PortalHitbox) o;
+    return shape == other.shape
+        && Double.compare(width, other.width) == 0
+        && Double.compare(depth, other.depth) == 0
+        && Double.compare(height, other.height) == 0
+        && Double.compare(yaw, other.yaw) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(shape, width, depth, height, yaw);
+  }
+
+  /**
+   * Describes this hitbox for chat output.
+   *
+   * @return a short human-readable description
+   */
+  public String describe() {
+    switch (shape) {
+      case CYLINDER:
+        return String.format(Locale.ROOT, "cylinder r=%.1f h=%.1f", width / 2.0, height);
+      case SLAB:
+        return String.format(Locale.ROOT, "slab %.1fx%.1fx%.1f yaw=%.0f",
+            width, depth, height, yaw);
+      default:
+        return String.format(Locale.ROOT, "box %.1fx%.1fx%.1f", width, depth, height);
+    }
+  }
+}
@@ -0,0 +1,452 @@
+package fr.kazotaruumc72.etherealportals.teleport;
+
+import fr.kazotaruumc72.etherealportals.util.MessageUtils;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Rate limits teleport execution so a crowd leaving one portal group cannot
+ * flood a single destination region with chunk loads in the same tick.
+ *
+ * <p>A teleport starts only when the global in-flight limit has room and the
+ * token bucket of its destination region has a token. Teleports that cannot
+ * start wait in a bounded queue kept per destination; destinations are served
+ * round-robin so a hot destination does not hold back the others. The queue is
+ * drained once per tick on the global region scheduler.
+ */
+public class AdmissionController {
+  // Destinations are grouped by 32x32 chunk areas, matching the portal index regions
+  private static final int REGION_SHIFT = 9;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  private final Plugin plugin;
+  private final Object lock = new Object();
+  private final Map<RegionKey, TokenBucket> buckets = new HashMap<>();
+  private final Map<RegionKey, ArrayDeque<Ticket>> queues = new HashMap<>();
+  private final ArrayDeque<RegionKey> rotation = new ArrayDeque<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile int queued;
+  private volatile Settings settings;
+  private ScheduledTask pumpTask;
+  private long ticks;
+
+  private final LongAdder admittedDirect = new LongAdder();
+  private final LongAdder admittedQueued = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private final AtomicInteger maxQueued = new AtomicInteger();
+
+  /**
+   * Creates a new admission controller.
+   *
+   * @param plugin the owning plugin
+   * @param settings the admission limits
+   */
+  public AdmissionController(Plugin plugin, Settings settings) {
+    this.plugin = plugin;
+    this.settings = settings;
+  }
+
+  /**
+   * Updates the admission limits. Existing buckets adopt the new rate on refill.
+   *
+   * @param settings the admission limits
+   */
+  public void updateConfig(Settings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Starts draining the queue every tick.
+   */
+  public void start() {
+    pumpTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(
+        plugin,
+        (task) -> pump(),
+        1L,
+        1L
+    );
+  }
+
+  /**
+   * Stops draining and drops every queued teleport without admitting it.
+   */
+  public void stop() {
+    if (pumpTask != null) {
+      pumpTask.cancel();
+      pumpTask = null;
+    }
+    synchronized (lock) {
+      queues.clear();
+      rotation.clear();
+      buckets.clear();
+      queued = 0;
+    }
+  }
+
+  /**
+   * Asks to start a teleport. If it may start now, {@code onAdmit} runs on the
+   * calling thread before this returns; otherwise it is queued and {@code onAdmit}
+   * later runs on the global region thread, which must hop to the player's thread.
+   * Every admitted teleport must call {@link #release()} once it finishes.
+   *
+   * @param playerId the player UUID
+   * @param destination the teleport destination
+   * @param onAdmit called once the teleport may start
+   * @param onReject called on the calling thread when the queue is full
+   * @return the queued ticket, or null if admitted at once or rejected
+   */
+  Ticket submit(UUID playerId, Location destination, Admission onAdmit,
+      Runnable onReject) {
+    RegionKey key = RegionKey.of(destination);
+    Settings current = settings;
+    boolean admit;
+    synchronized (lock) {
+      ArrayDeque<Ticket> queue = queues.get(key);
+      admit = (queue == null || queue.isEmpty()) && tryAcquire(key, current);
+      if (!admit && queued < current.maxQueued) {
+        Ticket ticket = new Ticket(playerId, key, onAdmit);
+        if (queue == null) {
+          queue = new ArrayDeque<>();
+          queues.put(key, queue);
+        }
+        if (queue.isEmpty()) {
+          rotation.addLast(key);
+        }
+        queue.addLast(ticket);
+        queued++;
+        maxQueued.accumulateAndGet(queued, Math::max);
+        return ticket;
+      }
+    }
+    if (admit) {
+      admittedDirect.increment();
+      onAdmit.admitted(false, 0L);
+    } else {
+      rejected.increment();
+      onReject.run();
+    }
+    return null;
+  }
+
+  /**
+   * Removes a queued ticket that will no longer be admitted.
+   *
+   * @param ticket the ticket to withdraw
+   */
+  void withdraw(Ticket ticket) {
+    synchronized (lock) {
+      ArrayDeque<Ticket> queue = queues.get(ticket.key);
+      if (queue != null && queue.remove(ticket)) {
+        queued--;
+        if (queue.isEmpty()) {
+          queues.remove(ticket.key);
+          rotation.remove(ticket.key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Frees the in-flight slot of a finished teleport.
+   */
+  void release() {
+    inFlight.decrementAndGet();
+  }
+
+  /**
+   * Gets the queue position of a ticket.
+   *
+   * @param ticket the ticket
+   * @return the 1-based position within its destination queue, or 0 if not queued
+   */
+  int position(Ticket ticket) {
+    synchronized (lock) {
+      ArrayDeque<Ticket> queue = queues.get(ticket.key);
+      if (queue == null) {
+        return 0;
+      }
+      int position = 1;
+      for (Ticket other : queue) {
+        if (other == ticket) {
+          return position;
+        }
+        position++;
+      }
+      return 0;
+    }
+  }
+
+  private void pump() {
+    ticks++;
+    if (queued == 0) {
+      if (ticks % 1200 == 0) {
+        pruneBuckets();
+      }
+      return;
+    }
+    Settings current = settings;
+    long now = System.nanoTime();
+    List<Ticket> admitted = new ArrayList<>();
+    synchronized (lock) {
+      // One pass over the destinations admits at most one ticket each, round-robin
+      int destinations = rotation.size();
+      for (int i = 0; i < destinations; i++) {
+        RegionKey key = rotation.pollFirst();
+        ArrayDeque<Ticket> queue = queues.get(key);
+        if (queue == null || queue.isEmpty()) {
+          queues.remove(key);
+          continue;
+        }
+        if (tryAcquire(key, current)) {
+          admitted.add(queue.pollFirst());
+          queued--;
+        }
+        if (queue.isEmpty()) {
+          queues.remove(key);
+        } else {
+          rotation.addLast(key);
+        }
+      }
+    }
+    if (ticks % 20 == 0) {
+      showPositions();
+    }
+    for (Ticket ticket : admitted) {
+      long waited = now - ticket.queuedAt;
+      admittedQueued.increment();
+      waitNanos.add(waited);
+      maxWaitNanos.accumulateAndGet(waited, Math::max);
+      ticket.onAdmit.admitted(true, waited);
+    }
+  }
+
+  private void showPositions() {
+    List<Ticket> tickets = new ArrayList<>();
+    List<Integer> positions = new ArrayList<>();
+    synchronized (lock) {
+      for (ArrayDeque<Ticket> queue : queues.values()) {
+        int position = 1;
+        for (Ticket ticket : queue) {
+          tickets.add(ticket);
+          positions.add(position++);
+        }
+      }
+    }
+    for (int i = 0; i < tickets.size(); i++) {
+      Player player = Bukkit.getPlayer(tickets.get(i).playerId);
+      if (player != null) {
+        int position = positions.get(i);
+        player.getScheduler().execute(plugin, () -> MessageUtils.queued(player, position),
+            null, 1L);
+      }
+    }
+  }
+
+  // Caller holds the lock
+  private boolean tryAcquire(RegionKey key, Settings current) {
+    if (inFlight.get() >= current.maxInFlight) {
+      return false;
+    }
+    TokenBucket bucket = buckets.get(key);
+    if (bucket == null) {
+      bucket = new TokenBucket(current.burst);
+      buckets.put(key, bucket);
+    }
+    if (!bucket.tryTake(current)) {
+      return false;
+    }
+    inFlight.incrementAndGet();
+    return true;
+  }
+
+  private void pruneBuckets() {
+    Settings current = settings;
+    long now = System.nanoTime();
+    synchronized (lock) {
+      Iterator<Map.Entry<RegionKey, TokenBucket>> it = buckets.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<RegionKey, TokenBucket> entry = it.next();
+        if (!queues.containsKey(entry.getKey()) && entry.getValue().isFull(current, now)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public int getQueued() {
+    return queued;
+  }
+
+  public int getMaxQueued() {
+    return maxQueued.get();
+  }
+
+  public long getAdmittedDirect() {
+    return admittedDirect.sum();
+  }
+
+  public long getAdmittedQueued() {
+    return admittedQueued.sum();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  /**
+   * Gets the average time queued teleports waited before starting.
+   *
+   * @return the average wait in milliseconds
+   */
+  public double getAverageWaitMillis() {
+    long count = admittedQueued.sum();
+    return count == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / count;
+  }
+
+  /**
+   * Gets the longest time a queued teleport waited before starting.
+   *
+   * @return the longest wait in milliseconds
+   */
+  public double getMaxWaitMillis() {
+    return maxWaitNanos.get() / 1_000_000.0;
+  }
+
+  /**
+   * Immutable admission limits.
+   */
+  public static final class Settings {
+    final int maxInFlight;
+    final double ratePerSecond;
+    final int burst;
+    final int maxQueued;
+
+    /**
+     * Creates admission limits.
+     *
+     * @param maxInFlight maximum teleports running at once across the server
+     * @param ratePerSecond teleports per second allowed into one destination region
+     * @param burst teleports a destination region may take at once after being idle
+     * @param maxQueued maximum teleports waiting for admission
+     */
+    public Settings(int maxInFlight, double ratePerSecond, int burst, int maxQueued) {
+      this.maxInFlight = Math.max(1, maxInFlight);
+      this.ratePerSecond = Math.max(0.1, ratePerSecond);
+      this.burst = Math.max(1, burst);
+      this.maxQueued = Math.max(0, maxQueued);
+    }
+  }
+
+  /**
+   * Receives the admission of a submitted teleport.
+   */
+  interface Admission {
+    /**
+     * Called once the teleport holds an in-flight slot.
+     *
+     * @param queued whether the teleport had to wait in the queue
+     * @param waitNanos the time spent queued
+     */
+    void admitted(boolean queued, long waitNanos);
+  }
+
+  /**
+   * A teleport waiting for admission.
+   */
+  static final class Ticket {
+    private final UUID playerId;
+    private final RegionKey key;
+    private final Admission onAdmit;
+    private final long queuedAt = System.nanoTime();
+
+    private Ticket(UUID playerId, RegionKey key, Admission onAdmit) {
+      this.playerId = playerId;
+      this.key = key;
+      this.onAdmit = onAdmit;
+    }
+
+    UUID getPlayerId() {
+      return playerId;
+    }
+  }
+
+  private static final class TokenBucket {
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    TokenBucket(int burst) {
+      this.tokens = burst;
+    }
+
+    boolean tryTake(Settings current) {
+      refill(current, System.nanoTime());
+      if (tokens < 1) {
+        return false;
+      }
+      tokens -= 1;
+      return true;
+    }
+
+    boolean isFull(Settings current, long now) {
+      refill(current, now);
+      return tokens >= current.burst;
+    }
+
+    private void refill(Settings current, long now) {
+      tokens = Math.min(current.burst,
+          tokens + (now - refilledAt) * current.ratePerSecond / NANOS_PER_SECOND);
+      refilledAt = now;
+    }
+  }
+
+  private static final class RegionKey {
+    private final UUID worldId;
+    private final int x;
+    private final int z;
+
+    private RegionKey(UUID worldId, int x, int z) {
+      this.worldId = worldId;
+      this.x = x;
+      this.z = z;
+    }
+
+    static RegionKey of(Location loc) {
+      return new RegionKey(loc.getWorld().getUID(),
+          loc.getBlockX() >> REGION_SHIFT, loc.getBlockZ() >> REGION_SHIFT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof RegionKey)) {
+        return false;
+      }
+      RegionKey other = (RegionKey) o;
+      return x == other.x && z == other.z && worldId.equals(other.worldId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(worldId, x, z);
+    }
+  }
+}
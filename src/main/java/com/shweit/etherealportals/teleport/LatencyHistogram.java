@@ -0,0 +1,110 @@
+package fr.kazotaruumc72.etherealportals.teleport;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram.
+ *
+ * <p>Values are recorded in microseconds. Values below 32 get exact buckets;
+ * above that each power of two is split into 16 buckets, which keeps every
+ * reported percentile within about 6% of the true value. Recording is a single
+ * atomic increment and never allocates.
+ */
+public final class LatencyHistogram {
+  private static final int LINEAR = 32;
+  private static final int SUB_BUCKETS = 16;
+  private static final int MAX_EXPONENT = 40; // about 12 days in microseconds
+  // Exponents 5..39 get 16 buckets each, plus one overflow bucket
+  static final int BUCKETS = LINEAR + (MAX_EXPONENT - 5) * SUB_BUCKETS + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long micros = Math.max(0, nanos / 1000L);
+    counts.incrementAndGet(index(micros));
+    long current = max.get();
+    while (micros > current && !max.compareAndSet(current, micros)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Adds this histogram's counts to a snapshot.
+   *
+   * @param snapshot the snapshot to accumulate into
+   */
+  void addTo(Snapshot snapshot) {
+    for (int i = 0; i < BUCKETS; i++) {
+      long count = counts.get(i);
+      snapshot.counts[i] += count;
+      snapshot.total += count;
+    }
+    snapshot.max = Math.max(snapshot.max, max.get());
+  }
+
+  static int index(long micros) {
+    if (micros < LINEAR) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent >= MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int mantissa = (int) (micros >>> (exponent - 4)); // 16..31
+    return LINEAR + (exponent - 5) * SUB_BUCKETS + (mantissa - SUB_BUCKETS);
+  }
+
+  static long upperBound(int index) {
+    if (index < LINEAR) {
+      return index;
+    }
+    int exponent = (index - LINEAR) / SUB_BUCKETS + 5;
+    int mantissa = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((long) (mantissa + 1) << (exponent - 4)) - 1;
+  }
+
+  /**
+   * Point-in-time merge of one or more histograms.
+   */
+  public static final class Snapshot {
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+
+    public long getCount() {
+      return total;
+    }
+
+    /**
+     * Gets a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds, or 0 if nothing was recorded
+     */
+    public double percentileMillis(double percentile) {
+      if (total == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(upperBound(i), max) / 1000.0;
+        }
+      }
+      return max / 1000.0;
+    }
+
+    public double getMaxMillis() {
+      return max / 1000.0;
+    }
+  }
+}
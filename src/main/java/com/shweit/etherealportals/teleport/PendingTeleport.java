@@ -0,0 +1,110 @@
+package fr.kazotaruumc72.etherealportals.teleport;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bukkit.Location;
+
+/**
+ * A teleport waiting for its delay to pass on the player's entity scheduler, then
+ * for admission.
+ * It leaves the scheduled state exactly once, either by running or by being cancelled.
+ */
+final class PendingTeleport {
+  private static final int SCHEDULED = 0;
+  private static final int RUNNING = 1;
+  private static final int CANCELLED = 2;
+
+  private final UUID playerId;
+  private final String groupName;
+  private final Portal target;
+  private final Location targetLocation;
+  private final long enteredAt;
+  private final long scheduledAt = System.nanoTime();
+  private volatile long startedAt;
+  private final AtomicInteger state = new AtomicInteger(SCHEDULED);
+  private volatile ScheduledTask task;
+  private volatile AdmissionController.Ticket ticket;
+
+  PendingTeleport(UUID playerId, String groupName, Portal target, long enteredAt) {
+    this.playerId = playerId;
+    this.enteredAt = enteredAt;
+    this.groupName = groupName;
+    this.target = target;
+    this.targetLocation = target.getCenterLocation();
+  }
+
+  UUID getPlayerId() {
+    return playerId;
+  }
+
+  String getGroupName() {
+    return groupName;
+  }
+
+  Portal getTarget() {
+    return target;
+  }
+
+  Location getTargetLocation() {
+    return targetLocation;
+  }
+
+  long getEnteredAt() {
+    return enteredAt;
+  }
+
+  long getScheduledAt() {
+    return scheduledAt;
+  }
+
+  long getStartedAt() {
+    return startedAt;
+  }
+
+  void setTask(ScheduledTask task) {
+    this.task = task;
+  }
+
+  AdmissionController.Ticket getTicket() {
+    return ticket;
+  }
+
+  void setTicket(AdmissionController.Ticket ticket) {
+    this.ticket = ticket;
+  }
+
+  boolean isCancelled() {
+    return state.get() == CANCELLED;
+  }
+
+  /**
+   * Moves the teleport from scheduled to running.
+   *
+   * @return true if it was still scheduled
+   */
+  boolean begin() {
+    if (!state.compareAndSet(SCHEDULED, RUNNING)) {
+      return false;
+    }
+    startedAt = System.nanoTime();
+    return true;
+  }
+
+  /**
+   * Moves the teleport from scheduled to cancelled and cancels its task.
+   *
+   * @return true if it was still scheduled
+   */
+  boolean cancel() {
+    if (!state.compareAndSet(SCHEDULED, CANCELLED)) {
+      return false;
+    }
+    ScheduledTask scheduled = task;
+    if (scheduled != null) {
+      scheduled.cancel();
+    }
+    return true;
+  }
+}
@@ -0,0 +1,101 @@
+package fr.kazotaruumc72.etherealportals.teleport;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Teleport latency histograms per stage, tagged by group and destination portal.
+ */
+public class TeleportMetrics {
+  /** Measured teleport stages. */
+  public enum Stage {
+    /** Portal entry or GUI click until the teleport is scheduled. */
+    ENTER_TO_SCHEDULE,
+    /** Scheduling until the teleport starts, covering the delay and admission. */
+    SCHEDULE_TO_START,
+    /** Teleport start until the player arrived. */
+    START_TO_COMPLETE
+  }
+
+  private final Map<String, Map<String, LatencyHistogram[]>> groups = new ConcurrentHashMap<>();
+
+  /**
+   * Records the stage latencies of a completed teleport.
+   *
+   * @param groupName the group of the destination portal
+   * @param portalName the destination portal
+   * @param enteredAt when the player entered the portal or clicked the GUI
+   * @param scheduledAt when the teleport was scheduled
+   * @param startedAt when the teleport started
+   * @param completedAt when the teleport completed
+   */
+  public void record(String groupName, String portalName, long enteredAt, long scheduledAt,
+      long startedAt, long completedAt) {
+    LatencyHistogram[] stages = groups
+        .computeIfAbsent(groupName, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(portalName, key -> newStages());
+    stages[Stage.ENTER_TO_SCHEDULE.ordinal()].record(scheduledAt - enteredAt);
+    stages[Stage.SCHEDULE_TO_START.ordinal()].record(startedAt - scheduledAt);
+    stages[Stage.START_TO_COMPLETE.ordinal()].record(completedAt - startedAt);
+  }
+
+  /**
+   * Merges the histograms of a stage.
+   *
+   * @param stage the stage
+   * @param groupName the group to include, or null for every group
+   * @param portalName the portal to include, or null for every portal of the group
+   * @return the merged snapshot
+   */
+  public LatencyHistogram.Snapshot snapshot(Stage stage, String groupName, String portalName) {
+    LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+    for (Map.Entry<String, Map<String, LatencyHistogram[]>> group : groups.entrySet()) {
+      if (groupName != null && !group.getKey().equalsIgnoreCase(groupName)) {
+        continue;
+      }
+      for (Map.Entry<String, LatencyHistogram[]> portal : group.getValue().entrySet()) {
+        if (portalName != null && !portal.getKey().equalsIgnoreCase(portalName)) {
+          continue;
+        }
+        portal.getValue()[stage.ordinal()].addTo(snapshot);
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * Gets the groups with recorded teleports.
+   *
+   * @return the group names
+   */
+  public Set<String> getGroupNames() {
+    return groups.keySet();
+  }
+
+  /**
+   * Gets the destination portals of a group with recorded teleports.
+   *
+   * @param groupName the group name
+   * @return the portal names
+   */
+  public Set<String> getPortalNames(String groupName) {
+    Map<String, LatencyHistogram[]> portals = groups.get(groupName);
+    return portals == null ? Set.of() : portals.keySet();
+  }
+
+  /**
+   * Drops every recorded latency.
+   */
+  public void reset() {
+    groups.clear();
+  }
+
+  private static LatencyHistogram[] newStages() {
+    LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    for (int i = 0; i < stages.length; i++) {
+      stages[i] = new LatencyHistogram();
+    }
+    return stages;
+  }
+}
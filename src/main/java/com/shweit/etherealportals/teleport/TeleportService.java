@@ -0,0 +1,282 @@
+package fr.kazotaruumc72.etherealportals.teleport;
+
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.manager.CooldownManager;
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.util.MessageUtils;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.entity.Player;
+
+/**
+ * Runs every portal teleport through the same stages: cooldown gate, source
+ * effects, destination prefetch, delayed teleport, admission and arrival effects.
+ *
+ * <p>The delay runs on the player's entity scheduler, so the teleport follows the
+ * player across regions and is retired with it. A player has at most one pending
+ * teleport; it is cancelled when the player leaves the source portal, quits or
+ * changes world, and cancelling releases the pinned destination chunk.
+ */
+public class TeleportService {
+  /** Why a pending teleport was cancelled. */
+  public enum CancelReason {
+    WALKED_AWAY,
+    QUIT,
+    WORLD_CHANGE,
+    RETIRED,
+    REJECTED,
+    SHUTDOWN
+  }
+
+  private final EtherealPortals plugin;
+  private final AdmissionController admission;
+  private final TeleportMetrics metrics = new TeleportMetrics();
+  private final Map<UUID, PendingTeleport> pending = new ConcurrentHashMap<>();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder[] cancelled = new LongAdder[CancelReason.values().length];
+  private final LongAdder failed = new LongAdder();
+  private volatile long delayTicks;
+
+  /**
+   * Creates a new teleport service.
+   *
+   * @param plugin the plugin instance
+   * @param admission the admission controller gating teleport starts
+   * @param delayTicks ticks between entering a portal and the teleport
+   */
+  public TeleportService(EtherealPortals plugin, AdmissionController admission,
+      long delayTicks) {
+    this.plugin = plugin;
+    this.admission = admission;
+    this.delayTicks = Math.max(1L, delayTicks);
+    for (int i = 0; i < cancelled.length; i++) {
+      cancelled[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Updates the teleport delay. Pending teleports keep their schedule.
+   *
+   * @param delayTicks ticks between entering a portal and the teleport
+   */
+  public void setDelayTicks(long delayTicks) {
+    this.delayTicks = Math.max(1L, delayTicks);
+  }
+
+  /**
+   * Requests a teleport. Must be called on the player's region thread.
+   *
+   * @param player the player to teleport
+   * @param groupName the group of the target portal
+   * @param target the target portal
+   * @param enteredAt {@link System#nanoTime()} when the player entered the portal or
+   *     picked the destination
+   * @return true if the teleport was scheduled
+   */
+  public boolean request(Player player, String groupName, Portal target, long enteredAt) {
+    UUID uuid = player.getUniqueId();
+    if (!passesCooldown(player) || pending.containsKey(uuid)) {
+      return false;
+    }
+
+    playSourceEffects(player);
+
+    PendingTeleport teleport = new PendingTeleport(uuid, groupName, target, enteredAt);
+    pending.put(uuid, teleport);
+    plugin.getChunkPrefetcher().pin(teleport.getTargetLocation());
+
+    ScheduledTask task = player.getScheduler().runDelayed(
+        plugin,
+        (scheduled) -> execute(player, teleport),
+        () -> cancel(teleport, CancelReason.RETIRED),
+        delayTicks
+    );
+    if (task == null) {
+      // The player was removed between the event and now
+      cancel(teleport, CancelReason.RETIRED);
+      return false;
+    }
+    teleport.setTask(task);
+    return true;
+  }
+
+  /**
+   * Cancels the pending teleport of a player, if any.
+   *
+   * @param uuid the player UUID
+   * @param reason why the teleport is cancelled
+   */
+  public void cancel(UUID uuid, CancelReason reason) {
+    PendingTeleport teleport = pending.get(uuid);
+    if (teleport != null) {
+      cancel(teleport, reason);
+    }
+  }
+
+  /**
+   * Checks whether a player has a pending teleport.
+   *
+   * @param uuid the player UUID
+   * @return true if a teleport is pending
+   */
+  public boolean isPending(UUID uuid) {
+    return pending.containsKey(uuid);
+  }
+
+  /**
+   * Cancels every pending teleport.
+   */
+  public void shutdown() {
+    for (PendingTeleport teleport : pending.values()) {
+      cancel(teleport, CancelReason.SHUTDOWN);
+    }
+  }
+
+  public TeleportMetrics getMetrics() {
+    return metrics;
+  }
+
+  public AdmissionController getAdmissionController() {
+    return admission;
+  }
+
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  public long getCompleted() {
+    return completed.sum();
+  }
+
+  /**
+   * Gets the number of teleports cancelled for a reason.
+   *
+   * @param reason the cancel reason
+   * @return the cancel count
+   */
+  public long getCancelled(CancelReason reason) {
+    return cancelled[reason.ordinal()].sum();
+  }
+
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  private boolean passesCooldown(Player player) {
+    CooldownManager cm = plugin.getCooldownManager();
+    UUID uuid = player.getUniqueId();
+    if (cm.canTeleport(uuid)) {
+      return true;
+    }
+    if (cm.canMessage(uuid)) {
+      MessageUtils.cooldown(player, cm.remainingTeleport(uuid));
+      cm.triggerMessage(uuid);
+    }
+    return false;
+  }
+
+  private void playSourceEffects(Player player) {
+    Location sourceLoc = player.getLocation();
+    sourceLoc.getWorld().spawnParticle(Particle.PORTAL,
+        sourceLoc, 40, 0.5, 0.5, 0.5, 0.2);
+    sourceLoc.getWorld().playSound(sourceLoc,
+        Sound.ENTITY_ENDERMAN_TELEPORT, 1f, 1f);
+  }
+
+  // Runs on the player's entity scheduler once the delay has passed
+  private void execute(Player player, PendingTeleport teleport) {
+    if (teleport.isCancelled()) {
+      return;
+    }
+    AdmissionController.Ticket ticket = admission.submit(
+        teleport.getPlayerId(),
+        teleport.getTargetLocation(),
+        (queued, waitNanos) -> {
+          if (queued) {
+            resume(player, teleport);
+          } else {
+            start(player, teleport);
+          }
+        },
+        () -> {
+          MessageUtils.error(player, "Portals are busy right now, please try again.");
+          cancel(teleport, CancelReason.REJECTED);
+        });
+    if (ticket != null) {
+      teleport.setTicket(ticket);
+      MessageUtils.queued(player, Math.max(1, admission.position(ticket)));
+    }
+  }
+
+  // Runs on the global region thread when a queued teleport is admitted
+  private void resume(Player player, PendingTeleport teleport) {
+    ScheduledTask task = player.getScheduler().run(
+        plugin,
+        (scheduled) -> start(player, teleport),
+        () -> {
+          admission.release();
+          cancel(teleport, CancelReason.RETIRED);
+        }
+    );
+    if (task == null) {
+      admission.release();
+      cancel(teleport, CancelReason.RETIRED);
+    }
+  }
+
+  // Runs on the player's entity scheduler holding an in-flight slot
+  private void start(Player player, PendingTeleport teleport) {
+    if (!teleport.begin()) {
+      admission.release();
+      return;
+    }
+    pending.remove(teleport.getPlayerId(), teleport);
+    Location targetLoc = teleport.getTargetLocation();
+    plugin.getChunkPrefetcher().recordTeleport(targetLoc);
+
+    // Teleport asynchronously (handles region crossing safely)
+    player.teleportAsync(targetLoc).whenComplete((success, error) -> {
+      admission.release();
+      plugin.getChunkPrefetcher().unpin(targetLoc);
+      if (error != null || !Boolean.TRUE.equals(success)) {
+        failed.increment();
+        return;
+      }
+      completed.increment();
+      metrics.record(teleport.getGroupName(), teleport.getTarget().getName(),
+          teleport.getEnteredAt(), teleport.getScheduledAt(), teleport.getStartedAt(),
+          System.nanoTime());
+      playArrivalEffects(player, teleport);
+    });
+  }
+
+  private void playArrivalEffects(Player player, PendingTeleport teleport) {
+    Location targetLoc = teleport.getTargetLocation();
+    targetLoc.getWorld().spawnParticle(Particle.PORTAL,
+        targetLoc, 50, 0.5, 0.5, 0.5, 0.25);
+    targetLoc.getWorld().playSound(targetLoc,
+        Sound.ENTITY_ENDERMAN_TELEPORT, 1f, 1f);
+
+    MessageUtils.teleport(player, teleport.getTarget().getName());
+    plugin.getCooldownManager().triggerTeleport(player.getUniqueId(), teleport.getGroupName());
+  }
+
+  private void cancel(PendingTeleport teleport, CancelReason reason) {
+    if (!teleport.cancel()) {
+      return;
+    }
+    pending.remove(teleport.getPlayerId(), teleport);
+    AdmissionController.Ticket ticket = teleport.getTicket();
+    if (ticket != null) {
+      admission.withdraw(ticket);
+    }
+    cancelled[reason.ordinal()].increment();
+    plugin.getChunkPrefetcher().unpin(teleport.getTargetLocation());
+  }
+}
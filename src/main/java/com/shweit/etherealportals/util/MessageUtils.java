@@ -90,6 +90,18 @@ public final class MessageUtils {
         + ChatColor.YELLOW + " before teleporting again.");
   }
 
+  /**
+   * Shows a player their place in the teleport queue on the action bar.
+   *
+   * @param player the queued player
+   * @param position the 1-based queue position
+   */
+  @SuppressWarnings("deprecation")
+  public static void queued(Player player, int position) {
+    player.sendActionBar(ChatColor.LIGHT_PURPLE + "Portal busy " + ChatColor.DARK_GRAY + "- "
+        + ChatColor.GRAY + "position in queue: " + ChatColor.GOLD + position);
+  }
+
   /**
    * Formats location coordinates.
    *
@@ -4,16 +4,42 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.inventory.meta.SkullMeta;
 import org.bukkit.profile.PlayerProfile;
 import org.bukkit.profile.PlayerTextures;
 
-/** Utility to create a custom textured player head from base64 texture value. */
+/**
+ * Utility to create a custom textured player head from base64 texture value.
+ *
+ * <p>Decoding a texture and building its profile is done once per texture: the
+ * resulting head is kept as a template in a bounded LRU cache and handed out as
+ * clones. Textures that fail to parse are cached too, as plain heads, so a broken
+ * icon is not decoded again on every GUI open.
+ */
 public final class SkullUtils {
+  private static final int DEFAULT_CACHE_SIZE = 256;
+
+  private static final LongAdder hits = new LongAdder();
+  private static final LongAdder misses = new LongAdder();
+  private static final LongAdder failures = new LongAdder();
+  private static volatile int cacheSize = DEFAULT_CACHE_SIZE;
+  private static final Map<String, ItemStack> templates =
+      new LinkedHashMap<String, ItemStack>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ItemStack> eldest) {
+          return size() > cacheSize;
+        }
+      };
+
   private SkullUtils() {}
 
   /**
@@ -24,35 +50,115 @@ public final class SkullUtils {
    * @return ItemStack with the custom texture
    */
   public static ItemStack createHead(String base64, String displayName) {
-    ItemStack head = new ItemStack(Material.PLAYER_HEAD);
-    SkullMeta meta = (SkullMeta) head.getItemMeta();
-
+    ItemStack head = base64 == null || base64.isEmpty()
+        ? new ItemStack(Material.PLAYER_HEAD)
+        : template(base64).clone();
     if (displayName != null) {
+      ItemMeta meta = head.getItemMeta();
       meta.setDisplayName(displayName);
+      if (!head.setItemMeta(meta)) {
+        // This should never happen for valid SkullMeta, but handle return value for SpotBugs
+        System.err.println("Failed to set skull meta");
+      }
     }
+    return head;
+  }
 
-    if (base64 != null && !base64.isEmpty()) {
-      try {
-        // Create a deterministic UUID based on the texture so items with the same texture stack
-        UUID textureUuid = UUID.nameUUIDFromBytes(base64.getBytes(StandardCharsets.UTF_8));
-        PlayerProfile profile = Bukkit.createPlayerProfile(textureUuid, "");
-        PlayerTextures textures = profile.getTextures();
-
-        // Decode base64 to get the texture URL
-        String textureUrl = getTextureUrlFromBase64(base64);
-        if (textureUrl != null) {
-          textures.setSkin(new URL(textureUrl));
-          profile.setTextures(textures);
-          meta.setOwnerProfile(profile);
-        }
-      } catch (MalformedURLException e) {
-        System.err.println("Invalid texture URL: " + e.getMessage());
+  /**
+   * Sets the maximum number of cached head templates, evicting the least
+   * recently used ones beyond it.
+   *
+   * @param size the maximum number of templates, at least 1
+   */
+  public static void setCacheSize(int size) {
+    cacheSize = Math.max(1, size);
+    synchronized (templates) {
+      Iterator<String> it = templates.keySet().iterator();
+      while (templates.size() > cacheSize && it.hasNext()) {
+        it.next();
+        it.remove();
       }
     }
+  }
+
+  /**
+   * Drops all cached head templates, e.g. after the icons changed.
+   */
+  public static void invalidate() {
+    synchronized (templates) {
+      templates.clear();
+    }
+  }
+
+  public static long getHits() {
+    return hits.sum();
+  }
+
+  public static long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Gets the number of textures that could not be parsed. Each failing texture
+   * is counted once while it stays cached.
+   *
+   * @return the parse failure count
+   */
+  public static long getFailures() {
+    return failures.sum();
+  }
+
+  /**
+   * Gets the number of cached head templates.
+   *
+   * @return the template count
+   */
+  public static int getCached() {
+    synchronized (templates) {
+      return templates.size();
+    }
+  }
+
+  // Templates are never modified once cached; callers only get clones
+  private static ItemStack template(String base64) {
+    ItemStack template;
+    synchronized (templates) {
+      template = templates.get(base64);
+    }
+    if (template != null) {
+      hits.increment();
+      return template;
+    }
+    misses.increment();
+    template = buildTemplate(base64);
+    synchronized (templates) {
+      ItemStack raced = templates.putIfAbsent(base64, template);
+      return raced != null ? raced : template;
+    }
+  }
 
-    if (!head.setItemMeta(meta)) {
-      // This should never happen for valid SkullMeta, but handle return value for SpotBugs
-      System.err.println("Failed to set skull meta");
+  private static ItemStack buildTemplate(String base64) {
+    ItemStack head = new ItemStack(Material.PLAYER_HEAD);
+    try {
+      String textureUrl = getTextureUrlFromBase64(base64);
+      if (textureUrl == null) {
+        failures.increment();
+        return head;
+      }
+      // Create a deterministic UUID based on the texture so items with the same texture stack
+      UUID textureUuid = UUID.nameUUIDFromBytes(base64.getBytes(StandardCharsets.UTF_8));
+      PlayerProfile profile = Bukkit.createPlayerProfile(textureUuid, "");
+      PlayerTextures textures = profile.getTextures();
+      textures.setSkin(new URL(textureUrl));
+      profile.setTextures(textures);
+      SkullMeta meta = (SkullMeta) head.getItemMeta();
+      meta.setOwnerProfile(profile);
+      if (!head.setItemMeta(meta)) {
+        System.err.println("Failed to set skull meta");
+      }
+    } catch (MalformedURLException e) {
+      failures.increment();
+      System.err.println("Invalid texture URL: " + e.getMessage());
     }
     return head;
   }
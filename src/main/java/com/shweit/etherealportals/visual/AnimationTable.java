@@ -0,0 +1,155 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import java.util.Locale;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Precomputed keyframes of a portal animation.
+ *
+ * <p>Each frame holds the same number of points, stored as offsets from the portal
+ * center at its base in one flat array, so drawing a frame is a plain loop with
+ * no trigonometry and no allocation. All shapes are sampled once when the table
+ * is built.
+ */
+public final class AnimationTable {
+  /** Built-in animation shapes. */
+  public enum Shape {
+    /** Points climbing around the portal, the original animation. */
+    SPIRAL,
+    /** Two spirals half a turn apart. */
+    DOUBLE_HELIX,
+    /** A horizontal ring rising and falling through the portal. */
+    RING,
+    /** A spiral narrowing towards the top. */
+    VORTEX
+  }
+
+  private final int frames;
+  private final int points;
+  private final long cycleMillis;
+  private final double[] offsets; // frame-major, then point, then x/y/z
+
+  private AnimationTable(int frames, int points, long cycleMillis, double[] offsets) {
+    this.frames = frames;
+    this.points = points;
+    this.cycleMillis = cycleMillis;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Builds the table of a shape.
+   *
+   * @param shape the animation shape
+   * @param frames frames per animation cycle
+   * @param points particles per frame
+   * @param radius radius of the shape in blocks
+   * @param height height of the shape in blocks
+   * @param turns turns around the portal over the shape's height
+   * @param cycleMillis duration of one animation cycle
+   * @return the table
+   */
+  public static AnimationTable build(Shape shape, int frames, int points, double radius,
+      double height, double turns, long cycleMillis) {
+    frames = Math.max(1, frames);
+    points = Math.max(1, points);
+    double[] offsets = new double[frames * points * 3];
+    int o = 0;
+    for (int f = 0; f < frames; f++) {
+      double phase = 2 * Math.PI * f / frames;
+      for (int i = 0; i < points; i++) {
+        double t = (double) i / points; // position along the shape [0, 1)
+        double angle;
+        double r = radius;
+        double y;
+        switch (shape) {
+          case DOUBLE_HELIX:
+            // Even points on one strand, odd points on the other
+            angle = phase + 2 * Math.PI * turns * (i / 2) * 2.0 / points + (i % 2) * Math.PI;
+            y = ((i / 2) * 2.0 / points) * height;
+            break;
+          case RING:
+            angle = 2 * Math.PI * t;
+            y = (0.5 - 0.5 * Math.cos(phase)) * height;
+            break;
+          case VORTEX:
+            angle = phase + 2 * Math.PI * turns * t;
+            r = radius * (1 - 0.7 * t);
+            y = t * height;
+            break;
+          case SPIRAL:
+          default:
+            angle = phase + 2 * Math.PI * turns * t;
+            y = t * height;
+            break;
+        }
+        offsets[o++] = Math.cos(angle) * r;
+        offsets[o++] = y;
+        offsets[o++] = Math.sin(angle) * r;
+      }
+    }
+    return new AnimationTable(frames, points, Math.max(50L, cycleMillis), offsets);
+  }
+
+  /**
+   * Builds a table from a configuration section. Missing values fall back to the
+   * original 24-point spiral: two turns over 2.5 blocks with a 0.7 block radius.
+   *
+   * @param section the animation section, or null for the defaults
+   * @return the table
+   */
+  public static AnimationTable fromConfig(ConfigurationSection section) {
+    if (section == null) {
+      return build(Shape.SPIRAL, 20, 24, 0.7, 2.5, 2.0, 5000L);
+    }
+    Shape shape;
+    try {
+      shape = Shape.valueOf(section.getString("shape", "spiral").toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      shape = Shape.SPIRAL;
+    }
+    return build(shape,
+        section.getInt("frames", 20),
+        section.getInt("points", 24),
+        section.getDouble("radius", 0.7),
+        section.getDouble("height", 2.5),
+        section.getDouble("turns", 2.0),
+        section.getLong("cycleMillis", 5000L));
+  }
+
+  /**
+   * Gets the frame to draw at a given time.
+   *
+   * @param millis the current time in milliseconds
+   * @return the frame index
+   */
+  public int frameAt(long millis) {
+    return (int) ((millis % cycleMillis) * frames / cycleMillis);
+  }
+
+  public int getFrames() {
+    return frames;
+  }
+
+  public int getPoints() {
+    return points;
+  }
+
+  /**
+   * Gets the start of a frame in {@link #getOffsets()}.
+   *
+   * @param frame the frame index
+   * @return the array index of the frame's first X offset
+   */
+  public int frameStart(int frame) {
+    return frame * points * 3;
+  }
+
+  /**
+   * Gets the raw offsets. The array is shared and must not be modified.
+   *
+   * @return the offsets, frame-major with x, y, z per point
+   */
+  double[] getOffsets() {
+    return offsets;
+  }
+}
@@ -0,0 +1,137 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Display;
+import org.bukkit.entity.ItemDisplay;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.Transformation;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+/**
+ * Animates portals with item display entities that clients interpolate.
+ *
+ * <p>Each step sets the next keyframe of a spin and a pulse together with an
+ * interpolation duration of one step, so clients animate smoothly between two
+ * transform updates the server sends once per step. The spin advances a third of
+ * a turn per step, which keeps interpolation turning the same way. Keyframes are
+ * built once per settings change.
+ */
+public class DisplayAnimator {
+  /** Steps per full turn; a third of a turn per step stays below a half turn. */
+  private static final int SPIN_STEPS = 3;
+  /** Keyframes before spin and pulse repeat together. */
+  private static final int KEYFRAMES = SPIN_STEPS * 2;
+
+  private volatile Settings settings;
+
+  /**
+   * Creates a new display animator.
+   *
+   * @param settings the animation settings
+   */
+  public DisplayAnimator(Settings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Updates the animation settings. Running displays adopt them on their next step.
+   *
+   * @param settings the animation settings
+   */
+  public void updateConfig(Settings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Spawns the animated display of a portal. The display is not persistent, so
+   * it disappears with its chunk and never outlives the plugin.
+   *
+   * @param world the portal's world
+   * @param x the X coordinate of the portal center
+   * @param y the Y coordinate of the portal base
+   * @param z the Z coordinate of the portal center
+   * @param viewDistance distance in blocks within which clients track the display
+   * @return the display
+   */
+  public ItemDisplay spawn(World world, double x, double y, double z, double viewDistance) {
+    Settings current = settings;
+    return world.spawn(new Location(world, x, y, z), ItemDisplay.class, d -> {
+      d.setItemStack(new ItemStack(current.material));
+      d.setPersistent(false);
+      d.setBillboard(Display.Billboard.FIXED);
+      // View range is a multiplier of the 64-block entity tracking distance
+      d.setViewRange((float) (viewDistance / 64.0));
+      d.setTransformation(current.keyframes[0]);
+    });
+  }
+
+  /**
+   * Sends the next keyframe of a display. Must be called on the display's region
+   * thread.
+   *
+   * @param display the display
+   * @param step the animation step
+   * @param durationTicks ticks clients take to interpolate to the keyframe
+   */
+  public void advance(ItemDisplay display, long step, int durationTicks) {
+    Settings current = settings;
+    display.setInterpolationDelay(0);
+    display.setInterpolationDuration(durationTicks);
+    display.setTransformation(current.keyframes[(int) (step % KEYFRAMES)]);
+  }
+
+  /**
+   * Immutable display animation settings.
+   */
+  public static final class Settings {
+    final Material material;
+    final Transformation[] keyframes;
+
+    /**
+     * Creates display animation settings.
+     *
+     * @param material the item shown by the display
+     * @param scale the display scale
+     * @param pulse the relative scale change between two steps
+     * @param height the height of the display above the portal base
+     */
+    public Settings(Material material, double scale, double pulse, double height) {
+      this.material = material;
+      this.keyframes = new Transformation[KEYFRAMES];
+      for (int i = 0; i < KEYFRAMES; i++) {
+        float angle = (float) (2 * Math.PI * (i % SPIN_STEPS) / SPIN_STEPS);
+        float size = (float) (scale * (i % 2 == 0 ? 1 + pulse : 1 - pulse));
+        keyframes[i] = new Transformation(
+            new Vector3f(0f, (float) height, 0f),
+            new Quaternionf().rotationY(angle),
+            new Vector3f(size),
+            new Quaternionf());
+      }
+    }
+
+    /**
+     * Reads settings from the {@code portal.effects.display} section.
+     *
+     * @param section the display section, or null for the defaults
+     * @return the settings
+     */
+    public static Settings fromConfig(ConfigurationSection section) {
+      if (section == null) {
+        return new Settings(Material.ENDER_EYE, 0.6, 0.15, 1.2);
+      }
+      Material material = Material.matchMaterial(section.getString("item", "ENDER_EYE"));
+      if (material == null || !material.isItem()) {
+        material = Material.ENDER_EYE;
+      }
+      return new Settings(
+          material,
+          section.getDouble("scale", 0.6),
+          Math.max(0, Math.min(0.9, section.getDouble("pulse", 0.15))),
+          section.getDouble("height", 1.2));
+    }
+  }
+}
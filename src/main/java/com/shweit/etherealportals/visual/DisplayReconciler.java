@@ -0,0 +1,355 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.manager.PortalRegistry;
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Interaction;
+
+/**
+ * Keeps the display entities of portals in step with the portal data, one chunk
+ * at a time, as chunks bring their entities in.
+ *
+ * <p>Chunks are queued when their entities load and drained by a global task
+ * that hands a bounded number of chunks per tick to their region threads. A
+ * reconciled chunk gets the missing displays of its portals spawned, duplicate
+ * displays of one portal removed, and displays of portals that no longer exist
+ * removed. Legacy armor stand markers are converted to interaction markers when
+ * those are configured. Chunks are never loaded for this; a chunk that unloaded
+ * while queued is reconciled again the next time its entities load.
+ */
+public class DisplayReconciler {
+  private final EtherealPortals plugin;
+  private final VisualEffectTask visuals;
+  private final DisplayRegistry displays;
+  private final Queue<ChunkKey> queue = new ConcurrentLinkedQueue<>();
+  private final Set<ChunkKey> queued = ConcurrentHashMap.newKeySet();
+  private volatile PortalIndex index = PortalIndex.EMPTY;
+  private volatile int chunksPerTick;
+  private ScheduledTask pumpTask;
+
+  private final LongAdder reconciled = new LongAdder();
+  private final LongAdder skippedUnloaded = new LongAdder();
+  private final LongAdder spawned = new LongAdder();
+  private final LongAdder orphansRemoved = new LongAdder();
+  private final LongAdder duplicatesRemoved = new LongAdder();
+  private final LongAdder migrated = new LongAdder();
+
+  /**
+   * Creates a new display reconciler.
+   *
+   * @param plugin the plugin instance
+   * @param visuals the visual task spawning display entities
+   * @param displays the display entity registry
+   * @param chunksPerTick chunks handed to region threads per tick
+   */
+  public DisplayReconciler(EtherealPortals plugin, VisualEffectTask visuals,
+      DisplayRegistry displays, int chunksPerTick) {
+    this.plugin = plugin;
+    this.visuals = visuals;
+    this.displays = displays;
+    this.chunksPerTick = Math.max(1, chunksPerTick);
+  }
+
+  /**
+   * Updates the number of chunks reconciled per tick.
+   *
+   * @param chunksPerTick chunks handed to region threads per tick
+   */
+  public void setChunksPerTick(int chunksPerTick) {
+    this.chunksPerTick = Math.max(1, chunksPerTick);
+  }
+
+  /**
+   * Queues every portal chunk once, for chunks already loaded at startup, and
+   * starts draining the queue.
+   */
+  public void start() {
+    if (pumpTask != null) {
+      return;
+    }
+    for (ChunkKey key : index().chunks.keySet()) {
+      enqueue(key);
+    }
+    pumpTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(
+        plugin,
+        (task) -> pump(),
+        1L,
+        1L
+    );
+  }
+
+  /**
+   * Stops draining the queue and forgets queued chunks.
+   */
+  public void stop() {
+    if (pumpTask != null) {
+      pumpTask.cancel();
+      pumpTask = null;
+    }
+    queue.clear();
+    queued.clear();
+  }
+
+  /**
+   * Queues a chunk whose entities just loaded, if it holds portals or portal
+   * displays.
+   *
+   * @param chunk the chunk
+   * @param entities the entities that loaded with it
+   */
+  public void onEntitiesLoad(Chunk chunk, List<Entity> entities) {
+    ChunkKey key = new ChunkKey(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+    if (index().chunks.containsKey(key)) {
+      enqueue(key);
+      return;
+    }
+    for (Entity entity : entities) {
+      if (displays.tagOf(entity) != null) {
+        enqueue(key);
+        return;
+      }
+    }
+  }
+
+  public int getQueued() {
+    return queued.size();
+  }
+
+  public long getReconciled() {
+    return reconciled.sum();
+  }
+
+  public long getSkippedUnloaded() {
+    return skippedUnloaded.sum();
+  }
+
+  public long getSpawned() {
+    return spawned.sum();
+  }
+
+  public long getOrphansRemoved() {
+    return orphansRemoved.sum();
+  }
+
+  public long getDuplicatesRemoved() {
+    return duplicatesRemoved.sum();
+  }
+
+  /**
+   * Gets the number of legacy armor stand markers converted to interactions.
+   *
+   * @return the converted marker count
+   */
+  public long getMigrated() {
+    return migrated.sum();
+  }
+
+  private void enqueue(ChunkKey key) {
+    if (queued.add(key)) {
+      queue.add(key);
+    }
+  }
+
+  // Global region thread, every tick
+  private void pump() {
+    for (int i = chunksPerTick; i > 0; i--) {
+      ChunkKey key = queue.poll();
+      if (key == null) {
+        return;
+      }
+      queued.remove(key);
+      World world = Bukkit.getWorld(key.worldId);
+      if (world == null) {
+        continue;
+      }
+      Bukkit.getRegionScheduler().execute(plugin, world, key.x, key.z,
+          () -> reconcile(world, key));
+    }
+  }
+
+  // Region thread owning the chunk
+  private void reconcile(World world, ChunkKey key) {
+    if (!world.isChunkLoaded(key.x, key.z)) {
+      skippedUnloaded.increment();
+      return;
+    }
+    Chunk chunk = world.getChunkAt(key.x, key.z);
+    if (!chunk.isEntitiesLoaded()) {
+      return; // queued again by the entities load event
+    }
+    reconciled.increment();
+    List<PortalRef> portals = index().chunks.getOrDefault(key, Collections.emptyList());
+    Set<String> expected = new HashSet<>();
+    for (PortalRef ref : portals) {
+      expected.add(ref.textTag);
+      if (ref.portal.isBreakable()) {
+        expected.add(ref.markerTag);
+      }
+    }
+
+    Map<String, Entity> kept = new HashMap<>();
+    for (Entity entity : chunk.getEntities()) {
+      String tag = displays.tagOf(entity);
+      if (tag == null) {
+        continue;
+      }
+      if (!expected.contains(tag)) {
+        entity.remove();
+        orphansRemoved.increment();
+        continue;
+      }
+      Entity previous = kept.putIfAbsent(tag, entity);
+      if (previous != null) {
+        // Keep the entity whose UUID is recorded, remove the other
+        if (entity.getUniqueId().equals(displays.get(tag))) {
+          kept.put(tag, entity);
+          previous.remove();
+        } else {
+          entity.remove();
+        }
+        duplicatesRemoved.increment();
+      }
+    }
+
+    for (PortalRef ref : portals) {
+      ensure(kept.get(ref.textTag), DisplayRegistry.Kind.TEXT, ref);
+      if (ref.portal.isBreakable()) {
+        ensure(kept.get(ref.markerTag), DisplayRegistry.Kind.MARKER, ref);
+      }
+    }
+  }
+
+  private void ensure(Entity existing, DisplayRegistry.Kind kind, PortalRef ref) {
+    String portalName = ref.portal.getName();
+    if (existing != null && kind == DisplayRegistry.Kind.MARKER
+        && visuals.getMarkerType() == VisualEffectTask.MarkerType.INTERACTION
+        && !(existing instanceof Interaction)) {
+      // Convert a legacy armor stand marker
+      existing.remove();
+      visuals.spawnBreakMarker(ref.portal.getCenterLocation(), ref.groupName, portalName);
+      migrated.increment();
+      return;
+    }
+    if (existing == null) {
+      if (kind == DisplayRegistry.Kind.TEXT) {
+        Location loc = ref.portal.getBaseLocation().add(0.5, 3, 0.5);
+        visuals.spawnTextDisplay(loc, ref.groupName, portalName, portalName);
+      } else {
+        visuals.spawnBreakMarker(ref.portal.getCenterLocation(), ref.groupName, portalName);
+      }
+      spawned.increment();
+    } else {
+      if (!existing.getUniqueId().equals(
+          displays.get(DisplayRegistry.tag(kind, ref.groupName, portalName)))) {
+        displays.register(kind, ref.groupName, portalName, existing.getUniqueId());
+      }
+      if (kind == DisplayRegistry.Kind.TEXT) {
+        // Also hides text displays spawned before groups could be private
+        visuals.getVisibility().apply(existing, ref.groupName);
+      }
+    }
+  }
+
+  private PortalIndex index() {
+    PortalRegistry snapshot = plugin.getPortalManager().snapshot();
+    PortalIndex current = index;
+    if (current.version != snapshot.getVersion()) {
+      current = PortalIndex.build(snapshot);
+      index = current;
+    }
+    return current;
+  }
+
+  /**
+   * Portals grouped by the chunk of their base block, for one registry version.
+   */
+  private static final class PortalIndex {
+    static final PortalIndex EMPTY = new PortalIndex(-1, Collections.emptyMap());
+
+    final long version;
+    final Map<ChunkKey, List<PortalRef>> chunks;
+
+    private PortalIndex(long version, Map<ChunkKey, List<PortalRef>> chunks) {
+      this.version = version;
+      this.chunks = chunks;
+    }
+
+    static PortalIndex build(PortalRegistry snapshot) {
+      Map<ChunkKey, List<PortalRef>> chunks = new HashMap<>();
+      for (PortalGroup group : snapshot.getGroups()) {
+        for (Portal portal : group.getPortals()) {
+          Location base = portal.getBaseLocation();
+          if (base.getWorld() == null) {
+            continue;
+          }
+          ChunkKey key = new ChunkKey(base.getWorld().getUID(),
+              base.getBlockX() >> 4, base.getBlockZ() >> 4);
+          chunks.computeIfAbsent(key, k -> new ArrayList<>(1))
+              .add(new PortalRef(group.getName(), portal));
+        }
+      }
+      return new PortalIndex(snapshot.getVersion(), chunks);
+    }
+  }
+
+  private static final class PortalRef {
+    final String groupName;
+    final Portal portal;
+    final String textTag;
+    final String markerTag;
+
+    PortalRef(String groupName, Portal portal) {
+      this.groupName = groupName;
+      this.portal = portal;
+      this.textTag = DisplayRegistry.tag(DisplayRegistry.Kind.TEXT, groupName, portal.getName());
+      this.markerTag = DisplayRegistry.tag(DisplayRegistry.Kind.MARKER, groupName,
+          portal.getName());
+    }
+  }
+
+  private static final class ChunkKey {
+    private final UUID worldId;
+    private final int x;
+    private final int z;
+
+    ChunkKey(UUID worldId, int x, int z) {
+      this.worldId = worldId;
+      this.x = x;
+      this.z = z;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ChunkKey)) {
+        return false;
+      }
+      ChunkKey other = (ChunkKey) o;
+      return x == other.x && z == other.z && worldId.equals(other.worldId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(worldId, x, z);
+    }
+  }
+}
@@ -0,0 +1,271 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.entity.Entity;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+/**
+ * In-memory index of the display entities spawned for portals, keyed by their
+ * scoreboard tag.
+ *
+ * <p>Entity UUIDs are stored on the {@link Portal} and saved with the portal data,
+ * so creation, removal and duplicate checks resolve a known UUID instead of
+ * scanning every entity of the world. Entities spawned before UUIDs were saved
+ * are found once through a scan of their own chunk and then adopted.
+ *
+ * <p>Text displays and legacy armor stand markers are identified by scoreboard
+ * tags. Interaction markers carry their group and portal name in their
+ * persistent data container instead.
+ */
+public class DisplayRegistry {
+  /** Kinds of display entities a portal owns. */
+  public enum Kind {
+    /** The floating name above the portal. */
+    TEXT("ep_portal:"),
+    /** The hit target used to break craftable portals. */
+    MARKER("ep_portal_marker:");
+
+    private final String prefix;
+
+    Kind(String prefix) {
+      this.prefix = prefix;
+    }
+
+    public String getPrefix() {
+      return prefix;
+    }
+  }
+
+  private final EtherealPortals plugin;
+  private final NamespacedKey groupKey;
+  private final NamespacedKey portalKey;
+  private final Map<String, UUID> byTag = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new display registry.
+   *
+   * @param plugin the plugin instance
+   */
+  public DisplayRegistry(EtherealPortals plugin) {
+    this.plugin = plugin;
+    this.groupKey = new NamespacedKey(plugin, "portal_group");
+    this.portalKey = new NamespacedKey(plugin, "portal_name");
+  }
+
+  /**
+   * Builds the scoreboard tag of a portal's display entity.
+   *
+   * @param kind the entity kind
+   * @param groupName the portal group name
+   * @param portalName the portal name
+   * @return the tag
+   */
+  public static String tag(Kind kind, String groupName, String portalName) {
+    return kind.prefix + groupName.toLowerCase(Locale.ROOT) + ":"
+        + portalName.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Gets the display tag of an entity, from its persistent data for interaction
+   * markers or from its scoreboard tags otherwise.
+   *
+   * @param entity the entity
+   * @return the display tag, or null if the entity is not a portal display
+   */
+  public String tagOf(Entity entity) {
+    String groupName = getMarkerGroup(entity);
+    String portalName = getMarkerPortal(entity);
+    if (groupName != null && portalName != null) {
+      return tag(Kind.MARKER, groupName, portalName);
+    }
+    for (String tag : entity.getScoreboardTags()) {
+      if (tag.startsWith(Kind.TEXT.prefix) || tag.startsWith(Kind.MARKER.prefix)) {
+        return tag;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Marks an entity as the break marker of a portal.
+   *
+   * @param entity the marker entity
+   * @param groupName the portal group name
+   * @param portalName the portal name
+   */
+  public void writeMarker(Entity entity, String groupName, String portalName) {
+    PersistentDataContainer data = entity.getPersistentDataContainer();
+    data.set(groupKey, PersistentDataType.STRING, groupName);
+    data.set(portalKey, PersistentDataType.STRING, portalName);
+  }
+
+  /**
+   * Gets the portal group a marker entity belongs to.
+   *
+   * @param entity the entity
+   * @return the group name, or null if the entity is not a marker
+   */
+  public String getMarkerGroup(Entity entity) {
+    return entity.getPersistentDataContainer().get(groupKey, PersistentDataType.STRING);
+  }
+
+  /**
+   * Gets the portal a marker entity belongs to.
+   *
+   * @param entity the entity
+   * @return the portal name, or null if the entity is not a marker
+   */
+  public String getMarkerPortal(Entity entity) {
+    return entity.getPersistentDataContainer().get(portalKey, PersistentDataType.STRING);
+  }
+
+  /**
+   * Replaces the index with the UUIDs saved on the given portals.
+   *
+   * @param groups the portal groups
+   */
+  public void rebuild(Collection<PortalGroup> groups) {
+    byTag.clear();
+    for (PortalGroup group : groups) {
+      for (Portal portal : group.getPortals()) {
+        if (portal.getTextDisplayId() != null) {
+          byTag.put(tag(Kind.TEXT, group.getName(), portal.getName()),
+              portal.getTextDisplayId());
+        }
+        if (portal.getMarkerId() != null) {
+          byTag.put(tag(Kind.MARKER, group.getName(), portal.getName()),
+              portal.getMarkerId());
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the UUID recorded for a tag.
+   *
+   * @param tag the display tag
+   * @return the entity UUID, or null if none is recorded
+   */
+  public UUID get(String tag) {
+    return byTag.get(tag);
+  }
+
+  /**
+   * Resolves the live entity recorded for a tag. Must be called on the region
+   * thread owning the entity.
+   *
+   * @param tag the display tag
+   * @return the entity, or null if none is recorded or it no longer exists
+   */
+  public Entity resolve(String tag) {
+    UUID id = byTag.get(tag);
+    if (id == null) {
+      return null;
+    }
+    Entity entity = Bukkit.getEntity(id);
+    return entity != null && entity.isValid() ? entity : null;
+  }
+
+  /**
+   * Finds an entity carrying a tag in the chunk of a location, the fallback for
+   * entities spawned before their UUIDs were saved. A match is adopted into the
+   * registry. Must be called on the region thread owning the loaded chunk.
+   *
+   * @param loc a location in the entity's chunk
+   * @param kind the entity kind
+   * @param groupName the portal group name
+   * @param portalName the portal name
+   * @return the entity, or null if the chunk holds none
+   */
+  public Entity adopt(Location loc, Kind kind, String groupName, String portalName) {
+    String tag = tag(kind, groupName, portalName);
+    for (Entity entity : loc.getChunk().getEntities()) {
+      if (tag.equals(tagOf(entity))) {
+        register(kind, groupName, portalName, entity.getUniqueId());
+        return entity;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Records a spawned entity and saves its UUID with the portal.
+   *
+   * @param kind the entity kind
+   * @param groupName the portal group name
+   * @param portalName the portal name
+   * @param id the entity UUID
+   */
+  public void register(Kind kind, String groupName, String portalName, UUID id) {
+    byTag.put(tag(kind, groupName, portalName), id);
+    store(kind, groupName, portalName, id);
+  }
+
+  /**
+   * Forgets the entity recorded for a portal.
+   *
+   * @param kind the entity kind
+   * @param groupName the portal group name
+   * @param portalName the portal name
+   * @return the UUID that was recorded, or null
+   */
+  public UUID unregister(Kind kind, String groupName, String portalName) {
+    UUID removed = byTag.remove(tag(kind, groupName, portalName));
+    if (removed != null) {
+      store(kind, groupName, portalName, null);
+    }
+    return removed;
+  }
+
+  /**
+   * Finds the text displays of private groups whose tag matches a prefix.
+   *
+   * @param ownerPrefix lowercase start of the group name, e.g. {@code "steve:base:"}
+   *     for one group, or an empty string for every private group
+   * @return the UUIDs of the matching text displays
+   */
+  public List<UUID> findText(String ownerPrefix) {
+    List<UUID> ids = new ArrayList<>();
+    String prefix = Kind.TEXT.prefix + ownerPrefix;
+    byTag.forEach((tag, id) -> {
+      // Private group tags hold owner, base name and portal name
+      if (tag.startsWith(prefix)
+          && tag.indexOf(':', Kind.TEXT.prefix.length()) != tag.lastIndexOf(':')) {
+        ids.add(id);
+      }
+    });
+    return ids;
+  }
+
+  public int size() {
+    return byTag.size();
+  }
+
+  private void store(Kind kind, String groupName, String portalName, UUID id) {
+    PortalGroup group = plugin.getPortalManager().getGroup(groupName);
+    Portal portal = group == null ? null : group.getPortal(portalName);
+    if (portal == null) {
+      return;
+    }
+    if (kind == Kind.TEXT) {
+      portal.setTextDisplayId(id);
+    } else {
+      portal.setMarkerId(id);
+    }
+    // Written in the background, see DataManager
+    plugin.getDataManager().savePortal(groupName, portalName);
+  }
+}
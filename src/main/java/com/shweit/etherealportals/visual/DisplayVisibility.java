@@ -0,0 +1,164 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.manager.TrustManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+/**
+ * Limits the text displays of private portal groups to the players allowed to
+ * use them.
+ *
+ * <p>Displays of private groups are hidden by default, so clients of other
+ * players never track them. They are shown per player when the display spawns
+ * or loads, when the player joins or changes worlds, and when the owner trusts
+ * the player; withdrawing trust hides them again.
+ *
+ * <p>Showing or hiding an entity changes its tracker, which belongs to the
+ * entity's region, so every change runs on the display's scheduler.
+ */
+public class DisplayVisibility {
+  private final EtherealPortals plugin;
+  private final DisplayRegistry displays;
+  private final LongAdder shown = new LongAdder();
+  private final LongAdder hidden = new LongAdder();
+  private final LongAdder privateDisplays = new LongAdder();
+
+  /**
+   * Creates a new display visibility manager.
+   *
+   * @param plugin the plugin instance
+   * @param displays the display entity registry
+   */
+  public DisplayVisibility(EtherealPortals plugin, DisplayRegistry displays) {
+    this.plugin = plugin;
+    this.displays = displays;
+  }
+
+  /**
+   * Applies the visibility of a group to a text display that just spawned or
+   * loaded. Must be called on the display's region thread.
+   *
+   * @param display the text display
+   * @param groupName the display's portal group
+   */
+  public void apply(Entity display, String groupName) {
+    if (!TrustManager.isPrivate(groupName)) {
+      if (!display.isVisibleByDefault()) {
+        display.setVisibleByDefault(true);
+      }
+      return;
+    }
+    if (display.isVisibleByDefault()) {
+      display.setVisibleByDefault(false);
+      privateDisplays.increment();
+    }
+    // Players in other worlds are shown it too, so it is visible once they arrive
+    TrustManager trust = plugin.getTrustManager();
+    for (Player player : Bukkit.getOnlinePlayers()) {
+      if (trust.canSee(player, groupName)) {
+        show(player, display);
+      }
+    }
+  }
+
+  /**
+   * Shows a player the private displays of their world they may see. Called on
+   * join and world change, on the player's thread.
+   *
+   * @param player the player
+   */
+  public void refresh(Player player) {
+    TrustManager trust = plugin.getTrustManager();
+    List<UUID> ids;
+    if (player.hasPermission(TrustManager.SEE_ALL_PERMISSION)) {
+      ids = displays.findText("");
+    } else {
+      ids = findText(trust, player.getUniqueId());
+      for (UUID owner : trust.getOwnersTrusting(player.getUniqueId())) {
+        ids.addAll(findText(trust, owner));
+      }
+    }
+    World world = player.getWorld();
+    for (UUID id : ids) {
+      Entity display = Bukkit.getEntity(id);
+      if (display != null) {
+        display.getScheduler().run(plugin, (task) -> {
+          if (display.getWorld() == world) {
+            show(player, display);
+          }
+        }, null);
+      }
+    }
+  }
+
+  /**
+   * Updates an online player's view of an owner's displays after a trust change.
+   *
+   * @param owner the owner's UUID
+   * @param playerId the player whose trust changed
+   */
+  public void onTrustChanged(UUID owner, UUID playerId) {
+    Player player = Bukkit.getPlayer(playerId);
+    if (player == null) {
+      return;
+    }
+    player.getScheduler().run(plugin, (task) -> {
+      TrustManager trust = plugin.getTrustManager();
+      boolean visible = trust.canSeeOwner(player, owner);
+      for (UUID id : findText(trust, owner)) {
+        Entity display = Bukkit.getEntity(id);
+        if (display == null) {
+          continue;
+        }
+        display.getScheduler().run(plugin, (displayTask) -> {
+          if (visible) {
+            show(player, display);
+          } else {
+            player.hideEntity(plugin, display);
+            hidden.increment();
+          }
+        }, null);
+      }
+    }, null);
+  }
+
+  public long getShown() {
+    return shown.sum();
+  }
+
+  public long getHidden() {
+    return hidden.sum();
+  }
+
+  /**
+   * Gets the number of displays switched to hidden by default since startup.
+   *
+   * @return the display count
+   */
+  public long getPrivateDisplays() {
+    return privateDisplays.sum();
+  }
+
+  private List<UUID> findText(TrustManager trust, UUID owner) {
+    List<UUID> ids = new ArrayList<>();
+    for (String group : trust.getGroups(owner)) {
+      ids.addAll(displays.findText(group + ":"));
+    }
+    return ids;
+  }
+
+  // Display's region thread
+  private void show(Player player, Entity display) {
+    if (!player.canSee(display)) {
+      player.showEntity(plugin, display);
+      shown.increment();
+    }
+  }
+}
@@ -0,0 +1,344 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Scales portal particles down while the region drawing them is lagging.
+ *
+ * <p>Budgets are kept per region section of 16x16 chunks, the default size of a
+ * Folia region section, so a section is always owned by exactly one region thread.
+ * Once per second a section samples the TPS of its region. Below the degraded TPS
+ * its scale is halved. At or above the healthy TPS it grows back by the recovery
+ * step. In between it holds. The scale thins out the points of each frame, skips
+ * whole runs once it drops below one half, and shrinks the section's packet budget
+ * per tick.
+ */
+public class ParticleGovernor {
+  private static final int SECTION_SHIFT = 4;
+  private static final long NANOS_PER_TICK = 50_000_000L;
+  private static final long SAMPLE_NANOS = 1_000_000_000L;
+  private static final long IDLE_NANOS = 60_000_000_000L;
+
+  private final Map<SectionKey, Budget> budgets = new ConcurrentHashMap<>();
+  private final LongAdder throttledDraws = new LongAdder();
+  private final LongAdder skippedRuns = new LongAdder();
+  private volatile Settings settings;
+
+  /**
+   * Creates a new particle governor.
+   *
+   * @param settings the governor settings
+   */
+  public ParticleGovernor(Settings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Updates the governor settings. Section scales are kept.
+   *
+   * @param settings the governor settings
+   */
+  public void updateConfig(Settings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * Gets the budget of the section holding a chunk, sampling the region's TPS
+   * when due. Must be called on the region thread owning the chunk.
+   *
+   * @param world the chunk's world
+   * @param chunkX the chunk X coordinate
+   * @param chunkZ the chunk Z coordinate
+   * @return the section budget
+   */
+  public Budget budget(World world, int chunkX, int chunkZ) {
+    SectionKey key = new SectionKey(world.getUID(), chunkX >> SECTION_SHIFT,
+        chunkZ >> SECTION_SHIFT);
+    Budget budget = budgets.computeIfAbsent(key, k -> new Budget(world, k));
+    budget.touch(settings, System.nanoTime(), chunkX, chunkZ);
+    return budget;
+  }
+
+  /**
+   * Drops sections that have not drawn for a minute.
+   */
+  public void expire() {
+    long now = System.nanoTime();
+    Iterator<Budget> it = budgets.values().iterator();
+    while (it.hasNext()) {
+      if (now - it.next().lastUsed > IDLE_NANOS) {
+        it.remove();
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return settings.enabled;
+  }
+
+  public int getPacketsPerTick() {
+    return settings.packetsPerTick;
+  }
+
+  public int getSections() {
+    return budgets.size();
+  }
+
+  /**
+   * Gets the number of sections currently drawing below full scale.
+   *
+   * @return the throttled section count
+   */
+  public int getThrottledSections() {
+    int count = 0;
+    for (Budget budget : budgets.values()) {
+      if (budget.scale < 1.0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets the most throttled section.
+   *
+   * @return the section budget, or null if no section is tracked
+   */
+  public Budget getMostThrottled() {
+    Budget lowest = null;
+    for (Budget budget : budgets.values()) {
+      if (lowest == null || budget.scale < lowest.scale) {
+        lowest = budget;
+      }
+    }
+    return lowest;
+  }
+
+  public long getThrottledDraws() {
+    return throttledDraws.sum();
+  }
+
+  public long getSkippedRuns() {
+    return skippedRuns.sum();
+  }
+
+  /**
+   * Particle budget of one region section. Updated only on the thread owning the
+   * section; fields read by the debug command are volatile.
+   */
+  public final class Budget {
+    private final World world;
+    private final SectionKey key;
+    private volatile double scale = 1.0;
+    private volatile double tps = 20.0;
+    private volatile long lastUsed;
+    private long nextSample;
+    private long tick = -1;
+    private int usedThisTick;
+
+    Budget(World world, SectionKey key) {
+      this.world = world;
+      this.key = key;
+    }
+
+    private void touch(Settings current, long now, int chunkX, int chunkZ) {
+      lastUsed = now;
+      long currentTick = now / NANOS_PER_TICK;
+      if (currentTick != tick) {
+        tick = currentTick;
+        usedThisTick = 0;
+      }
+      if (!current.enabled) {
+        scale = 1.0;
+        return;
+      }
+      if (now - nextSample < 0) {
+        return;
+      }
+      nextSample = now + SAMPLE_NANOS;
+      double[] regionTps = Bukkit.getRegionTPS(
+          new Location(world, (chunkX << 4) + 8, 64, (chunkZ << 4) + 8));
+      if (regionTps == null || regionTps.length == 0) {
+        return;
+      }
+      tps = regionTps[0];
+      if (tps < current.degradedTps) {
+        scale = Math.max(current.minScale, scale * 0.5);
+      } else if (tps >= current.healthyTps) {
+        scale = Math.min(1.0, scale + current.recoveryStep);
+      }
+    }
+
+    /**
+     * Decides whether a chunk task draws on this run. Below half scale only one
+     * run out of {@code ceil(0.5 / scale)} is drawn.
+     *
+     * @param run the chunk task's run counter
+     * @return true if the run should draw
+     */
+    public boolean shouldRun(long run) {
+      double current = scale;
+      if (current >= 0.5) {
+        return true;
+      }
+      if (run % (long) Math.ceil(0.5 / current) == 0) {
+        return true;
+      }
+      skippedRuns.increment();
+      return false;
+    }
+
+    /**
+     * Scales a level-of-detail point stride by the section's scale.
+     *
+     * @param stride the stride chosen by the level of detail
+     * @return the stride to draw with
+     */
+    public int stride(int stride) {
+      double current = scale;
+      return current >= 1.0 ? stride : (int) Math.ceil(stride / current);
+    }
+
+    /**
+     * Gets the packets this section may still send in the current tick.
+     *
+     * @return the remaining packets, at most the scaled per-tick budget
+     */
+    public int remaining() {
+      Settings current = settings;
+      if (!current.enabled) {
+        return Integer.MAX_VALUE;
+      }
+      int remaining = (int) (current.packetsPerTick * scale) - usedThisTick;
+      if (remaining <= 0) {
+        throttledDraws.increment();
+      }
+      return remaining;
+    }
+
+    /**
+     * Charges sent packets to the current tick.
+     *
+     * @param packets the packets sent
+     */
+    public void consume(int packets) {
+      usedThisTick += packets;
+    }
+
+    public World getWorld() {
+      return world;
+    }
+
+    /**
+     * Gets the block X coordinate of the section's north-west corner.
+     *
+     * @return the block X coordinate
+     */
+    public int getBlockX() {
+      return key.x << (SECTION_SHIFT + 4);
+    }
+
+    /**
+     * Gets the block Z coordinate of the section's north-west corner.
+     *
+     * @return the block Z coordinate
+     */
+    public int getBlockZ() {
+      return key.z << (SECTION_SHIFT + 4);
+    }
+
+    public double getScale() {
+      return scale;
+    }
+
+    public double getTps() {
+      return tps;
+    }
+  }
+
+  /**
+   * Immutable governor settings.
+   */
+  public static final class Settings {
+    final boolean enabled;
+    final int packetsPerTick;
+    final double healthyTps;
+    final double degradedTps;
+    final double minScale;
+    final double recoveryStep;
+
+    /**
+     * Creates governor settings.
+     *
+     * @param enabled whether the governor is enabled
+     * @param packetsPerTick particle packets a section may send per tick at full scale
+     * @param healthyTps region TPS at or above which the scale recovers
+     * @param degradedTps region TPS below which the scale is halved
+     * @param minScale lowest scale a section can drop to
+     * @param recoveryStep scale regained per healthy second
+     */
+    public Settings(boolean enabled, int packetsPerTick, double healthyTps, double degradedTps,
+        double minScale, double recoveryStep) {
+      this.enabled = enabled;
+      this.packetsPerTick = Math.max(1, packetsPerTick);
+      this.degradedTps = Math.max(0, degradedTps);
+      this.healthyTps = Math.max(this.degradedTps, healthyTps);
+      this.minScale = Math.max(0.05, Math.min(1.0, minScale));
+      this.recoveryStep = Math.max(0.01, recoveryStep);
+    }
+
+    /**
+     * Reads settings from the {@code portal.effects.governor} section.
+     *
+     * @param section the governor section, or null for the defaults
+     * @return the settings
+     */
+    public static Settings fromConfig(ConfigurationSection section) {
+      if (section == null) {
+        return new Settings(true, 2000, 19.0, 16.0, 0.125, 0.1);
+      }
+      return new Settings(
+          section.getBoolean("enabled", true),
+          section.getInt("packetsPerTick", 2000),
+          section.getDouble("healthyTps", 19.0),
+          section.getDouble("degradedTps", 16.0),
+          section.getDouble("minScale", 0.125),
+          section.getDouble("recoveryStep", 0.1));
+    }
+  }
+
+  private static final class SectionKey {
+    private final UUID worldId;
+    private final int x;
+    private final int z;
+
+    SectionKey(UUID worldId, int x, int z) {
+      this.worldId = worldId;
+      this.x = x;
+      this.z = z;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof SectionKey)) {
+        return false;
+      }
+      SectionKey other = (SectionKey) o;
+      return x == other.x && z == other.z && worldId.equals(other.worldId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(worldId, x, z);
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Distance-based level of detail for portal particles.
+ *
+ * <p>Viewers within the near distance get every point of every frame. Viewers
+ * within the mid distance get every {@code midStride}-th point, and viewers
+ * farther out get every {@code farStride}-th point on one run out of
+ * {@code farInterval}. Instances are immutable.
+ */
+public final class ParticleLod {
+  /** Detail tiers, from full detail to the coarsest. */
+  public enum Tier {
+    NEAR,
+    MID,
+    FAR
+  }
+
+  private final double nearDistanceSq;
+  private final double midDistanceSq;
+  private final int midStride;
+  private final int farStride;
+  private final int farInterval;
+
+  /**
+   * Creates a level-of-detail policy.
+   *
+   * @param nearDistance distance within which viewers get full detail
+   * @param midDistance distance within which viewers get the mid tier
+   * @param midStride point stride of the mid tier
+   * @param farStride point stride of the far tier
+   * @param farInterval runs between two frames sent to far viewers
+   */
+  public ParticleLod(double nearDistance, double midDistance, int midStride, int farStride,
+      int farInterval) {
+    double near = Math.max(0, nearDistance);
+    double mid = Math.max(near, midDistance);
+    this.nearDistanceSq = near * near;
+    this.midDistanceSq = mid * mid;
+    this.midStride = Math.max(1, midStride);
+    this.farStride = Math.max(1, farStride);
+    this.farInterval = Math.max(1, farInterval);
+  }
+
+  /**
+   * Creates a policy from the {@code portal.effects.lod} section.
+   *
+   * @param section the level-of-detail section, or null for the defaults
+   * @return the policy
+   */
+  public static ParticleLod fromConfig(ConfigurationSection section) {
+    if (section == null) {
+      return new ParticleLod(12.0, 24.0, 2, 4, 2);
+    }
+    return new ParticleLod(
+        section.getDouble("nearDistance", 12.0),
+        section.getDouble("midDistance", 24.0),
+        section.getInt("midStride", 2),
+        section.getInt("farStride", 4),
+        section.getInt("farInterval", 2));
+  }
+
+  /**
+   * Gets the tier of a viewer.
+   *
+   * @param distanceSq squared distance between the viewer and the portal
+   * @return the tier
+   */
+  public Tier tier(double distanceSq) {
+    if (distanceSq <= nearDistanceSq) {
+      return Tier.NEAR;
+    }
+    return distanceSq <= midDistanceSq ? Tier.MID : Tier.FAR;
+  }
+
+  /**
+   * Gets the point stride to send a viewer on a given run.
+   *
+   * @param tier the viewer's tier
+   * @param run the chunk task's run counter
+   * @return the stride, or 0 if nothing is sent on this run
+   */
+  public int stride(Tier tier, long run) {
+    switch (tier) {
+      case NEAR:
+        return 1;
+      case MID:
+        return midStride;
+      default:
+        return run % farInterval == 0 ? farStride : 0;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import java.util.Locale;
+import org.bukkit.Particle;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+
+/**
+ * Draws the idle particle animation of a portal from a precomputed
+ * {@link AnimationTable}. Called on the region thread owning the portal's chunk;
+ * drawing a frame reads primitive offsets only and allocates nothing.
+ *
+ * <p>Frames are sent to each viewer separately so distant viewers can be sent
+ * only part of the points, see {@link ParticleLod}.
+ */
+public class PortalEffectRenderer {
+  private volatile AnimationTable table;
+  private volatile Particle particle;
+
+  /**
+   * Creates a new renderer.
+   *
+   * @param table the animation keyframes
+   * @param particle the particle to draw with
+   */
+  public PortalEffectRenderer(AnimationTable table, Particle particle) {
+    this.table = table;
+    this.particle = particle;
+  }
+
+  /**
+   * Creates a renderer from the {@code portal.effects.animation} section.
+   *
+   * @param section the animation section, or null for the defaults
+   * @return the renderer
+   */
+  public static PortalEffectRenderer fromConfig(ConfigurationSection section) {
+    PortalEffectRenderer renderer = new PortalEffectRenderer(null, null);
+    renderer.updateConfig(section);
+    return renderer;
+  }
+
+  /**
+   * Rebuilds the animation from the {@code portal.effects.animation} section.
+   *
+   * @param section the animation section, or null for the defaults
+   */
+  public void updateConfig(ConfigurationSection section) {
+    Particle configured = Particle.END_ROD;
+    if (section != null) {
+      try {
+        configured = Particle.valueOf(
+            section.getString("particle", "END_ROD").toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        configured = Particle.END_ROD;
+      }
+    }
+    this.particle = configured;
+    this.table = AnimationTable.fromConfig(section);
+  }
+
+  public AnimationTable getTable() {
+    return table;
+  }
+
+  /**
+   * Sends one animation frame around a portal to a single viewer.
+   *
+   * @param viewer the player to send the particles to
+   * @param centerX the X coordinate of the portal center
+   * @param baseY the Y coordinate the animation starts from
+   * @param centerZ the Z coordinate of the portal center
+   * @param frame the frame index, see {@link AnimationTable#frameAt(long)}
+   * @param stride send every {@code stride}-th point, 1 for the full frame
+   * @return the number of particle packets sent
+   */
+  public int render(Player viewer, double centerX, double baseY, double centerZ, int frame,
+      int stride) {
+    AnimationTable current = table;
+    Particle type = particle;
+    double[] offsets = current.getOffsets();
+    int start = current.frameStart(frame % current.getFrames());
+    int step = stride * 3;
+    int end = start + current.getPoints() * 3;
+    int sent = 0;
+    for (int o = start; o < end; o += step) {
+      viewer.spawnParticle(
+          type,
+          centerX + offsets[o],
+          baseY + offsets[o + 1],
+          centerZ + offsets[o + 2],
+          1,
+          0, 0, 0,
+          0
+      );
+      sent++;
+    }
+    return sent;
+  }
+}
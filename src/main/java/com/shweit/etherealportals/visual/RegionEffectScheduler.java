@@ -0,0 +1,579 @@
+package fr.kazotaruumc72.etherealportals.visual;
+
+import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.manager.PortalRegistry;
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.ItemDisplay;
+import org.bukkit.entity.Player;
+
+/**
+ * Runs portal particle effects on the region that owns each portal.
+ *
+ * <p>Every loaded chunk holding at least one portal gets its own repeating task on
+ * the region scheduler. Tasks start when the chunk loads and stop when it unloads,
+ * and a run only draws portals that have a player within the particle view
+ * distance. A once-per-second global check notices portal changes and starts or
+ * stops chunk tasks to match.
+ *
+ * <p>Each viewer is sent the frame at the detail of its distance tier, see
+ * {@link ParticleLod}. The packets this saves compared to sending every viewer the
+ * full frame are tracked per second. A {@link ParticleGovernor} thins out and
+ * slows down the effects of regions whose tick rate degrades.
+ *
+ * <p>In display mode the chunk tasks animate one item display per portal through
+ * a {@link DisplayAnimator} instead, and clients interpolate between the
+ * keyframes. Packet counts and run times are kept per mode so both can be
+ * compared on a live server.
+ */
+public class RegionEffectScheduler {
+  /** How portals are animated. */
+  public enum Mode {
+    /** Particle frames sent to nearby viewers on every run. */
+    PARTICLES,
+    /** Client-interpolated item displays, updated once per run. */
+    DISPLAY
+  }
+
+  private final EtherealPortals plugin;
+  private final PortalEffectRenderer renderer;
+  private final ParticleGovernor governor;
+  private final DisplayAnimator animator;
+  private final Map<ChunkKey, ChunkEffectTask> tasks = new ConcurrentHashMap<>();
+  private volatile ChunkIndex index = ChunkIndex.EMPTY;
+  private volatile int periodTicks;
+  private volatile double viewDistance;
+  private volatile ParticleLod lod;
+  private volatile Mode mode;
+  private ScheduledTask watchTask;
+  private final LongAdder drawn = new LongAdder();
+  private final LongAdder skippedNoViewer = new LongAdder();
+  private final LongAdder packetsSent = new LongAdder();
+  private final LongAdder packetsSaved = new LongAdder();
+  private long lastSent;
+  private long lastSaved;
+  private volatile long sentPerSecond;
+  private volatile long savedPerSecond;
+  private final LongAdder displayPackets = new LongAdder();
+  private long lastDisplayPackets;
+  private volatile long displayPacketsPerSecond;
+  private final LongAdder particleRuns = new LongAdder();
+  private final LongAdder particleNanos = new LongAdder();
+  private final LongAdder displayRuns = new LongAdder();
+  private final LongAdder displayNanos = new LongAdder();
+
+  /**
+   * Creates a new region effect scheduler.
+   *
+   * @param plugin the plugin instance
+   * @param renderer the portal animation renderer
+   * @param periodTicks ticks between two animation frames of a chunk
+   * @param viewDistance distance within which a player sees portal particles
+   * @param lod the per-viewer level of detail
+   * @param governor the region particle budget governor
+   * @param animator the display entity animator
+   * @param mode how portals are animated
+   */
+  public RegionEffectScheduler(EtherealPortals plugin, PortalEffectRenderer renderer,
+      int periodTicks, double viewDistance, ParticleLod lod, ParticleGovernor governor,
+      DisplayAnimator animator, Mode mode) {
+    this.plugin = plugin;
+    this.renderer = renderer;
+    this.governor = governor;
+    this.animator = animator;
+    this.mode = mode;
+    this.periodTicks = Math.max(1, periodTicks);
+    this.viewDistance = viewDistance;
+    this.lod = lod;
+  }
+
+  /**
+   * Updates the scheduling settings. Running chunk tasks are restarted with the
+   * new period.
+   *
+   * @param periodTicks ticks between two animation frames of a chunk
+   * @param viewDistance distance within which a player sees portal particles
+   * @param lod the per-viewer level of detail
+   */
+  public void updateConfig(int periodTicks, double viewDistance, ParticleLod lod) {
+    this.viewDistance = viewDistance;
+    this.lod = lod;
+    int period = Math.max(1, periodTicks);
+    if (period != this.periodTicks) {
+      this.periodTicks = period;
+      for (ChunkKey key : new ArrayList<>(tasks.keySet())) {
+        stopChunk(key);
+        startIfLoaded(key);
+      }
+    }
+  }
+
+  /**
+   * Switches the animation mode. Chunk tasks remove their displays on their next
+   * run when switching to particles.
+   *
+   * @param mode how portals are animated
+   */
+  public void setMode(Mode mode) {
+    this.mode = mode;
+  }
+
+  /**
+   * Reads the animation mode from the {@code portal.effects.mode} option.
+   *
+   * @param value the configured value, or null
+   * @return the mode, particles unless display is configured
+   */
+  public static Mode parseMode(String value) {
+    return "display".equalsIgnoreCase(value) ? Mode.DISPLAY : Mode.PARTICLES;
+  }
+
+  /**
+   * Starts tasks for every loaded portal chunk and watches for portal changes.
+   */
+  public void start() {
+    if (watchTask != null) {
+      return;
+    }
+    index = ChunkIndex.build(plugin.getPortalManager().snapshot(), ChunkIndex.EMPTY);
+    for (ChunkKey key : index.chunks.keySet()) {
+      startIfLoaded(key);
+    }
+    watchTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(
+        plugin,
+        (task) -> refresh(),
+        20L,
+        20L
+    );
+  }
+
+  /**
+   * Stops the watcher and every chunk task.
+   */
+  public void stop() {
+    if (watchTask != null) {
+      watchTask.cancel();
+      watchTask = null;
+    }
+    for (ChunkEffectTask task : tasks.values()) {
+      task.cancel();
+    }
+    tasks.clear();
+  }
+
+  /**
+   * Starts the effects of a chunk that just loaded. Called on its region thread.
+   *
+   * @param chunk the loaded chunk
+   */
+  public void onChunkLoad(Chunk chunk) {
+    ChunkKey key = new ChunkKey(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+    if (index.chunks.containsKey(key)) {
+      startChunk(chunk.getWorld(), key);
+    }
+  }
+
+  /**
+   * Stops the effects of a chunk that is unloading. Called on its region thread.
+   *
+   * @param chunk the unloading chunk
+   */
+  public void onChunkUnload(Chunk chunk) {
+    stopChunk(new ChunkKey(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ()));
+  }
+
+  public PortalEffectRenderer getRenderer() {
+    return renderer;
+  }
+
+  public ParticleGovernor getGovernor() {
+    return governor;
+  }
+
+  public DisplayAnimator getAnimator() {
+    return animator;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public int getActiveChunks() {
+    return tasks.size();
+  }
+
+  public long getDrawn() {
+    return drawn.sum();
+  }
+
+  public long getSkippedNoViewer() {
+    return skippedNoViewer.sum();
+  }
+
+  public long getPacketsSent() {
+    return packetsSent.sum();
+  }
+
+  public long getPacketsSaved() {
+    return packetsSaved.sum();
+  }
+
+  /**
+   * Gets the particle packets sent over the last second.
+   *
+   * @return packets per second
+   */
+  public long getSentPerSecond() {
+    return sentPerSecond;
+  }
+
+  /**
+   * Gets the particle packets the level of detail avoided over the last second.
+   *
+   * @return packets per second
+   */
+  public long getSavedPerSecond() {
+    return savedPerSecond;
+  }
+
+  /**
+   * Gets the display transform updates sent to tracking players over the last second.
+   *
+   * @return packets per second
+   */
+  public long getDisplayPacketsPerSecond() {
+    return displayPacketsPerSecond;
+  }
+
+  /**
+   * Gets the average time a chunk task run takes in a mode.
+   *
+   * @param mode the animation mode
+   * @return the average run time in microseconds, or 0 without runs
+   */
+  public double getAverageRunMicros(Mode mode) {
+    long runs = (mode == Mode.DISPLAY ? displayRuns : particleRuns).sum();
+    long nanos = (mode == Mode.DISPLAY ? displayNanos : particleNanos).sum();
+    return runs == 0 ? 0 : nanos / 1000.0 / runs;
+  }
+
+  /**
+   * Gets the number of chunk task runs in a mode.
+   *
+   * @param mode the animation mode
+   * @return the run count
+   */
+  public long getRuns(Mode mode) {
+    return (mode == Mode.DISPLAY ? displayRuns : particleRuns).sum();
+  }
+
+  // Global region thread, once per second
+  private void refresh() {
+    long sent = packetsSent.sum();
+    long saved = packetsSaved.sum();
+    sentPerSecond = sent - lastSent;
+    savedPerSecond = saved - lastSaved;
+    lastSent = sent;
+    lastSaved = saved;
+    long display = displayPackets.sum();
+    displayPacketsPerSecond = display - lastDisplayPackets;
+    lastDisplayPackets = display;
+    governor.expire();
+    reconcile();
+  }
+
+  // Reconcile chunk tasks with the current portals
+  private void reconcile() {
+    PortalRegistry snapshot = plugin.getPortalManager().snapshot();
+    if (snapshot.getVersion() == index.version) {
+      return;
+    }
+    ChunkIndex next = ChunkIndex.build(snapshot, index);
+    index = next;
+    for (ChunkKey key : new ArrayList<>(tasks.keySet())) {
+      if (!next.chunks.containsKey(key)) {
+        stopChunk(key);
+      }
+    }
+    for (ChunkKey key : next.chunks.keySet()) {
+      if (!tasks.containsKey(key)) {
+        startIfLoaded(key);
+      }
+    }
+  }
+
+  private void startIfLoaded(ChunkKey key) {
+    World world = Bukkit.getWorld(key.worldId);
+    if (world == null) {
+      return;
+    }
+    // Chunk state may only be read on the owning region thread
+    Bukkit.getRegionScheduler().execute(plugin, world, key.x, key.z, () -> {
+      if (world.isChunkLoaded(key.x, key.z)) {
+        startChunk(world, key);
+      }
+    });
+  }
+
+  private void startChunk(World world, ChunkKey key) {
+    tasks.computeIfAbsent(key, k -> {
+      ChunkEffectTask task = new ChunkEffectTask(world, k);
+      int period = periodTicks;
+      // Spread chunk tasks over the period instead of firing them on the same tick
+      long initialDelay = 1 + Math.floorMod(k.hashCode(), period);
+      task.handle = Bukkit.getRegionScheduler().runAtFixedRate(
+          plugin, world, k.x, k.z, (scheduled) -> task.run(), initialDelay, period);
+      return task;
+    });
+  }
+
+  private void stopChunk(ChunkKey key) {
+    ChunkEffectTask task = tasks.remove(key);
+    if (task != null) {
+      task.cancel();
+    }
+  }
+
+  /**
+   * Repeating effect task of one chunk, running on the chunk's region thread.
+   */
+  private final class ChunkEffectTask {
+    private final World world;
+    private final ChunkKey key;
+    private volatile ScheduledTask handle;
+    // Only touched on the chunk's region thread
+    private long runs;
+    private PortalEntry[] animatedFor;
+    private volatile ItemDisplay[] animated;
+
+    ChunkEffectTask(World world, ChunkKey key) {
+      this.world = world;
+      this.key = key;
+    }
+
+    void run() {
+      PortalEntry[] portals = index.chunks.get(key);
+      if (portals == null) {
+        return;
+      }
+      long started = System.nanoTime();
+      if (mode == Mode.DISPLAY) {
+        runDisplays(portals);
+        displayNanos.add(System.nanoTime() - started);
+        displayRuns.increment();
+      } else {
+        clearDisplays();
+        runParticles(portals);
+        particleNanos.add(System.nanoTime() - started);
+        particleRuns.increment();
+      }
+    }
+
+    private void runDisplays(PortalEntry[] portals) {
+      if (animatedFor != portals) {
+        // Portals of this chunk changed, start over with fresh displays
+        clearDisplays();
+        animatedFor = portals;
+        animated = new ItemDisplay[portals.length];
+      }
+      long step = runs++;
+      int duration = periodTicks;
+      for (int i = 0; i < portals.length; i++) {
+        ItemDisplay display = animated[i];
+        if (display == null || !display.isValid()) {
+          PortalEntry portal = portals[i];
+          display = animator.spawn(world, portal.x, portal.y, portal.z, viewDistance);
+          animated[i] = display;
+        }
+        animator.advance(display, step, duration);
+        displayPackets.add(display.getTrackedBy().size());
+      }
+      drawn.add(portals.length);
+    }
+
+    // Region thread: removes the displays of this chunk, if any
+    void clearDisplays() {
+      ItemDisplay[] displays = animated;
+      if (displays == null) {
+        return;
+      }
+      for (ItemDisplay display : displays) {
+        if (display != null && display.isValid()) {
+          display.remove();
+        }
+      }
+      animated = null;
+      animatedFor = null;
+    }
+
+    private void runParticles(PortalEntry[] portals) {
+      long run = runs++;
+      ParticleGovernor.Budget budget = governor.budget(world, key.x, key.z);
+      if (!budget.shouldRun(run)) {
+        return;
+      }
+      int frame = renderer.getTable().frameAt(System.currentTimeMillis());
+      int fullFrame = renderer.getTable().getPoints();
+      double range = viewDistance;
+      ParticleLod detail = lod;
+      for (PortalEntry portal : portals) {
+        Collection<Player> viewers = portal.center.getNearbyPlayers(range);
+        if (viewers.isEmpty()) {
+          skippedNoViewer.increment();
+          continue;
+        }
+        int sent = 0;
+        for (Player viewer : viewers) {
+          if (budget.remaining() <= 0) {
+            break;
+          }
+          Location eye = viewer.getLocation();
+          double dx = eye.getX() - portal.x;
+          double dy = eye.getY() - portal.y;
+          double dz = eye.getZ() - portal.z;
+          int stride = detail.stride(detail.tier(dx * dx + dy * dy + dz * dz), run);
+          if (stride > 0) {
+            sent += renderer.render(viewer, portal.x, portal.y, portal.z, frame,
+                budget.stride(stride));
+          }
+        }
+        budget.consume(sent);
+        packetsSent.add(sent);
+        packetsSaved.add((long) fullFrame * viewers.size() - sent);
+        drawn.increment();
+      }
+    }
+
+    void cancel() {
+      ScheduledTask scheduled = handle;
+      if (scheduled != null) {
+        scheduled.cancel();
+      }
+      // Displays are not persistent, so an unloading chunk or a disabled plugin drops them
+      if (animated != null && plugin.isEnabled()) {
+        Bukkit.getRegionScheduler().execute(plugin, world, key.x, key.z, this::clearDisplays);
+      }
+    }
+  }
+
+  /**
+   * Portals grouped by the chunk of their base block, for one registry version.
+   */
+  private static final class ChunkIndex {
+    static final ChunkIndex EMPTY = new ChunkIndex(-1, Collections.emptyMap());
+
+    final long version;
+    final Map<ChunkKey, PortalEntry[]> chunks;
+
+    private ChunkIndex(long version, Map<ChunkKey, PortalEntry[]> chunks) {
+      this.version = version;
+      this.chunks = chunks;
+    }
+
+    /**
+     * Builds the index of a registry version. A chunk whose portals are drawn at
+     * the same positions as before keeps its previous array, so its chunk task
+     * keeps its displays instead of respawning them.
+     *
+     * @param snapshot the registry version
+     * @param previous the index of the previous version
+     * @return the index
+     */
+    static ChunkIndex build(PortalRegistry snapshot, ChunkIndex previous) {
+      Map<ChunkKey, List<PortalEntry>> grouped = new HashMap<>();
+      for (PortalGroup group : snapshot.getGroups()) {
+        for (Portal portal : group.getPortals()) {
+          Location base = portal.getBaseLocation();
+          if (base.getWorld() == null) {
+            continue;
+          }
+          ChunkKey key = new ChunkKey(base.getWorld().getUID(),
+              base.getBlockX() >> 4, base.getBlockZ() >> 4);
+          grouped.computeIfAbsent(key, k -> new ArrayList<>(1)).add(new PortalEntry(portal));
+        }
+      }
+      Map<ChunkKey, PortalEntry[]> chunks = new HashMap<>();
+      grouped.forEach((key, entries) -> {
+        PortalEntry[] old = previous.chunks.get(key);
+        chunks.put(key, samePositions(old, entries) ? old : entries.toArray(new PortalEntry[0]));
+      });
+      return new ChunkIndex(snapshot.getVersion(), chunks);
+    }
+
+    private static boolean samePositions(PortalEntry[] old, List<PortalEntry> entries) {
+      if (old == null || old.length != entries.size()) {
+        return false;
+      }
+      for (int i = 0; i < old.length; i++) {
+        if (!old[i].samePosition(entries.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Draw position of a portal, resolved once per registry version so frames
+   * never clone locations.
+   */
+  private static final class PortalEntry {
+    final Location center;
+    final double x;
+    final double y;
+    final double z;
+
+    PortalEntry(Portal portal) {
+      this.center = portal.getCenterLocation();
+      this.x = portal.getCenterX();
+      this.y = portal.getBaseY() + 0.1;
+      this.z = portal.getCenterZ();
+    }
+
+    boolean samePosition(PortalEntry other) {
+      return x == other.x && y == other.y && z == other.z
+          && center.getWorld() == other.center.getWorld();
+    }
+  }
+
+  private static final class ChunkKey {
+    private final UUID worldId;
+    private final int x;
+    private final int z;
+
+    ChunkKey(UUID worldId, int x, int z) {
+      this.worldId = worldId;
+      this.x = x;
+      this.z = z;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ChunkKey)) {
+        return false;
+      }
+      ChunkKey other = (ChunkKey) o;
+      return x == other.x && z == other.z && worldId.equals(other.worldId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(worldId, x, z);
+    }
+  }
+}
@@ -1,25 +1,40 @@
 package fr.kazotaruumc72.etherealportals.visual;
 
 import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.manager.TrustManager;
+import fr.kazotaruumc72.etherealportals.model.Portal;
 import fr.kazotaruumc72.etherealportals.model.PortalGroup;
-import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
-import org.bukkit.Particle;
 import org.bukkit.entity.ArmorStand;
 import org.bukkit.entity.Display;
 import org.bukkit.entity.Entity;
+import org.bukkit.entity.Interaction;
 import org.bukkit.entity.TextDisplay;
 
 /**
- * Periodic task spawning particle spirals for portals.
+ * Manages portal visuals: particle spirals and the text display and marker entities.
  * Folia-compatible version using RegionScheduler for region-based scheduling.
  */
 public class VisualEffectTask {
+  /** Entity types a craftable portal's break marker can use. */
+  public enum MarkerType {
+    /** Lightweight interaction box, identified by persistent data. */
+    INTERACTION,
+    /** Legacy invisible armor stand, identified by a scoreboard tag. */
+    ARMOR_STAND
+  }
+
   private final EtherealPortals plugin;
-  private volatile ScheduledTask regionTask;
+  private final RegionEffectScheduler effectScheduler;
+  private final DisplayRegistry displays;
+  private final DisplayReconciler reconciler;
+  private final DisplayVisibility visibility;
+  private volatile boolean started;
+  private volatile MarkerType markerType;
 
   /**
    * Creates a new visual effect task.
@@ -28,88 +43,86 @@ public class VisualEffectTask {
    */
   public VisualEffectTask(EtherealPortals plugin) {
     this.plugin = plugin;
-    this.regionTask = null;
+    this.effectScheduler = new RegionEffectScheduler(plugin,
+        PortalEffectRenderer.fromConfig(
+            plugin.getConfig().getConfigurationSection("portal.effects.animation")),
+        plugin.getConfig().getInt("portal.effects.periodTicks", 20),
+        plugin.getConfig().getDouble("portal.effects.viewDistance", 32.0),
+        ParticleLod.fromConfig(plugin.getConfig().getConfigurationSection("portal.effects.lod")),
+        new ParticleGovernor(ParticleGovernor.Settings.fromConfig(
+            plugin.getConfig().getConfigurationSection("portal.effects.governor"))),
+        new DisplayAnimator(DisplayAnimator.Settings.fromConfig(
+            plugin.getConfig().getConfigurationSection("portal.effects.display"))),
+        RegionEffectScheduler.parseMode(plugin.getConfig().getString("portal.effects.mode")));
+    this.displays = new DisplayRegistry(plugin);
+    this.visibility = new DisplayVisibility(plugin, displays);
+    this.markerType = parseMarkerType(
+        plugin.getConfig().getString("portal.craftablePortals.marker"));
+    this.reconciler = new DisplayReconciler(plugin, this, displays,
+        plugin.getConfig().getInt("portal.displays.reconcileChunksPerTick", 4));
   }
 
   /**
    * Starts the visual effect task.
-   * Uses GlobalRegionScheduler for particle spawning across all regions.
+   * Particle effects run per chunk on the owning region, see {@link RegionEffectScheduler}.
    */
   public void start() {
-    if (regionTask != null) {
+    if (started) {
       return;
     }
-    
-    // One-time sync: create missing TextDisplays and ArmorStands for existing portals.
-    // IMPORTANT: These must be scheduled per-region to avoid "Async chunk retrieval" errors on Folia.
-    syncMissingTextDisplays();
-    syncMissingArmorStands();
-    
-    // Schedule particle effects using GlobalRegionScheduler
-    // This runs on a global thread, safe for cross-region particle spawning
-    regionTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(
-        plugin,
-        (task) -> {
-          run();
-        },
-        40L,  // Initial delay
-        20L   // Period (every 20 ticks = 1 second)
-    );
+    started = true;
+    displays.rebuild(plugin.getPortalManager().getGroups());
+
+    // Missing, duplicate and orphaned displays are fixed per chunk as entities load,
+    // see DisplayReconciler. Portal chunks are never loaded just for this.
+    reconciler.start();
+
+    effectScheduler.start();
   }
 
   /**
    * Stops the visual effect task.
    */
   public void stop() {
-    if (regionTask != null) {
-      regionTask.cancel();
-      regionTask = null;
-    }
+    reconciler.stop();
+    effectScheduler.stop();
+    started = false;
   }
 
   /**
-   * Main runnable method for particle spawning.
-   * Spawns spiral particles around all portals.
+   * Gets the scheduler running portal particle effects.
+   *
+   * @return the region effect scheduler
    */
-  private void run() {
-    double t = (System.currentTimeMillis() % 5000) / 5000.0; // progress [0, 1)
-    
-    plugin.getPortalManager().getGroups().forEach(group ->
-        group.getPortals().forEach(portal -> {
-          Location center = portal.getCenterLocation().clone().add(0, 0.1, 0);
-          spawnSpiral(center, t);
-        })
-    );
+  public RegionEffectScheduler getEffectScheduler() {
+    return effectScheduler;
   }
 
   /**
-   * Spawns a spiral of particles at the given location.
+   * Gets the index of portal display entities.
    *
-   * @param center the center location
-   * @param progress animation progress (0-1)
+   * @return the display registry
    */
-  private void spawnSpiral(Location center, double progress) {
-    if (center.getWorld() == null) {
-      return;
-    }
-    
-    for (int i = 0; i < 24; i++) {
-      double angle = (progress * 2 * Math.PI) + (i * Math.PI / 6);
-      double radius = 0.7;
-      double y = (i / 24.0) * 2.5;
-      double x = center.getX() + Math.cos(angle) * radius;
-      double z = center.getZ() + Math.sin(angle) * radius;
-      
-      center.getWorld().spawnParticle(
-          Particle.END_ROD,
-          x,
-          center.getY() + y,
-          z,
-          1,
-          0, 0, 0,
-          0
-      );
-    }
+  public DisplayRegistry getDisplayRegistry() {
+    return displays;
+  }
+
+  /**
+   * Gets the chunk-by-chunk display reconciler.
+   *
+   * @return the display reconciler
+   */
+  public DisplayReconciler getReconciler() {
+    return reconciler;
+  }
+
+  /**
+   * Gets the per-player visibility of private group displays.
+   *
+   * @return the display visibility
+   */
+  public DisplayVisibility getVisibility() {
+    return visibility;
   }
 
   /**
@@ -121,11 +134,7 @@ public class VisualEffectTask {
    * @param portal The portal object containing the location
    */
   public void removeTextDisplay(String groupName, String portalName,
-      fr.kazotaruumc72.etherealportals.model.Portal portal) {
-    String textTag = "ep_portal:" + groupName.toLowerCase() + ":" + portalName.toLowerCase();
-    String markerTag = "ep_portal_marker:" + groupName.toLowerCase()
-        + ":" + portalName.toLowerCase();
-
+      Portal portal) {
     Location portalLoc = portal.getBaseLocation();
     
     if (portalLoc.getWorld() == null) {
@@ -142,18 +151,24 @@ public class VisualEffectTask {
         return; 
       }
 
-      // Remove TextDisplay entities with matching tag
-      portalLoc.getWorld().getEntitiesByClass(TextDisplay.class).stream()
-          .filter(td -> td.getScoreboardTags().contains(textTag))
-          .forEach(Entity::remove);
-      
-      // Remove ArmorStand marker entities with matching tag
-      portalLoc.getWorld().getEntitiesByClass(ArmorStand.class).stream()
-          .filter(as -> as.getScoreboardTags().contains(markerTag))
-          .forEach(Entity::remove);
+      removeDisplay(portalLoc, DisplayRegistry.Kind.TEXT, groupName, portalName);
+      removeDisplay(portalLoc, DisplayRegistry.Kind.MARKER, groupName, portalName);
     });
   }
 
+  // Region thread: removes the recorded entity, or a legacy one tagged in the chunk
+  private void removeDisplay(Location loc, DisplayRegistry.Kind kind, String groupName,
+      String portalName) {
+    Entity entity = displays.resolve(DisplayRegistry.tag(kind, groupName, portalName));
+    if (entity == null) {
+      entity = displays.adopt(loc, kind, groupName, portalName);
+    }
+    if (entity != null) {
+      entity.remove();
+    }
+    displays.unregister(kind, groupName, portalName);
+  }
+
   /**
    * Removes all text displays for all portals in a group.
    *
@@ -193,89 +208,74 @@ public class VisualEffectTask {
       return;
     }
 
-    String tag = "ep_portal:" + groupName.toLowerCase() + ":" + portalName.toLowerCase();
-    
     // Schedule entity creation on the correct region thread
     Bukkit.getRegionScheduler().execute(plugin, loc, () -> {
-      loc.getWorld().spawn(loc, TextDisplay.class, d -> {
-        d.text(Component.text(ChatColor.LIGHT_PURPLE + "" + ChatColor.BOLD + displayText));
-        d.setBillboard(Display.Billboard.CENTER);
-        d.setSeeThrough(true);
-        d.setShadowed(true);
-        d.setViewRange(10);
-        d.addScoreboardTag(tag);
-      });
+      if (displays.resolve(DisplayRegistry.tag(DisplayRegistry.Kind.TEXT, groupName,
+          portalName)) == null) {
+        spawnTextDisplay(loc, groupName, portalName, displayText);
+      }
     });
   }
 
-  /**
-   * Syncs missing TextDisplays for existing portals on startup.
-   * FIXED for Folia: Schedules each check on the correct RegionScheduler thread.
-   */
-  private void syncMissingTextDisplays() {
-    for (PortalGroup group : plugin.getPortalManager().getGroups()) {
-      for (fr.kazotaruumc72.etherealportals.model.Portal portal : group.getPortals()) {
-        Location loc = portal.getBaseLocation().clone().add(0.5, 3, 0.5);
-        
-        if (loc.getWorld() == null) {
-          continue;
-        }
-
-        String tag = "ep_portal:" + group.getName().toLowerCase()
-            + ":" + portal.getName().toLowerCase();
-
-        // CRITICAL FIX: Schedule on the Region thread.
-        // We cannot call getChunk() or isChunkLoaded() from onEnable directly.
-        Bukkit.getRegionScheduler().execute(plugin, loc, () -> {
-            // Now we are on the correct thread.
-            // If the chunk is unloaded, we generally don't want to force load it just for a visual check
-            // unless we really need to.
-            if (!loc.isChunkLoaded()) {
-                // Optional: loc.getChunk().load(); if you absolutely must spawn it now.
-                // For performance, we can skip spawning if no one is there to see it.
-                // But to be safe and consistent, let's load it if we want to ensure it exists.
-                // Or better: just spawn if loaded. 
-                // Let's force load to ensure persistence as per original logic, but safely.
-                loc.getChunk().load(); 
-            }
-
-            // Check if TextDisplay already exists
-            boolean exists = loc.getWorld().getEntitiesByClass(TextDisplay.class).stream()
-                .anyMatch(td -> td.getScoreboardTags().contains(tag));
-
-            if (!exists) {
-              loc.getWorld().spawn(loc, TextDisplay.class, d -> {
-                d.text(Component.text(ChatColor.LIGHT_PURPLE + "" + ChatColor.BOLD + portal.getName()));
-                d.setBillboard(Display.Billboard.CENTER);
-                d.setSeeThrough(true);
-                d.setShadowed(true);
-                d.setViewRange(10);
-                d.addScoreboardTag(tag);
-              });
-              plugin.getLogger().info("Created missing TextDisplay for " + portal.getName());
-            }
-        });
-      }
-    }
+  // Region thread: spawns a text display and records its UUID
+  void spawnTextDisplay(Location loc, String groupName, String portalName,
+      String displayText) {
+    String tag = DisplayRegistry.tag(DisplayRegistry.Kind.TEXT, groupName, portalName);
+    TextDisplay display = loc.getWorld().spawn(loc, TextDisplay.class, d -> {
+      d.text(Component.text(ChatColor.LIGHT_PURPLE + "" + ChatColor.BOLD + displayText));
+      d.setBillboard(Display.Billboard.CENTER);
+      d.setSeeThrough(true);
+      d.setShadowed(true);
+      d.setViewRange(10);
+      d.addScoreboardTag(tag);
+      // Private groups are shown only to allowed players, see DisplayVisibility
+      d.setVisibleByDefault(!TrustManager.isPrivate(groupName));
+    });
+    displays.register(DisplayRegistry.Kind.TEXT, groupName, portalName, display.getUniqueId());
+    visibility.apply(display, groupName);
   }
 
   /**
-   * Creates an invisible armor stand marker at the portal center.
+   * Creates the break marker of a craftable portal at the portal center.
    *
-   * @param loc The center location for the armor stand
+   * @param loc The center location for the marker
    * @param groupName The portal group name
    * @param portalName The portal name
    */
-  public void createArmorStandMarker(Location loc, String groupName, String portalName) {
+  public void createBreakMarker(Location loc, String groupName, String portalName) {
     
     if (loc.getWorld() == null) {
       return;
     }
 
-    String tag = "ep_portal_marker:" + groupName.toLowerCase() + ":" + portalName.toLowerCase();
-    
     Bukkit.getRegionScheduler().execute(plugin, loc, () -> {
-      loc.getWorld().spawn(loc, ArmorStand.class, as -> {
+      if (displays.resolve(DisplayRegistry.tag(DisplayRegistry.Kind.MARKER, groupName,
+          portalName)) == null) {
+        spawnBreakMarker(loc, groupName, portalName);
+      }
+    });
+  }
+
+  // Region thread: spawns the configured marker type and records its UUID
+  void spawnBreakMarker(Location loc, String groupName, String portalName) {
+    Entity marker;
+    if (markerType == MarkerType.INTERACTION) {
+      PortalGroup group = plugin.getPortalManager().getGroup(groupName);
+      Portal portal = group == null ? null : group.getPortal(portalName);
+      PortalHitbox hitbox = portal != null
+          ? portal.getHitbox() : plugin.getPortalManager().getDefaultHitbox();
+      // Interaction boxes are square, so cover the narrower side of the portal
+      float width = (float) (2 * Math.min(hitbox.getExtentX(), hitbox.getExtentZ()));
+      float height = (float) hitbox.getHeight();
+      marker = loc.getWorld().spawn(loc, Interaction.class, i -> {
+        i.setInteractionWidth(width);
+        i.setInteractionHeight(height);
+        i.setResponsive(true);
+        displays.writeMarker(i, groupName, portalName);
+      });
+    } else {
+      String tag = DisplayRegistry.tag(DisplayRegistry.Kind.MARKER, groupName, portalName);
+      marker = loc.getWorld().spawn(loc, ArmorStand.class, as -> {
         as.setVisible(false);
         as.setSmall(false);
         as.setGravity(false);
@@ -285,53 +285,38 @@ public class VisualEffectTask {
         as.setCustomNameVisible(false);
         as.addScoreboardTag(tag);
       });
-    });
+    }
+    displays.register(DisplayRegistry.Kind.MARKER, groupName, portalName,
+        marker.getUniqueId());
   }
 
   /**
-   * Syncs missing ArmorStand markers for existing breakable portals on startup.
-   * FIXED for Folia: Schedules each check on the correct RegionScheduler thread.
+   * Gets the entity type spawned as break marker.
+   *
+   * @return the marker type
    */
-  private void syncMissingArmorStands() {
-    for (PortalGroup group : plugin.getPortalManager().getGroups()) {
-      for (fr.kazotaruumc72.etherealportals.model.Portal portal : group.getPortals()) {
-        if (!portal.isBreakable()) {
-          continue;
-        }
-
-        Location loc = portal.getCenterLocation();
-        
-        if (loc.getWorld() == null) {
-          continue;
-        }
-
-        String tag = "ep_portal_marker:" + group.getName().toLowerCase()
-            + ":" + portal.getName().toLowerCase();
-
-        // CRITICAL FIX: Schedule on the Region thread.
-        Bukkit.getRegionScheduler().execute(plugin, loc, () -> {
-            if (!loc.isChunkLoaded()) {
-                loc.getChunk().load();
-            }
+  public MarkerType getMarkerType() {
+    return markerType;
+  }
 
-            boolean exists = loc.getWorld().getEntitiesByClass(ArmorStand.class).stream()
-                .anyMatch(as -> as.getScoreboardTags().contains(tag));
+  /**
+   * Sets the entity type spawned as break marker. Existing armor stand markers are
+   * converted when their chunks are next reconciled.
+   *
+   * @param markerType the marker type
+   */
+  public void setMarkerType(MarkerType markerType) {
+    this.markerType = markerType;
+  }
 
-            if (!exists) {
-              loc.getWorld().spawn(loc, ArmorStand.class, as -> {
-                as.setVisible(false);
-                as.setSmall(false);
-                as.setGravity(false);
-                as.setMarker(false);
-                as.setInvulnerable(false);
-                as.setCustomName(ChatColor.GRAY + "(Portal - Punch to break)");
-                as.setCustomNameVisible(false);
-                as.addScoreboardTag(tag);
-              });
-              plugin.getLogger().info("Created missing ArmorStand for " + portal.getName());
-            }
-        });
-      }
-    }
+  /**
+   * Reads the marker type from the {@code portal.craftablePortals.marker} option.
+   *
+   * @param value the configured value, or null
+   * @return the marker type, interaction unless armor_stand is configured
+   */
+  public static MarkerType parseMarkerType(String value) {
+    return "armor_stand".equalsIgnoreCase(value) ? MarkerType.ARMOR_STAND
+        : MarkerType.INTERACTION;
   }
 }
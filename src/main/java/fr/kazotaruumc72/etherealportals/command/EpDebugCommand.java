@@ -1,7 +1,25 @@
 package fr.kazotaruumc72.etherealportals.command;
 
 import fr.kazotaruumc72.etherealportals.EtherealPortals;
+import fr.kazotaruumc72.etherealportals.listener.MovementFilter;
+import fr.kazotaruumc72.etherealportals.manager.ChunkPrefetcher;
+import fr.kazotaruumc72.etherealportals.manager.CooldownManager;
+import fr.kazotaruumc72.etherealportals.manager.FileStorageBackend;
+import fr.kazotaruumc72.etherealportals.manager.PortalJournal;
+import fr.kazotaruumc72.etherealportals.manager.SessionManager;
+import fr.kazotaruumc72.etherealportals.manager.SqliteStorageBackend;
+import fr.kazotaruumc72.etherealportals.manager.StorageBackend;
+import fr.kazotaruumc72.etherealportals.manager.WriteBehindPersister;
+import fr.kazotaruumc72.etherealportals.teleport.AdmissionController;
+import fr.kazotaruumc72.etherealportals.teleport.LatencyHistogram;
+import fr.kazotaruumc72.etherealportals.teleport.TeleportMetrics;
+import fr.kazotaruumc72.etherealportals.teleport.TeleportService;
 import fr.kazotaruumc72.etherealportals.util.MessageUtils;
+import fr.kazotaruumc72.etherealportals.util.SkullUtils;
+import fr.kazotaruumc72.etherealportals.visual.DisplayReconciler;
+import fr.kazotaruumc72.etherealportals.visual.DisplayVisibility;
+import fr.kazotaruumc72.etherealportals.visual.ParticleGovernor;
+import fr.kazotaruumc72.etherealportals.visual.RegionEffectScheduler;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -42,7 +60,9 @@ public class EpDebugCommand implements CommandExecutor, TabCompleter {
     }
 
     if (args.length == 0) {
-      MessageUtils.info(sender, "Usage: &d/epdebug &7<&bcount&7|&blist&7|&bcleanup&7|&bcheck&7>");
+      MessageUtils.info(sender,
+          "Usage: &d/epdebug &7<&bcount&7|&blist&7|&bcleanup&7|&bcheck&7|&bstats&7|&blatency&7"
+          + "|&bmigrate&7>");
       return true;
     }
 
@@ -60,9 +80,18 @@ public class EpDebugCommand implements CommandExecutor, TabCompleter {
       case "check":
         handleCheck(sender);
         return true;
+      case "stats":
+        handleStats(sender);
+        return true;
+      case "latency":
+        handleLatency(sender, args);
+        return true;
+      case "migrate":
+        handleMigrate(sender, args);
+        return true;
       default:
-        MessageUtils.error(sender,
-            "Unknown subcommand! Use &d/epdebug count&c, &dlist&c, &dcleanup&c, or &dcheck&c.");
+        MessageUtils.error(sender, "Unknown subcommand! Use &d/epdebug count&c, &dlist&c, "
+            + "&dcleanup&c, &dcheck&c, &dstats&c, &dlatency&c, or &dmigrate&c.");
         return true;
     }
   }
@@ -186,19 +215,239 @@ public class EpDebugCommand implements CommandExecutor, TabCompleter {
     }
   }
 
+  private void handleStats(CommandSender sender) {
+    MovementFilter filter = plugin.getMovementFilter();
+    long rotation = filter.getSkippedRotation();
+    long cell = filter.getSkippedCell();
+    long distance = filter.getSkippedDistance();
+    long evaluated = filter.getEvaluated();
+    long total = rotation + cell + distance + evaluated;
+    MessageUtils.info(sender, "Move events: &d" + total);
+    MessageUtils.info(sender, "  &7- &bSkipped (rotation only)&7: &d" + rotation);
+    MessageUtils.info(sender, "  &7- &bSkipped (portal-free block)&7: &d" + cell);
+    MessageUtils.info(sender, "  &7- &bSkipped (far from portals)&7: &d" + distance);
+    MessageUtils.info(sender, "  &7- &bEvaluated&7: &d" + evaluated
+        + (total > 0 ? String.format(" &7(%.1f%%)", evaluated * 100.0 / total) : ""));
+
+    CooldownManager cooldowns = plugin.getCooldownManager();
+    MessageUtils.info(sender, "Active cooldowns: &bteleport &d"
+        + cooldowns.size(CooldownManager.Channel.TELEPORT)
+        + "&7, &bmessage &d" + cooldowns.size(CooldownManager.Channel.MESSAGE)
+        + "&7, &bplacement &d" + cooldowns.size(CooldownManager.Channel.PLACEMENT)
+        + " &7(" + cooldowns.getPolicy().getGroupOverrideCount() + " group overrides)");
+
+    TeleportService teleports = plugin.getTeleportService();
+    MessageUtils.info(sender, "Teleports: &d" + teleports.getCompleted() + " &7completed, &d"
+        + teleports.getFailed() + " &7failed, &d" + teleports.getPendingCount() + " &7pending");
+    MessageUtils.info(sender, "  &7- &bCancelled&7: &d"
+        + teleports.getCancelled(TeleportService.CancelReason.WALKED_AWAY) + " &7walked away, &d"
+        + teleports.getCancelled(TeleportService.CancelReason.QUIT) + " &7quit, &d"
+        + (teleports.getCancelled(TeleportService.CancelReason.WORLD_CHANGE)
+            + teleports.getCancelled(TeleportService.CancelReason.RETIRED))
+        + " &7world change/removed, &d"
+        + teleports.getCancelled(TeleportService.CancelReason.REJECTED) + " &7queue full");
+
+    AdmissionController admission = teleports.getAdmissionController();
+    MessageUtils.info(sender, "Admission: &d" + admission.getInFlight() + " &7in flight, &d"
+        + admission.getQueued() + " &7queued &7(peak &d" + admission.getMaxQueued() + "&7)");
+    MessageUtils.info(sender, "  &7- &bAdmitted&7: &d" + admission.getAdmittedDirect()
+        + " &7direct, &d" + admission.getAdmittedQueued() + " &7after queueing, &d"
+        + admission.getRejected() + " &7rejected");
+    MessageUtils.info(sender, String.format(
+        "  &7- &bQueue wait&7: &d%.1fms &7avg, &d%.1fms &7max",
+        admission.getAverageWaitMillis(), admission.getMaxWaitMillis()));
+
+    ChunkPrefetcher prefetcher = plugin.getChunkPrefetcher();
+    long hits = prefetcher.getHits();
+    long warming = prefetcher.getWarmingHits();
+    long misses = prefetcher.getMisses();
+    long prefetched = hits + warming + misses;
+    MessageUtils.info(sender, "Chunk prefetch: &d" + prefetcher.getHeldChunks()
+        + " &7held, &d" + prefetcher.getRequests() + " &7requested, &d"
+        + prefetcher.getUnused() + " &7released unused");
+    MessageUtils.info(sender, "  &7- &bTeleports&7: &d" + hits + " &7warm, &d" + warming
+        + " &7warming, &d" + misses + " &7cold"
+        + (prefetched > 0
+            ? String.format(" &7(%.1f%% hit)", (hits + warming) * 100.0 / prefetched) : ""));
+    MessageUtils.info(sender, "  &7- &bLoad time saved&7: &d" + prefetcher.getSavedMillis()
+        + "ms");
+
+    RegionEffectScheduler effects = plugin.getVisualTask().getEffectScheduler();
+    MessageUtils.info(sender, "Particle effects: &d" + effects.getActiveChunks()
+        + " &7chunk tasks, &d" + effects.getDrawn() + " &7portals drawn, &d"
+        + effects.getSkippedNoViewer() + " &7skipped (no viewer)");
+    MessageUtils.info(sender, "Particle packets: &d" + effects.getSentPerSecond()
+        + " &7sent/s, &d" + effects.getSavedPerSecond() + " &7saved/s by LOD (&d"
+        + effects.getPacketsSent() + " &7sent, &d" + effects.getPacketsSaved()
+        + " &7saved total)");
+    MessageUtils.info(sender, "Effect mode: &d"
+        + effects.getMode().name().toLowerCase(Locale.ROOT) + String.format(Locale.ROOT,
+            " &7(particles &d%.1f µs&7/run over &d%d &7runs, &d%d &7packets/s; "
+            + "displays &d%.1f µs&7/run over &d%d &7runs, &d%d &7packets/s)",
+            effects.getAverageRunMicros(RegionEffectScheduler.Mode.PARTICLES),
+            effects.getRuns(RegionEffectScheduler.Mode.PARTICLES), effects.getSentPerSecond(),
+            effects.getAverageRunMicros(RegionEffectScheduler.Mode.DISPLAY),
+            effects.getRuns(RegionEffectScheduler.Mode.DISPLAY),
+            effects.getDisplayPacketsPerSecond()));
+    ParticleGovernor governor = effects.getGovernor();
+    if (governor.isEnabled()) {
+      MessageUtils.info(sender, "Particle governor: &d" + governor.getPacketsPerTick()
+          + " &7packets/tick per section, &d" + governor.getThrottledSections() + "&7/&d"
+          + governor.getSections() + " &7sections throttled, &d" + governor.getSkippedRuns()
+          + " &7runs skipped, &d" + governor.getThrottledDraws() + " &7draws over budget");
+      ParticleGovernor.Budget lowest = governor.getMostThrottled();
+      if (lowest != null && lowest.getScale() < 1.0) {
+        MessageUtils.info(sender, "  Most throttled: &d" + lowest.getWorld().getName() + " "
+            + lowest.getBlockX() + ", " + lowest.getBlockZ() + " &7at &d"
+            + String.format(Locale.ROOT, "%.0f%%", lowest.getScale() * 100) + " &7(region TPS &d"
+            + String.format(Locale.ROOT, "%.1f", lowest.getTps()) + "&7)");
+      }
+    } else {
+      MessageUtils.info(sender, "Particle governor: &7disabled");
+    }
+
+    MessageUtils.info(sender, "Display entities: &d"
+        + plugin.getVisualTask().getDisplayRegistry().size() + " &7recorded by UUID");
+    DisplayReconciler reconciler = plugin.getVisualTask().getReconciler();
+    MessageUtils.info(sender, "Display reconcile: &d" + reconciler.getReconciled()
+        + " &7chunks, &d" + reconciler.getQueued() + " &7queued, &d"
+        + reconciler.getSpawned() + " &7spawned, &d" + reconciler.getDuplicatesRemoved()
+        + " &7duplicates and &d" + reconciler.getOrphansRemoved() + " &7orphans removed, &d"
+        + reconciler.getSkippedUnloaded() + " &7skipped (unloaded), &d"
+        + reconciler.getMigrated() + " &7markers converted");
+    DisplayVisibility visibility = plugin.getVisualTask().getVisibility();
+    MessageUtils.info(sender, "Private displays: &d" + visibility.getPrivateDisplays()
+        + " &7hidden by default, &d" + visibility.getShown() + " &7shown, &d"
+        + visibility.getHidden() + " &7hidden after untrust");
+    long headHits = SkullUtils.getHits();
+    long headLookups = headHits + SkullUtils.getMisses();
+    MessageUtils.info(sender, "Head cache: &d" + SkullUtils.getCached() + " &7templates, "
+        + String.format("&d%.1f%% &7hit rate (&d%d&7/&d%d&7), &d%d &7unparsable textures",
+            headLookups == 0 ? 0.0 : 100.0 * headHits / headLookups, headHits, headLookups,
+            SkullUtils.getFailures()));
+    StorageBackend backend = plugin.getDataManager().getBackend();
+    if (backend instanceof FileStorageBackend files) {
+      showFileStats(sender, files);
+    } else if (backend instanceof SqliteStorageBackend sqlite) {
+      MessageUtils.info(sender, "portals.db: &d" + sqlite.getChanges() + " &7changes in &d"
+          + sqlite.getTransactions() + " &7transactions, &d" + sqlite.getFailures()
+          + " &7failed, &d" + sqlite.getPending() + " &7queued, last commit &d"
+          + sqlite.getLastCommitMicros() + " &7µs"
+          + (sqlite.getRetryMillis() > 0
+              ? ", &cretrying in &d" + sqlite.getRetryMillis() + " &7ms" : ""));
+    }
+    SessionManager sessions = plugin.getSessionManager();
+    MessageUtils.info(sender, "Player sessions: &d" + sessions.size()
+        + String.format(" &7(~%.1f KiB)", sessions.estimateBytes() / 1024.0));
+  }
+
+  private void showFileStats(CommandSender sender, FileStorageBackend files) {
+    WriteBehindPersister groupsWriter = files.getGroupsWriter();
+    MessageUtils.info(sender, files.getGroupsFileName() + ": loaded in &d"
+        + files.getLoadMillis() + " &7ms, &d" + groupsWriter.getRequests()
+        + " &7saves requested, &d" + groupsWriter.getWrites() + " &7written, &d"
+        + groupsWriter.getFailures() + " &7failed, last write &d"
+        + groupsWriter.getLastWriteMicros() + " &7µs"
+        + (groupsWriter.getRetryMillis() > 0
+            ? ", &cretrying in &d" + groupsWriter.getRetryMillis() + " &7ms" : ""));
+    PortalJournal journal = files.getJournal();
+    if (journal != null) {
+      long records = journal.getRecords();
+      MessageUtils.info(sender, "groups.journal: &d" + records + " &7records, "
+          + String.format("&d%.0f &7bytes/record, ", records == 0 ? 0.0
+              : (double) journal.getBytes() / records)
+          + "&d" + journal.getSize() + " &7bytes pending, &d" + journal.getCompactions()
+          + " &7compactions (last &d" + journal.getLastCompactMicros() + " &7µs), replay &d"
+          + files.getReplayedRecords() + " &7records in &d" + files.getReplayMillis()
+          + " &7ms");
+    }
+  }
+
+  private void handleMigrate(CommandSender sender, String[] args) {
+    if (args.length < 2 || !List.of("file", "sqlite").contains(args[1].toLowerCase(Locale.ROOT))) {
+      MessageUtils.info(sender, "Usage: &d/epdebug migrate &7<&bfile&7|&bsqlite&7>");
+      return;
+    }
+    String target = args[1].toLowerCase(Locale.ROOT);
+    MessageUtils.info(sender, "Migrating portal storage to &d" + target + "&7...");
+    plugin.getDataManager().migrate(target, message -> MessageUtils.send(sender, message));
+  }
+
+  private void handleLatency(CommandSender sender, String[] args) {
+    TeleportMetrics metrics = plugin.getTeleportService().getMetrics();
+    if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+      metrics.reset();
+      MessageUtils.success(sender, "Teleport latency histograms reset.");
+      return;
+    }
+    String groupName = args.length > 1 ? args[1] : null;
+    String portalName = args.length > 2 ? args[2] : null;
+    String scope = groupName == null ? "all groups"
+        : groupName + (portalName == null ? "" : " #" + portalName);
+
+    LatencyHistogram.Snapshot total = metrics.snapshot(
+        TeleportMetrics.Stage.START_TO_COMPLETE, groupName, portalName);
+    if (total.getCount() == 0) {
+      MessageUtils.info(sender, "No teleports recorded for &d" + scope + "&b.");
+      return;
+    }
+    MessageUtils.info(sender, "Teleport latency for &d" + scope + " &7(" + total.getCount()
+        + " teleports)");
+    sendLatency(sender, "Enter -> schedule", metrics.snapshot(
+        TeleportMetrics.Stage.ENTER_TO_SCHEDULE, groupName, portalName));
+    sendLatency(sender, "Schedule -> start", metrics.snapshot(
+        TeleportMetrics.Stage.SCHEDULE_TO_START, groupName, portalName));
+    sendLatency(sender, "Start -> complete", total);
+  }
+
+  private void sendLatency(CommandSender sender, String stage,
+      LatencyHistogram.Snapshot snapshot) {
+    MessageUtils.info(sender, String.format(
+        "  &7- &b%s&7: p50 &d%.1fms&7, p90 &d%.1fms&7, p99 &d%.1fms&7, max &d%.1fms",
+        stage, snapshot.percentileMillis(50), snapshot.percentileMillis(90),
+        snapshot.percentileMillis(99), snapshot.getMaxMillis()));
+  }
+
   @Override
   public List<String> onTabComplete(CommandSender sender, Command command,
       String alias, String[] args) {
     List<String> completions = new ArrayList<>();
 
     if (args.length == 1) {
-      List<String> subcommands = List.of("count", "list", "cleanup", "check");
+      List<String> subcommands = List.of("count", "list", "cleanup", "check", "stats",
+          "latency", "migrate");
       String input = args[0].toLowerCase();
       for (String sub : subcommands) {
         if (sub.startsWith(input)) {
           completions.add(sub);
         }
       }
+    } else if (args.length == 2 && args[0].equalsIgnoreCase("latency")) {
+      TeleportMetrics metrics = plugin.getTeleportService().getMetrics();
+      String input = args[1].toLowerCase();
+      if ("reset".startsWith(input)) {
+        completions.add("reset");
+      }
+      for (String group : metrics.getGroupNames()) {
+        if (group.toLowerCase().startsWith(input)) {
+          completions.add(group);
+        }
+      }
+    } else if (args.length == 2 && args[0].equalsIgnoreCase("migrate")) {
+      String input = args[1].toLowerCase();
+      for (String backend : List.of("file", "sqlite")) {
+        if (backend.startsWith(input)) {
+          completions.add(backend);
+        }
+      }
+    } else if (args.length == 3 && args[0].equalsIgnoreCase("latency")) {
+      TeleportMetrics metrics = plugin.getTeleportService().getMetrics();
+      String input = args[2].toLowerCase();
+      for (String portal : metrics.getPortalNames(args[1])) {
+        if (portal.toLowerCase().startsWith(input)) {
+          completions.add(portal);
+        }
+      }
     }
 
     return completions;
@@ -0,0 +1,185 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static fr.kazotaruumc72.etherealportals.manager.PortalAssertions.assertSameGroups;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round trips, corruption and conversion from and to YAML for {@link BinarySnapshot}.
+ */
+class BinarySnapshotTest {
+  private static final PortalHitbox DEFAULT_HITBOX = PortalHitbox.DEFAULT;
+
+  @TempDir
+  Path dir;
+
+  @BeforeAll
+  static void installWorlds() {
+    TestWorlds.install();
+  }
+
+  @Test
+  void roundTripsEveryField() throws IOException {
+    List<PortalGroup> groups = sampleGroups();
+    Path file = write("groups.dat", BinarySnapshot.encode(groups));
+
+    assertSameGroups(groups, read(file, DEFAULT_HITBOX));
+  }
+
+  @Test
+  void storesOnlyCustomHitboxes() throws IOException {
+    List<PortalGroup> groups = sampleGroups();
+    Path file = write("groups.dat", BinarySnapshot.encode(groups));
+
+    // Portals without their own hitbox follow the default they are loaded with
+    PortalHitbox wider = PortalHitbox.box(4.0, 4.0, 3.0);
+    for (PortalGroup group : read(file, wider)) {
+      for (Portal portal : group.getPortals()) {
+        Portal saved = find(groups, group.getName(), portal.getName());
+        if (saved.hasCustomHitbox()) {
+          assertEquals(saved.getHitbox(), portal.getHitbox());
+        } else {
+          assertEquals(wider, portal.getHitbox());
+          assertFalse(portal.hasCustomHitbox());
+        }
+      }
+    }
+  }
+
+  @Test
+  void rejectsChecksumMismatch() throws IOException {
+    byte[] data = BinarySnapshot.encode(sampleGroups());
+    data[data.length / 2] ^= 0x10;
+    Path file = write("groups.dat", data);
+
+    IOException e = assertThrows(IOException.class,
+        () -> BinarySnapshot.read(file, new PortalTable(), DEFAULT_HITBOX));
+    assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+  }
+
+  @Test
+  void rejectsTruncatedFiles() throws IOException {
+    byte[] data = BinarySnapshot.encode(sampleGroups());
+    Path file = write("groups.dat", Arrays.copyOf(data, data.length - 7));
+
+    assertThrows(IOException.class,
+        () -> BinarySnapshot.read(file, new PortalTable(), DEFAULT_HITBOX));
+    Path tiny = write("tiny.dat", new byte[] {1, 2, 3});
+    assertThrows(IOException.class,
+        () -> BinarySnapshot.read(tiny, new PortalTable(), DEFAULT_HITBOX));
+  }
+
+  @Test
+  void keepsEmptyGroups() throws IOException {
+    List<PortalGroup> groups = List.of(new PortalGroup("Empty"));
+    Path file = write("groups.dat", BinarySnapshot.encode(groups));
+
+    assertSameGroups(groups, read(file, DEFAULT_HITBOX));
+  }
+
+  @Test
+  void convertsYamlToBinary() throws IOException {
+    List<PortalGroup> groups = sampleGroups();
+    Path yaml = write("groups.yml", toYaml(groups).getBytes(StandardCharsets.UTF_8));
+    PortalTable fromYaml = new PortalTable();
+    YamlStreamLoader.readGroups(yaml, fromYaml, DEFAULT_HITBOX);
+
+    Path binary = write("groups.dat", BinarySnapshot.encode(fromYaml.toGroups()));
+    assertSameGroups(groups, read(binary, DEFAULT_HITBOX));
+  }
+
+  @Test
+  void convertsBinaryToYaml() throws IOException {
+    List<PortalGroup> groups = sampleGroups();
+    Path binary = write("groups.dat", BinarySnapshot.encode(groups));
+
+    Path yaml = write("groups.yml",
+        toYaml(read(binary, DEFAULT_HITBOX)).getBytes(StandardCharsets.UTF_8));
+    PortalTable fromYaml = new PortalTable();
+    YamlStreamLoader.readGroups(yaml, fromYaml, DEFAULT_HITBOX);
+    assertSameGroups(groups, fromYaml.toGroups());
+  }
+
+  @Test
+  void staysSmallerThanYaml() throws IOException {
+    List<PortalGroup> groups = sampleGroups();
+    int binary = BinarySnapshot.encode(groups).length;
+    int yaml = toYaml(groups).getBytes(StandardCharsets.UTF_8).length;
+
+    assertTrue(binary * 2 < yaml, "binary " + binary + " bytes, YAML " + yaml + " bytes");
+  }
+
+  static List<PortalGroup> sampleGroups() {
+    World world = TestWorlds.get("world");
+    World nether = TestWorlds.get("world_nether");
+    Portal plain = new Portal("Spawn", new Location(world, 0, 64, 0), null, false,
+        DEFAULT_HITBOX);
+    Portal decorated = new Portal("Market", new Location(world, -1250, 70, 3_000_000,
+        90f, -15f), "emerald", true, DEFAULT_HITBOX);
+    decorated.setTextDisplayId(UUID.fromString("6f1c1a52-3c1e-4b8e-9d0a-1f2e3d4c5b6a"));
+    decorated.setMarkerId(UUID.fromString("0a9b8c7d-6e5f-4a3b-8c2d-1e0f9a8b7c6d"));
+    Portal fractional = new Portal("Ledge", new Location(world, 10.25, 65.5, -3.75), null,
+        false, DEFAULT_HITBOX);
+    Portal cylinder = new Portal("Well", new Location(nether, 8, 40, 8), "lava", false,
+        DEFAULT_HITBOX).withHitbox(PortalHitbox.cylinder(1.5, 3.0));
+    Portal slab = new Portal("Gate", new Location(nether, -8, 40, 8), null, true,
+        DEFAULT_HITBOX).withHitbox(PortalHitbox.slab(3.0, 0.5, 4.0, 45.0));
+    Portal box = new Portal("Hall", new Location(world, 100, 80, 100), null, false,
+        DEFAULT_HITBOX).withHitbox(PortalHitbox.box(5.0, 1.0, 3.0));
+    return List.of(
+        new PortalGroup("Main", List.of(plain, decorated, fractional)),
+        new PortalGroup("Nether", List.of(cylinder, slab)),
+        new PortalGroup("Solo", List.of(box)));
+  }
+
+  // Same layout as the groups file written by FileStorageBackend
+  static String toYaml(List<PortalGroup> groups) {
+    YamlConfiguration config = new YamlConfiguration();
+    for (PortalGroup group : groups) {
+      for (Portal portal : group.getPortals()) {
+        portal.serialize(config.createSection(group.getName() + "." + portal.getName()));
+      }
+    }
+    return config.saveToString();
+  }
+
+  private static Portal find(List<PortalGroup> groups, String groupName, String portalName) {
+    for (PortalGroup group : groups) {
+      if (group.getName().equals(groupName)) {
+        return group.getPortal(portalName);
+      }
+    }
+    return null;
+  }
+
+  private List<PortalGroup> read(Path file, PortalHitbox defaultHitbox) throws IOException {
+    PortalTable table = new PortalTable();
+    BinarySnapshot.read(file, table, defaultHitbox);
+    return table.toGroups();
+  }
+
+  private Path write(String name, byte[] data) throws IOException {
+    Path file = dir.resolve(name);
+    Files.write(file, data);
+    return file;
+  }
+}
@@ -0,0 +1,69 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the per-channel defaults and per-group overrides of {@link CooldownPolicy}.
+ */
+class CooldownPolicyTest {
+  @Test
+  void usesChannelDefaults() {
+    CooldownPolicy policy = CooldownPolicy.of(3, 1, 0);
+
+    assertEquals(3_000, policy.durationMillis(CooldownManager.Channel.TELEPORT, null));
+    assertEquals(1_000, policy.durationMillis(CooldownManager.Channel.MESSAGE, "any"));
+    assertEquals(0, policy.durationMillis(CooldownManager.Channel.PLACEMENT, null));
+    assertEquals(0, policy.getGroupOverrideCount());
+  }
+
+  @Test
+  void readsGroupOverrides() throws InvalidConfigurationException {
+    CooldownPolicy policy = CooldownPolicy.fromConfig(config(
+        "portal:\n"
+        + "  teleport:\n"
+        + "    cooldownSeconds: 5\n"
+        + "    messageCooldownSeconds: 2\n"
+        + "  craftablePortals:\n"
+        + "    placementCooldownSeconds: 4\n"
+        + "  cooldowns:\n"
+        + "    groups:\n"
+        + "      Spawn:\n"
+        + "        teleport: 1\n"
+        + "      arena:\n"
+        + "        teleport: 10\n"
+        + "        placement: -3\n"
+        + "      empty: {}\n"));
+
+    assertEquals(2, policy.getGroupOverrideCount());
+    // Group names are matched ignoring case
+    assertEquals(1_000, policy.durationMillis(CooldownManager.Channel.TELEPORT, "spawn"));
+    assertEquals(1_000, policy.durationMillis(CooldownManager.Channel.TELEPORT, "SPAWN"));
+    // Channels a group does not override keep the default
+    assertEquals(2_000, policy.durationMillis(CooldownManager.Channel.MESSAGE, "spawn"));
+    assertEquals(4_000, policy.durationMillis(CooldownManager.Channel.PLACEMENT, "spawn"));
+    assertEquals(10_000, policy.durationMillis(CooldownManager.Channel.TELEPORT, "arena"));
+    // Negative durations disable the cooldown
+    assertEquals(0, policy.durationMillis(CooldownManager.Channel.PLACEMENT, "arena"));
+    assertEquals(5_000, policy.durationMillis(CooldownManager.Channel.TELEPORT, "other"));
+    assertEquals(5_000, policy.durationMillis(CooldownManager.Channel.TELEPORT, null));
+  }
+
+  @Test
+  void defaultsWithoutConfig() throws InvalidConfigurationException {
+    CooldownPolicy policy = CooldownPolicy.fromConfig(config(""));
+
+    assertEquals(3_000, policy.durationMillis(CooldownManager.Channel.TELEPORT, null));
+    assertEquals(1_000, policy.durationMillis(CooldownManager.Channel.MESSAGE, null));
+    assertEquals(0, policy.durationMillis(CooldownManager.Channel.PLACEMENT, null));
+  }
+
+  private static YamlConfiguration config(String yaml) throws InvalidConfigurationException {
+    YamlConfiguration config = new YamlConfiguration();
+    config.loadFromString(yaml);
+    return config;
+  }
+}
@@ -0,0 +1,110 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests expiry through the timing wheel of {@link CooldownTable}. Its speed
+ * against the boxed {@code HashMap<UUID, Long>} the cooldowns used before is
+ * measured by {@code CooldownBenchmark} in the {@code jmh} profile.
+ */
+class CooldownTableTest {
+  private static final long SLOT = CooldownTable.SLOT_MILLIS;
+
+  @Test
+  void storesEndsPerPlayer() {
+    CooldownTable table = new CooldownTable();
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+    table.put(first, 1_000);
+    table.put(second, 2_000);
+    table.put(first, 1_500);
+
+    assertEquals(1_500, table.get(first));
+    assertEquals(2_000, table.get(second));
+    assertEquals(0, table.get(UUID.randomUUID()));
+    assertEquals(2, table.size());
+  }
+
+  @Test
+  void expiresOnceTheSlotHasPassed() {
+    CooldownTable table = new CooldownTable();
+    UUID uuid = UUID.randomUUID();
+    table.expire(1); // starts the wheel
+    table.put(uuid, 4 * SLOT + 10);
+
+    // The slot holding the end is only swept once its whole window has passed
+    assertEquals(0, table.expire(4 * SLOT + 20));
+    assertEquals(4 * SLOT + 10, table.get(uuid));
+    assertEquals(1, table.expire(5 * SLOT));
+    assertEquals(0, table.get(uuid));
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  void keepsRetriggeredCooldowns() {
+    CooldownTable table = new CooldownTable();
+    UUID uuid = UUID.randomUUID();
+    table.expire(1);
+    table.put(uuid, 4 * SLOT);
+    table.put(uuid, 20 * SLOT);
+
+    assertEquals(0, table.expire(5 * SLOT));
+    assertEquals(20 * SLOT, table.get(uuid));
+    assertEquals(1, table.expire(21 * SLOT));
+  }
+
+  @Test
+  void keepsEndsMoreThanOneRevolutionAway() {
+    CooldownTable table = new CooldownTable();
+    UUID near = UUID.randomUUID();
+    UUID far = UUID.randomUUID();
+    table.expire(1);
+    table.put(near, 4 * SLOT);
+    table.put(far, (4 + 256) * SLOT); // same wheel slot, one revolution later
+
+    assertEquals(1, table.expire(5 * SLOT));
+    assertEquals((4 + 256) * SLOT, table.get(far));
+    assertEquals(1, table.expire((5 + 256) * SLOT));
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  void growsAndShrinksWithEntries() {
+    CooldownTable table = new CooldownTable();
+    UUID[] players = players(10_000);
+    table.expire(1);
+    for (int i = 0; i < players.length; i++) {
+      table.put(players[i], SLOT + i % 100);
+    }
+    assertEquals(players.length, table.size());
+    for (int i = 0; i < players.length; i++) {
+      assertEquals(SLOT + i % 100, table.get(players[i]));
+    }
+
+    assertEquals(players.length, table.expire(3 * SLOT));
+    assertEquals(0, table.size());
+    assertEquals(0, table.get(players[0]));
+  }
+
+  @Test
+  void clearDropsEveryEntry() {
+    CooldownTable table = new CooldownTable();
+    UUID uuid = UUID.randomUUID();
+    table.put(uuid, 1_000);
+    table.clear();
+
+    assertEquals(0, table.get(uuid));
+    assertEquals(0, table.size());
+  }
+
+  private static UUID[] players(int count) {
+    UUID[] players = new UUID[count];
+    for (int i = 0; i < count; i++) {
+      players[i] = UUID.randomUUID();
+    }
+    return players;
+  }
+}
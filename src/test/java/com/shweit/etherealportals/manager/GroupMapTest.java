@@ -0,0 +1,80 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lookups, ordering and structural sharing of {@link GroupMap}.
+ */
+class GroupMapTest {
+
+  @Test
+  void matchesALinkedHashMapUnderRandomChanges() {
+    Random random = new Random(7);
+    Map<String, PortalGroup> expected = new LinkedHashMap<>();
+    GroupMap map = GroupMap.EMPTY;
+    for (int step = 0; step < 20_000; step++) {
+      String name = "Player" + random.nextInt(2_000) + ":base";
+      if (random.nextInt(3) == 0) {
+        expected.remove(name.toLowerCase());
+        map = map.remove(name.toLowerCase());
+      } else {
+        PortalGroup group = new PortalGroup(name);
+        expected.put(group.getKey(), group);
+        map = map.put(group);
+      }
+    }
+
+    assertEquals(expected.size(), map.size());
+    assertEquals(new ArrayList<>(expected.values()), map.values());
+    for (int i = 0; i < 2_000; i++) {
+      String key = ("Player" + i + ":base").toLowerCase();
+      assertSame(expected.get(key), map.get(key), key);
+    }
+  }
+
+  @Test
+  void keepsCollidingKeysApart() {
+    // Equal hash codes: 31 * 'a' + 'z' == 31 * 'b' + '['
+    assertEquals("az".hashCode(), "b[".hashCode());
+    assertEquals("azb[".hashCode(), "b[az".hashCode());
+
+    GroupMap map = GroupMap.EMPTY.put(new PortalGroup("AZ")).put(new PortalGroup("B["))
+        .put(new PortalGroup("azb[")).put(new PortalGroup("b[az"));
+    assertEquals(4, map.size());
+    assertEquals("B[", map.get("b[").getName());
+    assertEquals("b[az", map.get("b[az").getName());
+
+    GroupMap removed = map.remove("az").remove("azb[");
+    assertEquals(2, removed.size());
+    assertNull(removed.get("az"));
+    assertEquals("B[", removed.get("b[").getName());
+    assertEquals(List.of("B[", "b[az"),
+        removed.values().stream().map(PortalGroup::getName).toList());
+    assertSame(removed, removed.remove("missing"));
+    assertEquals(4, map.values().size());
+  }
+
+  @Test
+  void replacingAGroupKeepsItsPositionAndTheOldMap() {
+    PortalGroup alpha = new PortalGroup("Alpha");
+    PortalGroup beta = new PortalGroup("Beta");
+    GroupMap before = GroupMap.EMPTY.put(alpha).put(beta);
+    PortalGroup renamed = new PortalGroup("ALPHA");
+
+    GroupMap after = before.put(renamed);
+
+    assertEquals(List.of(renamed, beta), after.values());
+    assertEquals(List.of(alpha, beta), before.values());
+    assertSame(alpha, before.get("alpha"));
+  }
+}
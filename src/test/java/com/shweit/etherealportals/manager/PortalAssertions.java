@@ -0,0 +1,65 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import java.util.Iterator;
+import java.util.List;
+import org.bukkit.Location;
+
+/**
+ * Compares portals field by field, since {@link Portal#equals} only compares names.
+ */
+final class PortalAssertions {
+  private PortalAssertions() {}
+
+  /**
+   * Asserts that two portals hold the same saved state.
+   *
+   * @param expected the expected portal
+   * @param actual the actual portal
+   */
+  static void assertSamePortal(Portal expected, Portal actual) {
+    assertNotNull(actual, "missing portal " + expected.getName());
+    String name = expected.getName();
+    assertEquals(name, actual.getName());
+    Location want = expected.getBaseLocation();
+    Location got = actual.getBaseLocation();
+    assertSame(want.getWorld(), got.getWorld(), name + " world");
+    assertEquals(want.getX(), got.getX(), name + " x");
+    assertEquals(want.getY(), got.getY(), name + " y");
+    assertEquals(want.getZ(), got.getZ(), name + " z");
+    assertEquals((double) want.getYaw(), (double) got.getYaw(), name + " yaw");
+    assertEquals((double) want.getPitch(), (double) got.getPitch(), name + " pitch");
+    assertEquals(expected.getIconName(), actual.getIconName(), name + " icon");
+    assertEquals(expected.isBreakable(), actual.isBreakable(), name + " breakable");
+    assertEquals(expected.getHitbox(), actual.getHitbox(), name + " hitbox");
+    assertEquals(expected.hasCustomHitbox(), actual.hasCustomHitbox(), name + " custom hitbox");
+    assertEquals(expected.getTextDisplayId(), actual.getTextDisplayId(), name + " text");
+    assertEquals(expected.getMarkerId(), actual.getMarkerId(), name + " marker");
+  }
+
+  /**
+   * Asserts that two lists of groups hold the same portals in the same order.
+   *
+   * @param expected the expected groups
+   * @param actual the actual groups
+   */
+  static void assertSameGroups(List<PortalGroup> expected, List<PortalGroup> actual) {
+    assertEquals(expected.size(), actual.size(), "group count");
+    for (int i = 0; i < expected.size(); i++) {
+      PortalGroup want = expected.get(i);
+      PortalGroup got = actual.get(i);
+      assertEquals(want.getName(), got.getName());
+      assertEquals(want.getPortals().size(), got.getPortals().size(),
+          want.getName() + " portal count");
+      Iterator<Portal> portals = got.getPortals().iterator();
+      for (Portal portal : want.getPortals()) {
+        assertSamePortal(portal, portals.next());
+      }
+    }
+  }
+}
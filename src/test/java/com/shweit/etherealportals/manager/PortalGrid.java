@@ -0,0 +1,67 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Portals on a square grid and lookup probes around them, shared by the lookup
+ * tests and benchmarks.
+ */
+final class PortalGrid {
+  static final int GROUP_SIZE = 100;
+  static final int SPACING = 16;
+
+  private PortalGrid() {}
+
+  /**
+   * Places portals on a square grid, split into groups of {@link #GROUP_SIZE}.
+   *
+   * @param world the world
+   * @param count the number of portals
+   * @param portals receives the portals in creation order
+   * @return the groups
+   */
+  static List<PortalGroup> groups(World world, int count, List<Portal> portals) {
+    int side = (int) Math.ceil(Math.sqrt(count));
+    List<PortalGroup> groups = new ArrayList<>();
+    List<Portal> group = new ArrayList<>(GROUP_SIZE);
+    for (int i = 0; i < count; i++) {
+      Location base = new Location(world, (i % side) * SPACING, 64, (i / side) * SPACING);
+      Portal portal = new Portal("p" + i, base, null, false, PortalHitbox.DEFAULT);
+      portals.add(portal);
+      group.add(portal);
+      if (group.size() == GROUP_SIZE || i == count - 1) {
+        groups.add(new PortalGroup("g" + groups.size(), group));
+        group = new ArrayList<>(GROUP_SIZE);
+      }
+    }
+    return groups;
+  }
+
+  /**
+   * Builds lookup probes. Even probes stand in portal {@code (i / 2) % size},
+   * odd probes halfway between portals.
+   *
+   * @param world the world
+   * @param portals the portals
+   * @param random jitters the probes inside each portal
+   * @return the probes
+   */
+  static Location[] probes(World world, List<Portal> portals, Random random) {
+    Location[] probes = new Location[2 * Math.max(portals.size(), 1024)];
+    for (int i = 0; i < probes.length; i += 2) {
+      Portal portal = portals.get((i / 2) % portals.size());
+      probes[i] = new Location(world, portal.getCenterX() + random.nextDouble() - 0.5,
+          portal.getBaseY() + 1, portal.getCenterZ() + random.nextDouble() - 0.5);
+      probes[i + 1] = new Location(world, portal.getCenterX() + SPACING / 2.0,
+          portal.getBaseY() + 1, portal.getCenterZ() + SPACING / 2.0);
+    }
+    return probes;
+  }
+}
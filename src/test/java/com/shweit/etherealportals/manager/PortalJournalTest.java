@@ -0,0 +1,298 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static fr.kazotaruumc72.etherealportals.manager.PortalAssertions.assertSameGroups;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import org.bukkit.Location;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the record framing, replay and compaction of {@link PortalJournal}.
+ */
+class PortalJournalTest {
+  private static final Logger LOGGER = Logger.getLogger("PortalJournalTest");
+  private static final long NEVER = Long.MAX_VALUE;
+
+  @TempDir
+  Path dir;
+
+  private Path path;
+  private final AtomicInteger snapshots = new AtomicInteger();
+
+  @BeforeAll
+  static void installWorlds() {
+    TestWorlds.install();
+  }
+
+  @BeforeEach
+  void createPath() {
+    path = dir.resolve("groups.journal");
+  }
+
+  @Test
+  void framesRecordsWithLengthAndCrc() throws IOException {
+    List<PortalGroup> groups = BinarySnapshotTest.sampleGroups();
+    PortalJournal journal = start(NEVER);
+    for (PortalGroup group : groups) {
+      for (Portal portal : group.getPortals()) {
+        journal.put(group.getName(), portal);
+      }
+    }
+    journal.remove("Main", "Spawn");
+    journal.removeGroup("Nether");
+    assertTrue(journal.close(5_000));
+
+    List<Integer> sizes = records(Files.readAllBytes(path));
+    assertEquals(8, sizes.size());
+    assertEquals(8, journal.getRecords());
+    assertEquals(Files.size(path), journal.getBytes());
+    assertEquals(Files.size(path), journal.getSize());
+    // A put holds the names and one portal's YAML, a removal only names
+    int index = 0;
+    for (PortalGroup group : groups) {
+      for (Portal portal : group.getPortals()) {
+        assertEquals(recordSize(group.getName(), portal.getName(), yaml(portal)),
+            (int) sizes.get(index++), "put record of " + portal.getName());
+      }
+    }
+    assertEquals(recordSize("Main", "Spawn", ""), (int) sizes.get(6));
+    assertEquals(recordSize("Nether", "", ""), (int) sizes.get(7));
+    assertEquals(0, snapshots.get());
+  }
+
+  @Test
+  void replaysOverTheSnapshot() throws IOException {
+    List<PortalGroup> groups = BinarySnapshotTest.sampleGroups();
+    Portal moved = new Portal("Spawn", new Location(TestWorlds.get("world"), 32, 70, -32),
+        "beacon", true, PortalHitbox.DEFAULT).withHitbox(PortalHitbox.box(3.0, 3.0, 3.0));
+    Portal reef = new Portal("Reef", new Location(TestWorlds.get("world"), 500, 62, 500),
+        null, false, PortalHitbox.DEFAULT);
+    PortalJournal journal = start(NEVER);
+    journal.put("Main", moved);
+    journal.put("Islands", reef);
+    journal.remove("Nether", "Gate");
+    journal.removeGroup("Solo");
+    assertTrue(journal.close(5_000));
+
+    PortalTable table = table(groups);
+    assertEquals(4, PortalJournal.replay(path, table, PortalHitbox.DEFAULT, LOGGER));
+    List<PortalGroup> expected = List.of(
+        new PortalGroup("Main", List.of(moved, groups.get(0).getPortal("Market"),
+            groups.get(0).getPortal("Ledge"))),
+        new PortalGroup("Nether", List.of(groups.get(1).getPortal("Well"))),
+        new PortalGroup("Islands", List.of(reef)));
+    assertSameGroups(expected, table.toGroups());
+
+    // Records carry full portal state, so replaying them again changes nothing
+    assertEquals(4, PortalJournal.replay(path, table, PortalHitbox.DEFAULT, LOGGER));
+    assertSameGroups(expected, table.toGroups());
+  }
+
+  @Test
+  void dropsATornTail() throws IOException {
+    PortalJournal journal = start(NEVER);
+    for (PortalGroup group : BinarySnapshotTest.sampleGroups()) {
+      for (Portal portal : group.getPortals()) {
+        journal.put(group.getName(), portal);
+      }
+    }
+    assertTrue(journal.close(5_000));
+    byte[] data = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(data, data.length - 5));
+
+    PortalTable table = new PortalTable();
+    assertEquals(5, PortalJournal.replay(path, table, PortalHitbox.DEFAULT, LOGGER));
+    assertEquals(5, table.getPortalCount());
+  }
+
+  @Test
+  void stopsAtACorruptRecord() throws IOException {
+    PortalJournal journal = start(NEVER);
+    for (PortalGroup group : BinarySnapshotTest.sampleGroups()) {
+      for (Portal portal : group.getPortals()) {
+        journal.put(group.getName(), portal);
+      }
+    }
+    assertTrue(journal.close(5_000));
+    byte[] data = Files.readAllBytes(path);
+    List<Integer> sizes = records(data);
+    int third = sizes.get(0) + sizes.get(1);
+    data[third + 12] ^= 0x01; // inside the body of the third record
+    Files.write(path, data);
+
+    PortalTable table = new PortalTable();
+    assertEquals(2, PortalJournal.replay(path, table, PortalHitbox.DEFAULT, LOGGER));
+    assertEquals(2, table.getPortalCount());
+  }
+
+  @Test
+  void replaysNothingWithoutAJournal() throws IOException {
+    assertEquals(0, PortalJournal.replay(path, new PortalTable(), PortalHitbox.DEFAULT,
+        LOGGER));
+  }
+
+  @Test
+  void compactsPastTheThreshold() throws IOException {
+    PortalJournal journal = start(1);
+    journal.put("Main", BinarySnapshotTest.sampleGroups().get(0).getPortal("Spawn"));
+    assertTrue(journal.close(5_000));
+
+    assertEquals(1, journal.getRecords());
+    assertTrue(journal.getCompactions() >= 1);
+    assertEquals(journal.getCompactions(), snapshots.get());
+    assertEquals(0, Files.size(path));
+    assertEquals(0, journal.getSize());
+  }
+
+  @Test
+  void keepsTheJournalWhenTheSnapshotFails() throws IOException {
+    PortalJournal journal = new PortalJournal(LOGGER, path, () -> {
+      snapshots.incrementAndGet();
+      return false;
+    }, 1);
+    journal.start();
+    journal.put("Main", BinarySnapshotTest.sampleGroups().get(0).getPortal("Spawn"));
+    assertTrue(journal.close(5_000));
+
+    assertTrue(snapshots.get() >= 1);
+    assertEquals(0, journal.getCompactions());
+    assertEquals(journal.getBytes(), Files.size(path));
+    assertEquals(1, PortalJournal.replay(path, new PortalTable(), PortalHitbox.DEFAULT,
+        LOGGER));
+  }
+
+  @Test
+  void compactsALeftoverJournalOnStart() throws IOException {
+    PortalJournal previous = start(NEVER);
+    previous.remove("Main", "Spawn");
+    assertTrue(previous.close(5_000));
+    assertTrue(Files.size(path) > 0);
+
+    PortalJournal journal = start(NEVER);
+    assertTrue(journal.close(5_000));
+    assertEquals(1, journal.getCompactions());
+    assertEquals(1, snapshots.get());
+    assertEquals(0, Files.size(path));
+  }
+
+  @Test
+  void appendsOnTheCallerAfterClose() throws IOException {
+    PortalJournal journal = start(NEVER);
+    assertTrue(journal.close(5_000));
+    journal.removeGroup("Main");
+
+    assertEquals(1, journal.getRecords());
+    assertEquals(journal.getBytes(), Files.size(path));
+  }
+
+  @Test
+  void appendsFewBytesPerMutation() throws IOException {
+    int count = 10_000;
+    List<PortalGroup> groups = journalOf(count);
+    long snapshotBytes = BinarySnapshotTest.toYaml(groups).getBytes(StandardCharsets.UTF_8).length;
+
+    long perMutation = Files.size(path) / count;
+    assertTrue(perMutation <= 128, perMutation + " bytes per mutation");
+    // Rewriting groups.yml instead would cost the whole file per mutation
+    assertTrue(perMutation * 1_000 < snapshotBytes, perMutation + " bytes per mutation against "
+        + snapshotBytes + " bytes per snapshot");
+  }
+
+  @Test
+  void replaysTenThousandRecordsQuickly() throws IOException {
+    int count = 10_000;
+    journalOf(count);
+
+    PortalTable table = new PortalTable();
+    // Generous bound for slow build machines, several times the usual replay time
+    int replayed = assertTimeout(Duration.ofSeconds(5),
+        () -> PortalJournal.replay(path, table, PortalHitbox.DEFAULT, LOGGER));
+    assertEquals(count, replayed);
+    assertEquals(count, table.getPortalCount());
+  }
+
+  // Journals one put per portal of a grid and returns its groups
+  private List<PortalGroup> journalOf(int count) throws IOException {
+    List<PortalGroup> groups = PortalGrid.groups(TestWorlds.get("world"), count,
+        new ArrayList<>());
+    PortalJournal journal = start(NEVER);
+    for (PortalGroup group : groups) {
+      for (Portal portal : group.getPortals()) {
+        journal.put(group.getName(), portal);
+      }
+    }
+    assertTrue(journal.close(5_000));
+    assertEquals(count, journal.getRecords());
+    return groups;
+  }
+
+  private PortalJournal start(long compactBytes) {
+    PortalJournal journal = new PortalJournal(LOGGER, path, () -> {
+      snapshots.incrementAndGet();
+      return true;
+    }, compactBytes);
+    journal.start();
+    return journal;
+  }
+
+  private static PortalTable table(List<PortalGroup> groups) {
+    PortalTable table = new PortalTable();
+    for (PortalGroup group : groups) {
+      table.addGroup(group.getName());
+      for (Portal portal : group.getPortals()) {
+        table.put(group.getName(), portal);
+      }
+    }
+    return table;
+  }
+
+  private static String yaml(Portal portal) {
+    YamlConfiguration data = new YamlConfiguration();
+    portal.serialize(data);
+    return data.saveToString();
+  }
+
+  // Length and CRC, then the operation and three length-prefixed strings
+  private static int recordSize(String groupName, String portalName, String data) {
+    return 8 + 1 + 3 * 2 + groupName.length() + portalName.length()
+        + data.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  // Checks the framing of every record and returns their sizes, framing included
+  private static List<Integer> records(byte[] data) {
+    ByteBuffer buf = ByteBuffer.wrap(data);
+    List<Integer> sizes = new ArrayList<>();
+    while (buf.hasRemaining()) {
+      int length = buf.getInt();
+      int stored = buf.getInt();
+      byte[] body = new byte[length];
+      buf.get(body);
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      assertEquals(stored, (int) crc.getValue(), "CRC of record " + sizes.size());
+      sizes.add(8 + length);
+    }
+    return sizes;
+  }
+}
@@ -0,0 +1,43 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link PortalRegistry#findPortalAt} resolves the right portal from 10
+ * to 100,000 portals. Lookup times are measured by {@code PortalLookupBenchmark}
+ * in the {@code jmh} profile.
+ */
+class PortalLookupTest {
+  private static final int[] PORTAL_COUNTS = {10, 100, 1_000, 10_000, 100_000};
+
+  private final World world = TestWorlds.get("world");
+
+  @Test
+  void findsPortalsAcrossPortalCounts() {
+    for (int count : PORTAL_COUNTS) {
+      List<Portal> portals = new ArrayList<>(count);
+      PortalRegistry registry =
+          PortalRegistry.EMPTY.withGroups(PortalGrid.groups(world, count, portals));
+      Location[] probes = PortalGrid.probes(world, portals, new Random(count));
+
+      // Half the probes stand in a portal, half between portals
+      for (int i = 0; i < probes.length; i++) {
+        PortalManager.PortalResult result = registry.findPortalAt(probes[i]);
+        if (i % 2 == 0) {
+          assertSame(portals.get((i / 2) % portals.size()), result.getPortal());
+        } else {
+          assertNull(result);
+        }
+      }
+    }
+  }
+}
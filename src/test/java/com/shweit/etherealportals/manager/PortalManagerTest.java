@@ -0,0 +1,77 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Removal of portals and of the groups they leave empty in {@link PortalManager}, and
+ * the groups its lookups report.
+ */
+class PortalManagerTest {
+  private final World world = TestWorlds.get("world");
+  private final PortalManager manager = new PortalManager(PortalHitbox.DEFAULT);
+
+  @Test
+  void dropsTheGroupWithItsLastPortal() {
+    manager.addPortal("steve:base", "one", new Location(world, 0, 64, 0), null, true);
+    long version = manager.snapshot().getVersion();
+
+    assertTrue(manager.removePortal("steve:base", "one", true));
+
+    assertNull(manager.getGroup("steve:base"));
+    assertEquals(version + 1, manager.snapshot().getVersion(), "one published snapshot");
+  }
+
+  @Test
+  void keepsAGroupThatStillHasPortals() {
+    manager.addPortal("steve:base", "one", new Location(world, 0, 64, 0), null, true);
+    manager.addPortal("steve:base", "two", new Location(world, 32, 64, 0), null, true);
+
+    assertTrue(manager.removePortal("steve:base", "one", true));
+
+    assertNotNull(manager.getGroup("steve:base"));
+    assertNotNull(manager.getGroup("steve:base").getPortal("two"));
+  }
+
+  @Test
+  void keepsAnEmptiedGroupUnlessAsked() {
+    manager.addPortal("steve:base", "one", new Location(world, 0, 64, 0), null, true);
+
+    assertTrue(manager.removePortal("steve:base", "one"));
+
+    assertTrue(manager.getGroup("steve:base").isEmpty());
+  }
+
+  @Test
+  void lookupsReturnTheCurrentGroupWithoutAllocating() {
+    Location first = new Location(world, 0, 64, 0);
+    manager.addPortal("Steve:Base", "one", first, null, true);
+    manager.addPortal("Steve:Base", "two", new Location(world, 32, 64, 0), null, true);
+    manager.removePortal("Steve:Base", "two");
+    Location inside = first.clone().add(0.5, 0.5, 0.5);
+
+    PortalManager.PortalResult hit = manager.findPortalAt(inside);
+
+    assertSame(manager.getGroup("steve:base"), hit.getGroup());
+    assertSame(hit, manager.findPortalAt(inside), "index entries are returned as they are");
+    assertSame(hit, manager.snapshot().findPortalsNear(inside, 4.0).get(0));
+  }
+
+  @Test
+  void reportsARemovalThatAnotherCallerWon() {
+    manager.addPortal("steve:base", "one", new Location(world, 0, 64, 0), null, true);
+
+    assertTrue(manager.removePortal("steve:base", "one", true));
+    assertFalse(manager.removePortal("steve:base", "one", true));
+    assertFalse(manager.removePortal("steve:base", "missing", true));
+  }
+}
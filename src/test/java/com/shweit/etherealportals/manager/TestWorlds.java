@@ -0,0 +1,90 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+
+/**
+ * Worlds for tests that run without a server. Each world only answers
+ * {@code getName} and {@code getUID}; {@link #install()} makes them visible to
+ * {@link Bukkit#getWorld(String)}, which the snapshot and journal readers use.
+ */
+final class TestWorlds {
+  private static final Map<String, World> WORLDS = new ConcurrentHashMap<>();
+  private static boolean installed;
+
+  private TestWorlds() {}
+
+  /**
+   * Gets the world with the given name, creating it on first use.
+   *
+   * @param name the world name
+   * @return the world
+   */
+  static World get(String name) {
+    return WORLDS.computeIfAbsent(name, TestWorlds::create);
+  }
+
+  /**
+   * Sets a server that resolves worlds created by {@link #get(String)}. Bypasses
+   * {@code Bukkit.setServer}, which needs a full server build.
+   */
+  static synchronized void install() {
+    if (installed) {
+      return;
+    }
+    Logger logger = Logger.getLogger("EtherealPortalsTest");
+    Server server = (Server) Proxy.newProxyInstance(TestWorlds.class.getClassLoader(),
+        new Class<?>[] {Server.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getWorld":
+              return args[0] instanceof String ? WORLDS.get((String) args[0]) : null;
+            case "getLogger":
+              return logger;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "TestServer";
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+    try {
+      Field field = Bukkit.class.getDeclaredField("server");
+      field.setAccessible(true);
+      field.set(null, server);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot install the test server", e);
+    }
+    installed = true;
+  }
+
+  private static World create(String name) {
+    UUID uid = UUID.nameUUIDFromBytes(name.getBytes());
+    return (World) Proxy.newProxyInstance(TestWorlds.class.getClassLoader(),
+        new Class<?>[] {World.class}, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getName":
+              return name;
+            case "getUID":
+              return uid;
+            case "hashCode":
+              return uid.hashCode();
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "TestWorld{" + name + "}";
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+}
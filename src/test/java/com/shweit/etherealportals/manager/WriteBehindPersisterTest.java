@@ -0,0 +1,67 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Retries of failed writes in {@link WriteBehindPersister}.
+ */
+class WriteBehindPersisterTest {
+  private static final Logger LOGGER = Logger.getLogger("WriteBehindPersisterTest");
+  private static final byte[] DATA = {1, 2, 3};
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void retriesAFailedWriteUntilItSucceeds() throws IOException {
+    Path target = dir.resolve("groups.yml");
+    WriteBehindPersister persister = new WriteBehindPersister(LOGGER, target,
+        failing(2), 0);
+    persister.start();
+
+    persister.markDirty();
+
+    assertTrue(persister.close(10_000), "the retry lands before the close timeout");
+    assertArrayEquals(DATA, Files.readAllBytes(target));
+    assertEquals(2, persister.getFailures());
+    assertEquals(1, persister.getWrites());
+    assertEquals(0, persister.getRetryMillis());
+  }
+
+  @Test
+  void reportsChangesStillUnsavedWhenCloseTimesOut() {
+    Path target = dir.resolve("groups.yml");
+    WriteBehindPersister persister = new WriteBehindPersister(LOGGER, target,
+        failing(Integer.MAX_VALUE), 0);
+    persister.start();
+
+    persister.markDirty();
+
+    assertFalse(persister.close(1_500));
+    assertTrue(persister.getFailures() >= 2, "retried while closing");
+    assertTrue(persister.getRetryMillis() > 0);
+    assertFalse(Files.exists(target));
+  }
+
+  private static Supplier<byte[]> failing(int times) {
+    AtomicInteger calls = new AtomicInteger();
+    return () -> {
+      if (calls.getAndIncrement() < times) {
+        throw new IllegalStateException("disk full");
+      }
+      return DATA;
+    };
+  }
+}
@@ -0,0 +1,255 @@
+package fr.kazotaruumc72.etherealportals.manager;
+
+import static fr.kazotaruumc72.etherealportals.manager.PortalAssertions.assertSameGroups;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.kazotaruumc72.etherealportals.model.Portal;
+import fr.kazotaruumc72.etherealportals.model.PortalGroup;
+import fr.kazotaruumc72.etherealportals.model.PortalHitbox;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link YamlStreamLoader} reads the same portals as loading the file
+ * with {@link YamlConfiguration} and {@link Portal#deserialize}, including the
+ * defaults of missing, null, quoted and malformed values.
+ */
+class YamlStreamLoaderTest {
+  private static final PortalHitbox DEFAULT_HITBOX = PortalHitbox.box(3.0, 1.0, 2.5);
+
+  // Values a hand-edited file may hold in place of a number
+  private static final String[] NUMBERS = {
+    "12", "-7", "+5", "64.0", "0.5", ".5", "1_000", "0x1F", "010", "1e3", "1.5e2",
+    ".inf", "-.inf", "'12'", "\"3.5\"", "~", "abc", "true", "[1, 2]", "{a: 1}"
+  };
+  // Collections in place of a string read as null here, and as their text in a document
+  private static final String[] SCALARS = {
+    "12", "64.0", "0x1F", "1e3", "'12'", "~", "''", "true", "yes", "abc"
+  };
+  private static final String[] BOOLEANS = {
+    "true", "false", "yes", "no", "on", "off", "TRUE", "Yes", "tRue", "'true'",
+    "\"yes\"", "1", "0", "~", "[true]"
+  };
+  private static final String[] SHAPES = {
+    "box", "cylinder", "slab", "CYLINDER", "Slab", "sphere", "~", "'box'", "5"
+  };
+
+  @TempDir
+  Path dir;
+
+  @BeforeAll
+  static void installWorlds() {
+    TestWorlds.install();
+    TestWorlds.get("world");
+    TestWorlds.get("world_nether");
+  }
+
+  @Test
+  void matchesDocumentLoadOnSavedPortals() throws IOException, InvalidConfigurationException {
+    List<PortalGroup> groups = BinarySnapshotTest.sampleGroups();
+    Path file = write(BinarySnapshotTest.toYaml(groups));
+
+    assertSameGroups(groups, stream(file, PortalHitbox.DEFAULT));
+    assertSameGroups(document(file, PortalHitbox.DEFAULT), stream(file, PortalHitbox.DEFAULT));
+    assertSameGroups(document(file, DEFAULT_HITBOX), stream(file, DEFAULT_HITBOX));
+  }
+
+  @Test
+  void matchesDocumentLoadOnGeneratedFile() throws IOException, InvalidConfigurationException {
+    Path file = write(generate(new Random(20261017L), 40, 50));
+
+    List<PortalGroup> expected = document(file, DEFAULT_HITBOX);
+    assertTrue(expected.stream().mapToInt(group -> group.getPortals().size()).sum() > 1000);
+    assertSameGroups(expected, stream(file, DEFAULT_HITBOX));
+  }
+
+  @Test
+  void matchesHitboxDefaults() throws IOException, InvalidConfigurationException {
+    StringBuilder yaml = new StringBuilder("g:\n");
+    int i = 0;
+    for (String shape : SHAPES) {
+      for (String field : new String[] {"width", "depth", "thickness", "height", "radius", "yaw"}) {
+        for (String value : NUMBERS) {
+          yaml.append("  p").append(i++).append(":\n    world: world\n    hitbox:\n")
+              .append("      shape: ").append(shape).append('\n')
+              .append("      ").append(field).append(": ").append(value).append('\n');
+        }
+      }
+      yaml.append("  p").append(i++).append(":\n    world: world\n    hitbox:\n")
+          .append("      shape: ").append(shape).append('\n');
+    }
+    Path file = write(yaml.toString());
+
+    List<PortalGroup> expected = document(file, DEFAULT_HITBOX);
+    assertEquals(i, expected.get(0).getPortals().size());
+    assertSameGroups(expected, stream(file, DEFAULT_HITBOX));
+    // The hitbox of every portal is what PortalHitbox.deserialize reads
+    YamlConfiguration config = new YamlConfiguration();
+    config.loadFromString(yaml.toString());
+    for (Portal portal : stream(file, DEFAULT_HITBOX).get(0).getPortals()) {
+      ConfigurationSection section = config.getConfigurationSection(
+          "g." + portal.getName() + ".hitbox");
+      assertEquals(PortalHitbox.deserialize(section, DEFAULT_HITBOX), portal.getHitbox(),
+          portal.getName());
+    }
+  }
+
+  @Test
+  void skipsPortalsInMissingWorlds() throws IOException, InvalidConfigurationException {
+    Path file = write("g:\n  a:\n    world: nowhere\n  b:\n    x: 1\n  c:\n    world: world\n");
+
+    List<PortalGroup> groups = stream(file, DEFAULT_HITBOX);
+    assertSameGroups(document(file, DEFAULT_HITBOX), groups);
+    assertEquals(1, groups.get(0).getPortals().size());
+  }
+
+  @Test
+  void readsEmptyFiles() throws IOException {
+    assertTrue(stream(write(""), DEFAULT_HITBOX).isEmpty());
+    assertTrue(stream(write("# no portals\n"), DEFAULT_HITBOX).isEmpty());
+    assertTrue(YamlStreamLoader.readIcons(write("")).isEmpty());
+  }
+
+  @Test
+  void rejectsAliases() throws IOException {
+    Path file = write("g:\n  a: &base\n    world: world\n  b: *base\n");
+
+    assertThrows(YamlStreamLoader.UnsupportedLayoutException.class,
+        () -> stream(file, DEFAULT_HITBOX));
+  }
+
+  @Test
+  void rejectsInvalidYaml() throws IOException {
+    Path file = write("g:\n  a: [unclosed\n");
+
+    IOException e = assertThrows(IOException.class, () -> stream(file, DEFAULT_HITBOX));
+    assertFalse(e instanceof YamlStreamLoader.UnsupportedLayoutException);
+  }
+
+  @Test
+  void readsIcons() throws IOException {
+    Path file = write("ruby:\n  base64: abc\n  extra: [1]\nbroken: 5\nempty: {}\n"
+        + "emerald:\n  base64: 'def'\n");
+
+    assertEquals(Map.of("ruby", "abc", "emerald", "def"), YamlStreamLoader.readIcons(file));
+  }
+
+  // Groups of portals whose fields are each missing, null, well formed or malformed
+  private static String generate(Random random, int groupCount, int portalsPerGroup) {
+    StringBuilder yaml = new StringBuilder();
+    for (int g = 0; g < groupCount; g++) {
+      yaml.append("group").append(g).append(":\n");
+      for (int p = 0; p < portalsPerGroup; p++) {
+        yaml.append("  portal").append(p).append(":\n");
+        field(yaml, random, "world", random.nextInt(10) == 0 ? "world_nether" : "world",
+            SCALARS, 20);
+        for (String axis : new String[] {"x", "y", "z", "yaw", "pitch"}) {
+          field(yaml, random, axis, String.valueOf(random.nextInt(20000) - 10000), NUMBERS, 3);
+        }
+        field(yaml, random, "icon", pick(random, "ruby", "'emerald'", "5"), SCALARS, 2);
+        field(yaml, random, "breakable", pick(random, BOOLEANS), NUMBERS, 2);
+        if (random.nextBoolean()) {
+          hitbox(yaml, random);
+        }
+        if (random.nextInt(3) == 0) {
+          yaml.append("    entities:\n");
+          field(yaml, random, "  text", pick(random, "6f1c1a52-3c1e-4b8e-9d0a-1f2e3d4c5b6a",
+              "not-a-uuid", "~"), SCALARS, 2);
+          field(yaml, random, "  marker", "0a9b8c7d-6e5f-4a3b-8c2d-1e0f9a8b7c6d", SCALARS, 2);
+        }
+        if (random.nextInt(8) == 0) {
+          yaml.append("    extra:\n      nested: [1, {a: 2}]\n      more: {b: [3]}\n");
+        }
+      }
+    }
+    return yaml.toString();
+  }
+
+  private static void hitbox(StringBuilder yaml, Random random) {
+    switch (random.nextInt(6)) {
+      case 0:
+        yaml.append("    hitbox: ~\n");
+        return;
+      case 1:
+        yaml.append("    hitbox: {}\n");
+        return;
+      case 2:
+        yaml.append("    hitbox: 5\n");
+        return;
+      default:
+        break;
+    }
+    yaml.append("    hitbox:\n");
+    field(yaml, random, "  shape", pick(random, SHAPES), SCALARS, 2);
+    for (String field : new String[] {"width", "depth", "thickness", "height", "radius", "yaw"}) {
+      field(yaml, random, "  " + field, pick(random, NUMBERS), NUMBERS, 2);
+    }
+  }
+
+  // Writes the value, or an alternative or nothing one time in 2 * odds each
+  private static void field(StringBuilder yaml, Random random, String key, String value,
+      String[] alternatives, int odds) {
+    int roll = random.nextInt(odds * 2);
+    if (roll == 0) {
+      return;
+    }
+    String written = roll == 1 ? pick(random, alternatives) : value;
+    yaml.append("    ").append(key).append(": ").append(written).append('\n');
+  }
+
+  private static String pick(Random random, String... values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private List<PortalGroup> stream(Path file, PortalHitbox defaultHitbox) throws IOException {
+    PortalTable table = new PortalTable();
+    YamlStreamLoader.readGroups(file, table, defaultHitbox);
+    return table.toGroups();
+  }
+
+  // The document load FileStorageBackend falls back to
+  private static List<PortalGroup> document(Path file, PortalHitbox defaultHitbox)
+      throws IOException, InvalidConfigurationException {
+    YamlConfiguration config = new YamlConfiguration();
+    config.load(file.toFile());
+    PortalTable table = new PortalTable();
+    for (String groupName : config.getKeys(false)) {
+      table.addGroup(groupName);
+      ConfigurationSection group = config.getConfigurationSection(groupName);
+      if (group == null) {
+        continue;
+      }
+      for (String portalName : group.getKeys(false)) {
+        ConfigurationSection portal = group.getConfigurationSection(portalName);
+        String worldName = portal == null ? null : portal.getString("world");
+        World world = worldName == null ? null : Bukkit.getWorld(worldName);
+        if (world != null) {
+          table.put(groupName, Portal.deserialize(portalName, portal, world, defaultHitbox));
+        }
+      }
+    }
+    return table.toGroups();
+  }
+
+  private Path write(String yaml) throws IOException {
+    Path file = Files.createTempFile(dir, "groups", ".yml");
+    Files.write(file, yaml.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}